@@ -0,0 +1,47 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1;
+
+import java.util.Map;
+
+import com.ibm.watson.developer_cloud.conversation.v1.model.ContextDelta;
+
+/**
+ * The external storage of an {@link ExternalContextStore}, e.g. a Redis hash per conversation. It stores opaque
+ * encoded values by conversation ID and key, and never has to decode them. Implementations must be thread safe, and
+ * report failures with unchecked exceptions.
+ */
+public interface ContextBackend {
+
+  /**
+   * Loads the encoded values of a conversation, e.g. with <code>HGETALL</code>.
+   *
+   * @param conversationId the conversation ID
+   * @return the encoded value of each key, or null or an empty map if the conversation is not stored
+   */
+  Map<String, byte[]> load(String conversationId);
+
+  /**
+   * Writes the keys that changed in a turn, e.g. with <code>HSET</code> and <code>HDEL</code> in a transaction.
+   *
+   * @param delta the changed and removed keys, never empty
+   */
+  void save(ContextDelta delta);
+
+  /**
+   * Deletes a conversation.
+   *
+   * @param conversationId the conversation ID
+   */
+  void delete(String conversationId);
+}
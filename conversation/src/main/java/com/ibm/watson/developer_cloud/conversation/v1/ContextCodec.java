@@ -0,0 +1,300 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1;
+
+import java.io.EOFException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.gson.Gson;
+import com.ibm.watson.developer_cloud.conversation.v1.model.ContextDelta;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+
+import okio.Buffer;
+
+/**
+ * The compact binary form of a conversation context.<br>
+ * <br>
+ * A context is the number of its keys followed by, for each key, the key, the length of the encoded value and the
+ * value. The length lets a context be split into its entries, and two contexts be compared key by key, without
+ * decoding the values. A value is a tag byte followed by:
+ * <ul>
+ * <li>nothing for null, false and true;</li>
+ * <li>a zig-zag varint for integers, and for doubles without a fraction, e.g. the turn counters that Gson parses as
+ * doubles. They are decoded as a {@link Long} and a {@link Double} respectively, so the JSON sent back does not
+ * change;</li>
+ * <li>8 bytes for other doubles;</li>
+ * <li>a varint length and UTF-8 bytes for strings;</li>
+ * <li>a varint count and the values, or the key and value pairs, for lists and maps.</li>
+ * </ul>
+ * Other objects are converted to one of these types with Gson first.
+ */
+final class ContextCodec {
+
+  private static final byte NULL = 0;
+  private static final byte FALSE = 1;
+  private static final byte TRUE = 2;
+  private static final byte LONG = 3;
+  private static final byte INTEGRAL_DOUBLE = 4;
+  private static final byte DOUBLE = 5;
+  private static final byte STRING = 6;
+  private static final byte LIST = 7;
+  private static final byte MAP = 8;
+  private static final double MAX_INTEGRAL = 1L << 53;
+  private static final Gson GSON = GsonSingleton.getGsonWithoutPrettyPrinting();
+
+  private ContextCodec() { }
+
+  /**
+   * Encodes a context.
+   *
+   * @param context the context
+   * @return the encoded context
+   */
+  static byte[] encode(Map<String, ?> context) {
+    final Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+    for (Map.Entry<String, ?> entry : context.entrySet()) {
+      entries.put(entry.getKey(), encodeValue(entry.getValue()));
+    }
+    return join(entries);
+  }
+
+  /**
+   * Decodes a context.
+   *
+   * @param encoded the encoded context
+   * @return the context, a mutable map
+   */
+  static Map<String, Object> decode(byte[] encoded) {
+    final Map<String, Object> context = new LinkedHashMap<String, Object>();
+    for (Map.Entry<String, byte[]> entry : split(encoded).entrySet()) {
+      context.put(entry.getKey(), decodeValue(entry.getValue()));
+    }
+    return context;
+  }
+
+  /**
+   * Joins encoded values into an encoded context.
+   *
+   * @param entries the encoded value of each key
+   * @return the encoded context
+   */
+  static byte[] join(Map<String, byte[]> entries) {
+    final Buffer buffer = new Buffer();
+    writeVarint(buffer, entries.size());
+    for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+      writeString(buffer, entry.getKey());
+      writeVarint(buffer, entry.getValue().length);
+      buffer.write(entry.getValue());
+    }
+    return buffer.readByteArray();
+  }
+
+  /**
+   * Splits an encoded context into the encoded value of each key.
+   *
+   * @param encoded the encoded context
+   * @return the encoded value of each key, in the order of the context
+   */
+  static Map<String, byte[]> split(byte[] encoded) {
+    final Buffer buffer = new Buffer().write(encoded);
+    try {
+      final int size = (int) readVarint(buffer);
+      final Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+      for (int i = 0; i < size; i++) {
+        final String key = readString(buffer);
+        entries.put(key, buffer.readByteArray(readVarint(buffer)));
+      }
+      return entries;
+    } catch (EOFException e) {
+      throw new IllegalArgumentException("truncated context", e);
+    }
+  }
+
+  /**
+   * Compares two encoded contexts key by key.
+   *
+   * @param conversationId the conversation ID
+   * @param previous the previous encoded context, or null if there is none
+   * @param current the current encoded context
+   * @return the keys of the current context that were added, changed or removed
+   */
+  static ContextDelta diff(String conversationId, byte[] previous, byte[] current) {
+    final Map<String, byte[]> before =
+        (previous == null) ? Collections.<String, byte[]>emptyMap() : split(previous);
+    final Map<String, byte[]> changed = new LinkedHashMap<String, byte[]>();
+    final Set<String> removed = new LinkedHashSet<String>(before.keySet());
+    for (Map.Entry<String, byte[]> entry : split(current).entrySet()) {
+      removed.remove(entry.getKey());
+      if (!Arrays.equals(before.get(entry.getKey()), entry.getValue())) {
+        changed.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return new ContextDelta(conversationId, changed, removed);
+  }
+
+  /**
+   * Encodes a value.
+   *
+   * @param value the value
+   * @return the encoded value
+   */
+  static byte[] encodeValue(Object value) {
+    final Buffer buffer = new Buffer();
+    write(buffer, value);
+    return buffer.readByteArray();
+  }
+
+  /**
+   * Decodes a value.
+   *
+   * @param encoded the encoded value
+   * @return the value
+   */
+  static Object decodeValue(byte[] encoded) {
+    try {
+      return read(new Buffer().write(encoded));
+    } catch (EOFException e) {
+      throw new IllegalArgumentException("truncated context value", e);
+    }
+  }
+
+  private static void write(Buffer buffer, Object value) {
+    if (value == null) {
+      buffer.writeByte(NULL);
+    } else if (value instanceof Boolean) {
+      buffer.writeByte(((Boolean) value) ? TRUE : FALSE);
+    } else if ((value instanceof Long) || (value instanceof Integer) || (value instanceof Short)
+        || (value instanceof Byte)) {
+      buffer.writeByte(LONG);
+      writeVarint(buffer, zigZag(((Number) value).longValue()));
+    } else if (value instanceof Number) {
+      final double number = ((Number) value).doubleValue();
+      if ((number == Math.rint(number)) && (Math.abs(number) <= MAX_INTEGRAL)
+          && !((number == 0) && (1 / number < 0))) {
+        buffer.writeByte(INTEGRAL_DOUBLE);
+        writeVarint(buffer, zigZag((long) number));
+      } else {
+        buffer.writeByte(DOUBLE);
+        buffer.writeLong(Double.doubleToLongBits(number));
+      }
+    } else if (value instanceof CharSequence) {
+      buffer.writeByte(STRING);
+      writeString(buffer, value.toString());
+    } else if (value instanceof Collection) {
+      final Collection<?> list = (Collection<?>) value;
+      buffer.writeByte(LIST);
+      writeVarint(buffer, list.size());
+      for (Object element : list) {
+        write(buffer, element);
+      }
+    } else if (value instanceof Map) {
+      final Map<?, ?> map = (Map<?, ?>) value;
+      buffer.writeByte(MAP);
+      writeVarint(buffer, map.size());
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        writeString(buffer, String.valueOf(entry.getKey()));
+        write(buffer, entry.getValue());
+      }
+    } else {
+      // e.g. an array, an enum or a model: write it as its JSON would be parsed
+      write(buffer, GSON.fromJson(GSON.toJsonTree(value), Object.class));
+    }
+  }
+
+  private static Object read(Buffer buffer) throws EOFException {
+    buffer.require(1);
+    final byte tag = buffer.readByte();
+    switch (tag) {
+      case NULL:
+        return null;
+      case FALSE:
+        return Boolean.FALSE;
+      case TRUE:
+        return Boolean.TRUE;
+      case LONG:
+        return unZigZag(readVarint(buffer));
+      case INTEGRAL_DOUBLE:
+        return (double) unZigZag(readVarint(buffer));
+      case DOUBLE:
+        buffer.require(8);
+        return Double.longBitsToDouble(buffer.readLong());
+      case STRING:
+        return readString(buffer);
+      case LIST:
+        final int length = (int) readVarint(buffer);
+        final List<Object> list = new ArrayList<Object>();
+        for (int i = 0; i < length; i++) {
+          list.add(read(buffer));
+        }
+        return list;
+      case MAP:
+        final int size = (int) readVarint(buffer);
+        final Map<String, Object> map = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < size; i++) {
+          final String key = readString(buffer);
+          map.put(key, read(buffer));
+        }
+        return map;
+      default:
+        throw new IllegalArgumentException("unknown context value tag " + tag);
+    }
+  }
+
+  private static void writeString(Buffer buffer, String string) {
+    final Buffer utf8 = new Buffer().writeUtf8(string);
+    writeVarint(buffer, utf8.size());
+    buffer.write(utf8, utf8.size());
+  }
+
+  private static String readString(Buffer buffer) throws EOFException {
+    return buffer.readUtf8(readVarint(buffer));
+  }
+
+  private static void writeVarint(Buffer buffer, long value) {
+    long remaining = value;
+    while ((remaining & ~0x7FL) != 0) {
+      buffer.writeByte((int) ((remaining & 0x7F) | 0x80));
+      remaining >>>= 7;
+    }
+    buffer.writeByte((int) remaining);
+  }
+
+  private static long readVarint(Buffer buffer) throws EOFException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      buffer.require(1);
+      final byte b = buffer.readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("malformed varint");
+  }
+
+  private static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+}
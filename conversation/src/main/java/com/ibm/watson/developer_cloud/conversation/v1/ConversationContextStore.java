@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1;
+
+import java.util.Map;
+
+import com.ibm.watson.developer_cloud.conversation.v1.model.ContextDelta;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageRequest;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponse;
+
+/**
+ * Keeps the context of each conversation between turns, keyed by its <code>conversation_id</code>, so it does not
+ * have to travel with the client. The context of the {@link MessageResponse} of a turn is put in the store, and got
+ * back for the {@link MessageRequest} of the next turn. Implementations keep contexts in a compact binary form and
+ * track which top-level keys changed in each turn, so only those have to be written.<br>
+ * <br>
+ * Here is an example of a turn:
+ *
+ * <pre>
+ * ConversationContextStore store = new InMemoryContextStore(10000);
+ * MessageRequest request = new MessageRequest.Builder().inputText(text).context(store.get(conversationId)).build();
+ * MessageResponse response = service.message(workspaceId, request).execute();
+ * store.put(response.getContext());
+ * </pre>
+ *
+ * @see InMemoryContextStore
+ * @see ExternalContextStore
+ */
+public interface ConversationContextStore {
+
+  /** The key of the conversation ID in a context. */
+  String CONVERSATION_ID = "conversation_id";
+
+  /**
+   * Gets the context of a conversation.
+   *
+   * @param conversationId the conversation ID
+   * @return a mutable copy of the context, or null if the store does not have the conversation
+   */
+  Map<String, Object> get(String conversationId);
+
+  /**
+   * Puts the context returned by a turn, replacing the previous context of its conversation.
+   *
+   * @param context the context, which must have a <code>conversation_id</code>
+   * @return the keys that changed since the previous context of the conversation
+   */
+  ContextDelta put(Map<String, Object> context);
+
+  /**
+   * Removes the context of a conversation, e.g. when it ends.
+   *
+   * @param conversationId the conversation ID
+   */
+  void remove(String conversationId);
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageRequest;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponse;
+import com.ibm.watson.developer_cloud.http.ServiceCallback;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+import jersey.repackaged.jsr166e.CompletableFuture;
+
+/**
+ * Sends the messages of many conversations to a workspace, in order within a conversation and in parallel across
+ * conversations.<br>
+ * <br>
+ * Each conversation is identified by a key chosen by the caller, e.g. the ID of a chat session. A turn is only sent
+ * once the previous turn of its conversation has completed, and the context returned by the previous turn is put in
+ * its {@link MessageRequest}, unless the request has a context of its own. If a turn fails, the next one is sent with
+ * the last context that was returned. Turns of different conversations are sent as soon as they are submitted, with
+ * {@link com.ibm.watson.developer_cloud.http.ServiceCall#enqueue(ServiceCallback)}, so no thread waits for a
+ * response.<br>
+ * <br>
+ * Conversations are spread over stripes by the hash of their key. Each stripe has its own lock and holds up to a
+ * maximum number of turns that have not completed yet; {@link #submit(String, MessageRequest)} rejects the turns that
+ * would exceed it, which bounds the memory used when the service falls behind. {@link #getQueueDepth()},
+ * {@link #getInFlight()} and {@link #getStripeDepths()} tell how far behind it is.<br>
+ * <br>
+ * Here is an example of a chat server:
+ *
+ * <pre>
+ * ConversationExecutor executor = new ConversationExecutor(service, workspaceId);
+ * CompletableFuture&lt;MessageResponse&gt; reply =
+ *     executor.submit(sessionId, new MessageRequest.Builder().inputText(text).build());
+ * System.out.println(reply.get().getTextConcatenated(&quot; &quot;));
+ * ...
+ * executor.end(sessionId);
+ * </pre>
+ */
+public class ConversationExecutor {
+
+  /** The default number of stripes. */
+  public static final int DEFAULT_STRIPES = 16;
+
+  /** The default maximum number of incomplete turns per stripe. */
+  public static final int DEFAULT_STRIPE_CAPACITY = 1024;
+
+  /**
+   * A turn waiting to be sent. A turn without a request ends the conversation.
+   */
+  private static final class Turn {
+    private final MessageRequest request;
+    private final CompletableFuture<MessageResponse> future;
+    private Map<String, Object> context;
+
+    private Turn(MessageRequest request, CompletableFuture<MessageResponse> future) {
+      this.request = request;
+      this.future = future;
+    }
+  }
+
+  /**
+   * The state of a conversation, guarded by the lock of its stripe.
+   */
+  private static final class Conversation {
+    private final Queue<Turn> queued = new ArrayDeque<Turn>();
+    private Map<String, Object> context;
+    private boolean sending;
+  }
+
+  /**
+   * A stripe of conversations.
+   */
+  private static final class Stripe {
+    private final Map<String, Conversation> conversations = new HashMap<String, Conversation>();
+    private int queued;
+    private int inFlight;
+  }
+
+  private final ConversationService service;
+  private final String workspaceId;
+  private final int stripeCapacity;
+  private final Stripe[] stripes;
+
+  /**
+   * Instantiates a new conversation executor with the default number of stripes and capacity.
+   *
+   * @param service the Conversation service
+   * @param workspaceId the workspace ID
+   */
+  public ConversationExecutor(ConversationService service, String workspaceId) {
+    this(service, workspaceId, DEFAULT_STRIPES, DEFAULT_STRIPE_CAPACITY);
+  }
+
+  /**
+   * Instantiates a new conversation executor.
+   *
+   * @param service the Conversation service
+   * @param workspaceId the workspace ID
+   * @param stripes the number of stripes
+   * @param stripeCapacity the maximum number of incomplete turns per stripe
+   */
+  public ConversationExecutor(ConversationService service, String workspaceId, int stripes, int stripeCapacity) {
+    Validator.notNull(service, "service cannot be null");
+    Validator.notEmpty(workspaceId, "workspaceId cannot be null or empty");
+    Validator.isTrue(stripes > 0, "stripes must be greater than 0");
+    Validator.isTrue(stripeCapacity > 0, "stripeCapacity must be greater than 0");
+    this.service = service;
+    this.workspaceId = workspaceId;
+    this.stripeCapacity = stripeCapacity;
+    this.stripes = new Stripe[stripes];
+    for (int i = 0; i < stripes; i++) {
+      this.stripes[i] = new Stripe();
+    }
+  }
+
+  /**
+   * Submits a turn of a conversation. It is sent after the previous turns of the conversation, with the context
+   * returned by the last of them.
+   *
+   * @param key the key of the conversation
+   * @param request the request
+   * @return the future completed with the response of the turn
+   * @throws RejectedExecutionException if the stripe of the conversation is full
+   */
+  public CompletableFuture<MessageResponse> submit(String key, MessageRequest request) {
+    Validator.notNull(key, "key cannot be null");
+    Validator.notNull(request, "request cannot be null");
+
+    final Stripe stripe = stripeOf(key);
+    final CompletableFuture<MessageResponse> future = new CompletableFuture<MessageResponse>();
+    final Turn next;
+    synchronized (stripe) {
+      if ((stripe.queued + stripe.inFlight) >= stripeCapacity) {
+        throw new RejectedExecutionException("too many incomplete turns, the capacity of a stripe is "
+            + stripeCapacity);
+      }
+      Conversation conversation = stripe.conversations.get(key);
+      if (conversation == null) {
+        conversation = new Conversation();
+        stripe.conversations.put(key, conversation);
+      }
+      conversation.queued.add(new Turn(request, future));
+      stripe.queued++;
+      next = conversation.sending ? null : poll(stripe, key, conversation);
+    }
+    if (next != null) {
+      send(stripe, key, next);
+    }
+    return future;
+  }
+
+  /**
+   * Ends a conversation once its submitted turns have completed, forgetting its context. A turn submitted afterwards
+   * with the same key starts a new conversation.
+   *
+   * @param key the key of the conversation
+   */
+  public void end(String key) {
+    final Stripe stripe = stripeOf(key);
+    synchronized (stripe) {
+      final Conversation conversation = stripe.conversations.get(key);
+      if (conversation == null) {
+        return;
+      }
+      if (conversation.sending) {
+        conversation.queued.add(new Turn(null, null));
+      } else {
+        stripe.conversations.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Gets the number of turns waiting for the previous turn of their conversation.
+   *
+   * @return the number of queued turns
+   */
+  public int getQueueDepth() {
+    int depth = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        depth += stripe.queued;
+      }
+    }
+    return depth;
+  }
+
+  /**
+   * Gets the number of turns sent to the service and waiting for its response.
+   *
+   * @return the number of turns in flight
+   */
+  public int getInFlight() {
+    int inFlight = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        inFlight += stripe.inFlight;
+      }
+    }
+    return inFlight;
+  }
+
+  /**
+   * Gets the number of incomplete turns, queued or in flight, of each stripe. A stripe much deeper than the others
+   * has a conversation that sends faster than the service answers.
+   *
+   * @return the depth of each stripe
+   */
+  public int[] getStripeDepths() {
+    final int[] depths = new int[stripes.length];
+    for (int i = 0; i < stripes.length; i++) {
+      synchronized (stripes[i]) {
+        depths[i] = stripes[i].queued + stripes[i].inFlight;
+      }
+    }
+    return depths;
+  }
+
+  /**
+   * Gets the number of conversations whose context is kept, i.e. that were not ended.
+   *
+   * @return the number of conversations
+   */
+  public int getConversations() {
+    int count = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        count += stripe.conversations.size();
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Takes the next turn of a conversation, along with the context of the previous turn. Ends the conversation if it
+   * was asked to on the way. Must be called with the lock of the stripe.
+   *
+   * @param stripe the stripe
+   * @param key the key of the conversation
+   * @param conversation the conversation
+   * @return the turn to send, or null if there is none
+   */
+  private Turn poll(Stripe stripe, String key, Conversation conversation) {
+    Turn turn = conversation.queued.poll();
+    while ((turn != null) && (turn.request == null)) {
+      conversation.context = null;
+      turn = conversation.queued.poll();
+    }
+    conversation.sending = turn != null;
+    if (turn == null) {
+      if (conversation.context == null) {
+        stripe.conversations.remove(key);
+      }
+      return null;
+    }
+
+    stripe.queued--;
+    stripe.inFlight++;
+    turn.context = conversation.context;
+    return turn;
+  }
+
+  /**
+   * Sends a turn with the context of the previous turn, and the next turn of the conversation when it completes.
+   *
+   * @param stripe the stripe
+   * @param key the key of the conversation
+   * @param turn the turn
+   */
+  private void send(final Stripe stripe, final String key, final Turn turn) {
+    try {
+      MessageRequest request = turn.request;
+      if ((request.context() == null) && (turn.context != null)) {
+        request = request.newBuilder().context(turn.context).build();
+      }
+      service.message(workspaceId, request).enqueue(new ServiceCallback<MessageResponse>() {
+        @Override
+        public void onResponse(MessageResponse response) {
+          complete(stripe, key, response.getContext());
+          turn.future.complete(response);
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+          complete(stripe, key, null);
+          turn.future.completeExceptionally(e);
+        }
+      });
+    } catch (RuntimeException e) {
+      complete(stripe, key, null);
+      turn.future.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Completes the turn in flight of a conversation and sends its next turn.
+   *
+   * @param stripe the stripe
+   * @param key the key of the conversation
+   * @param context the context returned by the turn, or null if it failed
+   */
+  private void complete(Stripe stripe, String key, Map<String, Object> context) {
+    final Turn next;
+    synchronized (stripe) {
+      stripe.inFlight--;
+      final Conversation conversation = stripe.conversations.get(key);
+      if (context != null) {
+        conversation.context = context;
+      }
+      next = poll(stripe, key, conversation);
+    }
+    if (next != null) {
+      send(stripe, key, next);
+    }
+  }
+
+  /**
+   * Gets the stripe of a conversation.
+   *
+   * @param key the key of the conversation
+   * @return the stripe
+   */
+  private Stripe stripeOf(String key) {
+    int hash = key.hashCode();
+    hash ^= (hash >>> 16);
+    return stripes[(hash & Integer.MAX_VALUE) % stripes.length];
+  }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.ibm.watson.developer_cloud.http.HttpHeaders;
+import com.ibm.watson.developer_cloud.http.HttpMediaType;
+import com.ibm.watson.developer_cloud.util.Validator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An embedded HTTP server that answers {@link ConversationService#message(String, MessageRequest)} with the
+ * responses recorded by a {@link WorkspaceTester}, so a run can be replayed offline, e.g. to measure how many
+ * messages per second the client itself can send and parse.<br>
+ * <br>
+ * The server listens on the loopback interface, on any free port. It answers each message with the response recorded
+ * for its input text, in any workspace, after an optional delay that simulates the latency of the service. A text that
+ * was not recorded is answered with <code>404</code>.<br>
+ * <br>
+ * Here is an example of how to replay a recording:
+ *
+ * <pre>
+ * ConversationReplayServer server = new ConversationReplayServer(new File(&quot;recording.json&quot;), 0);
+ * server.start();
+ * service.setEndPoint(server.getEndPoint());
+ * WorkspaceTestResult result = new WorkspaceTester.Builder(service, workspaceId).concurrency(64).build()
+ *     .run(WorkspaceTester.readUtterances(new File(&quot;utterances.csv&quot;)));
+ * server.stop();
+ * </pre>
+ */
+public class ConversationReplayServer {
+
+  /** The number of threads that handle requests. */
+  public static final int THREADS = 64;
+
+  private static final Logger LOG = Logger.getLogger(ConversationReplayServer.class.getName());
+  private static final String UTF_8 = "UTF-8";
+  private static final String PATH = "/v1/workspaces/";
+  private static final String INPUT = "input";
+  private static final String TEXT = "text";
+  private static final int BACKLOG = 1024;
+
+  private final Map<String, byte[]> responses;
+  private final long delay;
+  private final ExecutorService executor;
+
+  private HttpServer server;
+
+  /**
+   * Instantiates a new replay server.
+   *
+   * @param recording the recording written by {@link WorkspaceTester.Builder#record(File)}
+   * @param delay the delay before each response, in milliseconds, or 0 to answer immediately
+   * @throws IOException if the recording cannot be read
+   */
+  public ConversationReplayServer(File recording, long delay) throws IOException {
+    Validator.isTrue((recording != null) && recording.exists(), "recording file is null or does not exist");
+    Validator.isTrue(delay >= 0, "delay cannot be negative");
+    responses = readRecording(recording);
+    this.delay = delay;
+    executor = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        final Thread thread = new Thread(runnable, "conversation-replay-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Starts listening. A server can only be started once.
+   *
+   * @throws IOException if no port can be bound
+   */
+  public synchronized void start() throws IOException {
+    Validator.isTrue(server == null, "the server has already been started");
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getByName(null), 0), BACKLOG);
+    server.createContext(PATH, new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          ConversationReplayServer.this.handle(exchange);
+        } finally {
+          exchange.close();
+        }
+      }
+    });
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  /**
+   * Gets the end point to set on the {@link ConversationService}.
+   *
+   * @return the end point, or null if the server has not been started
+   */
+  public synchronized String getEndPoint() {
+    return (server == null) ? null
+        : "http://" + server.getAddress().getAddress().getHostAddress() + ":" + server.getAddress().getPort();
+  }
+
+  /**
+   * Gets the number of recorded responses.
+   *
+   * @return the number of responses
+   */
+  public int size() {
+    return responses.size();
+  }
+
+  /**
+   * Stops the server.
+   */
+  public synchronized void stop() {
+    if (server != null) {
+      server.stop(0);
+    }
+    executor.shutdown();
+  }
+
+  /**
+   * Answers a message with its recorded response.
+   *
+   * @param exchange the exchange
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void handle(HttpExchange exchange) throws IOException {
+    byte[] response = null;
+    try {
+      final JsonElement body = new JsonParser().parse(new InputStreamReader(exchange.getRequestBody(), UTF_8));
+      response = responses.get(textOf(body));
+    } catch (JsonParseException e) {
+      LOG.log(Level.FINE, "Invalid message request", e);
+    }
+
+    if (delay > 0) {
+      try {
+        TimeUnit.MILLISECONDS.sleep(delay);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    exchange.getResponseHeaders().set(HttpHeaders.CONTENT_TYPE, HttpMediaType.APPLICATION_JSON);
+    if (response == null) {
+      response = "{\"error\":\"no response was recorded for this text\",\"code\":404}".getBytes(UTF_8);
+      exchange.sendResponseHeaders(404, response.length);
+    } else {
+      exchange.sendResponseHeaders(200, response.length);
+    }
+    final OutputStream output = exchange.getResponseBody();
+    output.write(response);
+    output.flush();
+  }
+
+  /**
+   * Reads a recording of one JSON object per line, with the text of the message and its response.
+   *
+   * @param recording the recording
+   * @return the responses, by text
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static Map<String, byte[]> readRecording(File recording) throws IOException {
+    final Map<String, byte[]> responses = new HashMap<String, byte[]>();
+    final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(recording), UTF_8));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (!line.trim().isEmpty()) {
+          final JsonObject entry = new JsonParser().parse(line).getAsJsonObject();
+          responses.put(entry.get(TEXT).getAsString(),
+              entry.get(WorkspaceTester.RESPONSE).toString().getBytes(UTF_8));
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return responses;
+  }
+
+  /**
+   * Gets the input text of a message request.
+   *
+   * @param request the request
+   * @return the text, or null if the request has none
+   */
+  private static String textOf(JsonElement request) {
+    if (!request.isJsonObject() || !request.getAsJsonObject().has(INPUT)) {
+      return null;
+    }
+    final JsonElement input = request.getAsJsonObject().get(INPUT);
+    if (!input.isJsonObject() || !input.getAsJsonObject().has(TEXT)) {
+      return null;
+    }
+    return input.getAsJsonObject().get(TEXT).getAsString();
+  }
+}
@@ -12,16 +12,22 @@
  */
 package com.ibm.watson.developer_cloud.conversation.v1;
 
+import java.io.IOException;
+
 import com.google.gson.JsonObject;
 import com.ibm.watson.developer_cloud.conversation.v1.model.MessageRequest;
 import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponse;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponseView;
 import com.ibm.watson.developer_cloud.http.RequestBuilder;
+import com.ibm.watson.developer_cloud.http.ResponseConverter;
 import com.ibm.watson.developer_cloud.http.ServiceCall;
 import com.ibm.watson.developer_cloud.service.WatsonService;
-import com.ibm.watson.developer_cloud.util.GsonSingleton;
 import com.ibm.watson.developer_cloud.util.ResponseConverterUtils;
 import com.ibm.watson.developer_cloud.util.Validator;
 
+import okhttp3.Request;
+import okhttp3.Response;
+
 /**
  * Thin wrapper around the Conversation Service REST API.
  *
@@ -77,16 +83,49 @@ public final class ConversationService extends WatsonService {
    * @return The response for the given message.
    */
   public ServiceCall<MessageResponse> message(String workspaceId, MessageRequest request) {
+    return createServiceCall(buildMessageRequest(workspaceId, request),
+        ResponseConverterUtils.getObject(MessageResponse.class));
+  }
+
+  /**
+   * Sends a message to the service through a {@link MessageRequest}, and returns a lazy view of the response that only
+   * parses the parts of it that are used, e.g. the text of the output and the top intent.
+   *
+   * @param workspaceId the workspace id
+   * @param request the request
+   * @return The response for the given message, as a {@link MessageResponseView}.
+   */
+  public ServiceCall<MessageResponseView> messageView(String workspaceId, MessageRequest request) {
+    return createServiceCall(buildMessageRequest(workspaceId, request), new ResponseConverter<MessageResponseView>() {
+      @Override
+      public MessageResponseView convert(Response response) {
+        try {
+          return new MessageResponseView(response.body().bytes());
+        } catch (IOException e) {
+          throw new RuntimeException("Error reading the message response", e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Builds the HTTP request of a message.
+   *
+   * @param workspaceId the workspace id
+   * @param request the request
+   * @return the HTTP request
+   */
+  private Request buildMessageRequest(String workspaceId, MessageRequest request) {
     Validator.isTrue((workspaceId != null) && !workspaceId.isEmpty(), "'workspaceId' cannot be null or empty");
 
     RequestBuilder builder = RequestBuilder.post(String.format(PATH_MESSAGE, workspaceId));
     builder.query(VERSION_PARAM, versionDate);
     if (request != null) {
-      builder.bodyJson(GsonSingleton.getGson().toJsonTree(request).getAsJsonObject());
+      builder.body(new MessageRequestBody(request));
     } else {
       builder.bodyJson(new JsonObject());
     }
-    return createServiceCall(builder.build(), ResponseConverterUtils.getObject(MessageResponse.class));
+    return builder.build();
   }
 
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.ibm.watson.developer_cloud.conversation.v1.model.ContextDelta;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * A {@link ConversationContextStore} that keeps the contexts in a {@link ContextBackend} shared by several instances
+ * of an application, and only writes the keys that changed in each turn.<br>
+ * <br>
+ * {@link #get(String)} always loads the context from the backend, since the previous turn may have been handled by
+ * another instance. The encoded context it loaded is remembered, so the {@link #put(Map)} that follows in the same
+ * turn can compare against it without loading it again. A remembered context is only used by that one
+ * {@link #put(Map)}: another instance may change the context after it, so a {@link #put(Map)} without a
+ * {@link #get(String)} before it loads the context again. Up to <code>maxRemembered</code> contexts are remembered,
+ * the least recently used ones being forgotten first. The turns of one conversation are expected to be sequential.
+ */
+public class ExternalContextStore implements ConversationContextStore {
+
+  private final ContextBackend backend;
+  private final Map<String, byte[]> remembered;
+
+  /**
+   * Instantiates a new external context store.
+   *
+   * @param backend the backend
+   * @param maxRemembered the maximum number of contexts to remember between {@link #get(String)} and
+   *        {@link #put(Map)}
+   */
+  public ExternalContextStore(ContextBackend backend, final int maxRemembered) {
+    Validator.notNull(backend, "backend cannot be null");
+    Validator.isTrue(maxRemembered > 0, "maxRemembered must be greater than 0");
+    this.backend = backend;
+    remembered = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+        return size() > maxRemembered;
+      }
+    };
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.conversation.v1.ConversationContextStore#get(java.lang.String)
+   */
+  @Override
+  public Map<String, Object> get(String conversationId) {
+    Validator.notNull(conversationId, "conversationId cannot be null");
+    final byte[] encoded = load(conversationId);
+    synchronized (remembered) {
+      if (encoded == null) {
+        remembered.remove(conversationId);
+      } else {
+        remembered.put(conversationId, encoded);
+      }
+    }
+    return (encoded == null) ? null : ContextCodec.decode(encoded);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.conversation.v1.ConversationContextStore#put(java.util.Map)
+   */
+  @Override
+  public ContextDelta put(Map<String, Object> context) {
+    Validator.notNull(context, "context cannot be null");
+    final Object id = context.get(CONVERSATION_ID);
+    Validator.notNull(id, "context must have a " + CONVERSATION_ID);
+    final String conversationId = id.toString();
+
+    byte[] previous;
+    synchronized (remembered) {
+      previous = remembered.remove(conversationId);
+    }
+    if (previous == null) {
+      previous = load(conversationId);
+    }
+
+    final ContextDelta delta = ContextCodec.diff(conversationId, previous, ContextCodec.encode(context));
+    if (!delta.isEmpty()) {
+      backend.save(delta);
+    }
+    return delta;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.conversation.v1.ConversationContextStore#remove(java.lang.String)
+   */
+  @Override
+  public void remove(String conversationId) {
+    synchronized (remembered) {
+      remembered.remove(conversationId);
+    }
+    backend.delete(conversationId);
+  }
+
+  /**
+   * Loads a context from the backend.
+   *
+   * @param conversationId the conversation ID
+   * @return the encoded context, or null if the backend does not have it
+   */
+  private byte[] load(String conversationId) {
+    final Map<String, byte[]> entries = backend.load(conversationId);
+    if ((entries == null) || entries.isEmpty()) {
+      return null;
+    }
+    return ContextCodec.join(entries);
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.ibm.watson.developer_cloud.conversation.v1.model.ContextDelta;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * A {@link ConversationContextStore} that keeps the contexts in memory, in their compact binary form. It holds up to
+ * a maximum number of conversations, and forgets the least recently used one when a new conversation would exceed it.
+ * The store is thread safe; contexts are encoded and decoded outside of its lock.
+ */
+public class InMemoryContextStore implements ConversationContextStore {
+
+  private final Map<String, byte[]> contexts;
+
+  /**
+   * Instantiates a new in-memory context store.
+   *
+   * @param maxConversations the maximum number of conversations to keep
+   */
+  public InMemoryContextStore(final int maxConversations) {
+    Validator.isTrue(maxConversations > 0, "maxConversations must be greater than 0");
+    contexts = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+        return size() > maxConversations;
+      }
+    };
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.conversation.v1.ConversationContextStore#get(java.lang.String)
+   */
+  @Override
+  public Map<String, Object> get(String conversationId) {
+    Validator.notNull(conversationId, "conversationId cannot be null");
+    final byte[] encoded;
+    synchronized (contexts) {
+      encoded = contexts.get(conversationId);
+    }
+    return (encoded == null) ? null : ContextCodec.decode(encoded);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.conversation.v1.ConversationContextStore#put(java.util.Map)
+   */
+  @Override
+  public ContextDelta put(Map<String, Object> context) {
+    Validator.notNull(context, "context cannot be null");
+    final Object conversationId = context.get(CONVERSATION_ID);
+    Validator.notNull(conversationId, "context must have a " + CONVERSATION_ID);
+
+    final byte[] encoded = ContextCodec.encode(context);
+    final byte[] previous;
+    synchronized (contexts) {
+      previous = contexts.put(conversationId.toString(), encoded);
+    }
+    return ContextCodec.diff(conversationId.toString(), previous, encoded);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.conversation.v1.ConversationContextStore#remove(java.lang.String)
+   */
+  @Override
+  public void remove(String conversationId) {
+    synchronized (contexts) {
+      contexts.remove(conversationId);
+    }
+  }
+
+  /**
+   * Gets the number of conversations in the store.
+   *
+   * @return the number of conversations
+   */
+  public int size() {
+    synchronized (contexts) {
+      return contexts.size();
+    }
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageRequest;
+import com.ibm.watson.developer_cloud.http.HttpMediaType;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * The JSON body of a {@link MessageRequest}, serialized by a compact {@link JsonWriter} straight to the sink of the
+ * request as it is sent. Unlike building a {@link com.google.gson.JsonObject} and converting it to a string, no copy
+ * of the <code>context</code> is made, which matters as the context grows over the turns of a conversation. The
+ * length is not known in advance, so the body is sent with chunked transfer encoding.
+ */
+final class MessageRequestBody extends RequestBody {
+
+  private static final TypeAdapter<MessageRequest> ADAPTER =
+      GsonSingleton.getGsonWithoutPrettyPrinting().getAdapter(MessageRequest.class);
+
+  /**
+   * A {@link Writer} that encodes the strings of the {@link JsonWriter} as UTF-8 straight into the sink, without the
+   * intermediate char and byte buffers of an {@link java.io.OutputStreamWriter}.
+   */
+  private static final class SinkWriter extends Writer {
+    private final BufferedSink sink;
+
+    /**
+     * Instantiates a new sink writer.
+     *
+     * @param sink the sink
+     */
+    SinkWriter(BufferedSink sink) {
+      this.sink = sink;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.Writer#write(int)
+     */
+    @Override
+    public void write(int c) throws IOException {
+      sink.writeUtf8CodePoint(c);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.Writer#write(java.lang.String, int, int)
+     */
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+      sink.writeUtf8(str, off, off + len);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.Writer#write(char[], int, int)
+     */
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+      sink.writeUtf8(new String(cbuf, off, len));
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.Writer#flush()
+     */
+    @Override
+    public void flush() throws IOException {
+      sink.emit();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.Writer#close()
+     */
+    @Override
+    public void close() { }
+  }
+
+  private final MessageRequest request;
+
+  /**
+   * Instantiates a new message request body.
+   *
+   * @param request the request
+   */
+  MessageRequestBody(MessageRequest request) {
+    this.request = request;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see okhttp3.RequestBody#contentType()
+   */
+  @Override
+  public MediaType contentType() {
+    return HttpMediaType.JSON;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see okhttp3.RequestBody#writeTo(okio.BufferedSink)
+   */
+  @Override
+  public void writeTo(BufferedSink sink) throws IOException {
+    // the same settings as JsonElement.toString(), e.g. no HTML escaping, so the bytes sent do not change
+    final JsonWriter writer = new JsonWriter(new SinkWriter(sink));
+    writer.setLenient(true);
+    writer.setSerializeNulls(false);
+    ADAPTER.write(writer, request);
+    // flushed but not closed, since OkHttp owns the sink
+    writer.flush();
+  }
+}
@@ -0,0 +1,438 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageRequest;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponse;
+import com.ibm.watson.developer_cloud.conversation.v1.model.ToneScores;
+import com.ibm.watson.developer_cloud.http.ServiceCallback;
+import com.ibm.watson.developer_cloud.tone_analyzer.v3.ToneAnalyzer;
+import com.ibm.watson.developer_cloud.tone_analyzer.v3.model.ToneAnalysis;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+import jersey.repackaged.jsr166e.CompletableFuture;
+
+/**
+ * Sends the turns of a conversation with the tone of the user, as analyzed by the {@link ToneAnalyzer}, in the
+ * <code>user.tone</code> variable of the context. The variable has the same layout as in the Conversation and Tone
+ * Analyzer integration example, so a workspace built for it works unchanged:
+ *
+ * <pre>
+ * {&quot;user&quot;: {&quot;tone&quot;: {
+ *   &quot;emotion&quot;: {&quot;current&quot;: &quot;joy&quot;,
+ *     &quot;history&quot;: [{&quot;tone_name&quot;: &quot;joy&quot;, &quot;score&quot;: 0.8}]},
+ *   &quot;language&quot;: {&quot;current&quot;: [&quot;analytical_high&quot;]},
+ *   &quot;social&quot;: {&quot;current&quot;: [&quot;openness_low&quot;]}}}}
+ * </pre>
+ *
+ * In {@link Mode#CONCURRENT} mode, the default, the text of a turn is analyzed while the turn is sent, so a turn takes
+ * as long as the slower of the two calls instead of their sum. The tone is merged into the context of the response,
+ * so the dialog sees the tone of the user from the next turn on. In {@link Mode#SEQUENTIAL} mode the tone is analyzed
+ * first and the dialog sees it in the same turn. In both modes {@link #prefetch(String)} starts the analysis of a text
+ * ahead of its turn, e.g. while a speech recognition is being finalized.<br>
+ * <br>
+ * The history of the emotions is capped at <code>historySize</code> turns, so the context, which is sent and
+ * returned in every turn, does not grow with the conversation. A failed tone analysis is logged and the turn is sent
+ * without it.<br>
+ * <br>
+ * Here is an example of how to send a turn:
+ *
+ * <pre>
+ * ToneConversationPipeline pipeline =
+ *     new ToneConversationPipeline.Builder(conversationService, toneAnalyzer, workspaceId).historySize(5).build();
+ * MessageResponse response =
+ *     pipeline.message(new MessageRequest.Builder().inputText(&quot;I am happy&quot;).context(context).build()).get();
+ * context = response.getContext();
+ * </pre>
+ */
+public class ToneConversationPipeline {
+
+  /**
+   * When the tone of a turn is analyzed.
+   */
+  public enum Mode {
+    /** The tone is analyzed while the turn is sent, and merged into the context of the response. */
+    CONCURRENT,
+    /** The tone is analyzed before the turn is sent, and merged into the context of the request. */
+    SEQUENTIAL
+  }
+
+  /** The default number of emotions kept in the history. */
+  public static final int DEFAULT_HISTORY_SIZE = 10;
+
+  /** The default maximum number of texts analyzed ahead of their turn. */
+  public static final int DEFAULT_PREFETCH_CAPACITY = 256;
+
+  /** The name of the context variable of the user. */
+  public static final String USER = "user";
+
+  private static final Logger LOG = Logger.getLogger(ToneConversationPipeline.class.getName());
+
+  private static final String TONE = "tone";
+  private static final String EMOTION = "emotion";
+  private static final String LANGUAGE = "language";
+  private static final String SOCIAL = "social";
+  private static final String CURRENT = "current";
+  private static final String HISTORY = "history";
+  private static final String TONE_NAME = "tone_name";
+  private static final String SCORE = "score";
+  private static final String NEUTRAL = "neutral";
+  private static final String HIGH = "_high";
+  private static final String LOW = "_low";
+
+  /**
+   * Thresholds for identifying meaningful tones, based on the recommendations of the Tone Analyzer at
+   * https://www.ibm.com/watson/developercloud/doc/tone-analyzer/understanding-tone.shtml.
+   */
+  private static final double PRIMARY_EMOTION_SCORE_THRESHOLD = 0.5;
+  private static final double LANGUAGE_HIGH_SCORE_THRESHOLD = 0.75;
+  private static final double SOCIAL_HIGH_SCORE_THRESHOLD = 0.75;
+  private static final double SOCIAL_LOW_SCORE_THRESHOLD = 0.25;
+
+  /** The names of the tones in the context, in the order of the {@link ToneScores}. */
+  private static final List<String> EMOTION_NAMES = ToneScores.EMOTION_TONES;
+  private static final List<String> LANGUAGE_NAMES = ToneScores.LANGUAGE_TONES;
+  private static final List<String> SOCIAL_NAMES =
+      Arrays.asList("openness", "conscientiousness", "extraversion", "agreeableness", "emotional range");
+
+  /**
+   * Builds a {@link ToneConversationPipeline}.
+   */
+  public static class Builder {
+    private final ConversationService conversationService;
+    private final ToneAnalyzer toneAnalyzer;
+    private final String workspaceId;
+    private Mode mode = Mode.CONCURRENT;
+    private int historySize = DEFAULT_HISTORY_SIZE;
+    private int prefetchCapacity = DEFAULT_PREFETCH_CAPACITY;
+
+    /**
+     * Instantiates a new builder.
+     *
+     * @param conversationService the Conversation service
+     * @param toneAnalyzer the Tone Analyzer service
+     * @param workspaceId the workspace ID
+     */
+    public Builder(ConversationService conversationService, ToneAnalyzer toneAnalyzer, String workspaceId) {
+      Validator.notNull(conversationService, "conversationService cannot be null");
+      Validator.notNull(toneAnalyzer, "toneAnalyzer cannot be null");
+      Validator.notEmpty(workspaceId, "workspaceId cannot be null or empty");
+      this.conversationService = conversationService;
+      this.toneAnalyzer = toneAnalyzer;
+      this.workspaceId = workspaceId;
+    }
+
+    /**
+     * Builds the pipeline.
+     *
+     * @return the pipeline
+     */
+    public ToneConversationPipeline build() {
+      return new ToneConversationPipeline(this);
+    }
+
+    /**
+     * Sets when the tone of a turn is analyzed. The default is {@link Mode#CONCURRENT}.
+     *
+     * @param mode the mode
+     * @return the builder
+     */
+    public Builder mode(Mode mode) {
+      Validator.notNull(mode, "mode cannot be null");
+      this.mode = mode;
+      return this;
+    }
+
+    /**
+     * Sets the number of emotions kept in the history of the context. The default is {@link #DEFAULT_HISTORY_SIZE}.
+     *
+     * @param historySize the number of emotions, or 0 to keep no history
+     * @return the builder
+     */
+    public Builder historySize(int historySize) {
+      Validator.isTrue(historySize >= 0, "historySize cannot be negative");
+      this.historySize = historySize;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of texts analyzed ahead of their turn. When it is reached, the oldest analysis is
+     * forgotten. The default is {@link #DEFAULT_PREFETCH_CAPACITY}.
+     *
+     * @param prefetchCapacity the capacity
+     * @return the builder
+     */
+    public Builder prefetchCapacity(int prefetchCapacity) {
+      Validator.isTrue(prefetchCapacity > 0, "prefetchCapacity must be positive");
+      this.prefetchCapacity = prefetchCapacity;
+      return this;
+    }
+  }
+
+  private final ConversationService conversationService;
+  private final ToneAnalyzer toneAnalyzer;
+  private final String workspaceId;
+  private final Mode mode;
+  private final int historySize;
+  private final Map<String, CompletableFuture<ToneAnalysis>> prefetched;
+
+  private ToneConversationPipeline(final Builder builder) {
+    conversationService = builder.conversationService;
+    toneAnalyzer = builder.toneAnalyzer;
+    workspaceId = builder.workspaceId;
+    mode = builder.mode;
+    historySize = builder.historySize;
+    prefetched = new LinkedHashMap<String, CompletableFuture<ToneAnalysis>>() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<ToneAnalysis>> eldest) {
+        return size() > builder.prefetchCapacity;
+      }
+    };
+  }
+
+  /**
+   * Starts the analysis of the tone of a text, to be used by the turn with this input text.
+   *
+   * @param text the text
+   */
+  public void prefetch(String text) {
+    Validator.notNull(text, "text cannot be null");
+    synchronized (prefetched) {
+      if (!prefetched.containsKey(text)) {
+        prefetched.put(text, analyze(text));
+      }
+    }
+  }
+
+  /**
+   * Sends a turn with the tone of its input text.
+   *
+   * @param request the turn
+   * @return the future completed with the response, whose context has the tone of the user
+   */
+  public CompletableFuture<MessageResponse> message(final MessageRequest request) {
+    Validator.notNull(request, "request cannot be null");
+    final CompletableFuture<MessageResponse> future = new CompletableFuture<MessageResponse>();
+    final CompletableFuture<ToneAnalysis> tone = toneOf(request.inputText());
+
+    if (mode == Mode.SEQUENTIAL) {
+      tone.handle(new CompletableFuture.BiFun<ToneAnalysis, Throwable, Void>() {
+        @Override
+        public Void apply(ToneAnalysis analysis, Throwable error) {
+          final Map<String, Object> context = (request.context() != null)
+              ? new HashMap<String, Object>(request.context()) : new HashMap<String, Object>();
+          merge(context, analysis, error);
+          send(request.newBuilder().context(context).build(), future);
+          return null;
+        }
+      });
+    } else {
+      final CompletableFuture<MessageResponse> sent = new CompletableFuture<MessageResponse>();
+      send(request, sent);
+      sent.handle(new CompletableFuture.BiFun<MessageResponse, Throwable, Void>() {
+        @Override
+        public Void apply(final MessageResponse response, Throwable error) {
+          if (error != null) {
+            future.completeExceptionally(error);
+            return null;
+          }
+          tone.handle(new CompletableFuture.BiFun<ToneAnalysis, Throwable, Void>() {
+            @Override
+            public Void apply(ToneAnalysis analysis, Throwable toneError) {
+              final Map<String, Object> context = (response.getContext() != null)
+                  ? new HashMap<String, Object>(response.getContext()) : new HashMap<String, Object>();
+              merge(context, analysis, toneError);
+              response.setContext(context);
+              future.complete(response);
+              return null;
+            }
+          });
+          return null;
+        }
+      });
+    }
+    return future;
+  }
+
+  /**
+   * Updates the <code>user.tone</code> variable of a context with the tone of a turn. The maps on the path to the
+   * variable are copied, so a context returned by a previous turn is not modified.
+   *
+   * @param context the context
+   * @param tones the tone of the turn
+   * @param historySize the number of emotions kept in the history, or 0 to keep no history
+   * @return the context
+   */
+  @SuppressWarnings("unchecked")
+  public static Map<String, Object> updateUserTone(Map<String, Object> context, ToneScores tones, int historySize) {
+    Validator.notNull(context, "context cannot be null");
+    Validator.notNull(tones, "tones cannot be null");
+    final Map<String, Object> user = copy(context.get(USER));
+    final Map<String, Object> tone = copy(user.get(TONE));
+    final Map<String, Object> emotion = copy(tone.get(EMOTION));
+    final Map<String, Object> language = copy(tone.get(LANGUAGE));
+    final Map<String, Object> social = copy(tone.get(SOCIAL));
+
+    final double[] emotionScores = tones.getEmotion();
+    final int primary = tones.getPrimaryEmotion();
+    final boolean meaningful = (primary >= 0) && (emotionScores[primary] > PRIMARY_EMOTION_SCORE_THRESHOLD);
+    final String primaryEmotion = meaningful ? EMOTION_NAMES.get(primary) : NEUTRAL;
+    emotion.put(CURRENT, primaryEmotion);
+    if (historySize > 0) {
+      final List<Object> previous =
+          (emotion.get(HISTORY) instanceof List) ? (List<Object>) emotion.get(HISTORY) : new ArrayList<Object>();
+      final int kept = Math.min(previous.size(), historySize - 1);
+      final List<Object> history = new ArrayList<Object>(kept + 1);
+      history.addAll(previous.subList(previous.size() - kept, previous.size()));
+      final Map<String, Object> entry = new HashMap<String, Object>();
+      entry.put(TONE_NAME, primaryEmotion);
+      entry.put(SCORE, meaningful ? emotionScores[primary] : null);
+      history.add(entry);
+      emotion.put(HISTORY, history);
+    } else {
+      emotion.remove(HISTORY);
+    }
+
+    final double[] languageScores = tones.getLanguage();
+    final List<String> currentLanguage = new ArrayList<String>();
+    for (int i = 0; i < languageScores.length; i++) {
+      if (languageScores[i] >= LANGUAGE_HIGH_SCORE_THRESHOLD) {
+        currentLanguage.add(LANGUAGE_NAMES.get(i) + HIGH);
+      }
+    }
+    language.put(CURRENT, currentLanguage);
+
+    final double[] socialScores = tones.getSocial();
+    final List<String> currentSocial = new ArrayList<String>();
+    for (int i = 0; i < socialScores.length; i++) {
+      if (socialScores[i] >= SOCIAL_HIGH_SCORE_THRESHOLD) {
+        currentSocial.add(SOCIAL_NAMES.get(i) + HIGH);
+      } else if (socialScores[i] <= SOCIAL_LOW_SCORE_THRESHOLD) {
+        currentSocial.add(SOCIAL_NAMES.get(i) + LOW);
+      }
+    }
+    social.put(CURRENT, currentSocial);
+
+    tone.put(EMOTION, emotion);
+    tone.put(LANGUAGE, language);
+    tone.put(SOCIAL, social);
+    user.put(TONE, tone);
+    context.put(USER, user);
+    return context;
+  }
+
+  /**
+   * Gets the prefetched analysis of a text, or starts it.
+   *
+   * @param text the text, or null if the turn has no input text
+   * @return the future completed with the analysis, or with null if there is no text
+   */
+  private CompletableFuture<ToneAnalysis> toneOf(String text) {
+    if (text == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    final CompletableFuture<ToneAnalysis> tone;
+    synchronized (prefetched) {
+      tone = prefetched.remove(text);
+    }
+    return (tone != null) ? tone : analyze(text);
+  }
+
+  /**
+   * Starts the analysis of the tone of a text.
+   *
+   * @param text the text
+   * @return the future completed with the analysis
+   */
+  private CompletableFuture<ToneAnalysis> analyze(String text) {
+    final CompletableFuture<ToneAnalysis> future = new CompletableFuture<ToneAnalysis>();
+    try {
+      toneAnalyzer.getTone(text, null).enqueue(new ServiceCallback<ToneAnalysis>() {
+        @Override
+        public void onResponse(ToneAnalysis response) {
+          future.complete(response);
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+          future.completeExceptionally(e);
+        }
+      });
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /**
+   * Sends a turn.
+   *
+   * @param request the turn
+   * @param future the future to complete with the response
+   */
+  private void send(MessageRequest request, final CompletableFuture<MessageResponse> future) {
+    try {
+      conversationService.message(workspaceId, request).enqueue(new ServiceCallback<MessageResponse>() {
+        @Override
+        public void onResponse(MessageResponse response) {
+          future.complete(response);
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+          future.completeExceptionally(e);
+        }
+      });
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Merges the tone of a turn into a context, unless its analysis failed.
+   *
+   * @param context the context
+   * @param analysis the analysis, or null if the turn has no input text
+   * @param error the error of the analysis, or null
+   */
+  private void merge(Map<String, Object> context, ToneAnalysis analysis, Throwable error) {
+    if (error != null) {
+      LOG.log(Level.WARNING, "The tone of the turn could not be analyzed", error);
+    } else if (analysis != null) {
+      updateUserTone(context, ToneScores.of(analysis), historySize);
+    }
+  }
+
+  /**
+   * Copies a map of the context, or creates it.
+   *
+   * @param value the value of the context
+   * @return a copy of the value if it is a map, or an empty map
+   */
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> copy(Object value) {
+    return (value instanceof Map) ? new HashMap<String, Object>((Map<String, Object>) value)
+        : new HashMap<String, Object>();
+  }
+}
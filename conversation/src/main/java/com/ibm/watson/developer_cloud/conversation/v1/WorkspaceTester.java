@@ -0,0 +1,449 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.ibm.watson.developer_cloud.conversation.v1.model.Entity;
+import com.ibm.watson.developer_cloud.conversation.v1.model.Intent;
+import com.ibm.watson.developer_cloud.conversation.v1.model.LabeledUtterance;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageRequest;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponseView;
+import com.ibm.watson.developer_cloud.conversation.v1.model.WorkspaceTestResult;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Replays labeled utterances through {@link ConversationService#messageView(String, MessageRequest)} to check a
+ * workspace, e.g. after its intents or entities changed, and to measure its latency under load.<br>
+ * <br>
+ * Each utterance is sent as the first turn of a new conversation. The top intent and the entities of the response are
+ * compared with the expected ones, and the result reports the accuracy, the utterances that did not match, and the
+ * 50th, 95th and 99th percentiles of the latency. Utterances run on a pool of <code>concurrency</code> threads, and
+ * requests can be limited to a number per second.<br>
+ * <br>
+ * A run can be recorded and then replayed by a {@link ConversationReplayServer}, which answers with the recorded
+ * responses. Running the same utterances against it measures the throughput of the client alone.<br>
+ * <br>
+ * Here is an example of how to check a workspace:
+ *
+ * <pre>
+ * WorkspaceTester tester = new WorkspaceTester.Builder(service, workspaceId).concurrency(16).rateLimit(20)
+ *     .record(new File(&quot;recording.json&quot;)).build();
+ * WorkspaceTestResult result = tester.run(WorkspaceTester.readUtterances(new File(&quot;utterances.csv&quot;)));
+ * System.out.println(result.getIntentAccuracy() + &quot; p95=&quot; + result.getP95() + &quot;ms&quot;);
+ * </pre>
+ */
+public class WorkspaceTester {
+
+  /** The default maximum number of utterances sent at the same time. */
+  public static final int DEFAULT_CONCURRENCY = 8;
+
+  /** The name of the response of a line of a recording. */
+  static final String RESPONSE = "response";
+
+  private static final Logger LOG = Logger.getLogger(WorkspaceTester.class.getName());
+  private static final Gson GSON = GsonSingleton.getGsonWithoutPrettyPrinting();
+  private static final String UTF_8 = "UTF-8";
+  private static final String TEXT = "text";
+  private static final String CSV_EXTENSION = ".csv";
+  private static final String ENTITY_SEPARATOR = "|";
+  private static final String VALUE_SEPARATOR = ":";
+
+  /**
+   * Builds a {@link WorkspaceTester}.
+   */
+  public static class Builder {
+    private final ConversationService service;
+    private final String workspaceId;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private double requestsPerSecond;
+    private File recording;
+
+    /**
+     * Instantiates a new builder.
+     *
+     * @param service the Conversation service
+     * @param workspaceId the ID of the workspace to test
+     */
+    public Builder(ConversationService service, String workspaceId) {
+      Validator.notNull(service, "service cannot be null");
+      Validator.notEmpty(workspaceId, "workspaceId cannot be null or empty");
+      this.service = service;
+      this.workspaceId = workspaceId;
+    }
+
+    /**
+     * Builds the workspace tester.
+     *
+     * @return the workspace tester
+     */
+    public WorkspaceTester build() {
+      return new WorkspaceTester(this);
+    }
+
+    /**
+     * Sets the maximum number of utterances sent at the same time. The default is {@link #DEFAULT_CONCURRENCY}.
+     *
+     * @param concurrency the concurrency
+     * @return the builder
+     */
+    public Builder concurrency(int concurrency) {
+      Validator.isTrue(concurrency > 0, "concurrency must be positive");
+      this.concurrency = concurrency;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of requests started per second. By default the rate is not limited.
+     *
+     * @param requestsPerSecond the rate, or 0 for no limit
+     * @return the builder
+     */
+    public Builder rateLimit(double requestsPerSecond) {
+      Validator.isTrue(requestsPerSecond >= 0, "requestsPerSecond cannot be negative");
+      this.requestsPerSecond = requestsPerSecond;
+      return this;
+    }
+
+    /**
+     * Records the response of every utterance to a file that a {@link ConversationReplayServer} can replay. The file
+     * is overwritten by each run.
+     *
+     * @param recording the recording file
+     * @return the builder
+     */
+    public Builder record(File recording) {
+      this.recording = recording;
+      return this;
+    }
+  }
+
+  /**
+   * Spaces the requests evenly: each request reserves the next free slot and waits for it.
+   */
+  private static final class RateLimiter {
+    private final long interval;
+    private long next;
+
+    private RateLimiter(double requestsPerSecond) {
+      interval = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+      next = System.nanoTime();
+    }
+
+    private void acquire() throws InterruptedException {
+      final long slot;
+      synchronized (this) {
+        slot = Math.max(next, System.nanoTime());
+        next = slot + interval;
+      }
+      final long delay = slot - System.nanoTime();
+      if (delay > 0) {
+        TimeUnit.NANOSECONDS.sleep(delay);
+      }
+    }
+  }
+
+  private final ConversationService service;
+  private final String workspaceId;
+  private final int concurrency;
+  private final double requestsPerSecond;
+  private final File recording;
+
+  private WorkspaceTester(Builder builder) {
+    service = builder.service;
+    workspaceId = builder.workspaceId;
+    concurrency = builder.concurrency;
+    requestsPerSecond = builder.requestsPerSecond;
+    recording = builder.recording;
+  }
+
+  /**
+   * Reads labeled utterances from a CSV file, if its name ends with <code>.csv</code>, or from a file of one
+   * {@link LabeledUtterance} per line, in JSON. Blank lines are ignored.<br>
+   * <br>
+   * The columns of a CSV file are the text, the expected intent and the expected entities, separated by
+   * <code>|</code>, with the name and the value of each entity separated by <code>:</code>. An empty intent is not
+   * checked, an empty entities column expects no entity, and a missing one is not checked. Fields may be quoted, and
+   * a first line that starts with <code>text,</code> is a header.
+   *
+   * <pre>
+   * text,intent,entities
+   * "a large pizza, please",order_pizza,size:large
+   * {"text": "a large pizza", "intent": "order_pizza", "entities": [{"entity": "size", "value": "large"}]}
+   * </pre>
+   *
+   * @param utterances the file of utterances
+   * @return the utterances
+   * @throws IOException if the file cannot be read
+   */
+  public static List<LabeledUtterance> readUtterances(File utterances) throws IOException {
+    Validator.isTrue((utterances != null) && utterances.exists(), "utterances file is null or does not exist");
+    final boolean csv = utterances.getName().toLowerCase().endsWith(CSV_EXTENSION);
+    final List<LabeledUtterance> labeled = new ArrayList<LabeledUtterance>();
+    final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(utterances), UTF_8));
+    try {
+      String line;
+      boolean first = true;
+      while ((line = reader.readLine()) != null) {
+        if (!line.trim().isEmpty() && !(csv && first && line.startsWith(TEXT + ","))) {
+          labeled.add(csv ? parseCsv(line) : GSON.fromJson(line, LabeledUtterance.class));
+        }
+        first = false;
+      }
+    } finally {
+      reader.close();
+    }
+    return labeled;
+  }
+
+  /**
+   * Sends the utterances and waits for all of them. A failed request does not stop the others; its error is reported
+   * in the result.
+   *
+   * @param utterances the utterances
+   * @return the report of the run
+   * @throws IOException if the recording cannot be written
+   * @throws InterruptedException if the thread is interrupted, in which case the running requests are stopped
+   */
+  public WorkspaceTestResult run(final List<LabeledUtterance> utterances) throws IOException, InterruptedException {
+    Validator.notNull(utterances, "utterances cannot be null");
+    for (LabeledUtterance utterance : utterances) {
+      Validator.isTrue((utterance != null) && (utterance.getText() != null), "every utterance needs a text");
+    }
+
+    final long start = System.nanoTime();
+    final Writer recorder = (recording != null)
+        ? new BufferedWriter(new OutputStreamWriter(new FileOutputStream(recording), UTF_8)) : null;
+    final RateLimiter limiter = (requestsPerSecond > 0) ? new RateLimiter(requestsPerSecond) : null;
+    final long[] latencies = new long[utterances.size()];
+    final AtomicInteger intentsChecked = new AtomicInteger();
+    final AtomicInteger intentsCorrect = new AtomicInteger();
+    final AtomicInteger entitiesChecked = new AtomicInteger();
+    final AtomicInteger entitiesCorrect = new AtomicInteger();
+    // by index, since the same text can be labeled more than once
+    final Map<Integer, String> mismatches = Collections.synchronizedMap(new TreeMap<Integer, String>());
+    final Map<Integer, String> failures = Collections.synchronizedMap(new TreeMap<Integer, String>());
+    Arrays.fill(latencies, -1);
+
+    final ExecutorService executor = Executors.newFixedThreadPool(concurrency, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        final Thread thread = new Thread(runnable, "conversation-workspace-tester");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    try {
+      for (int i = 0; i < utterances.size(); i++) {
+        final int index = i;
+        final LabeledUtterance utterance = utterances.get(i);
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              if (limiter != null) {
+                limiter.acquire();
+              }
+              final long sent = System.nanoTime();
+              final MessageResponseView response = service.messageView(workspaceId,
+                  new MessageRequest.Builder().inputText(utterance.getText()).build()).execute();
+              latencies[index] = System.nanoTime() - sent;
+              if (recorder != null) {
+                record(recorder, utterance.getText(), response);
+              }
+
+              final StringBuilder mismatch = new StringBuilder();
+              if (utterance.getIntent() != null) {
+                intentsChecked.incrementAndGet();
+                final Intent top = response.getTopIntent();
+                final String intent = (top != null) ? top.getIntent() : null;
+                if (utterance.getIntent().equals(intent)) {
+                  intentsCorrect.incrementAndGet();
+                } else {
+                  mismatch.append("intent: expected ").append(utterance.getIntent()).append(", got ").append(intent);
+                }
+              }
+              if (utterance.getEntities() != null) {
+                entitiesChecked.incrementAndGet();
+                final Set<String> expected = entitySet(utterance.getEntities());
+                final Set<String> detected = entitySet(response.getEntities());
+                if (expected.equals(detected)) {
+                  entitiesCorrect.incrementAndGet();
+                } else {
+                  mismatch.append((mismatch.length() > 0) ? "; " : "").append("entities: expected ").append(expected)
+                      .append(", got ").append(detected);
+                }
+              }
+              if (mismatch.length() > 0) {
+                mismatches.put(index, mismatch.toString());
+              }
+            } catch (InterruptedException e) {
+              failures.put(index, "interrupted");
+            } catch (Exception e) {
+              LOG.log(Level.WARNING, "Failed to send " + utterance.getText(), e);
+              failures.put(index, String.valueOf(e.getMessage()));
+            }
+          }
+        });
+      }
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } finally {
+      executor.shutdownNow();
+      if (recorder != null) {
+        recorder.close();
+      }
+    }
+
+    final long[] sorted = completed(latencies);
+    final WorkspaceTestResult result = new WorkspaceTestResult();
+    result.setUtterances(utterances.size());
+    result.setIntentsChecked(intentsChecked.get());
+    result.setIntentsCorrect(intentsCorrect.get());
+    result.setEntitiesChecked(entitiesChecked.get());
+    result.setEntitiesCorrect(entitiesCorrect.get());
+    result.setFailed(failures.size());
+    result.setP50(percentile(sorted, 0.50));
+    result.setP95(percentile(sorted, 0.95));
+    result.setP99(percentile(sorted, 0.99));
+    result.setMax(percentile(sorted, 1));
+    result.setElapsed(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    result.setMismatches(mismatches);
+    result.setFailures(failures);
+    return result;
+  }
+
+  /**
+   * Appends a response to the recording, on one line.
+   */
+  private static void record(Writer recorder, String text, MessageResponseView response) throws IOException {
+    final JsonObject line = new JsonObject();
+    line.addProperty(TEXT, text);
+    line.add(RESPONSE, new JsonParser().parse(response.toString()));
+    final String json = line.toString();
+    synchronized (recorder) {
+      recorder.write(json);
+      recorder.write('\n');
+    }
+  }
+
+  /**
+   * Gets the names and values of entities, e.g. <code>size:large</code>, sorted.
+   */
+  private static Set<String> entitySet(List<Entity> entities) {
+    final Set<String> set = new TreeSet<String>();
+    if (entities != null) {
+      for (Entity entity : entities) {
+        set.add(entity.getEntity() + VALUE_SEPARATOR + entity.getValue());
+      }
+    }
+    return set;
+  }
+
+  /**
+   * Gets the latencies of the requests that completed, sorted.
+   */
+  private static long[] completed(long[] latencies) {
+    final long[] sorted = latencies.clone();
+    Arrays.sort(sorted);
+    int first = 0;
+    while ((first < sorted.length) && (sorted[first] < 0)) {
+      first++;
+    }
+    return Arrays.copyOfRange(sorted, first, sorted.length);
+  }
+
+  /**
+   * Gets a percentile of sorted latencies, by the nearest-rank method.
+   *
+   * @return the percentile, in milliseconds, or 0 if there is no latency
+   */
+  private static double percentile(long[] sorted, double percentile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    final int rank = (int) Math.ceil(percentile * sorted.length);
+    return sorted[Math.max(rank, 1) - 1] / 1e6;
+  }
+
+  /**
+   * Parses a line of a CSV file of utterances.
+   */
+  private static LabeledUtterance parseCsv(String line) {
+    final List<String> fields = new ArrayList<String>();
+    final StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      final char c = line.charAt(i);
+      if (quoted) {
+        if (c != '"') {
+          field.append(c);
+        } else if ((i + 1 < line.length()) && (line.charAt(i + 1) == '"')) {
+          field.append('"');
+          i++;
+        } else {
+          quoted = false;
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    fields.add(field.toString());
+
+    final String intent = (fields.size() > 1) && !fields.get(1).trim().isEmpty() ? fields.get(1).trim() : null;
+    List<Entity> entities = null;
+    if (fields.size() > 2) {
+      entities = new ArrayList<Entity>();
+      for (String entity : fields.get(2).split("\\" + ENTITY_SEPARATOR)) {
+        final int separator = entity.indexOf(VALUE_SEPARATOR);
+        if (separator > 0) {
+          entities.add(new Entity(entity.substring(0, separator).trim(), entity.substring(separator + 1).trim(),
+              null));
+        }
+      }
+    }
+    return new LabeledUtterance(fields.get(0), intent, entities);
+  }
+}
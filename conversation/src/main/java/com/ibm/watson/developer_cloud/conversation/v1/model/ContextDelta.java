@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1.model;
+
+import java.util.Map;
+import java.util.Set;
+
+import com.ibm.watson.developer_cloud.service.model.GenericModel;
+
+/**
+ * The top-level keys of a conversation context that changed in a turn. The values are in the compact binary form of
+ * the <code>ConversationContextStore</code>, so a store only has to write the changed keys, e.g. with
+ * <code>HSET</code> and <code>HDEL</code> on a Redis hash per conversation.
+ */
+public class ContextDelta extends GenericModel {
+
+  private final String conversationId;
+  private final Map<String, byte[]> changed;
+  private final Set<String> removed;
+
+  /**
+   * Instantiates a new context delta.
+   *
+   * @param conversationId the conversation ID
+   * @param changed the encoded value of each key that was added or changed
+   * @param removed the keys that were removed
+   */
+  public ContextDelta(String conversationId, Map<String, byte[]> changed, Set<String> removed) {
+    this.conversationId = conversationId;
+    this.changed = changed;
+    this.removed = removed;
+  }
+
+  /**
+   * Gets the conversation ID.
+   *
+   * @return the conversation ID
+   */
+  public String getConversationId() {
+    return conversationId;
+  }
+
+  /**
+   * Gets the encoded value of each key that was added or changed in the turn.
+   *
+   * @return the changed keys and their encoded values
+   */
+  public Map<String, byte[]> getChanged() {
+    return changed;
+  }
+
+  /**
+   * Gets the keys that were removed in the turn.
+   *
+   * @return the removed keys
+   */
+  public Set<String> getRemoved() {
+    return removed;
+  }
+
+  /**
+   * Returns true if nothing changed in the turn, so there is nothing to persist.
+   *
+   * @return true if the delta is empty
+   */
+  public boolean isEmpty() {
+    return changed.isEmpty() && removed.isEmpty();
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1.model;
+
+import java.util.List;
+
+import com.ibm.watson.developer_cloud.service.model.GenericModel;
+
+/**
+ * An utterance of a <code>WorkspaceTester</code> run, with the intent and entities the workspace is expected to
+ * detect in it.
+ */
+public class LabeledUtterance extends GenericModel {
+
+  private String text;
+  private String intent;
+  private List<Entity> entities;
+
+  /**
+   * Instantiates a new labeled utterance.
+   */
+  public LabeledUtterance() { }
+
+  /**
+   * Instantiates a new labeled utterance.
+   *
+   * @param text the text
+   * @param intent the expected top intent, or null to not check the intent
+   * @param entities the expected entities, or null to not check the entities
+   */
+  public LabeledUtterance(String text, String intent, List<Entity> entities) {
+    this.text = text;
+    this.intent = intent;
+    this.entities = entities;
+  }
+
+  /**
+   * Gets the text.
+   *
+   * @return the text
+   */
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * Gets the expected top intent.
+   *
+   * @return the intent, or null if the intent is not checked
+   */
+  public String getIntent() {
+    return intent;
+  }
+
+  /**
+   * Gets the expected entities. Only their names and values are compared, in any order.
+   *
+   * @return the entities, or null if the entities are not checked
+   */
+  public List<Entity> getEntities() {
+    return entities;
+  }
+}
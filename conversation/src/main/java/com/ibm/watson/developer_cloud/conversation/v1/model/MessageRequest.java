@@ -49,8 +49,10 @@ public class MessageRequest extends GenericModel {
      * @param messageRequest the message request
      */
     private Builder(MessageRequest messageRequest) {
-      input = new HashMap<String, Object>(messageRequest.input);
-      context = new HashMap<String, Object>(messageRequest.context);
+      input(messageRequest.input);
+      context(messageRequest.context);
+      entities = (messageRequest.entities != null) ? new ArrayList<Entity>(messageRequest.entities) : null;
+      intents = (messageRequest.intents != null) ? new ArrayList<Intent>(messageRequest.intents) : null;
       alternateIntents = messageRequest.alternateIntents;
     }
 
@@ -0,0 +1,453 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.ibm.watson.developer_cloud.conversation.v1.ConversationService;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * A lazy view of the JSON of a {@link MessageResponse}, returned by
+ * {@link ConversationService#messageView(String, MessageRequest)}.<br>
+ * <br>
+ * The view keeps the bytes of the response and only parses what is asked for. The first accessor called finds where
+ * each top-level field (<code>output</code>, <code>context</code>, <code>intents</code>...) starts and ends, without
+ * building any object. Each accessor then parses the part of the JSON it needs, and remembers the result. Reading the
+ * text of the output and the top intent therefore never builds the maps of the context, which is usually the largest
+ * part of a response.<br>
+ * <br>
+ * Here is an example of how to reply to a user:
+ *
+ * <pre>
+ * MessageResponseView response = service.messageView(workspaceId, request).execute();
+ * if (response.getTopIntent() != null &amp;&amp; response.getTopIntent().getConfidence() &gt; 0.5) {
+ *   System.out.println(response.getTextConcatenated(&quot; &quot;));
+ * }
+ * </pre>
+ */
+public class MessageResponseView {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final String CONTEXT = "context";
+  private static final String CONVERSATION_ID = "conversation_id";
+  private static final String ENTITIES = "entities";
+  private static final String INPUT = "input";
+  private static final String INTENTS = "intents";
+  private static final String OUTPUT = "output";
+  private static final String SYSTEM = "system";
+  private static final String TEXT = "text";
+  private static final Gson GSON = GsonSingleton.getGsonWithoutPrettyPrinting();
+  private static final Type MAP_TYPE = new TypeToken<Map<String, Object>>() { }.getType();
+  private static final Type INTENTS_TYPE = new TypeToken<List<Intent>>() { }.getType();
+  private static final Type ENTITIES_TYPE = new TypeToken<List<Entity>>() { }.getType();
+
+  private final byte[] json;
+  private final Map<String, Object> parsed = new HashMap<String, Object>();
+  private Map<String, int[]> fields;
+
+  /**
+   * Instantiates a new view of the JSON of a message response.
+   *
+   * @param json the UTF-8 bytes of the JSON. They are not copied, and must not change.
+   */
+  public MessageResponseView(byte[] json) {
+    Validator.notNull(json, "json cannot be null");
+    this.json = json;
+  }
+
+  /**
+   * Gets the text property of the output, the text to display to the end user.
+   *
+   * @return the text, or null if the output has no text
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized List<String> getText() {
+    if (!parsed.containsKey(TEXT)) {
+      List<String> text = null;
+      final JsonReader reader = reader(OUTPUT);
+      if (reader != null) {
+        try {
+          if (seek(reader, TEXT)) {
+            text = readStrings(reader);
+          }
+        } catch (IOException e) {
+          throw new IllegalArgumentException("the output is not valid JSON", e);
+        }
+      }
+      parsed.put(TEXT, text);
+    }
+    return (List<String>) parsed.get(TEXT);
+  }
+
+  /**
+   * Gets the text property of the output, concatenated.
+   *
+   * @param separator the separator between the elements of the text
+   * @return the concatenated text, or null if the output has no text
+   */
+  public String getTextConcatenated(String separator) {
+    final List<String> text = getText();
+    if (text == null) {
+      return null;
+    }
+    final StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < text.size(); i++) {
+      if (i > 0) {
+        builder.append(separator);
+      }
+      builder.append(text.get(i));
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Gets the intents detected by the service.
+   *
+   * @return the intents, or null if the response has none
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized List<Intent> getIntents() {
+    if (!parsed.containsKey(INTENTS)) {
+      parsed.put(INTENTS, parse(INTENTS, INTENTS_TYPE));
+    }
+    return (List<Intent>) parsed.get(INTENTS);
+  }
+
+  /**
+   * Gets the intent with the highest confidence.
+   *
+   * @return the top intent, or null if the response has none
+   */
+  public Intent getTopIntent() {
+    final List<Intent> intents = getIntents();
+    Intent top = null;
+    if (intents != null) {
+      for (Intent intent : intents) {
+        if ((top == null) || ((intent.getConfidence() != null) && (top.getConfidence() != null)
+            && (intent.getConfidence() > top.getConfidence()))) {
+          top = intent;
+        }
+      }
+    }
+    return top;
+  }
+
+  /**
+   * Gets the entities detected by the service.
+   *
+   * @return the entities, or null if the response has none
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized List<Entity> getEntities() {
+    if (!parsed.containsKey(ENTITIES)) {
+      parsed.put(ENTITIES, parse(ENTITIES, ENTITIES_TYPE));
+    }
+    return (List<Entity>) parsed.get(ENTITIES);
+  }
+
+  /**
+   * Gets the conversation ID from the context, without parsing the rest of the context.
+   *
+   * @return the conversation ID, or null if the context has none
+   */
+  public synchronized String getConversationId() {
+    if (!parsed.containsKey(CONVERSATION_ID)) {
+      String conversationId = null;
+      final JsonReader reader = reader(CONTEXT);
+      if (reader != null) {
+        try {
+          if (seek(reader, CONVERSATION_ID) && (reader.peek() == JsonToken.STRING)) {
+            conversationId = reader.nextString();
+          }
+        } catch (IOException e) {
+          throw new IllegalArgumentException("the context is not valid JSON", e);
+        }
+      }
+      parsed.put(CONVERSATION_ID, conversationId);
+    }
+    return (String) parsed.get(CONVERSATION_ID);
+  }
+
+  /**
+   * Gets the system property of the context, e.g. the dialog stack and turn counter, without parsing the rest of the
+   * context.
+   *
+   * @return the system property of the context, or null if the context has none
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized Map<String, Object> getSystem() {
+    if (!parsed.containsKey(SYSTEM)) {
+      Map<String, Object> system = null;
+      final JsonReader reader = reader(CONTEXT);
+      if (reader != null) {
+        try {
+          if (seek(reader, SYSTEM)) {
+            system = GSON.fromJson(reader, MAP_TYPE);
+          }
+        } catch (IOException e) {
+          throw new IllegalArgumentException("the context is not valid JSON", e);
+        }
+      }
+      parsed.put(SYSTEM, system);
+    }
+    return (Map<String, Object>) parsed.get(SYSTEM);
+  }
+
+  /**
+   * Gets the whole context, e.g. to send it back with the next {@link MessageRequest}.
+   *
+   * @return the context, or null if the response has none
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized Map<String, Object> getContext() {
+    if (!parsed.containsKey(CONTEXT)) {
+      parsed.put(CONTEXT, parse(CONTEXT, MAP_TYPE));
+    }
+    return (Map<String, Object>) parsed.get(CONTEXT);
+  }
+
+  /**
+   * Gets the whole output.
+   *
+   * @return the output, or null if the response has none
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized Map<String, Object> getOutput() {
+    if (!parsed.containsKey(OUTPUT)) {
+      parsed.put(OUTPUT, parse(OUTPUT, MAP_TYPE));
+    }
+    return (Map<String, Object>) parsed.get(OUTPUT);
+  }
+
+  /**
+   * Gets the whole input.
+   *
+   * @return the input, or null if the response has none
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized Map<String, Object> getInput() {
+    if (!parsed.containsKey(INPUT)) {
+      parsed.put(INPUT, parse(INPUT, MAP_TYPE));
+    }
+    return (Map<String, Object>) parsed.get(INPUT);
+  }
+
+  /**
+   * Parses the whole response.
+   *
+   * @return the message response
+   */
+  public MessageResponse toMessageResponse() {
+    return GSON.fromJson(new InputStreamReader(new ByteArrayInputStream(json), UTF_8), MessageResponse.class);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return new String(json, UTF_8);
+  }
+
+  /**
+   * Parses a top-level field with Gson.
+   *
+   * @param name the name of the field
+   * @param type the type of the field
+   * @return the value, or null if the response does not have the field
+   */
+  private Object parse(String name, Type type) {
+    final JsonReader reader = reader(name);
+    return (reader == null) ? null : GSON.fromJson(reader, type);
+  }
+
+  /**
+   * Creates a reader of the value of a top-level field.
+   *
+   * @param name the name of the field
+   * @return the reader, or null if the response does not have the field
+   */
+  private JsonReader reader(String name) {
+    final int[] range = fields().get(name);
+    if (range == null) {
+      return null;
+    }
+    final JsonReader reader = new JsonReader(
+        new InputStreamReader(new ByteArrayInputStream(json, range[0], range[1] - range[0]), UTF_8));
+    reader.setLenient(true);
+    return reader;
+  }
+
+  /**
+   * Moves a reader to the value of a field of the object it is at.
+   *
+   * @param reader the reader
+   * @param name the name of the field
+   * @return true if the reader is at the value, false if the object does not have the field
+   * @throws IOException Signals that the JSON is not valid.
+   */
+  private static boolean seek(JsonReader reader, String name) throws IOException {
+    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+      return false;
+    }
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if (name.equals(reader.nextName())) {
+        return reader.peek() != JsonToken.NULL;
+      }
+      reader.skipValue();
+    }
+    return false;
+  }
+
+  /**
+   * Reads a string, or an array of strings, as a list.
+   *
+   * @param reader the reader
+   * @return the strings
+   * @throws IOException Signals that the JSON is not valid.
+   */
+  private static List<String> readStrings(JsonReader reader) throws IOException {
+    if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+      return Collections.singletonList(reader.nextString());
+    }
+    final List<String> strings = new ArrayList<String>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (reader.peek() == JsonToken.NULL) {
+        reader.nextNull();
+        strings.add(null);
+      } else {
+        strings.add(reader.nextString());
+      }
+    }
+    reader.endArray();
+    return strings;
+  }
+
+  /**
+   * Finds where the value of each top-level field starts and ends. Only the structure of the JSON is scanned: strings
+   * are skipped over by their quotes and escapes, and nested values by their brackets.
+   *
+   * @return the range of bytes of the value of each field
+   */
+  private Map<String, int[]> fields() {
+    if (fields == null) {
+      final Map<String, int[]> found = new HashMap<String, int[]>();
+      try {
+        int i = skipWhitespace(0);
+        expect(i, '{');
+        i = skipWhitespace(i + 1);
+        while (json[i] != '}') {
+          expect(i, '"');
+          final int nameEnd = skipString(i);
+          final String name = decodeString(i, nameEnd);
+          i = skipWhitespace(nameEnd);
+          expect(i, ':');
+          i = skipWhitespace(i + 1);
+          final int valueEnd = skipValue(i);
+          found.put(name, new int[] { i, valueEnd });
+          i = skipWhitespace(valueEnd);
+          if (json[i] == ',') {
+            i = skipWhitespace(i + 1);
+          } else {
+            expect(i, '}');
+          }
+        }
+      } catch (ArrayIndexOutOfBoundsException e) {
+        throw new IllegalArgumentException("the message response is truncated", e);
+      }
+      fields = found;
+    }
+    return fields;
+  }
+
+  private int skipWhitespace(int start) {
+    int i = start;
+    while ((json[i] == ' ') || (json[i] == '\n') || (json[i] == '\r') || (json[i] == '\t')) {
+      i++;
+    }
+    return i;
+  }
+
+  private int skipString(int start) {
+    int i = start + 1;
+    while (json[i] != '"') {
+      i += (json[i] == '\\') ? 2 : 1;
+    }
+    return i + 1;
+  }
+
+  private int skipValue(int start) {
+    final byte first = json[start];
+    if (first == '"') {
+      return skipString(start);
+    }
+    if ((first == '{') || (first == '[')) {
+      int depth = 0;
+      int i = start;
+      while (true) {
+        final byte b = json[i];
+        if (b == '"') {
+          i = skipString(i);
+          continue;
+        }
+        if ((b == '{') || (b == '[')) {
+          depth++;
+        } else if (((b == '}') || (b == ']')) && (--depth == 0)) {
+          return i + 1;
+        }
+        i++;
+      }
+    }
+    int i = start;
+    while ((i < json.length) && (json[i] != ',') && (json[i] != '}') && (json[i] != ']') && (json[i] != ' ')
+        && (json[i] != '\n') && (json[i] != '\r') && (json[i] != '\t')) {
+      i++;
+    }
+    return i;
+  }
+
+  private String decodeString(int start, int end) {
+    for (int i = start + 1; i < end - 1; i++) {
+      if (json[i] == '\\') {
+        return GSON.fromJson(new InputStreamReader(new ByteArrayInputStream(json, start, end - start), UTF_8),
+            String.class);
+      }
+    }
+    return new String(json, start + 1, end - start - 2, UTF_8);
+  }
+
+  private void expect(int index, char expected) {
+    if (json[index] != expected) {
+      throw new IllegalArgumentException("expected '" + expected + "' at byte " + index + " of the message response");
+    }
+  }
+}
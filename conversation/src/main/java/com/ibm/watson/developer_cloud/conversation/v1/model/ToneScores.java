@@ -0,0 +1,203 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.ibm.watson.developer_cloud.tone_analyzer.v3.model.ToneAnalysis;
+import com.ibm.watson.developer_cloud.tone_analyzer.v3.model.ToneCategory;
+import com.ibm.watson.developer_cloud.tone_analyzer.v3.model.ToneScore;
+
+/**
+ * The document tones of a {@link ToneAnalysis}, as one array of scores per category, indexed by the position of the
+ * tone in {@link #EMOTION_TONES}, {@link #LANGUAGE_TONES} or {@link #SOCIAL_TONES}. A tone that was not scored has a
+ * score of {@link Double#NaN}.
+ */
+public final class ToneScores {
+
+  /** The IDs of the emotion tones. */
+  public static final List<String> EMOTION_TONES = Arrays.asList("anger", "disgust", "fear", "joy", "sadness");
+
+  /** The IDs of the language tones. */
+  public static final List<String> LANGUAGE_TONES = Arrays.asList("analytical", "confident", "tentative");
+
+  /** The IDs of the social tones. */
+  public static final List<String> SOCIAL_TONES = Arrays.asList("openness_big5", "conscientiousness_big5",
+      "extraversion_big5", "agreeableness_big5", "neuroticism_big5");
+
+  private static final String EMOTION_CATEGORY = "emotion_tone";
+  private static final String LANGUAGE_CATEGORY = "language_tone";
+  private static final String WRITING_CATEGORY = "writing_tone";
+  private static final String SOCIAL_CATEGORY = "social_tone";
+
+  private final double[] emotion;
+  private final double[] language;
+  private final double[] social;
+
+  /**
+   * Instantiates new tone scores.
+   *
+   * @param emotion the scores of the {@link #EMOTION_TONES}
+   * @param language the scores of the {@link #LANGUAGE_TONES}
+   * @param social the scores of the {@link #SOCIAL_TONES}
+   */
+  public ToneScores(double[] emotion, double[] language, double[] social) {
+    this.emotion = emotion.clone();
+    this.language = language.clone();
+    this.social = social.clone();
+  }
+
+  /**
+   * Gets the document tones of a tone analysis. Tones of an unknown ID are ignored.
+   *
+   * @param analysis the tone analysis
+   * @return the tone scores
+   */
+  public static ToneScores of(ToneAnalysis analysis) {
+    final double[] emotion = unscored(EMOTION_TONES.size());
+    final double[] language = unscored(LANGUAGE_TONES.size());
+    final double[] social = unscored(SOCIAL_TONES.size());
+    if ((analysis != null) && (analysis.getDocumentTone() != null)
+        && (analysis.getDocumentTone().getTones() != null)) {
+      for (ToneCategory category : analysis.getDocumentTone().getTones()) {
+        if (EMOTION_CATEGORY.equals(category.getId())) {
+          fill(emotion, EMOTION_TONES, category.getTones());
+        } else if (LANGUAGE_CATEGORY.equals(category.getId()) || WRITING_CATEGORY.equals(category.getId())) {
+          fill(language, LANGUAGE_TONES, category.getTones());
+        } else if (SOCIAL_CATEGORY.equals(category.getId())) {
+          fill(social, SOCIAL_TONES, category.getTones());
+        }
+      }
+    }
+    return new ToneScores(emotion, language, social);
+  }
+
+  /**
+   * Gets the scores of the emotion tones.
+   *
+   * @return a copy of the scores, in the order of {@link #EMOTION_TONES}
+   */
+  public double[] getEmotion() {
+    return emotion.clone();
+  }
+
+  /**
+   * Gets the scores of the language tones.
+   *
+   * @return a copy of the scores, in the order of {@link #LANGUAGE_TONES}
+   */
+  public double[] getLanguage() {
+    return language.clone();
+  }
+
+  /**
+   * Gets the scores of the social tones.
+   *
+   * @return a copy of the scores, in the order of {@link #SOCIAL_TONES}
+   */
+  public double[] getSocial() {
+    return social.clone();
+  }
+
+  /**
+   * Gets the score of a tone.
+   *
+   * @param toneId the ID of the tone, e.g. <code>joy</code>
+   * @return the score, or {@link Double#NaN} if the tone was not scored
+   */
+  public double getScore(String toneId) {
+    int index = EMOTION_TONES.indexOf(toneId);
+    if (index >= 0) {
+      return emotion[index];
+    }
+    index = LANGUAGE_TONES.indexOf(toneId);
+    if (index >= 0) {
+      return language[index];
+    }
+    index = SOCIAL_TONES.indexOf(toneId);
+    return (index >= 0) ? social[index] : Double.NaN;
+  }
+
+  /**
+   * Gets the index of the emotion tone with the highest score.
+   *
+   * @return the index in {@link #EMOTION_TONES}, or -1 if no emotion was scored
+   */
+  public int getPrimaryEmotion() {
+    int primary = -1;
+    for (int i = 0; i < emotion.length; i++) {
+      if (!Double.isNaN(emotion[i]) && ((primary < 0) || (emotion[i] > emotion[primary]))) {
+        primary = i;
+      }
+    }
+    return primary;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.lang.Object#equals(java.lang.Object)
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ToneScores)) {
+      return false;
+    }
+    final ToneScores other = (ToneScores) o;
+    return Arrays.equals(emotion, other.emotion) && Arrays.equals(language, other.language)
+        && Arrays.equals(social, other.social);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.lang.Object#hashCode()
+   */
+  @Override
+  public int hashCode() {
+    return (31 * ((31 * Arrays.hashCode(emotion)) + Arrays.hashCode(language))) + Arrays.hashCode(social);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return "ToneScores [emotion=" + Arrays.toString(emotion) + ", language=" + Arrays.toString(language) + ", social="
+        + Arrays.toString(social) + "]";
+  }
+
+  private static double[] unscored(int size) {
+    final double[] scores = new double[size];
+    Arrays.fill(scores, Double.NaN);
+    return scores;
+  }
+
+  private static void fill(double[] scores, List<String> ids, List<ToneScore> tones) {
+    if (tones == null) {
+      return;
+    }
+    for (ToneScore tone : tones) {
+      final int index = ids.indexOf(tone.getId());
+      if ((index >= 0) && (tone.getScore() != null)) {
+        scores[index] = tone.getScore();
+      }
+    }
+  }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1.model;
+
+import java.util.Map;
+
+import com.ibm.watson.developer_cloud.service.model.GenericModel;
+
+/**
+ * The report of a run of a <code>WorkspaceTester</code>: the accuracy of the workspace and the latency of its
+ * responses.
+ */
+public class WorkspaceTestResult extends GenericModel {
+
+  private int utterances;
+  private int intentsChecked;
+  private int intentsCorrect;
+  private int entitiesChecked;
+  private int entitiesCorrect;
+  private int failed;
+  private double p50;
+  private double p95;
+  private double p99;
+  private double max;
+  private long elapsed;
+  private Map<Integer, String> mismatches;
+  private Map<Integer, String> failures;
+
+  /**
+   * Gets the number of utterances sent.
+   *
+   * @return the number of utterances
+   */
+  public int getUtterances() {
+    return utterances;
+  }
+
+  /**
+   * Gets the number of responses whose top intent was checked.
+   *
+   * @return the number of intents checked
+   */
+  public int getIntentsChecked() {
+    return intentsChecked;
+  }
+
+  /**
+   * Gets the number of responses whose top intent was the expected one.
+   *
+   * @return the number of correct intents
+   */
+  public int getIntentsCorrect() {
+    return intentsCorrect;
+  }
+
+  /**
+   * Gets the number of responses whose entities were checked.
+   *
+   * @return the number of entities checked
+   */
+  public int getEntitiesChecked() {
+    return entitiesChecked;
+  }
+
+  /**
+   * Gets the number of responses whose entities were the expected ones.
+   *
+   * @return the number of correct entities
+   */
+  public int getEntitiesCorrect() {
+    return entitiesCorrect;
+  }
+
+  /**
+   * Gets the number of utterances whose request failed. They are not checked.
+   *
+   * @return the number of failed requests
+   */
+  public int getFailed() {
+    return failed;
+  }
+
+  /**
+   * Gets the accuracy of the intents.
+   *
+   * @return the ratio of correct intents to checked intents, or 0 if none was checked
+   */
+  public double getIntentAccuracy() {
+    return (intentsChecked > 0) ? ((double) intentsCorrect / intentsChecked) : 0;
+  }
+
+  /**
+   * Gets the accuracy of the entities.
+   *
+   * @return the ratio of correct entities to checked entities, or 0 if none was checked
+   */
+  public double getEntityAccuracy() {
+    return (entitiesChecked > 0) ? ((double) entitiesCorrect / entitiesChecked) : 0;
+  }
+
+  /**
+   * Gets the median latency of the requests.
+   *
+   * @return the median latency, in milliseconds
+   */
+  public double getP50() {
+    return p50;
+  }
+
+  /**
+   * Gets the 95th percentile of the latency of the requests.
+   *
+   * @return the 95th percentile, in milliseconds
+   */
+  public double getP95() {
+    return p95;
+  }
+
+  /**
+   * Gets the 99th percentile of the latency of the requests.
+   *
+   * @return the 99th percentile, in milliseconds
+   */
+  public double getP99() {
+    return p99;
+  }
+
+  /**
+   * Gets the highest latency of the requests.
+   *
+   * @return the highest latency, in milliseconds
+   */
+  public double getMax() {
+    return max;
+  }
+
+  /**
+   * Gets the duration of the run.
+   *
+   * @return the elapsed time, in milliseconds
+   */
+  public long getElapsed() {
+    return elapsed;
+  }
+
+  /**
+   * Gets the throughput of the run.
+   *
+   * @return the number of utterances per second
+   */
+  public double getUtterancesPerSecond() {
+    return (elapsed > 0) ? ((utterances * 1000.0) / elapsed) : 0;
+  }
+
+  /**
+   * Gets the utterances whose intent or entities were not the expected ones.
+   *
+   * @return what was expected and detected, by index of the utterance
+   */
+  public Map<Integer, String> getMismatches() {
+    return mismatches;
+  }
+
+  /**
+   * Gets the utterances whose request failed.
+   *
+   * @return the error, by index of the utterance
+   */
+  public Map<Integer, String> getFailures() {
+    return failures;
+  }
+
+  /**
+   * Sets the number of utterances sent.
+   *
+   * @param utterances the number of utterances
+   */
+  public void setUtterances(int utterances) {
+    this.utterances = utterances;
+  }
+
+  /**
+   * Sets the number of responses whose top intent was checked.
+   *
+   * @param intentsChecked the number of intents checked
+   */
+  public void setIntentsChecked(int intentsChecked) {
+    this.intentsChecked = intentsChecked;
+  }
+
+  /**
+   * Sets the number of responses whose top intent was the expected one.
+   *
+   * @param intentsCorrect the number of correct intents
+   */
+  public void setIntentsCorrect(int intentsCorrect) {
+    this.intentsCorrect = intentsCorrect;
+  }
+
+  /**
+   * Sets the number of responses whose entities were checked.
+   *
+   * @param entitiesChecked the number of entities checked
+   */
+  public void setEntitiesChecked(int entitiesChecked) {
+    this.entitiesChecked = entitiesChecked;
+  }
+
+  /**
+   * Sets the number of responses whose entities were the expected ones.
+   *
+   * @param entitiesCorrect the number of correct entities
+   */
+  public void setEntitiesCorrect(int entitiesCorrect) {
+    this.entitiesCorrect = entitiesCorrect;
+  }
+
+  /**
+   * Sets the number of utterances whose request failed.
+   *
+   * @param failed the number of failed requests
+   */
+  public void setFailed(int failed) {
+    this.failed = failed;
+  }
+
+  /**
+   * Sets the median latency.
+   *
+   * @param p50 the median latency, in milliseconds
+   */
+  public void setP50(double p50) {
+    this.p50 = p50;
+  }
+
+  /**
+   * Sets the 95th percentile of the latency.
+   *
+   * @param p95 the 95th percentile, in milliseconds
+   */
+  public void setP95(double p95) {
+    this.p95 = p95;
+  }
+
+  /**
+   * Sets the 99th percentile of the latency.
+   *
+   * @param p99 the 99th percentile, in milliseconds
+   */
+  public void setP99(double p99) {
+    this.p99 = p99;
+  }
+
+  /**
+   * Sets the highest latency.
+   *
+   * @param max the highest latency, in milliseconds
+   */
+  public void setMax(double max) {
+    this.max = max;
+  }
+
+  /**
+   * Sets the duration of the run.
+   *
+   * @param elapsed the elapsed time, in milliseconds
+   */
+  public void setElapsed(long elapsed) {
+    this.elapsed = elapsed;
+  }
+
+  /**
+   * Sets the utterances whose intent or entities were not the expected ones.
+   *
+   * @param mismatches what was expected and detected, by index of the utterance
+   */
+  public void setMismatches(Map<Integer, String> mismatches) {
+    this.mismatches = mismatches;
+  }
+
+  /**
+   * Sets the utterances whose request failed.
+   *
+   * @param failures the error, by index of the utterance
+   */
+  public void setFailures(Map<Integer, String> failures) {
+    this.failures = failures;
+  }
+}
@@ -127,6 +127,16 @@ public abstract class WatsonService {
     return builder.build();
   }
 
+  /**
+   * Gets the HTTP client of the service. Clients derived from it with {@link OkHttpClient#newBuilder()} share its
+   * connection pool and dispatcher.
+   *
+   * @return the HTTP client
+   */
+  protected OkHttpClient getClient() {
+    return client;
+  }
+
   /**
    * Execute the HTTP request. Okhttp3 compliant.
    *
@@ -0,0 +1,510 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.ibm.watson.developer_cloud.discovery.v1;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ibm.watson.developer_cloud.discovery.v1.model.document.DeleteDocumentRequest;
+import com.ibm.watson.developer_cloud.discovery.v1.model.document.DocumentSource;
+import com.ibm.watson.developer_cloud.discovery.v1.model.document.SyncResult;
+import com.ibm.watson.developer_cloud.discovery.v1.model.document.UpdateDocumentRequest;
+import com.ibm.watson.developer_cloud.http.HttpMediaType;
+import com.ibm.watson.developer_cloud.http.HttpStatus;
+import com.ibm.watson.developer_cloud.service.exception.ServiceResponseException;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Keeps a collection in sync with a set of documents, such as the files of a directory, with the fewest calls.<br>
+ * <br>
+ * A local index file keeps the fingerprint and the content hash of each document, by key, as of the last run. A run
+ * compares the documents with the index: a document whose fingerprint did not change is not read, a document whose
+ * content hash did not change is not uploaded, a new or changed document is uploaded with
+ * {@link Discovery#updateDocument(UpdateDocumentRequest)}, and the documents of the index that are no longer there
+ * are deleted. At most <code>concurrency</code> calls run at the same time, and a call that fails with a transient
+ * error is retried like in a {@link DocumentIngester}.<br>
+ * <br>
+ * The id of a document in the collection is derived from its key with {@link #documentId(String)}, so creating it
+ * twice replaces it: a run that is interrupted before its index is saved does not leave duplicates behind. A
+ * document that could not be synchronized keeps its previous state in the index, and is retried by the next run.
+ * Documents are only deleted once all the documents were listed.<br>
+ * <br>
+ * Here is an example of how to keep a collection in sync with a directory:
+ *
+ * <pre>
+ * CollectionSync sync = new CollectionSync.Builder(discovery, environmentId, collectionId,
+ *     new File(&quot;corpus.index&quot;)).build();
+ * SyncResult result = sync.syncDirectory(new File(&quot;corpus&quot;));
+ * System.out.println(result.getCreated() + &quot; created, &quot; + result.getUpdated() + &quot; updated&quot;);
+ * </pre>
+ */
+public class CollectionSync {
+    /** The default maximum number of calls at the same time. */
+    public static final int DEFAULT_CONCURRENCY = 8;
+    /** The default maximum number of retries of a call. */
+    public static final int DEFAULT_MAX_RETRIES = 5;
+    /** The default delay before the first retry of a call, in milliseconds. */
+    public static final long DEFAULT_RETRY_DELAY = 1000;
+    /** The default number of changes between two appends to the log of the index. */
+    public static final int DEFAULT_SAVE_INTERVAL = 100;
+
+    private static final Logger LOG = Logger.getLogger(CollectionSync.class.getName());
+    private static final String SHA_1 = "SHA-1";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final Map<String, String> MEDIA_TYPES = new HashMap<String, String>();
+
+    static {
+        MEDIA_TYPES.put("json", HttpMediaType.APPLICATION_JSON);
+        MEDIA_TYPES.put("pdf", HttpMediaType.APPLICATION_PDF);
+        MEDIA_TYPES.put("htm", HttpMediaType.TEXT_HTML);
+        MEDIA_TYPES.put("html", HttpMediaType.TEXT_HTML);
+        MEDIA_TYPES.put("xhtml", HttpMediaType.APPLICATION_XHTML_XML);
+        MEDIA_TYPES.put("doc", HttpMediaType.APPLICATION_MS_WORD);
+        MEDIA_TYPES.put("docx", HttpMediaType.APPLICATION_MS_WORD_DOCX);
+    }
+
+    /**
+     * Builds a {@link CollectionSync}.
+     */
+    public static class Builder {
+        private final Discovery discovery;
+        private final String environmentId;
+        private final String collectionId;
+        private final File index;
+        private String configurationId;
+        private int concurrency = DEFAULT_CONCURRENCY;
+        private int maxRetries = DEFAULT_MAX_RETRIES;
+        private long retryDelay = DEFAULT_RETRY_DELAY;
+        private int saveInterval = DEFAULT_SAVE_INTERVAL;
+
+        public Builder(Discovery discovery, String environmentId, String collectionId, File index) {
+            Validator.notNull(discovery, "discovery cannot be null");
+            Validator.notEmpty(environmentId, "environmentId cannot be empty");
+            Validator.notEmpty(collectionId, "collectionId cannot be empty");
+            Validator.notNull(index, "index cannot be null");
+            this.discovery = discovery;
+            this.environmentId = environmentId;
+            this.collectionId = collectionId;
+            this.index = index;
+        }
+
+        public Builder configurationId(String configurationId) {
+            this.configurationId = configurationId;
+            return this;
+        }
+
+        public Builder concurrency(int concurrency) {
+            Validator.isTrue(concurrency > 0, "concurrency must be positive");
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        public Builder maxRetries(int maxRetries) {
+            Validator.isTrue(maxRetries >= 0, "maxRetries cannot be negative");
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * Sets the delay before the first retry of a call. It doubles with each retry, up to a minute.
+         *
+         * @param retryDelay the delay, in milliseconds
+         * @return the builder
+         */
+        public Builder retryDelay(long retryDelay) {
+            Validator.isTrue(retryDelay >= 0, "retryDelay cannot be negative");
+            this.retryDelay = retryDelay;
+            return this;
+        }
+
+        /**
+         * Sets the number of changes between two appends to the log of the index. The whole index is only written at
+         * the end of a run, so a smaller interval loses fewer changes when a run is killed, at the cost of more writes.
+         *
+         * @param saveInterval the number of changes
+         * @return the builder
+         */
+        public Builder saveInterval(int saveInterval) {
+            Validator.isTrue(saveInterval > 0, "saveInterval must be positive");
+            this.saveInterval = saveInterval;
+            return this;
+        }
+
+        public CollectionSync build() {
+            return new CollectionSync(this);
+        }
+    }
+
+    /**
+     * The counters of a run.
+     */
+    private static final class Counters {
+        private final AtomicLong created = new AtomicLong();
+        private final AtomicLong updated = new AtomicLong();
+        private final AtomicLong deleted = new AtomicLong();
+        private final AtomicLong unchanged = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private final Map<String, String> failures = Collections.synchronizedMap(new TreeMap<String, String>());
+    }
+
+    private final Discovery discovery;
+    private final String environmentId;
+    private final String collectionId;
+    private final File indexFile;
+    private final String configurationId;
+    private final int concurrency;
+    private final RetryBackoff backoff;
+    private final int saveInterval;
+
+    private CollectionSync(Builder builder) {
+        discovery = builder.discovery;
+        environmentId = builder.environmentId;
+        collectionId = builder.collectionId;
+        indexFile = builder.index;
+        configurationId = builder.configurationId;
+        concurrency = builder.concurrency;
+        backoff = new RetryBackoff(builder.maxRetries, builder.retryDelay);
+        saveInterval = builder.saveInterval;
+    }
+
+    /**
+     * Gets the id of the document of the collection with a key.
+     *
+     * @param key the key of the document
+     * @return the hexadecimal SHA-1 hash of the key
+     */
+    public static String documentId(String key) {
+        try {
+            return hex(MessageDigest.getInstance(SHA_1).digest(key.getBytes("UTF-8")));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Synchronizes the collection with the files of a directory and its subdirectories. The key of a file is its path
+     * relative to the directory, with <code>/</code> as separator. Only the files with an extension of a media type
+     * that Discovery supports are synchronized: <code>json</code>, <code>pdf</code>, <code>html</code>,
+     * <code>htm</code>, <code>xhtml</code>, <code>doc</code> and <code>docx</code>.
+     *
+     * @param directory the directory
+     * @return the report of the run
+     * @throws IOException if the index cannot be read or written
+     * @throws InterruptedException if the thread is interrupted
+     */
+    public SyncResult syncDirectory(File directory) throws IOException, InterruptedException {
+        Validator.isTrue((directory != null) && directory.isDirectory(), "directory must be a directory");
+        return sync(new DirectoryIterator(directory));
+    }
+
+    /**
+     * Synchronizes the collection with documents and waits for all the calls. The documents must have distinct keys.
+     *
+     * @param documents the documents
+     * @return the report of the run
+     * @throws IOException if the index cannot be read or written
+     * @throws InterruptedException if the thread is interrupted, in which case the calls are stopped, no document is
+     *         deleted and the index is saved
+     */
+    public SyncResult sync(Iterator<DocumentSource> documents) throws IOException, InterruptedException {
+        Validator.notNull(documents, "documents cannot be null");
+        final long start = System.nanoTime();
+        final SyncIndex index = new SyncIndex(indexFile);
+        final Counters counters = new Counters();
+        final Semaphore permits = new Semaphore(concurrency);
+        final ExecutorService executor = Executors.newFixedThreadPool(concurrency, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "discovery-collection-sync");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        try {
+            final Set<String> seen = new HashSet<String>();
+            while (documents.hasNext()) {
+                final DocumentSource document = documents.next();
+                final String key = document.getKey();
+                Validator.notNull(key, "The key of " + document + " cannot be null");
+                if (!seen.add(key)) {
+                    counters.failures.put(key, "Duplicate key");
+                    continue;
+                }
+                final SyncIndex.Entry entry = index.get(key);
+                final String fingerprint = document.getFingerprint();
+                if ((entry != null) && (fingerprint != null) && fingerprint.equals(entry.getFingerprint())) {
+                    counters.unchanged.incrementAndGet();
+                    continue;
+                }
+                permits.acquire();
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            push(document, key, fingerprint, entry, index, counters);
+                        } catch (InterruptedException e) {
+                            LOG.fine("Upload of document " + key + " interrupted");
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                });
+            }
+
+            for (final String key : index.keys()) {
+                if (seen.contains(key)) {
+                    continue;
+                }
+                permits.acquire();
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            delete(key, index, counters);
+                        } catch (InterruptedException e) {
+                            LOG.fine("Deletion of document " + key + " interrupted");
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            executor.shutdownNow();
+            index.save();
+        }
+
+        return new SyncResult(counters.created.get(), counters.updated.get(), counters.deleted.get(),
+                counters.unchanged.get(), counters.retries.get(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime()
+                        - start), counters.failures);
+    }
+
+    /**
+     * Uploads a document if its content changed, and records its state in the index.
+     */
+    private void push(DocumentSource document, String key, String fingerprint, SyncIndex.Entry entry,
+            SyncIndex index, Counters counters) throws InterruptedException {
+        final byte[] hash;
+        try {
+            hash = hash(document);
+        } catch (IOException e) {
+            counters.failures.put(key, "Cannot read " + document + ": " + e.getMessage());
+            return;
+        }
+        if ((entry != null) && Arrays.equals(hash, entry.getHash())) {
+            counters.unchanged.incrementAndGet();
+        } else if (upload(document, key, counters)) {
+            (entry == null ? counters.created : counters.updated).incrementAndGet();
+        } else {
+            return;
+        }
+        index.put(key, fingerprint, hash);
+        save(index);
+    }
+
+    /**
+     * Uploads a document, retrying it while it fails with a transient error.
+     *
+     * @return true if the document was uploaded, false if it failed
+     */
+    private boolean upload(DocumentSource document, String key, Counters counters) throws InterruptedException {
+        for (int attempt = 0;; attempt++) {
+            InputStream content = null;
+            try {
+                content = document.open();
+                discovery.updateDocument(new UpdateDocumentRequest.Builder(environmentId, collectionId,
+                        documentId(key)).configurationId(configurationId)
+                        .inputStream(content, document.getMediaType()).build()).execute();
+                return true;
+            } catch (IOException e) {
+                counters.failures.put(key, "Cannot open " + document + ": " + e.getMessage());
+                return false;
+            } catch (RuntimeException e) {
+                if (!backoff.shouldRetry(attempt, e)) {
+                    LOG.log(Level.WARNING, "Cannot upload document " + key, e);
+                    counters.failures.put(key, String.valueOf(e.getMessage()));
+                    return false;
+                }
+                counters.retries.incrementAndGet();
+                backoff.await(attempt, e);
+            } finally {
+                closeQuietly(content);
+            }
+        }
+    }
+
+    /**
+     * Deletes a document that is no longer there, retrying it while it fails with a transient error. A document
+     * that is already gone counts as deleted.
+     */
+    private void delete(String key, SyncIndex index, Counters counters) throws InterruptedException {
+        for (int attempt = 0;; attempt++) {
+            try {
+                discovery.deleteDocument(new DeleteDocumentRequest.Builder(environmentId, collectionId,
+                        documentId(key)).build()).execute();
+                break;
+            } catch (RuntimeException e) {
+                if ((e instanceof ServiceResponseException)
+                        && (((ServiceResponseException) e).getStatusCode() == HttpStatus.NOT_FOUND)) {
+                    break;
+                }
+                if (!backoff.shouldRetry(attempt, e)) {
+                    LOG.log(Level.WARNING, "Cannot delete document " + key, e);
+                    counters.failures.put(key, String.valueOf(e.getMessage()));
+                    return;
+                }
+                counters.retries.incrementAndGet();
+                backoff.await(attempt, e);
+            }
+        }
+        counters.deleted.incrementAndGet();
+        index.remove(key);
+        save(index);
+    }
+
+    private void save(SyncIndex index) {
+        try {
+            index.saveEvery(saveInterval);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Cannot save the index " + indexFile, e);
+        }
+    }
+
+    /**
+     * Gets the SHA-1 hash of the content of a document.
+     */
+    private static byte[] hash(DocumentSource document) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(SHA_1);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        final InputStream content = document.open();
+        try {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = content.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            closeQuietly(content);
+        }
+        return digest.digest();
+    }
+
+    private static String hex(byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[(i * 2) + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Cannot close the document", e);
+            }
+        }
+    }
+
+    /**
+     * Lists the files of a directory and its subdirectories, in order, one directory at a time.
+     */
+    private static final class DirectoryIterator implements Iterator<DocumentSource> {
+        private final LinkedList<File> pending = new LinkedList<File>();
+        private final String root;
+        private DocumentSource next;
+
+        private DirectoryIterator(File directory) {
+            root = directory.getPath();
+            pending.add(directory);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while ((next == null) && !pending.isEmpty()) {
+                final File file = pending.removeFirst();
+                if (file.isDirectory()) {
+                    final File[] children = file.listFiles();
+                    if (children != null) {
+                        final List<File> sorted = new ArrayList<File>(Arrays.asList(children));
+                        Collections.sort(sorted);
+                        pending.addAll(0, sorted);
+                    }
+                } else {
+                    final String name = file.getName();
+                    final int dot = name.lastIndexOf('.');
+                    final String mediaType =
+                            (dot > 0) ? MEDIA_TYPES.get(name.substring(dot + 1).toLowerCase(Locale.ENGLISH)) : null;
+                    if (mediaType != null) {
+                        final String key = file.getPath().substring(root.length() + 1)
+                                .replace(File.separatorChar, '/');
+                        next = DocumentSource.of(key, file, mediaType);
+                    }
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public DocumentSource next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final DocumentSource document = next;
+            next = null;
+            return document;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -41,6 +41,7 @@ import com.ibm.watson.developer_cloud.discovery.v1.model.query.QueryRequest;
 import com.ibm.watson.developer_cloud.http.HttpMediaType;
 import com.ibm.watson.developer_cloud.http.InputStreamRequestBody;
 import com.ibm.watson.developer_cloud.http.RequestBuilder;
+import com.ibm.watson.developer_cloud.http.ResponseConverter;
 import com.ibm.watson.developer_cloud.http.ServiceCall;
 import com.ibm.watson.developer_cloud.service.WatsonService;
 import com.ibm.watson.developer_cloud.util.GsonSingleton;
@@ -69,11 +70,13 @@ import com.ibm.watson.developer_cloud.discovery.v1.model.environment.UpdateEnvir
 import com.ibm.watson.developer_cloud.discovery.v1.model.environment.UpdateEnvironmentResponse;
 import com.ibm.watson.developer_cloud.discovery.v1.model.query.Operator;
 import com.ibm.watson.developer_cloud.discovery.v1.model.query.QueryResponse;
+import com.ibm.watson.developer_cloud.discovery.v1.model.query.QueryResultReader;
 
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
 import okhttp3.Request;
 import okhttp3.RequestBody;
+import okhttp3.Response;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -399,6 +402,33 @@ public class Discovery extends WatsonService implements EnvironmentManager, Conf
 
     @Override
     public ServiceCall<QueryResponse> query(QueryRequest queryRequest) {
+        return createServiceCall(buildQueryRequest(queryRequest),
+                ResponseConverterUtils.getObject(QueryResponse.class));
+    }
+
+    /**
+     * Executes a query, and reads its results one at a time as they arrive.
+     *
+     * @param queryRequest options for the query
+     * @param fields the fields of the results to read, or null to read all the fields
+     * @return a {@link QueryResultReader} over the results of the {@link QueryRequest}, to close once read
+     */
+    public ServiceCall<QueryResultReader> queryStream(QueryRequest queryRequest, final Iterable<String> fields) {
+        return createServiceCall(buildQueryRequest(queryRequest), new ResponseConverter<QueryResultReader>() {
+            @Override
+            public QueryResultReader convert(Response response) {
+                return new QueryResultReader(response.body().charStream(), fields);
+            }
+        });
+    }
+
+    /**
+     * Builds the HTTP request of a query.
+     *
+     * @param queryRequest the query
+     * @return the HTTP request
+     */
+    private Request buildQueryRequest(QueryRequest queryRequest) {
         Validator.notNull(queryRequest.getEnvironmentId(), "Environment ID cannot be null");
         Validator.notNull(queryRequest.getCollectionId(), "Collection ID cannot be null");
         RequestBuilder requestBuilder = RequestBuilder
@@ -424,8 +454,7 @@ public class Discovery extends WatsonService implements EnvironmentManager, Conf
                 requestBuilder.query(RETURN, fields);
             }
         }
-        final Request request = createVersionedRequest(requestBuilder);
-        return createServiceCall(request, ResponseConverterUtils.getObject(QueryResponse.class));
+        return createVersionedRequest(requestBuilder);
     }
 
     private Request createVersionedRequest(RequestBuilder requestBuilder) {
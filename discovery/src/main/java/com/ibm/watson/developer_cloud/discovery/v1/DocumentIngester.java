@@ -0,0 +1,469 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.ibm.watson.developer_cloud.discovery.v1;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ibm.watson.developer_cloud.discovery.v1.model.collection.DocumentCounts;
+import com.ibm.watson.developer_cloud.discovery.v1.model.collection.GetCollectionRequest;
+import com.ibm.watson.developer_cloud.discovery.v1.model.document.CreateDocumentRequest;
+import com.ibm.watson.developer_cloud.discovery.v1.model.document.DocumentSource;
+import com.ibm.watson.developer_cloud.discovery.v1.model.document.IngestionResult;
+import com.ibm.watson.developer_cloud.discovery.v1.model.document.UpdateDocumentRequest;
+import com.ibm.watson.developer_cloud.discovery.v1.model.environment.Environment;
+import com.ibm.watson.developer_cloud.discovery.v1.model.environment.GetEnvironmentRequest;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Uploads a stream of documents to a collection.<br>
+ * <br>
+ * A document with a key is uploaded with {@link Discovery#updateDocument(UpdateDocumentRequest)}, with the id
+ * {@link CollectionSync#documentId(String)} of its key, so uploading it twice replaces it. A document without a key
+ * is uploaded with {@link Discovery#createDocument(CreateDocumentRequest)}, which gives it a new id each time: if an
+ * upload fails after the service accepted it, or a run is resumed from a checkpoint that was saved before the upload
+ * completed, the document is indexed twice. Give the documents keys to avoid duplicates.<br>
+ * <br>
+ * At most <code>concurrency</code> documents are uploaded at the same time, and the next documents are not read
+ * until one of them completes, so the documents can come from an iterator over a corpus that does not fit in memory.
+ * The collection and its environment are checked every <code>statusInterval</code>; while more documents than
+ * <code>maxProcessing</code> are being processed, or the disk of the environment is used above
+ * <code>maxDiskUsage</code> percent, no new upload is started. An upload that fails with <code>429</code>, a
+ * <code>5xx</code> status or a network error is retried with an exponential backoff, or after the delay of the
+ * <code>Retry-After</code> header; without a key, only <code>429</code> and <code>503</code> are retried.<br>
+ * <br>
+ * With a checkpoint file, the positions of the documents that were uploaded are saved every
+ * <code>checkpointInterval</code> documents and when the run ends, even if it is interrupted. A later run over the
+ * same documents, in the same order, skips them. A document that could not be uploaded is reported in
+ * {@link IngestionResult#getFailures()} and is not saved in the checkpoint, so a later run retries it.<br>
+ * <br>
+ * Here is an example of how to upload a list of PDF files:
+ *
+ * <pre>
+ * List&lt;DocumentSource&gt; documents = new ArrayList&lt;DocumentSource&gt;();
+ * for (File file : new File(&quot;corpus&quot;).listFiles()) {
+ *     documents.add(DocumentSource.of(file.getName(), file, HttpMediaType.APPLICATION_PDF));
+ * }
+ * DocumentIngester ingester = new DocumentIngester.Builder(discovery, environmentId, collectionId).concurrency(16)
+ *     .checkpoint(new File(&quot;corpus.checkpoint&quot;)).build();
+ * IngestionResult result = ingester.ingest(documents.iterator());
+ * System.out.println(result.getDocumentsPerSecond() + &quot; documents/s&quot;);
+ * </pre>
+ */
+public class DocumentIngester {
+    /** The default maximum number of uploads at the same time. */
+    public static final int DEFAULT_CONCURRENCY = 8;
+    /** The default maximum number of documents the collection may be processing when an upload starts. */
+    public static final long DEFAULT_MAX_PROCESSING = 1000;
+    /** The default maximum percentage of the disk of the environment used when an upload starts. */
+    public static final double DEFAULT_MAX_DISK_USAGE = 95;
+    /** The default time between two checks of the collection and its environment, in milliseconds. */
+    public static final long DEFAULT_STATUS_INTERVAL = 10000;
+    /** The default maximum number of retries of an upload. */
+    public static final int DEFAULT_MAX_RETRIES = 5;
+    /** The default delay before the first retry of an upload, in milliseconds. */
+    public static final long DEFAULT_RETRY_DELAY = 1000;
+    /** The default number of documents between two saves of the checkpoint. */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 100;
+
+    private static final Logger LOG = Logger.getLogger(DocumentIngester.class.getName());
+    private static final String UTF_8 = "UTF-8";
+
+    /**
+     * Builds a {@link DocumentIngester}.
+     */
+    public static class Builder {
+        private final Discovery discovery;
+        private final String environmentId;
+        private final String collectionId;
+        private String configurationId;
+        private int concurrency = DEFAULT_CONCURRENCY;
+        private long maxProcessing = DEFAULT_MAX_PROCESSING;
+        private double maxDiskUsage = DEFAULT_MAX_DISK_USAGE;
+        private long statusInterval = DEFAULT_STATUS_INTERVAL;
+        private int maxRetries = DEFAULT_MAX_RETRIES;
+        private long retryDelay = DEFAULT_RETRY_DELAY;
+        private File checkpoint;
+        private int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+
+        public Builder(Discovery discovery, String environmentId, String collectionId) {
+            Validator.notNull(discovery, "discovery cannot be null");
+            Validator.notEmpty(environmentId, "environmentId cannot be empty");
+            Validator.notEmpty(collectionId, "collectionId cannot be empty");
+            this.discovery = discovery;
+            this.environmentId = environmentId;
+            this.collectionId = collectionId;
+        }
+
+        public Builder configurationId(String configurationId) {
+            this.configurationId = configurationId;
+            return this;
+        }
+
+        public Builder concurrency(int concurrency) {
+            Validator.isTrue(concurrency > 0, "concurrency must be positive");
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        public Builder maxProcessing(long maxProcessing) {
+            Validator.isTrue(maxProcessing >= 0, "maxProcessing cannot be negative");
+            this.maxProcessing = maxProcessing;
+            return this;
+        }
+
+        public Builder maxDiskUsage(double maxDiskUsage) {
+            Validator.isTrue((maxDiskUsage > 0) && (maxDiskUsage <= 100), "maxDiskUsage must be a percentage");
+            this.maxDiskUsage = maxDiskUsage;
+            return this;
+        }
+
+        /**
+         * Sets the time between two checks of the collection and its environment, and how long to wait when one of
+         * them is busy.
+         *
+         * @param statusInterval the interval, in milliseconds
+         * @return the builder
+         */
+        public Builder statusInterval(long statusInterval) {
+            Validator.isTrue(statusInterval > 0, "statusInterval must be positive");
+            this.statusInterval = statusInterval;
+            return this;
+        }
+
+        public Builder maxRetries(int maxRetries) {
+            Validator.isTrue(maxRetries >= 0, "maxRetries cannot be negative");
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * Sets the delay before the first retry of an upload. It doubles with each retry, up to a minute.
+         *
+         * @param retryDelay the delay, in milliseconds
+         * @return the builder
+         */
+        public Builder retryDelay(long retryDelay) {
+            Validator.isTrue(retryDelay >= 0, "retryDelay cannot be negative");
+            this.retryDelay = retryDelay;
+            return this;
+        }
+
+        public Builder checkpoint(File checkpoint) {
+            this.checkpoint = checkpoint;
+            return this;
+        }
+
+        public Builder checkpointInterval(int checkpointInterval) {
+            Validator.isTrue(checkpointInterval > 0, "checkpointInterval must be positive");
+            this.checkpointInterval = checkpointInterval;
+            return this;
+        }
+
+        public DocumentIngester build() {
+            return new DocumentIngester(this);
+        }
+    }
+
+    /**
+     * The positions of the documents that were uploaded: all the positions below the watermark, and the ones above
+     * it that completed out of order. It is saved as the watermark followed by these positions, one per line.
+     */
+    private static final class Checkpoint {
+        private long watermark;
+        private final TreeSet<Long> completed = new TreeSet<Long>();
+        private int unsaved;
+
+        private boolean isCompleted(long position) {
+            return (position < watermark) || completed.contains(position);
+        }
+
+        private void complete(long position) {
+            completed.add(position);
+            unsaved++;
+            while (completed.remove(watermark)) {
+                watermark++;
+            }
+        }
+
+        private void read(File file) throws IOException {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+            try {
+                String line = reader.readLine();
+                watermark = (line != null) ? Long.parseLong(line.trim()) : 0;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        completed.add(Long.parseLong(line.trim()));
+                    }
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid checkpoint " + file, e);
+            } finally {
+                reader.close();
+            }
+        }
+
+        private void write(File file) throws IOException {
+            final File temporary = new File(file.getPath() + ".tmp");
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temporary), UTF_8));
+            try {
+                writer.write(Long.toString(watermark));
+                writer.write('\n');
+                for (Long position : completed) {
+                    writer.write(position.toString());
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+            unsaved = 0;
+            if (!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file))) {
+                throw new IOException("Cannot replace the checkpoint " + file);
+            }
+        }
+    }
+
+    private final Discovery discovery;
+    private final String environmentId;
+    private final String collectionId;
+    private final String configurationId;
+    private final int concurrency;
+    private final long maxProcessing;
+    private final double maxDiskUsage;
+    private final long statusInterval;
+    private final RetryBackoff backoff;
+    private final File checkpointFile;
+    private final int checkpointInterval;
+
+    private DocumentIngester(Builder builder) {
+        discovery = builder.discovery;
+        environmentId = builder.environmentId;
+        collectionId = builder.collectionId;
+        configurationId = builder.configurationId;
+        concurrency = builder.concurrency;
+        maxProcessing = builder.maxProcessing;
+        maxDiskUsage = builder.maxDiskUsage;
+        statusInterval = builder.statusInterval;
+        backoff = new RetryBackoff(builder.maxRetries, builder.retryDelay);
+        checkpointFile = builder.checkpoint;
+        checkpointInterval = builder.checkpointInterval;
+    }
+
+    /**
+     * Uploads documents and waits for all of them.
+     *
+     * @param documents the documents
+     * @return the report of the run
+     * @throws IOException if the checkpoint cannot be read or written
+     * @throws InterruptedException if the thread is interrupted, in which case the uploads are stopped and the
+     *         checkpoint is saved
+     */
+    public IngestionResult ingest(Iterator<DocumentSource> documents) throws IOException, InterruptedException {
+        Validator.notNull(documents, "documents cannot be null");
+        final long start = System.nanoTime();
+        final Checkpoint checkpoint = new Checkpoint();
+        if ((checkpointFile != null) && checkpointFile.exists()) {
+            checkpoint.read(checkpointFile);
+        }
+        final AtomicLong uploaded = new AtomicLong();
+        final AtomicLong retries = new AtomicLong();
+        final Map<Long, String> failures = Collections.synchronizedMap(new TreeMap<Long, String>());
+        final Semaphore permits = new Semaphore(concurrency);
+        final ExecutorService executor = Executors.newFixedThreadPool(concurrency, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "discovery-document-ingester");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        long skipped = 0;
+        long nextStatusCheck = System.nanoTime();
+        try {
+            for (long position = 0; documents.hasNext(); position++) {
+                final DocumentSource document = documents.next();
+                final long current = position;
+                synchronized (checkpoint) {
+                    if (checkpoint.isCompleted(current)) {
+                        skipped++;
+                        continue;
+                    }
+                }
+                if (System.nanoTime() >= nextStatusCheck) {
+                    awaitCapacity();
+                    nextStatusCheck = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(statusInterval);
+                }
+                permits.acquire();
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            if (upload(document, current, retries, failures)) {
+                                uploaded.incrementAndGet();
+                                completed(checkpoint, current, uploaded.get(), start);
+                            }
+                        } catch (InterruptedException e) {
+                            LOG.fine("Upload of document " + current + " interrupted");
+                        } catch (IOException e) {
+                            LOG.log(Level.WARNING, "Cannot save the checkpoint " + checkpointFile, e);
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            executor.shutdownNow();
+            if (checkpointFile != null) {
+                synchronized (checkpoint) {
+                    checkpoint.write(checkpointFile);
+                }
+            }
+        }
+
+        return new IngestionResult(uploaded.get(), skipped, retries.get(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failures);
+    }
+
+    /**
+     * Uploads a document, retrying it while it fails with a transient error that cannot duplicate it.
+     *
+     * @return true if the document was uploaded, false if it failed
+     */
+    private boolean upload(DocumentSource document, long position, AtomicLong retries, Map<Long, String> failures)
+            throws InterruptedException {
+        for (int attempt = 0;; attempt++) {
+            InputStream content = null;
+            try {
+                content = document.open();
+                if (document.getKey() != null) {
+                    discovery.updateDocument(new UpdateDocumentRequest.Builder(environmentId, collectionId,
+                            CollectionSync.documentId(document.getKey())).configurationId(configurationId)
+                            .inputStream(content, document.getMediaType()).build()).execute();
+                } else {
+                    discovery.createDocument(new CreateDocumentRequest.Builder(environmentId, collectionId)
+                            .configurationId(configurationId).inputStream(content, document.getMediaType()).build())
+                            .execute();
+                }
+                return true;
+            } catch (IOException e) {
+                failures.put(position, "Cannot open " + document + ": " + e.getMessage());
+                return false;
+            } catch (RuntimeException e) {
+                final boolean retry = (document.getKey() != null) ? backoff.shouldRetry(attempt, e)
+                        : backoff.shouldRetryNotIdempotent(attempt, e);
+                if (!retry) {
+                    LOG.log(Level.WARNING, "Cannot upload document " + position, e);
+                    failures.put(position, String.valueOf(e.getMessage()));
+                    return false;
+                }
+                retries.incrementAndGet();
+                backoff.await(attempt, e);
+            } finally {
+                closeQuietly(content);
+            }
+        }
+    }
+
+    /**
+     * Marks a document as uploaded, and saves the checkpoint every <code>checkpointInterval</code> documents.
+     */
+    private void completed(Checkpoint checkpoint, long position, long uploaded, long start) throws IOException {
+        synchronized (checkpoint) {
+            checkpoint.complete(position);
+            if (checkpoint.unsaved >= checkpointInterval) {
+                if (checkpointFile != null) {
+                    checkpoint.write(checkpointFile);
+                } else {
+                    checkpoint.unsaved = 0;
+                }
+                final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                LOG.info(String.format("%d documents uploaded, %.1f documents/s", uploaded,
+                        (elapsed > 0) ? ((uploaded * 1000.0) / elapsed) : 0));
+            }
+        }
+    }
+
+    /**
+     * Waits while the collection processes too many documents or the disk of its environment is nearly full.
+     */
+    private void awaitCapacity() throws InterruptedException {
+        String busy;
+        while ((busy = busy()) != null) {
+            LOG.info(busy + ", waiting " + statusInterval + "ms");
+            TimeUnit.MILLISECONDS.sleep(statusInterval);
+        }
+    }
+
+    /**
+     * Checks the collection and its environment.
+     *
+     * @return why no upload should start, or null if the collection can take more documents
+     */
+    private String busy() {
+        try {
+            final DocumentCounts counts = discovery
+                    .getCollection(new GetCollectionRequest.Builder(environmentId, collectionId).build()).execute()
+                    .getDocumentCounts();
+            if ((counts != null) && (counts.getProcessing() != null) && (counts.getProcessing() > maxProcessing)) {
+                return "The collection is processing " + counts.getProcessing() + " documents";
+            }
+            final Environment environment =
+                    discovery.getEnvironment(new GetEnvironmentRequest.Builder(environmentId).build()).execute();
+            if ((environment.getIndexCapacity() != null) && (environment.getIndexCapacity().getDiskUsage() != null)) {
+                final Double percentUsed = environment.getIndexCapacity().getDiskUsage().getPercentUsed();
+                if ((percentUsed != null) && (percentUsed >= maxDiskUsage)) {
+                    return "The disk of the environment is " + percentUsed + "% used";
+                }
+            }
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Cannot check the status of the collection", e);
+        }
+        return null;
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Cannot close the document", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.ibm.watson.developer_cloud.discovery.v1;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.ibm.watson.developer_cloud.discovery.v1.model.query.QueryRequest;
+import com.ibm.watson.developer_cloud.discovery.v1.model.query.QueryResponse;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Iterates over all the results of a query, one page at a time, with {@link Discovery#query(QueryRequest)}.<br>
+ * <br>
+ * The pages start at the offset of the request, and have <code>pageSize</code> results. While the caller consumes a
+ * page, the next <code>prefetch</code> pages are requested in the background, so that a large result set is read at
+ * the speed of the network rather than one round trip per page. At most <code>prefetch</code> pages are held, and a
+ * page is only requested when the caller takes the one <code>prefetch</code> pages before it, so the requests stop
+ * when the caller stops. A request that fails with a transient error is retried like in a
+ * {@link DocumentIngester}. The aggregations of the request are not requested.<br>
+ * <br>
+ * Each call to {@link #iterator()} runs the query again. An iterator that is not read to the end should be closed, to
+ * cancel the pages it requested. Here is an example of how to export the ids of all the documents of a collection:
+ *
+ * <pre>
+ * QueryRequest request = new QueryRequest.Builder(environmentId, collectionId)
+ *     .returnFields(Collections.singletonList(&quot;id&quot;)).build();
+ * QueryPager pager = new QueryPager.Builder(discovery, request).pageSize(1000).prefetch(4).build();
+ * for (Map&lt;String, Object&gt; result : pager) {
+ *     System.out.println(result.get(&quot;id&quot;));
+ * }
+ * </pre>
+ */
+public class QueryPager implements Iterable<Map<String, Object>> {
+    /** The default number of pages requested ahead of the one being read. */
+    public static final int DEFAULT_PREFETCH = 2;
+    /** The default maximum number of retries of a page. */
+    public static final int DEFAULT_MAX_RETRIES = 5;
+    /** The default delay before the first retry of a page, in milliseconds. */
+    public static final long DEFAULT_RETRY_DELAY = 1000;
+
+    private static final long KEEP_ALIVE = 30;
+
+    /**
+     * Builds a {@link QueryPager}.
+     */
+    public static class Builder {
+        private final Discovery discovery;
+        private final QueryRequest queryRequest;
+        private int pageSize;
+        private int prefetch = DEFAULT_PREFETCH;
+        private int maxRetries = DEFAULT_MAX_RETRIES;
+        private long retryDelay = DEFAULT_RETRY_DELAY;
+
+        /**
+         * Instantiates a new builder. The page size is the count of the request.
+         *
+         * @param discovery the discovery service
+         * @param queryRequest the query
+         */
+        public Builder(Discovery discovery, QueryRequest queryRequest) {
+            Validator.notNull(discovery, "discovery cannot be null");
+            Validator.notNull(queryRequest, "queryRequest cannot be null");
+            this.discovery = discovery;
+            this.queryRequest = queryRequest;
+            pageSize = (queryRequest.getCount() != null) ? queryRequest.getCount() : 0;
+        }
+
+        public Builder pageSize(int pageSize) {
+            Validator.isTrue(pageSize > 0, "pageSize must be positive");
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        public Builder prefetch(int prefetch) {
+            Validator.isTrue(prefetch > 0, "prefetch must be positive");
+            this.prefetch = prefetch;
+            return this;
+        }
+
+        public Builder maxRetries(int maxRetries) {
+            Validator.isTrue(maxRetries >= 0, "maxRetries cannot be negative");
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * Sets the delay before the first retry of a page. It doubles with each retry, up to a minute.
+         *
+         * @param retryDelay the delay, in milliseconds
+         * @return the builder
+         */
+        public Builder retryDelay(long retryDelay) {
+            Validator.isTrue(retryDelay >= 0, "retryDelay cannot be negative");
+            this.retryDelay = retryDelay;
+            return this;
+        }
+
+        public QueryPager build() {
+            Validator.isTrue(pageSize > 0, "pageSize must be positive");
+            return new QueryPager(this);
+        }
+    }
+
+    /**
+     * Iterates over the results of one run of the query. It is not thread safe.
+     */
+    public final class ResultIterator implements Iterator<Map<String, Object>>, Closeable {
+        private final ThreadPoolExecutor executor;
+        private final LinkedList<Future<QueryResponse>> pages = new LinkedList<Future<QueryResponse>>();
+        private Iterator<Map<String, Object>> current = Collections.<Map<String, Object>>emptyList().iterator();
+        private final int start;
+        private int nextOffset;
+        private Long matchingResults;
+        private boolean lastPage;
+        private boolean closed;
+
+        private ResultIterator() {
+            executor = new ThreadPoolExecutor(prefetch, prefetch, KEEP_ALIVE, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            final Thread thread = new Thread(runnable, "discovery-query-pager");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            // an iterator that is dropped without being closed does not keep its threads
+            executor.allowCoreThreadTimeOut(true);
+            start = (queryRequest.getOffset() != null) ? Math.max(queryRequest.getOffset(), 0) : 0;
+            nextOffset = start;
+            request();
+        }
+
+        /**
+         * Gets the number of results of the query, from the first page.
+         *
+         * @return the number of results, or null if the first page was not read yet
+         */
+        public Long getMatchingResults() {
+            return matchingResults;
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see java.util.Iterator#hasNext()
+         */
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (pages.isEmpty()) {
+                    close();
+                    return false;
+                }
+                final QueryResponse page = await(pages.removeFirst());
+                if (matchingResults == null) {
+                    matchingResults = page.getMatchingResults();
+                }
+                final List<Map<String, Object>> results = page.getResults();
+                if ((results == null) || (results.size() < pageSize)) {
+                    // the pages requested after this one are past the end
+                    lastPage = true;
+                    cancel();
+                }
+                if (results != null) {
+                    current = results.iterator();
+                }
+                request();
+            }
+            return true;
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see java.util.Iterator#next()
+         */
+        @Override
+        public Map<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see java.util.Iterator#remove()
+         */
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Drops the rest of the results, and cancels the pages that were requested and not read.
+         */
+        @Override
+        public void close() {
+            closed = true;
+            current = Collections.<Map<String, Object>>emptyList().iterator();
+            cancel();
+            executor.shutdownNow();
+        }
+
+        /**
+         * Requests the next pages, up to <code>prefetch</code> of them. Until the first page tells how many results
+         * there are, only one page is requested.
+         */
+        private void request() {
+            while (!closed && !lastPage && (pages.size() < prefetch)
+                    && ((matchingResults == null) ? pages.isEmpty() : (nextOffset < (start + matchingResults)))) {
+                final QueryRequest pageRequest =
+                        queryRequest.newBuilder().offset(nextOffset).count(pageSize).aggregation(null).build();
+                pages.add(executor.submit(new Callable<QueryResponse>() {
+                    @Override
+                    public QueryResponse call() throws InterruptedException {
+                        return fetch(pageRequest);
+                    }
+                }));
+                nextOffset += pageSize;
+            }
+        }
+
+        private QueryResponse await(Future<QueryResponse> page) {
+            try {
+                return page.get();
+            } catch (InterruptedException e) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                close();
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        private void cancel() {
+            for (Future<QueryResponse> page : pages) {
+                page.cancel(true);
+            }
+            pages.clear();
+        }
+    }
+
+    private final Discovery discovery;
+    private final QueryRequest queryRequest;
+    private final int pageSize;
+    private final int prefetch;
+    private final RetryBackoff backoff;
+
+    private QueryPager(Builder builder) {
+        discovery = builder.discovery;
+        queryRequest = builder.queryRequest;
+        pageSize = builder.pageSize;
+        prefetch = builder.prefetch;
+        backoff = new RetryBackoff(builder.maxRetries, builder.retryDelay);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Iterable#iterator()
+     */
+    @Override
+    public ResultIterator iterator() {
+        return new ResultIterator();
+    }
+
+    /**
+     * Gets a page, retrying it while it fails with a transient error.
+     */
+    private QueryResponse fetch(QueryRequest pageRequest) throws InterruptedException {
+        for (int attempt = 0;; attempt++) {
+            try {
+                return discovery.query(pageRequest).execute();
+            } catch (RuntimeException e) {
+                if (!backoff.shouldRetry(attempt, e)) {
+                    throw e;
+                }
+                backoff.await(attempt, e);
+            }
+        }
+    }
+}
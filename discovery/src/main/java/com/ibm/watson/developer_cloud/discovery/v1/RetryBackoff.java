@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.ibm.watson.developer_cloud.discovery.v1;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.ibm.watson.developer_cloud.http.HttpStatus;
+import com.ibm.watson.developer_cloud.service.exception.ServiceResponseException;
+
+/**
+ * When to retry a call that failed with a transient error: too many requests, a server error or a network error. The
+ * delay before a retry is the <code>Retry-After</code> header of the response if it has one, or else an exponential
+ * backoff with jitter, up to a minute.
+ */
+final class RetryBackoff {
+    private static final long MAX_DELAY = TimeUnit.MINUTES.toMillis(1);
+    private static final String RETRY_AFTER = "Retry-After";
+
+    private final int maxRetries;
+    private final long retryDelay;
+    private final Random random = new Random();
+
+    /**
+     * Instantiates a new retry backoff.
+     *
+     * @param maxRetries the maximum number of retries of a call
+     * @param retryDelay the delay before the first retry, in milliseconds
+     */
+    RetryBackoff(int maxRetries, long retryDelay) {
+        this.maxRetries = maxRetries;
+        this.retryDelay = retryDelay;
+    }
+
+    /**
+     * Checks if a call should be retried.
+     *
+     * @param attempt the number of retries so far
+     * @param e the error of the last attempt
+     * @return true if the error is transient and the call has retries left
+     */
+    boolean shouldRetry(int attempt, RuntimeException e) {
+        return (attempt < maxRetries) && isTransient(e);
+    }
+
+    /**
+     * Checks if a call that is not idempotent should be retried. Only the errors that the service returns before it
+     * accepts a request are retried: after a server error or a network error, the request may have been processed.
+     *
+     * @param attempt the number of retries so far
+     * @param e the error of the last attempt
+     * @return true if the error is 429 or 503 and the call has retries left
+     */
+    boolean shouldRetryNotIdempotent(int attempt, RuntimeException e) {
+        if ((attempt >= maxRetries) || !(e instanceof ServiceResponseException)) {
+            return false;
+        }
+        final int status = ((ServiceResponseException) e).getStatusCode();
+        return (status == HttpStatus.TOO_MANY_REQUESTS) || (status == HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    /**
+     * Waits before a retry.
+     *
+     * @param attempt the number of retries so far
+     * @param e the error of the last attempt
+     * @throws InterruptedException if the thread is interrupted
+     */
+    void await(int attempt, RuntimeException e) throws InterruptedException {
+        TimeUnit.MILLISECONDS.sleep(delay(attempt, e));
+    }
+
+    /**
+     * Gets the delay before a retry.
+     *
+     * @param attempt the number of retries so far
+     * @param e the error of the last attempt
+     * @return the delay, in milliseconds
+     */
+    long delay(int attempt, RuntimeException e) {
+        if ((e instanceof ServiceResponseException) && (((ServiceResponseException) e).getResponse() != null)) {
+            final String retryAfter = ((ServiceResponseException) e).getResponse().header(RETRY_AFTER);
+            if (retryAfter != null) {
+                try {
+                    return Math.min(TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim())), MAX_DELAY);
+                } catch (NumberFormatException ignored) {
+                    // an HTTP date, use the backoff
+                }
+            }
+        }
+        final long backoff = Math.min(retryDelay << Math.min(attempt, 30), MAX_DELAY);
+        return (long) (backoff * (0.5 + (random.nextDouble() / 2)));
+    }
+
+    /**
+     * Checks if a call failed with a transient error.
+     *
+     * @param e the error
+     * @return true if the error is 429, a 5xx status or a network error
+     */
+    static boolean isTransient(RuntimeException e) {
+        if (e instanceof ServiceResponseException) {
+            final int status = ((ServiceResponseException) e).getStatusCode();
+            return (status == HttpStatus.TOO_MANY_REQUESTS) || (status >= HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        return e.getCause() instanceof IOException;
+    }
+}
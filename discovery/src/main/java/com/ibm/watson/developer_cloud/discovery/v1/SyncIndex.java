@@ -0,0 +1,240 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.ibm.watson.developer_cloud.discovery.v1;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The documents of a collection as of the last {@link CollectionSync}: the fingerprint and the content hash of each
+ * document, by key. It is saved as a binary snapshot and an append-only log of the changes made since the snapshot, so
+ * saving a change costs one record however many documents the index has. {@link #save()} compacts the log: the
+ * entries are written to a temporary file that then replaces the snapshot, and the log is deleted. Replaying the log
+ * on the new snapshot gives the same entries, so a run that is interrupted at any point leaves the index consistent.
+ */
+final class SyncIndex {
+    /** The length of a content hash, in bytes. */
+    static final int HASH_LENGTH = 20;
+
+    private static final int MAGIC = 0x57445358;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    /**
+     * The state of a document.
+     */
+    static final class Entry {
+        private final String fingerprint;
+        private final byte[] hash;
+
+        private Entry(String fingerprint, byte[] hash) {
+            this.fingerprint = fingerprint;
+            this.hash = hash;
+        }
+
+        String getFingerprint() {
+            return fingerprint;
+        }
+
+        byte[] getHash() {
+            return hash;
+        }
+    }
+
+    private final File file;
+    private final File logFile;
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final DataOutputStream records = new DataOutputStream(pending);
+    private FileOutputStream log;
+    private boolean logFailed;
+    private int unsaved;
+    private boolean changed;
+
+    /**
+     * Instantiates a new index, read from its files if they exist. The log of a run that was interrupted is compacted
+     * right away, since its last record may be incomplete.
+     *
+     * @param file the file of the index
+     * @throws IOException if the files cannot be read or written
+     */
+    SyncIndex(File file) throws IOException {
+        this.file = file;
+        logFile = new File(file.getPath() + ".log");
+        if (file.exists()) {
+            read();
+        }
+        if (logFile.exists()) {
+            replay();
+            save();
+        }
+    }
+
+    synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    synchronized void put(String key, String fingerprint, byte[] hash) {
+        entries.put(key, new Entry(fingerprint, hash));
+        try {
+            records.writeByte(PUT);
+            records.writeUTF(key);
+            records.writeUTF((fingerprint != null) ? fingerprint : "");
+            records.write(hash);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot record the document " + key, e);
+        }
+        unsaved++;
+        changed = true;
+    }
+
+    synchronized void remove(String key) {
+        if (entries.remove(key) != null) {
+            try {
+                records.writeByte(REMOVE);
+                records.writeUTF(key);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Cannot record the document " + key, e);
+            }
+            unsaved++;
+            changed = true;
+        }
+    }
+
+    synchronized List<String> keys() {
+        return new ArrayList<String>(entries.keySet());
+    }
+
+    /**
+     * Appends the changes to the log if there are at least <code>interval</code> of them since they were last saved.
+     * Once an append fails, the changes are only saved by {@link #save()}, so the log never goes on after an incomplete
+     * record.
+     *
+     * @param interval the number of changes
+     * @throws IOException if the log cannot be written
+     */
+    synchronized void saveEvery(int interval) throws IOException {
+        if ((unsaved < interval) || logFailed) {
+            return;
+        }
+        try {
+            if (log == null) {
+                log = new FileOutputStream(logFile, true);
+            }
+            pending.writeTo(log);
+            log.flush();
+        } catch (IOException e) {
+            logFailed = true;
+            throw e;
+        }
+        pending.reset();
+        unsaved = 0;
+    }
+
+    /**
+     * Saves the index and deletes the log, if there is any change since the index was last saved.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    synchronized void save() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+        if (!changed && file.exists() && !logFile.exists()) {
+            return;
+        }
+        final File temporary = new File(file.getPath() + ".tmp");
+        final DataOutputStream output =
+                new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeUTF((entry.getValue().fingerprint != null) ? entry.getValue().fingerprint : "");
+                output.write(entry.getValue().hash);
+            }
+        } finally {
+            output.close();
+        }
+        if (!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file))) {
+            throw new IOException("Cannot replace the index " + file);
+        }
+        if (logFile.exists() && !logFile.delete()) {
+            throw new IOException("Cannot delete the log of the index " + logFile);
+        }
+        pending.reset();
+        unsaved = 0;
+        changed = false;
+        logFailed = false;
+    }
+
+    private void read() throws IOException {
+        final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Invalid index " + file);
+            }
+            for (int count = input.readInt(); count > 0; count--) {
+                final String key = input.readUTF();
+                final String fingerprint = input.readUTF();
+                final byte[] hash = new byte[HASH_LENGTH];
+                input.readFully(hash);
+                entries.put(key, new Entry(fingerprint.isEmpty() ? null : fingerprint, hash));
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Applies the changes of the log, up to its first incomplete record.
+     */
+    private void replay() throws IOException {
+        final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)));
+        try {
+            while (true) {
+                final int operation = input.read();
+                if (operation == PUT) {
+                    final String key = input.readUTF();
+                    final String fingerprint = input.readUTF();
+                    final byte[] hash = new byte[HASH_LENGTH];
+                    input.readFully(hash);
+                    entries.put(key, new Entry(fingerprint.isEmpty() ? null : fingerprint, hash));
+                } else if (operation == REMOVE) {
+                    entries.remove(input.readUTF());
+                } else {
+                    break;
+                }
+            }
+        } catch (EOFException e) {
+            // the run stopped while appending its last record
+        } finally {
+            input.close();
+        }
+    }
+}
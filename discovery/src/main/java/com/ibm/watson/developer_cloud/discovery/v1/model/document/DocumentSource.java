@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.ibm.watson.developer_cloud.discovery.v1.model.document;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A document to upload with a <code>DocumentIngester</code>. Its content is opened when it is uploaded, and opened
+ * again if the upload is retried, so a corpus does not have to fit in memory.
+ */
+public abstract class DocumentSource {
+
+    /**
+     * Gets the media type of the document, e.g. <code>application/pdf</code>.
+     *
+     * @return the media type
+     */
+    public abstract String getMediaType();
+
+    /**
+     * Opens the content of the document. The stream is closed by the caller.
+     *
+     * @return the content
+     * @throws IOException if the content cannot be opened
+     */
+    public abstract InputStream open() throws IOException;
+
+    /**
+     * Gets a key that identifies the document from one run to the next, e.g. the path of its file. A
+     * <code>CollectionSync</code> compares the keys to find the documents that were added or removed.
+     *
+     * @return the key, or null if the document has none
+     */
+    public String getKey() {
+        return null;
+    }
+
+    /**
+     * Gets a fingerprint of the document that is cheaper to get than its content, e.g. the size and modification
+     * time of its file. A <code>CollectionSync</code> does not read a document whose fingerprint has not changed.
+     *
+     * @return the fingerprint, or null if the content has to be read to know if it changed
+     */
+    public String getFingerprint() {
+        return null;
+    }
+
+    /**
+     * Gets a document read from a file. Its key is the path of the file.
+     *
+     * @param file the file
+     * @param mediaType the media type
+     * @return the document
+     */
+    public static DocumentSource of(File file, String mediaType) {
+        return of(file.getPath(), file, mediaType);
+    }
+
+    /**
+     * Gets a document read from a file. Its fingerprint is the size and modification time of the file.
+     *
+     * @param key the key
+     * @param file the file
+     * @param mediaType the media type
+     * @return the document
+     */
+    public static DocumentSource of(final String key, final File file, final String mediaType) {
+        return new DocumentSource() {
+            @Override
+            public String getMediaType() {
+                return mediaType;
+            }
+
+            @Override
+            public InputStream open() throws IOException {
+                return new FileInputStream(file);
+            }
+
+            @Override
+            public String getKey() {
+                return key;
+            }
+
+            @Override
+            public String getFingerprint() {
+                return file.length() + "@" + file.lastModified();
+            }
+
+            @Override
+            public String toString() {
+                return file.getPath();
+            }
+        };
+    }
+
+    /**
+     * Gets a document read from memory.
+     *
+     * @param content the content
+     * @param mediaType the media type
+     * @return the document
+     */
+    public static DocumentSource of(byte[] content, String mediaType) {
+        return of(null, content, mediaType);
+    }
+
+    /**
+     * Gets a document read from memory.
+     *
+     * @param key the key
+     * @param content the content
+     * @param mediaType the media type
+     * @return the document
+     */
+    public static DocumentSource of(final String key, final byte[] content, final String mediaType) {
+        return new DocumentSource() {
+            @Override
+            public String getMediaType() {
+                return mediaType;
+            }
+
+            @Override
+            public InputStream open() {
+                return new ByteArrayInputStream(content);
+            }
+
+            @Override
+            public String getKey() {
+                return key;
+            }
+
+            @Override
+            public String toString() {
+                return (key != null) ? key : super.toString();
+            }
+        };
+    }
+}
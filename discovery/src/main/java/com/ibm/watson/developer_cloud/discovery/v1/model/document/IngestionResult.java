@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.ibm.watson.developer_cloud.discovery.v1.model.document;
+
+import java.util.Map;
+
+import com.ibm.watson.developer_cloud.service.model.GenericModel;
+
+/**
+ * The report of a run of a <code>DocumentIngester</code>. Documents are identified by their position in the
+ * ingested sequence, starting at 0.
+ */
+public class IngestionResult extends GenericModel {
+    private final long uploaded;
+    private final long skipped;
+    private final long retries;
+    private final long elapsed;
+    private final Map<Long, String> failures;
+
+    /**
+     * Instantiates a new ingestion result.
+     *
+     * @param uploaded the number of documents uploaded
+     * @param skipped the number of documents skipped because a previous run had uploaded them
+     * @param retries the number of uploads that were retried
+     * @param elapsed the duration of the run, in milliseconds
+     * @param failures the error of each document that could not be uploaded, by position
+     */
+    public IngestionResult(long uploaded, long skipped, long retries, long elapsed, Map<Long, String> failures) {
+        this.uploaded = uploaded;
+        this.skipped = skipped;
+        this.retries = retries;
+        this.elapsed = elapsed;
+        this.failures = failures;
+    }
+
+    public long getUploaded() {
+        return uploaded;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public long getFailed() {
+        return failures.size();
+    }
+
+    public long getRetries() {
+        return retries;
+    }
+
+    /**
+     * Gets the duration of the run.
+     *
+     * @return the elapsed time, in milliseconds
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * Gets the throughput of the run. Skipped documents are not counted.
+     *
+     * @return the number of documents uploaded per second
+     */
+    public double getDocumentsPerSecond() {
+        return (elapsed > 0) ? ((uploaded * 1000.0) / elapsed) : 0;
+    }
+
+    /**
+     * Gets the documents that could not be uploaded.
+     *
+     * @return the error of each document, by position
+     */
+    public Map<Long, String> getFailures() {
+        return failures;
+    }
+}
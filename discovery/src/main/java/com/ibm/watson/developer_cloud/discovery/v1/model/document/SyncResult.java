@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.ibm.watson.developer_cloud.discovery.v1.model.document;
+
+import java.util.Map;
+
+import com.ibm.watson.developer_cloud.service.model.GenericModel;
+
+/**
+ * The report of a run of a <code>CollectionSync</code>. Documents are identified by their key.
+ */
+public class SyncResult extends GenericModel {
+    private final long created;
+    private final long updated;
+    private final long deleted;
+    private final long unchanged;
+    private final long retries;
+    private final long elapsed;
+    private final Map<String, String> failures;
+
+    /**
+     * Instantiates a new sync result.
+     *
+     * @param created the number of documents added to the collection
+     * @param updated the number of documents of the collection replaced because their content changed
+     * @param deleted the number of documents removed from the collection
+     * @param unchanged the number of documents whose content did not change
+     * @param retries the number of calls that were retried
+     * @param elapsed the duration of the run, in milliseconds
+     * @param failures the error of each document that could not be synchronized, by key
+     */
+    public SyncResult(long created, long updated, long deleted, long unchanged, long retries, long elapsed,
+            Map<String, String> failures) {
+        this.created = created;
+        this.updated = updated;
+        this.deleted = deleted;
+        this.unchanged = unchanged;
+        this.retries = retries;
+        this.elapsed = elapsed;
+        this.failures = failures;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getUpdated() {
+        return updated;
+    }
+
+    public long getDeleted() {
+        return deleted;
+    }
+
+    public long getUnchanged() {
+        return unchanged;
+    }
+
+    public long getFailed() {
+        return failures.size();
+    }
+
+    public long getRetries() {
+        return retries;
+    }
+
+    /**
+     * Gets the duration of the run.
+     *
+     * @return the elapsed time, in milliseconds
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * Gets the documents that could not be synchronized. They are retried by the next run.
+     *
+     * @return the error of each document, by key
+     */
+    public Map<String, String> getFailures() {
+        return failures;
+    }
+}
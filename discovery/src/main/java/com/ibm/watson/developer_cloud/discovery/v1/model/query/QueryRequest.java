@@ -71,6 +71,15 @@ public class QueryRequest extends GenericModel {
         return returnFields;
     }
 
+    /**
+     * New builder.
+     *
+     * @return the builder
+     */
+    public Builder newBuilder() {
+        return new Builder(this);
+    }
+
     public static class Builder {
         private final String environmentId;
         private final String collectionId;
@@ -86,6 +95,17 @@ public class QueryRequest extends GenericModel {
             this.collectionId = collectionId;
         }
 
+        private Builder(QueryRequest queryRequest) {
+            this.environmentId = queryRequest.environmentId;
+            this.collectionId = queryRequest.collectionId;
+            this.filter = queryRequest.filter;
+            this.query = queryRequest.query;
+            this.aggregation = queryRequest.aggregation;
+            this.count = queryRequest.count;
+            this.offset = queryRequest.offset;
+            this.returnFields = queryRequest.returnFields;
+        }
+
         public Builder filter(String filter) {
             this.filter = filter;
             return this;
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.ibm.watson.developer_cloud.discovery.v1.model.query;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+
+/**
+ * Reads the results of a query one at a time, as they arrive, instead of parsing the whole {@link QueryResponse}. Only
+ * the result being read is in memory, so the memory used does not depend on the <code>count</code> of the query.<br>
+ * <br>
+ * With a list of fields, only these fields of each result are read; the others are skipped without being parsed. A
+ * field of a nested object is selected with a dotted path, e.g. <code>enriched_text.sentiment</code>, which keeps the
+ * <code>sentiment</code> of the <code>enriched_text</code> object, or of each object of the
+ * <code>enriched_text</code> array. A result can also be read as a POJO with {@link #next(Class)}, in which case
+ * the fields that the class does not have are skipped.<br>
+ * <br>
+ * The reader holds the HTTP response, and must be closed. Here is an example of how to read the titles of the results
+ * of a query:
+ *
+ * <pre>
+ * QueryResultReader reader = discovery.queryStream(queryRequest, Arrays.asList(&quot;id&quot;, &quot;title&quot;))
+ *     .execute();
+ * try {
+ *     while (reader.hasNext()) {
+ *         System.out.println(reader.next().get(&quot;title&quot;));
+ *     }
+ * } finally {
+ *     reader.close();
+ * }
+ * </pre>
+ */
+public class QueryResultReader implements Iterator<Map<String, Object>>, Closeable {
+    private static final Gson GSON = GsonSingleton.getGson();
+    private static final TypeAdapter<Object> OBJECT_ADAPTER = GSON.getAdapter(Object.class);
+    private static final Type AGGREGATIONS_TYPE = new TypeToken<List<Aggregation>>() { }.getType();
+    private static final Object SKIPPED = new Object();
+
+    /**
+     * Where the reader is in the response.
+     */
+    private enum State {
+        START, FIELDS, RESULTS, END
+    }
+
+    /**
+     * The fields to read in an object: all of them, or only the children.
+     */
+    private static final class Projection {
+        private final Map<String, Projection> children = new HashMap<String, Projection>();
+        private boolean all;
+
+        private void add(String path) {
+            Projection projection = this;
+            for (String name : path.split("\\.")) {
+                if (projection.all) {
+                    return;
+                }
+                Projection child = projection.children.get(name);
+                if (child == null) {
+                    child = new Projection();
+                    projection.children.put(name, child);
+                }
+                projection = child;
+            }
+            projection.all = true;
+            projection.children.clear();
+        }
+    }
+
+    private final JsonReader reader;
+    private final Projection projection;
+    private State state = State.START;
+    private Long matchingResults;
+    private List<Aggregation> aggregations;
+
+    /**
+     * Instantiates a new query result reader.
+     *
+     * @param json the JSON of a query response
+     * @param fields the fields of the results to read, or null to read all the fields
+     */
+    public QueryResultReader(Reader json, Iterable<String> fields) {
+        reader = new JsonReader(json);
+        if (fields != null) {
+            projection = new Projection();
+            for (String field : fields) {
+                projection.add(field);
+            }
+        } else {
+            projection = null;
+        }
+    }
+
+    /**
+     * Gets the number of results of the query. The service sends it before the results, so it is known before any
+     * result is read.
+     *
+     * @return the number of results, or null if the response does not have it before the results
+     */
+    public Long getMatchingResults() {
+        if (state == State.START) {
+            hasNext();
+        }
+        return matchingResults;
+    }
+
+    /**
+     * Gets the aggregations of the query. The service sends them after the results.
+     *
+     * @return the aggregations, or null if they were not read yet
+     */
+    public List<Aggregation> getAggregations() {
+        return aggregations;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.Iterator#hasNext()
+     */
+    @Override
+    public boolean hasNext() {
+        try {
+            if (state == State.START) {
+                reader.beginObject();
+                state = State.FIELDS;
+            }
+            if (state == State.RESULTS) {
+                if (reader.hasNext()) {
+                    return true;
+                }
+                reader.endArray();
+                state = State.FIELDS;
+            }
+            if (state == State.FIELDS) {
+                return seekResults();
+            }
+            return false;
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading the query response", e);
+        }
+    }
+
+    /**
+     * Reads the next result, with the fields of the projection.
+     *
+     * @return the result
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            final Object result = (projection == null) ? OBJECT_ADAPTER.read(reader) : read(projection);
+            return (result instanceof Map) ? (Map<String, Object>) result : null;
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading the query response", e);
+        }
+    }
+
+    /**
+     * Reads the next result as a POJO. The projection does not apply: the fields that the class does not have are
+     * skipped.
+     *
+     * @param <T> the type of the result
+     * @param type the class of the result
+     * @return the result
+     */
+    public <T> T next(Class<T> type) {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return GSON.fromJson(reader, type);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.Iterator#remove()
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() throws IOException {
+        state = State.END;
+        reader.close();
+    }
+
+    /**
+     * Reads the fields of the response up to the results.
+     *
+     * @return true if the reader is at the first result, false if the response has no more results
+     */
+    private boolean seekResults() throws IOException {
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if (QueryManager.RESULTS.equals(name) && (reader.peek() == JsonToken.BEGIN_ARRAY)) {
+                reader.beginArray();
+                state = State.RESULTS;
+                if (reader.hasNext()) {
+                    return true;
+                }
+                reader.endArray();
+                state = State.FIELDS;
+            } else if (QueryManager.MATCHING_RESULTS.equals(name) && (reader.peek() == JsonToken.NUMBER)) {
+                matchingResults = reader.nextLong();
+            } else if (QueryManager.AGGREGATIONS.equals(name)) {
+                aggregations = GSON.fromJson(reader, AGGREGATIONS_TYPE);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        state = State.END;
+        return false;
+    }
+
+    /**
+     * Reads a value with the fields of a projection.
+     *
+     * @return the value, or {@link #SKIPPED} if it has none of the fields
+     */
+    private Object read(Projection fields) throws IOException {
+        if (fields.all) {
+            return OBJECT_ADAPTER.read(reader);
+        }
+        switch (reader.peek()) {
+        case BEGIN_OBJECT:
+            final Map<String, Object> object = new LinkedHashMap<String, Object>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final String name = reader.nextName();
+                final Projection child = fields.children.get(name);
+                final Object value = (child != null) ? read(child) : skip();
+                if (value != SKIPPED) {
+                    object.put(name, value);
+                }
+            }
+            reader.endObject();
+            return object;
+        case BEGIN_ARRAY:
+            final List<Object> array = new ArrayList<Object>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                final Object value = read(fields);
+                if (value != SKIPPED) {
+                    array.add(value);
+                }
+            }
+            reader.endArray();
+            return array;
+        default:
+            return skip();
+        }
+    }
+
+    private Object skip() throws IOException {
+        reader.skipValue();
+        return SKIPPED;
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageRequest;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+
+import okio.Buffer;
+
+/**
+ * Compares the two ways of writing the body of {@link ConversationService#message(String, MessageRequest)}: building
+ * a {@link com.google.gson.JsonObject} tree and converting it to a string, as the service used to, and streaming the
+ * request straight to the sink with {@link MessageRequestBody}. For contexts of about 10KB, 30KB and 100KB it prints
+ * the median time per request.<br>
+ * <br>
+ * The contexts mimic the ones of a long conversation: a dialog stack, the nodes visited in every turn and some
+ * application data.
+ */
+public class MessageRequestSerializationBenchmark {
+
+  private static final int[] CONTEXT_SIZES = { 10 * 1024, 30 * 1024, 100 * 1024 };
+  private static final int WARMUP = 200;
+  private static final int ITERATIONS = 500;
+
+  public static void main(String[] args) throws IOException {
+    for (int size : CONTEXT_SIZES) {
+      MessageRequest request = new MessageRequest.Builder().inputText("I'd like to change my reservation")
+          .context(context(size)).alternateIntents(true).build();
+
+      long bytes = 0;
+      for (int i = 0; i < WARMUP; i++) {
+        bytes = tree(request);
+        streamed(request);
+      }
+
+      long[] treeTimes = new long[ITERATIONS];
+      long[] streamedTimes = new long[ITERATIONS];
+      for (int i = 0; i < ITERATIONS; i++) {
+        long start = System.nanoTime();
+        tree(request);
+        treeTimes[i] = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        streamed(request);
+        streamedTimes[i] = System.nanoTime() - start;
+      }
+
+      System.out.println(String.format("request body of %,d bytes", bytes));
+      System.out.println(String.format("  JsonObject.toString(): %.1f us", median(treeTimes) / 1e3));
+      System.out.println(String.format("  MessageRequestBody:    %.1f us", median(streamedTimes) / 1e3));
+    }
+  }
+
+  private static long tree(MessageRequest request) {
+    Buffer sink = new Buffer();
+    sink.writeUtf8(GsonSingleton.getGson().toJsonTree(request).getAsJsonObject().toString());
+    return sink.size();
+  }
+
+  private static long streamed(MessageRequest request) throws IOException {
+    Buffer sink = new Buffer();
+    new MessageRequestBody(request).writeTo(sink);
+    return sink.size();
+  }
+
+  private static Map<String, Object> context(int size) {
+    Map<String, Object> system = new HashMap<String, Object>();
+    List<Object> turns = new ArrayList<Object>();
+    Map<String, Object> data = new HashMap<String, Object>();
+    Map<String, Object> context = new HashMap<String, Object>();
+    context.put("conversation_id", "1b7b67c0-90ed-45dc-8508-9488bc483d5b");
+    context.put("system", system);
+    context.put("app_data", data);
+
+    int turn = 0;
+    while (GsonSingleton.getGsonWithoutPrettyPrinting().toJson(context).length() < size) {
+      turn++;
+      List<String> visited = new ArrayList<String>();
+      for (int node = 0; node < 8; node++) {
+        visited.add("node_" + turn + "_" + node + "_" + Integer.toHexString(31 * turn + node));
+      }
+      turns.add(visited);
+
+      Map<String, Object> booking = new HashMap<String, Object>();
+      booking.put("date", "2016-11-" + (1 + turn % 28));
+      booking.put("party_size", turn % 6 + 1);
+      booking.put("notes", "Table by the window, <no> peanuts & \"quiet\" please");
+      data.put("booking_" + turn, booking);
+
+      system.put("dialog_stack", Arrays.asList("root", "node_" + turn + "_0"));
+      system.put("dialog_turn_counter", turn);
+      system.put("dialog_request_counter", turn);
+      system.put("nodes_visited", turns);
+    }
+    return context;
+  }
+
+  private static long median(long[] values) {
+    long[] sorted = values.clone();
+    Arrays.sort(sorted);
+    return sorted[sorted.length / 2];
+  }
+}
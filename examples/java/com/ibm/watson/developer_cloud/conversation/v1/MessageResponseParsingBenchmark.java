@@ -0,0 +1,122 @@
+/**
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.ibm.watson.developer_cloud.conversation.v1.model.Intent;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponse;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponseView;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+
+/**
+ * Compares reading the text of the output and the top intent of a response parsed into a {@link MessageResponse}
+ * with reading them from a {@link MessageResponseView}. For contexts of about 10KB, 30KB and 100KB it prints the
+ * median time per response.
+ */
+public class MessageResponseParsingBenchmark {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final Gson GSON = GsonSingleton.getGsonWithoutPrettyPrinting();
+  private static final int[] CONTEXT_SIZES = { 10 * 1024, 30 * 1024, 100 * 1024 };
+  private static final int WARMUP = 200;
+  private static final int ITERATIONS = 500;
+
+  public static void main(String[] args) {
+    for (int size : CONTEXT_SIZES) {
+      byte[] json = response(size);
+      long[] parsedTimes = new long[ITERATIONS];
+      long[] viewTimes = new long[ITERATIONS];
+
+      for (int i = 0; i < (WARMUP + ITERATIONS); i++) {
+        long start = System.nanoTime();
+        MessageResponse parsed = GSON.fromJson(new InputStreamReader(new ByteArrayInputStream(json), UTF_8),
+            MessageResponse.class);
+        parsed.getTextConcatenated(" ");
+        top(parsed.getIntents());
+        long parsedTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        MessageResponseView view = new MessageResponseView(json);
+        view.getTextConcatenated(" ");
+        view.getTopIntent();
+        long viewTime = System.nanoTime() - start;
+
+        if (i >= WARMUP) {
+          parsedTimes[i - WARMUP] = parsedTime;
+          viewTimes[i - WARMUP] = viewTime;
+        }
+      }
+
+      System.out.println(String.format("response of %,d bytes", json.length));
+      System.out.println(String.format("  MessageResponse:     %.1f us", median(parsedTimes) / 1e3));
+      System.out.println(String.format("  MessageResponseView: %.1f us", median(viewTimes) / 1e3));
+    }
+  }
+
+  private static Intent top(List<Intent> intents) {
+    Intent top = null;
+    for (Intent intent : intents) {
+      if ((top == null) || (intent.getConfidence() > top.getConfidence())) {
+        top = intent;
+      }
+    }
+    return top;
+  }
+
+  private static byte[] response(int size) {
+    Map<String, Object> system = new HashMap<String, Object>();
+    List<Object> turns = new ArrayList<Object>();
+    Map<String, Object> context = new HashMap<String, Object>();
+    context.put("conversation_id", "1b7b67c0-90ed-45dc-8508-9488bc483d5b");
+    context.put("system", system);
+
+    int turn = 0;
+    while (GSON.toJson(context).length() < size) {
+      turn++;
+      List<String> visited = new ArrayList<String>();
+      for (int node = 0; node < 8; node++) {
+        visited.add("node_" + turn + "_" + node + "_" + Integer.toHexString(31 * turn + node));
+      }
+      turns.add(visited);
+      context.put("booking_" + turn, Arrays.asList("2016-11-" + (1 + turn % 28), turn % 6 + 1, "by the window"));
+      system.put("dialog_stack", Arrays.asList("root", "node_" + turn + "_0"));
+      system.put("dialog_turn_counter", turn);
+      system.put("nodes_visited", turns);
+    }
+
+    Map<String, Object> output = new HashMap<String, Object>();
+    output.put("text", Arrays.asList("Your table is booked.", "Anything else?"));
+    output.put("nodes_visited", turns.get(turns.size() - 1));
+
+    MessageResponse response = new MessageResponse();
+    response.setContext(context);
+    response.setOutput(output);
+    response.setIntents(Arrays.asList(new Intent("book_table", 0.93), new Intent("cancel", 0.04)));
+    return GSON.toJson(response).getBytes(UTF_8);
+  }
+
+  private static long median(long[] values) {
+    long[] sorted = values.clone();
+    Arrays.sort(sorted);
+    return sorted[sorted.length / 2];
+  }
+}
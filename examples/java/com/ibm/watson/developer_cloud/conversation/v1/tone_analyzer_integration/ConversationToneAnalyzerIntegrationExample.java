@@ -16,15 +16,14 @@ import java.util.HashMap;
 import java.util.Map;
 
 import com.ibm.watson.developer_cloud.conversation.v1.ConversationService;
+import com.ibm.watson.developer_cloud.conversation.v1.ToneConversationPipeline;
 import com.ibm.watson.developer_cloud.conversation.v1.model.MessageRequest;
 import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponse;
-import com.ibm.watson.developer_cloud.http.ServiceCallback;
 import com.ibm.watson.developer_cloud.tone_analyzer.v3.ToneAnalyzer;
-import com.ibm.watson.developer_cloud.tone_analyzer.v3.model.ToneAnalysis;
 
 /**
- * Example of how to call the {@link ConversationService#message(String, MessageRequest)} method synchronous,
- * asynchronous, and using react.
+ * Example of how to send a turn to the {@link ConversationService} with the tone of the user, using a
+ * {@link ToneConversationPipeline}.
  */
 public class ConversationToneAnalyzerIntegrationExample {
 
@@ -41,10 +40,11 @@ public class ConversationToneAnalyzerIntegrationExample {
     // workspace id
     String workspaceId = "<workspace-id>";
 
-    // maintain history in the context variable - will add a history variable to
-    // each of the emotion, social
-    // and language tones
-    Boolean maintainHistory = false;
+    // the pipeline analyzes the tone of each turn before the turn is sent, adds it to the "user" variable of the
+    // context, so the dialog reacts to the tone of this turn, and keeps the last 5 emotions in its history. In the
+    // default CONCURRENT mode the tone is analyzed while the turn is sent, and the dialog sees it one turn later.
+    ToneConversationPipeline pipeline = new ToneConversationPipeline.Builder(conversationService, toneService,
+        workspaceId).mode(ToneConversationPipeline.Mode.SEQUENTIAL).historySize(5).build();
 
     /**
      * Input for the conversation service: input (String): an input string (the user's conversation turn) and context
@@ -60,29 +60,11 @@ public class ConversationToneAnalyzerIntegrationExample {
     // (see the getContext() method of the MessageResponse class in
     // com.ibm.watson.developer_cloud.conversation.v1.model)
 
-    // async call to Tone Analyzer
-    toneService.getTone(input, null).enqueue(new ServiceCallback<ToneAnalysis>() {
-      @Override
-      public void onResponse(ToneAnalysis toneResponsePayload) {
+    // start the tone analysis as soon as the input is known, e.g. while the rest of the request is being built
+    pipeline.prefetch(input);
 
-        // update context with the tone data returned by the Tone Analyzer
-        ToneDetection.updateUserTone(context, toneResponsePayload, maintainHistory);
-
-        // call Conversation Service with the input and tone-aware context
-        MessageRequest newMessage = new MessageRequest.Builder().inputText(input).context(context).build();
-        conversationService.message(workspaceId, newMessage).enqueue(new ServiceCallback<MessageResponse>() {
-          @Override
-          public void onResponse(MessageResponse response) {
-            System.out.println(response);
-          }
-
-          @Override
-          public void onFailure(Exception e) { }
-        });
-      }
-
-      @Override
-      public void onFailure(Exception e) { }
-    });
+    MessageRequest newMessage = new MessageRequest.Builder().inputText(input).context(context).build();
+    MessageResponse response = pipeline.message(newMessage).get();
+    System.out.println(response);
   }
 }
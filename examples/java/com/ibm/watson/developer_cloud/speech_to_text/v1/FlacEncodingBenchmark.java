@@ -0,0 +1,107 @@
+/**
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import com.ibm.watson.developer_cloud.http.HttpMediaType;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.RecognizeOptions;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.FlacEncodingInputStream;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.PcmFormat;
+
+/**
+ * Compares sending WAV audio as-is with encoding it to FLAC on the client. For each file it prints the bytes on the
+ * wire and the encoding speed; when credentials are provided it also prints the median end-to-end latency of
+ * {@link SpeechToText#recognize(File, RecognizeOptions)} with and without {@link RecognizeOptions#flacEncoding()}.<br>
+ * <br>
+ * The default files are 8kHz and 16kHz mono call recordings from the test resources.
+ */
+public class FlacEncodingBenchmark {
+
+  private static final String USERNAME = "<username>";
+  private static final String PASSWORD = "<password>";
+  private static final int ITERATIONS = 5;
+
+  public static void main(String[] args) throws IOException {
+    String[] files = args;
+    if (files.length == 0) {
+      files = new String[] { "src/test/resources/speech_to_text/twospeakers.wav",
+          "src/test/resources/speech_to_text/cap047.wav" };
+    }
+
+    SpeechToText service = null;
+    if (!USERNAME.startsWith("<")) {
+      service = new SpeechToText(USERNAME, PASSWORD);
+    }
+
+    for (String name : files) {
+      File audio = new File(name);
+      long encoded = 0;
+      long[] encodeTimes = new long[ITERATIONS];
+
+      for (int i = 0; i < ITERATIONS; i++) {
+        long start = System.nanoTime();
+        encoded = drain(FlacEncodingInputStream.create(new FileInputStream(audio), HttpMediaType.AUDIO_WAV));
+        encodeTimes[i] = System.nanoTime() - start;
+      }
+
+      FileInputStream probe = new FileInputStream(audio);
+      PcmFormat format = PcmFormat.readWaveHeader(probe);
+      probe.close();
+      double seconds = format.toSeconds(format.getDataLength() / format.getFrameSize());
+
+      System.out.println(String.format("%s (%dHz, %.1fs)", audio.getName(), format.getSampleRate(), seconds));
+      System.out.println(String.format("  wav:  %,d bytes", audio.length()));
+      System.out.println(String.format("  flac: %,d bytes (%.1f%%), encoded at %.0fx real time", encoded,
+          (100.0 * encoded) / audio.length(), seconds / (median(encodeTimes) / 1e9)));
+
+      if (service != null) {
+        RecognizeOptions wav = new RecognizeOptions.Builder().build();
+        RecognizeOptions flac = new RecognizeOptions.Builder().flacEncoding(true).build();
+        System.out.println(String.format("  recognize wav:  %.0f ms", latency(service, audio, wav) / 1e6));
+        System.out.println(String.format("  recognize flac: %.0f ms", latency(service, audio, flac) / 1e6));
+      }
+    }
+  }
+
+  private static long latency(SpeechToText service, File audio, RecognizeOptions options) {
+    long[] times = new long[ITERATIONS];
+    for (int i = 0; i < ITERATIONS; i++) {
+      long start = System.nanoTime();
+      service.recognize(audio, options).execute();
+      times[i] = System.nanoTime() - start;
+    }
+    return median(times);
+  }
+
+  private static long drain(InputStream stream) throws IOException {
+    byte[] buffer = new byte[8192];
+    long total = 0;
+    int read;
+    while ((read = stream.read(buffer)) != -1) {
+      total += read;
+    }
+    stream.close();
+    return total;
+  }
+
+  private static long median(long[] values) {
+    long[] sorted = values.clone();
+    Arrays.sort(sorted);
+    return sorted[sorted.length / 2];
+  }
+}
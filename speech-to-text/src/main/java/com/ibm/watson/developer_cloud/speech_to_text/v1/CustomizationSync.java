@@ -0,0 +1,429 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.google.gson.Gson;
+import com.ibm.watson.developer_cloud.http.ServiceCall;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.Corpus;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.Customization;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.Customization.Status;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.CustomizationSyncResult;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.Word;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.WordData;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Makes the user words and the corpora of a custom language model match a local set, then trains the model.<br>
+ * <br>
+ * {@link #sync()} lists the user words and the corpora of the model and only sends the differences:
+ * <ul>
+ * <li>words that are missing, or whose <code>sounds_like</code> or <code>display_as</code> differ, are added in
+ * batches bounded both in number of words and in size;</li>
+ * <li>user words and corpora that are not in the local set are deleted, several at a time;</li>
+ * <li>corpora that are missing are added. The service does not expose the text of a corpus, so a corpus that already
+ * exists is only replaced if {@link Builder#overwriteCorpora(boolean)} is set; naming corpora after a version of their
+ * content makes changes visible without overwriting every corpus.</li>
+ * </ul>
+ * The service analyzes the data it receives in the background and does not accept more data, or training, until it
+ * is done, so the sync waits for the model to become ready after each upload, polling with an exponential backoff.
+ * If anything changed the model is trained and the sync waits until it is available.<br>
+ * <br>
+ * Here is an example of how to sync a vocabulary:
+ *
+ * <pre>
+ * CustomizationSync sync = new CustomizationSync.Builder(service, customizationId)
+ *     .words(words)
+ *     .corpus(&quot;products-v12&quot;, new File(&quot;products.txt&quot;))
+ *     .build();
+ * CustomizationSyncResult result = sync.sync();
+ * </pre>
+ */
+public class CustomizationSync {
+
+  /** The default maximum number of words sent in one request. */
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+
+  /** The default maximum size of the JSON sent in one request, in bytes. */
+  public static final int DEFAULT_MAX_BATCH_BYTES = 1024 * 1024;
+
+  /** The default number of deletions sent at the same time. */
+  public static final int DEFAULT_CONCURRENCY = 8;
+
+  private static final Logger LOG = Logger.getLogger(CustomizationSync.class.getName());
+  private static final Gson GSON = GsonSingleton.getGsonWithoutPrettyPrinting();
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final Set<Status> DATA_READY = EnumSet.of(Status.READY, Status.AVAILABLE);
+  private static final Set<Status> TRAINED = EnumSet.of(Status.AVAILABLE);
+  private static final Set<Status> NOT_TRAINING = EnumSet.complementOf(EnumSet.of(Status.TRAINING));
+
+  /**
+   * Builder.
+   */
+  public static class Builder {
+    private final SpeechToText service;
+    private final String customizationId;
+    private final Map<String, Word> words = new LinkedHashMap<String, Word>();
+    private final Map<String, File> corpora = new LinkedHashMap<String, File>();
+    private boolean overwriteCorpora;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private long minInterval = 1000;
+    private long maxInterval = 30000;
+    private long timeout = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Instantiates a new builder.
+     *
+     * @param service the Speech to Text service
+     * @param customizationId the GUID of the custom language model
+     */
+    public Builder(SpeechToText service, String customizationId) {
+      Validator.notNull(service, "service cannot be null");
+      Validator.notNull(customizationId, "customizationId cannot be null");
+      this.service = service;
+      this.customizationId = customizationId;
+    }
+
+    /**
+     * Builds the sync.
+     *
+     * @return the customization sync
+     */
+    public CustomizationSync build() {
+      return new CustomizationSync(this);
+    }
+
+    /**
+     * Adds words to the local set. A word given twice replaces the first one.
+     *
+     * @param words the words
+     * @return the builder
+     */
+    public Builder words(Collection<? extends Word> words) {
+      Validator.notNull(words, "words cannot be null");
+      for (Word word : words) {
+        Validator.isTrue((word != null) && (word.getWord() != null), "word.word cannot be null");
+        this.words.put(word.getWord(), word);
+      }
+      return this;
+    }
+
+    /**
+     * Adds words to the local set. A word given twice replaces the first one.
+     *
+     * @param words the words
+     * @return the builder
+     */
+    public Builder words(Word... words) {
+      return words(Arrays.asList(words));
+    }
+
+    /**
+     * Adds a corpus to the local set.
+     *
+     * @param name the name of the corpus
+     * @param trainingData the text of the corpus
+     * @return the builder
+     */
+    public Builder corpus(String name, File trainingData) {
+      Validator.notNull(name, "name cannot be null");
+      Validator.isTrue((trainingData != null) && trainingData.exists(), "trainingData file is null or does not exist");
+      corpora.put(name, trainingData);
+      return this;
+    }
+
+    /**
+     * Sets whether corpora that already exist in the model are uploaded again. The default is false.
+     *
+     * @param overwriteCorpora true to replace the existing corpora
+     * @return the builder
+     */
+    public Builder overwriteCorpora(boolean overwriteCorpora) {
+      this.overwriteCorpora = overwriteCorpora;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of words and the maximum size of the JSON sent in one request.
+     *
+     * @param batchSize the maximum number of words
+     * @param maxBatchBytes the maximum size in bytes; a single larger word is still sent on its own
+     * @return the builder
+     */
+    public Builder batchSize(int batchSize, int maxBatchBytes) {
+      Validator.isTrue(batchSize > 0, "batchSize must be positive");
+      Validator.isTrue(maxBatchBytes > 0, "maxBatchBytes must be positive");
+      this.batchSize = batchSize;
+      this.maxBatchBytes = maxBatchBytes;
+      return this;
+    }
+
+    /**
+     * Sets the number of deletions sent at the same time.
+     *
+     * @param concurrency the concurrency
+     * @return the builder
+     */
+    public Builder concurrency(int concurrency) {
+      Validator.isTrue(concurrency > 0, "concurrency must be positive");
+      this.concurrency = concurrency;
+      return this;
+    }
+
+    /**
+     * Sets the intervals between two checks of the status of the model. The interval starts at the minimum and
+     * doubles up to the maximum.
+     *
+     * @param minInterval the first interval
+     * @param maxInterval the longest interval
+     * @param unit the unit of the intervals
+     * @return the builder
+     */
+    public Builder pollInterval(long minInterval, long maxInterval, TimeUnit unit) {
+      Validator.isTrue(minInterval > 0, "minInterval must be positive");
+      Validator.isTrue(maxInterval >= minInterval, "maxInterval cannot be less than minInterval");
+      this.minInterval = unit.toMillis(minInterval);
+      this.maxInterval = unit.toMillis(maxInterval);
+      return this;
+    }
+
+    /**
+     * Sets the longest time to wait for the model to become ready or available, at each step. The default is one hour.
+     *
+     * @param timeout the timeout
+     * @param unit the unit of the timeout
+     * @return the builder
+     */
+    public Builder timeout(long timeout, TimeUnit unit) {
+      Validator.isTrue(timeout > 0, "timeout must be positive");
+      this.timeout = unit.toMillis(timeout);
+      return this;
+    }
+  }
+
+  private final SpeechToText service;
+  private final String customizationId;
+  private final Map<String, Word> words;
+  private final Map<String, File> corpora;
+  private final boolean overwriteCorpora;
+  private final int batchSize;
+  private final int maxBatchBytes;
+  private final int concurrency;
+  private final long minInterval;
+  private final long maxInterval;
+  private final long timeout;
+
+  private CustomizationSync(Builder builder) {
+    service = builder.service;
+    customizationId = builder.customizationId;
+    words = new LinkedHashMap<String, Word>(builder.words);
+    corpora = new LinkedHashMap<String, File>(builder.corpora);
+    overwriteCorpora = builder.overwriteCorpora;
+    batchSize = builder.batchSize;
+    maxBatchBytes = builder.maxBatchBytes;
+    concurrency = builder.concurrency;
+    minInterval = builder.minInterval;
+    maxInterval = builder.maxInterval;
+    timeout = builder.timeout;
+  }
+
+  /**
+   * Sends the differences between the local set and the model, then trains the model if anything changed and waits
+   * until it is available.
+   *
+   * @return what changed
+   * @throws InterruptedException if the thread is interrupted while waiting for the model
+   * @throws RuntimeException if a request fails, the training fails or the model takes longer than the timeout
+   */
+  public CustomizationSyncResult sync() throws InterruptedException {
+    final CustomizationSyncResult result = new CustomizationSyncResult();
+
+    final Map<String, WordData> remoteWords = new HashMap<String, WordData>();
+    final List<WordData> listedWords = service.getWords(customizationId, Word.Type.USER).execute();
+    if (listedWords != null) {
+      for (WordData word : listedWords) {
+        remoteWords.put(word.getWord(), word);
+      }
+    }
+    final Set<String> remoteCorpora = new HashSet<String>();
+    final List<Corpus> listedCorpora = service.getCorpora(customizationId).execute();
+    if (listedCorpora != null) {
+      for (Corpus corpus : listedCorpora) {
+        remoteCorpora.add(corpus.getName());
+      }
+    }
+
+    final List<Word> wordsToAdd = new ArrayList<Word>();
+    for (Word word : words.values()) {
+      final WordData remote = remoteWords.get(word.getWord());
+      if (remote == null) {
+        wordsToAdd.add(word);
+        result.setWordsAdded(result.getWordsAdded() + 1);
+      } else if (isChanged(word, remote)) {
+        wordsToAdd.add(word);
+        result.setWordsUpdated(result.getWordsUpdated() + 1);
+      }
+    }
+
+    final List<ServiceCall<Void>> deletions = new ArrayList<ServiceCall<Void>>();
+    for (String word : remoteWords.keySet()) {
+      if (!words.containsKey(word)) {
+        deletions.add(service.deleteWord(customizationId, word));
+        result.setWordsDeleted(result.getWordsDeleted() + 1);
+      }
+    }
+    for (String corpus : remoteCorpora) {
+      if (!corpora.containsKey(corpus)) {
+        deletions.add(service.deleteCorpus(customizationId, corpus));
+        result.setCorporaDeleted(result.getCorporaDeleted() + 1);
+      }
+    }
+
+    final Map<String, File> corporaToAdd = new LinkedHashMap<String, File>();
+    for (Map.Entry<String, File> corpus : corpora.entrySet()) {
+      if (overwriteCorpora || !remoteCorpora.contains(corpus.getKey())) {
+        corporaToAdd.put(corpus.getKey(), corpus.getValue());
+      }
+    }
+    result.setCorporaAdded(corporaToAdd.size());
+
+    if (deletions.isEmpty() && wordsToAdd.isEmpty() && corporaToAdd.isEmpty()) {
+      LOG.info("The custom model " + customizationId + " is up to date");
+      return result;
+    }
+
+    // the model does not accept changes while it is being trained
+    waitFor(NOT_TRAINING);
+    executeAll(deletions);
+
+    for (Map.Entry<String, File> corpus : corporaToAdd.entrySet()) {
+      service.addTextToCustomizationCorpus(customizationId, corpus.getKey(), remoteCorpora.contains(corpus.getKey()),
+          corpus.getValue()).execute();
+      waitFor(DATA_READY);
+    }
+
+    for (List<Word> batch : batch(wordsToAdd)) {
+      service.addWords(customizationId, batch.toArray(new Word[batch.size()])).execute();
+      waitFor(DATA_READY);
+    }
+
+    service.trainCustomization(customizationId, null).execute();
+    waitFor(TRAINED);
+    result.setTrained(true);
+    return result;
+  }
+
+  /**
+   * Splits the words into batches of at most {@link #batchSize} words and {@link #maxBatchBytes} bytes of JSON.
+   */
+  private List<List<Word>> batch(List<Word> wordsToAdd) {
+    final List<List<Word>> batches = new ArrayList<List<Word>>();
+    List<Word> batch = new ArrayList<Word>();
+    // the {"words":[]} around the batch
+    final int envelope = 12;
+    int bytes = envelope;
+    for (Word word : wordsToAdd) {
+      // the request is sent as UTF-8, where a character can take up to 4 bytes
+      final int wordBytes = GSON.toJson(word).getBytes(UTF_8).length + 1;
+      if (!batch.isEmpty() && ((batch.size() >= batchSize) || ((bytes + wordBytes) > maxBatchBytes))) {
+        batches.add(batch);
+        batch = new ArrayList<Word>();
+        bytes = envelope;
+      }
+      batch.add(word);
+      bytes += wordBytes;
+    }
+    if (!batch.isEmpty()) {
+      batches.add(batch);
+    }
+    return batches;
+  }
+
+  private void executeAll(List<ServiceCall<Void>> calls) throws InterruptedException {
+    if (calls.isEmpty()) {
+      return;
+    }
+    final ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, calls.size()));
+    try {
+      final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (final ServiceCall<Void> call : calls) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            return call.execute();
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Polls the model with an exponential backoff until it reaches one of the statuses.
+   */
+  private void waitFor(Set<Status> statuses) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + timeout;
+    long interval = minInterval;
+    while (true) {
+      final Customization customization = service.getCustomization(customizationId).execute();
+      if (statuses.contains(customization.getStatus())) {
+        return;
+      }
+      if (customization.getStatus() == Status.FAILED) {
+        throw new RuntimeException("The custom model " + customizationId + " failed: " + customization.getWarnings());
+      }
+      if (System.currentTimeMillis() + interval > deadline) {
+        throw new RuntimeException("The custom model " + customizationId + " is still "
+            + customization.getStatus() + " after " + timeout + " ms");
+      }
+      Thread.sleep(interval);
+      interval = Math.min(interval * 2, maxInterval);
+    }
+  }
+
+  private static boolean isChanged(Word local, Word remote) {
+    return ((local.getSoundsLike() != null) && !local.getSoundsLike().equals(remote.getSoundsLike()))
+        || ((local.getDisplayAs() != null) && !local.getDisplayAs().equals(remote.getDisplayAs()));
+  }
+}
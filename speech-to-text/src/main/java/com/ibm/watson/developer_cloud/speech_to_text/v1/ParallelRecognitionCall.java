@@ -0,0 +1,284 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.ibm.watson.developer_cloud.http.ServiceCall;
+import com.ibm.watson.developer_cloud.http.ServiceCallback;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.RecognizeOptions;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeakerLabel;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechResults;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.Transcript;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.AudioSegment;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.SilenceSplitter;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.TimestampOffsetMap;
+
+import jersey.repackaged.jsr166e.CompletableFuture;
+
+/**
+ * The {@link ServiceCall} returned by {@link SpeechToText#recognizeParallel(File, RecognizeOptions, double, int)}.
+ * Every execution splits the file, recognizes the segments as asynchronous requests, at most <code>concurrency</code>
+ * at a time, and stitches the results. No thread is created: the requests run on the dispatcher of the HTTP client of
+ * the service, and so does the split of an asynchronous execution.
+ */
+class ParallelRecognitionCall implements ServiceCall<SpeechResults> {
+
+  /**
+   * The segments of one execution. A segment is sent when one of the <code>concurrency</code> previous ones completes;
+   * after a failure, no other segment is sent.
+   */
+  private final class Recognition {
+    private final List<AudioSegment> segments;
+    private final List<SpeechResults> results;
+    private final CompletableFuture<SpeechResults> future;
+    private int next;
+    private int recognized;
+
+    private Recognition(List<AudioSegment> segments, CompletableFuture<SpeechResults> future) {
+      this.segments = segments;
+      this.future = future;
+      results = Arrays.asList(new SpeechResults[segments.size()]);
+    }
+
+    private void start() {
+      if (segments.isEmpty()) {
+        future.complete(stitch(segments, results));
+        return;
+      }
+      for (int i = 0; i < concurrency; i++) {
+        final int index = take();
+        if (index < 0) {
+          break;
+        }
+        send(index);
+      }
+    }
+
+    private synchronized int take() {
+      return ((next < segments.size()) && !future.isDone()) ? next++ : -1;
+    }
+
+    private void send(final int index) {
+      try {
+        service.recognizeSegment(audio, contentType, segments.get(index), options)
+            .enqueue(new ServiceCallback<SpeechResults>() {
+              @Override
+              public void onResponse(SpeechResults segmentResults) {
+                completed(index, segmentResults);
+              }
+
+              @Override
+              public void onFailure(Exception e) {
+                future.completeExceptionally(e);
+              }
+            });
+      } catch (RuntimeException e) {
+        future.completeExceptionally(e);
+      }
+    }
+
+    private void completed(int index, SpeechResults segmentResults) {
+      final boolean done;
+      synchronized (this) {
+        results.set(index, segmentResults);
+        done = ++recognized == segments.size();
+      }
+      if (done) {
+        try {
+          future.complete(stitch(segments, results));
+        } catch (RuntimeException e) {
+          future.completeExceptionally(e);
+        }
+        return;
+      }
+      final int nextIndex = take();
+      if (nextIndex >= 0) {
+        send(nextIndex);
+      }
+    }
+  }
+
+  private final SpeechToText service;
+  private final File audio;
+  private final String contentType;
+  private final RecognizeOptions options;
+  private final SilenceSplitter splitter;
+  private final int concurrency;
+  private final Executor executor;
+
+  /**
+   * Instantiates a new parallel recognition call.
+   *
+   * @param service the service used to recognize each segment
+   * @param audio the audio file
+   * @param contentType the content type of the file
+   * @param options the recognize options used for every segment
+   * @param splitter the splitter
+   * @param concurrency the maximum number of segments recognized at the same time
+   * @param executor the executor that splits the file of an asynchronous execution
+   */
+  ParallelRecognitionCall(SpeechToText service, File audio, String contentType, RecognizeOptions options,
+      SilenceSplitter splitter, int concurrency, Executor executor) {
+    this.service = service;
+    this.audio = audio;
+    this.contentType = contentType;
+    this.options = options;
+    this.splitter = splitter;
+    this.concurrency = concurrency;
+    this.executor = executor;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.http.ServiceCall#execute()
+   */
+  @Override
+  public SpeechResults execute() {
+    final CompletableFuture<SpeechResults> future = new CompletableFuture<SpeechResults>();
+    recognize(future);
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      // stops sending the remaining segments
+      future.completeExceptionally(e);
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.http.ServiceCall#enqueue(com.ibm.watson.developer_cloud.http.ServiceCallback)
+   */
+  @Override
+  public void enqueue(final ServiceCallback<? super SpeechResults> callback) {
+    rx().handle(new CompletableFuture.BiFun<SpeechResults, Throwable, Void>() {
+      @Override
+      public Void apply(SpeechResults results, Throwable error) {
+        if (error == null) {
+          callback.onResponse(results);
+        } else if (error instanceof Exception) {
+          callback.onFailure((Exception) error);
+        } else {
+          callback.onFailure(new RuntimeException(error));
+        }
+        return null;
+      }
+    });
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.http.ServiceCall#rx()
+   */
+  @Override
+  public CompletableFuture<SpeechResults> rx() {
+    final CompletableFuture<SpeechResults> future = new CompletableFuture<SpeechResults>();
+    try {
+      // the split reads the whole file, so it does not run on the thread of the caller
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          recognize(future);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /**
+   * Splits the file and starts the recognition of the segments.
+   */
+  private void recognize(CompletableFuture<SpeechResults> future) {
+    final List<AudioSegment> segments;
+    try {
+      segments = splitter.split(audio, contentType);
+    } catch (IOException e) {
+      future.completeExceptionally(new RuntimeException(e));
+      return;
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+      return;
+    }
+    new Recognition(segments, future).start();
+  }
+
+  /**
+   * Joins the results of consecutive segments into the results of the whole file. Times are moved by the start time
+   * of their segment, the final results are concatenated in order and speaker numbers are made unique per segment:
+   * the service numbers speakers separately for each segment, so one person can appear under a different number in
+   * each segment, but two different people never share a number.
+   *
+   * @param segments the segments
+   * @param results the results of each segment
+   * @return the results of the whole file
+   */
+  static SpeechResults stitch(List<AudioSegment> segments, List<SpeechResults> results) {
+    final List<Transcript> transcripts = new ArrayList<Transcript>();
+    List<SpeakerLabel> speakerLabels = null;
+    int firstSpeaker = 0;
+
+    for (int i = 0; i < results.size(); i++) {
+      final SpeechResults segmentResults = results.get(i);
+      if (segmentResults == null) {
+        continue;
+      }
+
+      final TimestampOffsetMap shift = new TimestampOffsetMap();
+      shift.add(0, segments.get(i).getStartTime());
+      shift.remap(segmentResults);
+
+      if (segmentResults.getResults() != null) {
+        transcripts.addAll(segmentResults.getResults());
+      }
+
+      if (segmentResults.getSpeakerLabels() != null) {
+        if (speakerLabels == null) {
+          speakerLabels = new ArrayList<SpeakerLabel>();
+        }
+        int nextSpeaker = firstSpeaker;
+        for (SpeakerLabel label : segmentResults.getSpeakerLabels()) {
+          label.setSpeaker(label.getSpeaker() + firstSpeaker);
+          nextSpeaker = Math.max(nextSpeaker, label.getSpeaker() + 1);
+          speakerLabels.add(label);
+        }
+        firstSpeaker = nextSpeaker;
+      }
+    }
+
+    // the results of every segment now form one list, so the index of its first result is 0
+    final SpeechResults stitched = new SpeechResults();
+    stitched.setResultIndex(0);
+    stitched.setResults(transcripts);
+    stitched.setSpeakerLabels(speakerLabels);
+    return stitched;
+  }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ibm.watson.developer_cloud.http.ServiceCallback;
+import com.ibm.watson.developer_cloud.service.exception.NotFoundException;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.RecognitionJob;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.RecognitionJob.Status;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.RecognitionJobOptions;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.RecognizeOptions;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+import jersey.repackaged.jsr166e.CompletableFuture;
+
+/**
+ * Tracks many asynchronous recognition jobs and completes a {@link CompletableFuture} for each one when it reaches
+ * {@link Status#COMPLETED} or {@link Status#FAILED}.<br>
+ * <br>
+ * Instead of polling every job, the manager makes one {@link SpeechToText#getRecognitionJobs()} call per interval and
+ * only fetches a job with {@link SpeechToText#getRecognitionJob(String)} once it has completed, to get its results. The
+ * interval starts at the minimum interval and doubles, up to the maximum interval, every time a poll finds no status
+ * change; it drops back to the minimum as soon as a job changes status or a new job is tracked. When no job is pending
+ * the manager does not poll at all.<br>
+ * <br>
+ * A job that cannot be fetched stays tracked and is fetched again at the next poll; its future fails only if the
+ * service does not know the job, or after {@link #MAX_FETCH_ATTEMPTS} consecutive failures.<br>
+ * <br>
+ * Here is an example of how to wait for several jobs:
+ *
+ * <pre>
+ * RecognitionJobManager manager = new RecognitionJobManager(service);
+ * CompletableFuture&lt;RecognitionJob&gt; first = manager.submit(new File(&quot;first.wav&quot;), options, null);
+ * CompletableFuture&lt;RecognitionJob&gt; second = manager.submit(new File(&quot;second.wav&quot;), options, null);
+ * System.out.println(first.get().getResults());
+ * System.out.println(second.get().getResults());
+ * manager.shutdown();
+ * </pre>
+ */
+public class RecognitionJobManager {
+
+  /** The default minimum interval between two polls, in milliseconds. */
+  public static final long DEFAULT_MIN_INTERVAL = 2000;
+
+  /** The default maximum interval between two polls, in milliseconds. */
+  public static final long DEFAULT_MAX_INTERVAL = 60000;
+
+  /** The number of consecutive failed attempts to get a job after which its future fails. */
+  public static final int MAX_FETCH_ATTEMPTS = 5;
+
+  private static final Logger LOG = Logger.getLogger(RecognitionJobManager.class.getName());
+
+  /**
+   * A tracked job.
+   */
+  private static final class TrackedJob {
+    private final CompletableFuture<RecognitionJob> future = new CompletableFuture<RecognitionJob>();
+    private Status status;
+    private int failedFetches;
+  }
+
+  private final SpeechToText service;
+  private final long minInterval;
+  private final long maxInterval;
+  private final ConcurrentMap<String, TrackedJob> jobs = new ConcurrentHashMap<String, TrackedJob>();
+  private final ScheduledExecutorService scheduler;
+  private final Runnable poll = new Runnable() {
+    @Override
+    public void run() {
+      poll();
+    }
+  };
+
+  private long interval;
+  private ScheduledFuture<?> nextPoll;
+
+  /**
+   * Instantiates a new recognition job manager with the default intervals.
+   *
+   * @param service the Speech to Text service
+   */
+  public RecognitionJobManager(SpeechToText service) {
+    this(service, DEFAULT_MIN_INTERVAL, DEFAULT_MAX_INTERVAL, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Instantiates a new recognition job manager.
+   *
+   * @param service the Speech to Text service
+   * @param minInterval the interval between polls while jobs are changing status
+   * @param maxInterval the longest interval between two polls
+   * @param unit the unit of the intervals
+   */
+  public RecognitionJobManager(SpeechToText service, long minInterval, long maxInterval, TimeUnit unit) {
+    Validator.notNull(service, "service cannot be null");
+    Validator.isTrue(minInterval > 0, "minInterval must be positive");
+    Validator.isTrue(maxInterval >= minInterval, "maxInterval cannot be less than minInterval");
+    this.service = service;
+    this.minInterval = unit.toMillis(minInterval);
+    this.maxInterval = unit.toMillis(maxInterval);
+    interval = this.minInterval;
+    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        final Thread thread = new Thread(runnable, "recognition-job-manager");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Creates a recognition job with {@link SpeechToText#createRecognitionJob(File, RecognizeOptions,
+   * RecognitionJobOptions)} and tracks it.
+   *
+   * @param audio the audio
+   * @param recognizeOptions the recognize options
+   * @param recognitionJobOptions the recognition job options
+   * @return the future completed with the job, including its results, when it completes or fails
+   */
+  public CompletableFuture<RecognitionJob> submit(File audio, RecognizeOptions recognizeOptions,
+      RecognitionJobOptions recognitionJobOptions) {
+    final CompletableFuture<RecognitionJob> future = new CompletableFuture<RecognitionJob>();
+    service.createRecognitionJob(audio, recognizeOptions, recognitionJobOptions).enqueue(
+        new ServiceCallback<RecognitionJob>() {
+          @Override
+          public void onResponse(RecognitionJob job) {
+            try {
+              forward(track(job), future);
+            } catch (RuntimeException e) {
+              future.completeExceptionally(e);
+            }
+          }
+
+          @Override
+          public void onFailure(Exception e) {
+            future.completeExceptionally(e);
+          }
+        });
+    return future;
+  }
+
+  /**
+   * Tracks an existing job. Tracking a job twice returns the same future.
+   *
+   * @param job the job
+   * @return the future completed with the job, including its results, when it completes or fails
+   */
+  public CompletableFuture<RecognitionJob> track(RecognitionJob job) {
+    Validator.notNull(job, "job cannot be null");
+    Validator.notNull(job.getId(), "job.id cannot be null");
+    return track(job.getId(), job.getStatus());
+  }
+
+  /**
+   * Tracks an existing job by id. Tracking a job twice returns the same future.
+   *
+   * @param id the job id
+   * @return the future completed with the job, including its results, when it completes or fails
+   */
+  public CompletableFuture<RecognitionJob> track(String id) {
+    Validator.notNull(id, "id cannot be null");
+    return track(id, null);
+  }
+
+  /**
+   * Gets the number of jobs that have not reached a final status yet.
+   *
+   * @return the number of pending jobs
+   */
+  public int getPendingCount() {
+    return jobs.size();
+  }
+
+  /**
+   * Gets the current interval between polls.
+   *
+   * @param unit the unit of the returned value
+   * @return the interval
+   */
+  public synchronized long getInterval(TimeUnit unit) {
+    return unit.convert(interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops polling and cancels the futures of the pending jobs. The jobs themselves keep running on the service.
+   */
+  public void shutdown() {
+    scheduler.shutdownNow();
+    for (TrackedJob tracked : jobs.values()) {
+      tracked.future.cancel(false);
+    }
+    jobs.clear();
+  }
+
+  private CompletableFuture<RecognitionJob> track(String id, Status status) {
+    Validator.isTrue(!scheduler.isShutdown(), "the manager has been shut down");
+
+    final TrackedJob tracked = new TrackedJob();
+    tracked.status = status;
+    final TrackedJob existing = jobs.putIfAbsent(id, tracked);
+    if (existing != null) {
+      return existing.future;
+    }
+
+    synchronized (this) {
+      interval = minInterval;
+    }
+    schedule(minInterval);
+    return tracked.future;
+  }
+
+  /**
+   * Schedules the next poll, unless one is already scheduled at least as soon.
+   */
+  private synchronized void schedule(long delay) {
+    if (scheduler.isShutdown()) {
+      return;
+    }
+    if (nextPoll != null) {
+      if (nextPoll.getDelay(TimeUnit.MILLISECONDS) <= delay) {
+        return;
+      }
+      nextPoll.cancel(false);
+    }
+    nextPoll = scheduler.schedule(poll, delay, TimeUnit.MILLISECONDS);
+  }
+
+  private void poll() {
+    synchronized (this) {
+      nextPoll = null;
+    }
+
+    boolean changed = false;
+    try {
+      final Map<String, RecognitionJob> listed = new HashMap<String, RecognitionJob>();
+      final List<RecognitionJob> recognitions = service.getRecognitionJobs().execute();
+      if (recognitions != null) {
+        for (RecognitionJob job : recognitions) {
+          listed.put(job.getId(), job);
+        }
+      }
+
+      for (Map.Entry<String, TrackedJob> entry : jobs.entrySet()) {
+        final String id = entry.getKey();
+        final TrackedJob tracked = entry.getValue();
+        final RecognitionJob job = listed.get(id);
+
+        if (tracked.future.isDone()) {
+          // cancelled by the caller
+          jobs.remove(id, tracked);
+        } else if (job == null) {
+          // not in the listing, e.g. created with a callback URL by another user token: ask for it directly
+          changed |= fetch(id, tracked, false);
+        } else if (job.getStatus() == Status.COMPLETED) {
+          // the listing does not include the results
+          changed |= fetch(id, tracked, true);
+        } else if (job.getStatus() == Status.FAILED) {
+          jobs.remove(id, tracked);
+          tracked.future.complete(job);
+          changed = true;
+        } else if (job.getStatus() != tracked.status) {
+          tracked.status = job.getStatus();
+          changed = true;
+        }
+      }
+    } catch (RuntimeException e) {
+      LOG.log(Level.WARNING, "Failed to get the status of the recognition jobs", e);
+    }
+
+    final long delay;
+    synchronized (this) {
+      interval = changed ? minInterval : Math.min(interval * 2, maxInterval);
+      delay = interval;
+    }
+    if (!jobs.isEmpty()) {
+      schedule(delay);
+    }
+  }
+
+  /**
+   * Gets a job individually and completes its future if it is in a final status. A job stays tracked until its future
+   * is completed, and only its own entry is removed, so that a job tracked again in the meantime is not lost. A failure
+   * to get the job is retried at the next poll, so a transient error does not lose the results of a completed job.
+   *
+   * @return true if the job changed status
+   */
+  private boolean fetch(final String id, final TrackedJob tracked, boolean completed) {
+    final RecognitionJob job;
+    try {
+      job = service.getRecognitionJob(id).execute();
+    } catch (RuntimeException e) {
+      tracked.failedFetches++;
+      if ((e instanceof NotFoundException) || (tracked.failedFetches >= MAX_FETCH_ATTEMPTS)) {
+        jobs.remove(id, tracked);
+        tracked.future.completeExceptionally(e);
+        return true;
+      }
+      LOG.log(Level.WARNING, "Failed to get the recognition job " + id + ", attempt " + tracked.failedFetches, e);
+      return false;
+    }
+    tracked.failedFetches = 0;
+
+    if ((job.getStatus() == Status.COMPLETED) || (job.getStatus() == Status.FAILED)) {
+      jobs.remove(id, tracked);
+      tracked.future.complete(job);
+      return true;
+    }
+    // if listed as completed, the results are not available yet: keep waiting
+    final boolean changed = job.getStatus() != tracked.status;
+    tracked.status = job.getStatus();
+    return changed;
+  }
+
+  private static void forward(CompletableFuture<RecognitionJob> from, final CompletableFuture<RecognitionJob> to) {
+    from.handle(new CompletableFuture.BiFun<RecognitionJob, Throwable, Void>() {
+      @Override
+      public Void apply(RecognitionJob job, Throwable error) {
+        if (error != null) {
+          to.completeExceptionally(error);
+        } else {
+          to.complete(job);
+        }
+        return null;
+      }
+    });
+  }
+}
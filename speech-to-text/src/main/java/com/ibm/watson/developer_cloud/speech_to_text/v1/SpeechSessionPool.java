@@ -0,0 +1,435 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ibm.watson.developer_cloud.http.ServiceCallback;
+import com.ibm.watson.developer_cloud.service.exception.NotFoundException;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.RecognizeOptions;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechResults;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechSession;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechSessionStatus;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * A pool of warm {@link SpeechSession}s. A session locks a recognition engine, so recognizing short utterances in a
+ * session avoids both the creation of a session per request and a cold engine.<br>
+ * <br>
+ * {@link #start()} creates the sessions of every model. A session is leased with {@link #lease(String)} and given back
+ * with {@link #release(SpeechSession)}, or with {@link #invalidate(SpeechSession)} if it stopped working, in which case
+ * it is deleted and replaced. The service deletes a session after 15 minutes of inactivity, so every idle session is
+ * checked with {@link SpeechToText#getRecognizeStatus(SpeechSession)} once per keep-alive interval: the request keeps
+ * the session alive, and sessions that no longer exist are replaced. {@link #shutdown()} deletes the sessions, and
+ * leasing a session from a pool that has been shut down fails.<br>
+ * <br>
+ * Here is an example of how to recognize with the pool:
+ *
+ * <pre>
+ * SpeechSessionPool pool = new SpeechSessionPool(service, 4, &quot;en-US_NarrowbandModel&quot;);
+ * pool.start();
+ * RecognizeOptions options = new RecognizeOptions.Builder().model(&quot;en-US_NarrowbandModel&quot;).build();
+ * SpeechResults results = pool.recognize(new File(&quot;utterance.wav&quot;), options);
+ * pool.shutdown();
+ * </pre>
+ */
+public class SpeechSessionPool {
+
+  /** The default interval between two checks of an idle session, in milliseconds. */
+  public static final long DEFAULT_KEEP_ALIVE_INTERVAL = 5 * 60 * 1000;
+
+  private static final Logger LOG = Logger.getLogger(SpeechSessionPool.class.getName());
+
+  /** Put in the idle sessions of every model by {@link #shutdown()}, to wake up the callers waiting for a session. */
+  private static final PooledSession CLOSED = new PooledSession(null, null);
+
+  /**
+   * A session and the model it was created for.
+   */
+  private static final class PooledSession {
+    private final SpeechSession session;
+    private final String model;
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    private PooledSession(SpeechSession session, String model) {
+      this.session = session;
+      this.model = model;
+    }
+  }
+
+  private final SpeechToText service;
+  private final int size;
+  private final long keepAliveInterval;
+  private final Map<String, BlockingDeque<PooledSession>> idle = new HashMap<String, BlockingDeque<PooledSession>>();
+  private final Map<String, AtomicInteger> counts = new HashMap<String, AtomicInteger>();
+  private final ConcurrentMap<String, PooledSession> leased = new ConcurrentHashMap<String, PooledSession>();
+  private final ScheduledExecutorService scheduler;
+
+  private volatile boolean started;
+
+  /**
+   * Instantiates a new session pool with the default keep-alive interval.
+   *
+   * @param service the Speech to Text service
+   * @param size the number of sessions of each model
+   * @param models the names of the models
+   */
+  public SpeechSessionPool(SpeechToText service, int size, String... models) {
+    this(service, size, DEFAULT_KEEP_ALIVE_INTERVAL, TimeUnit.MILLISECONDS, models);
+  }
+
+  /**
+   * Instantiates a new session pool.
+   *
+   * @param service the Speech to Text service
+   * @param size the number of sessions of each model
+   * @param keepAliveInterval the interval between two checks of an idle session; it must be less than half of the 15
+   *        minutes after which the service deletes an inactive session
+   * @param unit the unit of the interval
+   * @param models the names of the models
+   */
+  public SpeechSessionPool(SpeechToText service, int size, long keepAliveInterval, TimeUnit unit, String... models) {
+    Validator.notNull(service, "service cannot be null");
+    Validator.isTrue(size > 0, "size must be positive");
+    Validator.isTrue(keepAliveInterval > 0, "keepAliveInterval must be positive");
+    Validator.isTrue((models != null) && (models.length > 0), "at least one model is required");
+    this.service = service;
+    this.size = size;
+    this.keepAliveInterval = unit.toMillis(keepAliveInterval);
+    for (String model : models) {
+      Validator.notNull(model, "model cannot be null");
+      idle.put(model, new LinkedBlockingDeque<PooledSession>());
+      counts.put(model, new AtomicInteger());
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        final Thread thread = new Thread(runnable, "speech-session-pool");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Creates the sessions of every model and starts keeping them alive. Sessions that cannot be created are retried at
+   * the next keep-alive check.
+   *
+   * @throws RuntimeException if not even one session could be created
+   */
+  public synchronized void start() {
+    Validator.isTrue(!started, "the pool has already been started");
+    Validator.isTrue(!scheduler.isShutdown(), "the pool has been shut down");
+    started = true;
+
+    RuntimeException error = null;
+    boolean created = false;
+    for (Map.Entry<String, BlockingDeque<PooledSession>> entry : idle.entrySet()) {
+      for (int i = 0; i < size; i++) {
+        try {
+          entry.getValue().offerFirst(create(entry.getKey()));
+          created = true;
+        } catch (RuntimeException e) {
+          error = e;
+        }
+      }
+    }
+    if (!created) {
+      throw error;
+    }
+
+    scheduler.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        keepAlive();
+      }
+    }, keepAliveInterval, keepAliveInterval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Leases a session, waiting until one is available.
+   *
+   * @param model the name of the model
+   * @return the session
+   * @throws InterruptedException if the thread is interrupted while waiting
+   * @throws IllegalStateException if the pool is shut down, before or while waiting
+   */
+  public SpeechSession lease(String model) throws InterruptedException {
+    final BlockingDeque<PooledSession> sessions = getIdle(model);
+    checkNotShutdown();
+    return lease(sessions, sessions.takeFirst());
+  }
+
+  /**
+   * Leases a session, waiting up to a timeout until one is available.
+   *
+   * @param model the name of the model
+   * @param timeout the longest time to wait
+   * @param unit the unit of the timeout
+   * @return the session, or null if none became available in time
+   * @throws InterruptedException if the thread is interrupted while waiting
+   * @throws IllegalStateException if the pool is shut down, before or while waiting
+   */
+  public SpeechSession lease(String model, long timeout, TimeUnit unit) throws InterruptedException {
+    final BlockingDeque<PooledSession> sessions = getIdle(model);
+    checkNotShutdown();
+    final PooledSession pooled = sessions.pollFirst(timeout, unit);
+    return pooled == null ? null : lease(sessions, pooled);
+  }
+
+  /**
+   * Returns a leased session to the pool.
+   *
+   * @param session the session
+   */
+  public void release(SpeechSession session) {
+    final PooledSession pooled = remove(session);
+    pooled.lastUsed = System.currentTimeMillis();
+    if (scheduler.isShutdown()) {
+      delete(pooled);
+    } else {
+      // the most recently used sessions are leased first
+      idle.get(pooled.model).offerFirst(pooled);
+    }
+  }
+
+  /**
+   * Deletes a leased session that stopped working and creates another one in the background.
+   *
+   * @param session the session
+   */
+  public void invalidate(SpeechSession session) {
+    final PooledSession pooled = remove(session);
+    delete(pooled);
+    if (!scheduler.isShutdown()) {
+      replace(pooled.model);
+    }
+  }
+
+  /**
+   * Recognizes an audio file in a session of the model of the options. If the recognition fails, the session is
+   * checked and replaced if it no longer works.
+   *
+   * @param audio the audio file
+   * @param options the recognize options, which must include a model of the pool
+   * @return the results
+   * @throws InterruptedException if the thread is interrupted while waiting for a session
+   * @throws IllegalStateException if the pool is shut down, before or while waiting for a session
+   */
+  public SpeechResults recognize(File audio, RecognizeOptions options) throws InterruptedException {
+    Validator.isTrue((options != null) && (options.model() != null), "options.model cannot be null");
+
+    final SpeechSession session = lease(options.model());
+    boolean healthy = true;
+    try {
+      // the model is set by the session
+      return service.recognize(audio, options.newBuilder().model(null).session(session).build()).execute();
+    } catch (RuntimeException e) {
+      healthy = isAlive(session);
+      throw e;
+    } finally {
+      if (healthy) {
+        release(session);
+      } else {
+        invalidate(session);
+      }
+    }
+  }
+
+  /**
+   * Gets the number of sessions available for a model.
+   *
+   * @param model the name of the model
+   * @return the number of idle sessions
+   */
+  public int getIdleCount(String model) {
+    final BlockingDeque<PooledSession> sessions = getIdle(model);
+    return sessions.contains(CLOSED) ? (sessions.size() - 1) : sessions.size();
+  }
+
+  /**
+   * Gets the number of sessions of a model, including the ones that are leased or being created.
+   *
+   * @param model the name of the model
+   * @return the number of sessions
+   */
+  public int getSessionCount(String model) {
+    getIdle(model);
+    return counts.get(model).get();
+  }
+
+  /**
+   * Stops keeping the sessions alive and deletes the idle ones. Leased sessions are deleted when they are released.
+   * The callers waiting for a session get an {@link IllegalStateException}.
+   */
+  public void shutdown() {
+    // not shutdownNow: interrupting a check would make live sessions look expired
+    scheduler.shutdown();
+    try {
+      // a keep-alive check in progress puts the sessions it checked back
+      scheduler.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    for (BlockingDeque<PooledSession> sessions : idle.values()) {
+      final List<PooledSession> drained = new ArrayList<PooledSession>();
+      sessions.drainTo(drained);
+      for (PooledSession pooled : drained) {
+        if (pooled != CLOSED) {
+          delete(pooled);
+        }
+      }
+      sessions.offerLast(CLOSED);
+    }
+  }
+
+  /**
+   * Checks the sessions that have been idle for a keep-alive interval and creates the missing ones.
+   */
+  void keepAlive() {
+    final long threshold = System.currentTimeMillis() - keepAliveInterval;
+    for (Map.Entry<String, BlockingDeque<PooledSession>> entry : idle.entrySet()) {
+      final BlockingDeque<PooledSession> sessions = entry.getValue();
+
+      // take the stale sessions out so they cannot be leased while they are checked
+      final List<PooledSession> stale = new ArrayList<PooledSession>();
+      for (PooledSession pooled : sessions) {
+        if ((pooled.lastUsed <= threshold) && sessions.remove(pooled)) {
+          stale.add(pooled);
+        }
+      }
+
+      for (PooledSession pooled : stale) {
+        if (isAlive(pooled.session)) {
+          pooled.lastUsed = System.currentTimeMillis();
+          sessions.offerLast(pooled);
+        } else {
+          LOG.info("Replacing the expired session " + pooled.session.getSessionId());
+          counts.get(pooled.model).decrementAndGet();
+        }
+      }
+
+      final int missing = size - counts.get(entry.getKey()).get();
+      for (int i = 0; i < missing; i++) {
+        try {
+          sessions.offerLast(create(entry.getKey()));
+        } catch (RuntimeException e) {
+          LOG.log(Level.WARNING, "Failed to create a session for " + entry.getKey(), e);
+          break;
+        }
+      }
+    }
+  }
+
+  private BlockingDeque<PooledSession> getIdle(String model) {
+    final BlockingDeque<PooledSession> sessions = idle.get(model);
+    Validator.notNull(sessions, "the pool has no session for the model " + model);
+    return sessions;
+  }
+
+  private void checkNotShutdown() {
+    if (scheduler.isShutdown()) {
+      throw new IllegalStateException("the pool has been shut down");
+    }
+  }
+
+  private SpeechSession lease(BlockingDeque<PooledSession> sessions, PooledSession pooled) {
+    if (pooled == CLOSED) {
+      // put it back for the next caller waiting for a session
+      sessions.offerFirst(CLOSED);
+      throw new IllegalStateException("the pool has been shut down");
+    }
+    leased.put(pooled.session.getSessionId(), pooled);
+    return pooled.session;
+  }
+
+  private PooledSession remove(SpeechSession session) {
+    Validator.notNull(session, "session cannot be null");
+    final PooledSession pooled = leased.remove(session.getSessionId());
+    Validator.notNull(pooled, "the session is not leased from this pool");
+    return pooled;
+  }
+
+  private PooledSession create(String model) {
+    counts.get(model).incrementAndGet();
+    try {
+      return new PooledSession(service.createSession(model).execute(), model);
+    } catch (RuntimeException e) {
+      counts.get(model).decrementAndGet();
+      throw e;
+    }
+  }
+
+  private void replace(final String model) {
+    counts.get(model).incrementAndGet();
+    service.createSession(model).enqueue(new ServiceCallback<SpeechSession>() {
+      @Override
+      public void onResponse(SpeechSession session) {
+        final PooledSession pooled = new PooledSession(session, model);
+        if (scheduler.isShutdown()) {
+          delete(pooled);
+        } else {
+          idle.get(model).offerFirst(pooled);
+        }
+      }
+
+      @Override
+      public void onFailure(Exception e) {
+        // the next keep-alive check creates the missing session
+        counts.get(model).decrementAndGet();
+        LOG.log(Level.WARNING, "Failed to create a session for " + model, e);
+      }
+    });
+  }
+
+  /**
+   * Checks a session. Only a session the service no longer knows is dead: after any other error, e.g. a timeout, the
+   * session may still be alive, and dropping it without deleting it would leave it open on the service.
+   */
+  private boolean isAlive(SpeechSession session) {
+    try {
+      final SpeechSessionStatus status = service.getRecognizeStatus(session).execute();
+      return (status != null) && (status.getState() != null);
+    } catch (NotFoundException e) {
+      LOG.log(Level.FINE, "The session " + session.getSessionId() + " is not alive", e);
+      return false;
+    } catch (RuntimeException e) {
+      LOG.log(Level.WARNING, "Failed to check the session " + session.getSessionId(), e);
+      return true;
+    }
+  }
+
+  private void delete(PooledSession pooled) {
+    counts.get(pooled.model).decrementAndGet();
+    try {
+      service.deleteSession(pooled.session).execute();
+    } catch (RuntimeException e) {
+      LOG.log(Level.FINE, "Failed to delete the session " + pooled.session.getSessionId(), e);
+    }
+  }
+}
@@ -13,6 +13,8 @@
 package com.ibm.watson.developer_cloud.speech_to_text.v1;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Type;
 import java.util.HashMap;
@@ -40,8 +42,16 @@ import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechSession;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechSessionStatus;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.model.Word;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.model.WordData;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.AudioSegment;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.FlacEncodingInputStream;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.util.MediaTypeUtils;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.PcmFormat;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.SilenceSkippingInputStream;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.SilenceSplitter;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.TimestampOffsetMap;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.VoiceActivityDetector;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.websocket.RecognizeCallback;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.websocket.TimestampRemappingCallback;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.websocket.WebSocketManager;
 import com.ibm.watson.developer_cloud.util.GsonSingleton;
 import com.ibm.watson.developer_cloud.util.RequestUtils;
@@ -51,7 +61,10 @@ import com.ibm.watson.developer_cloud.util.Validator;
 import okhttp3.MediaType;
 import okhttp3.Request;
 import okhttp3.RequestBody;
+import okhttp3.Response;
 import okhttp3.ws.WebSocket;
+import okio.BufferedSink;
+import okio.Okio;
 
 /**
  * The Speech to Text service uses IBM's speech recognition capabilities to convert English speech into text. The
@@ -115,6 +128,9 @@ public class SpeechToText extends WatsonService {
   private static final Type TYPE_WORDS = new TypeToken<List<WordData>>() { }.getType();
 
   private static final String URL = "https://stream.watsonplatform.net/speech-to-text/api";
+  private static final double DEFAULT_SEGMENT_DURATION = 300;
+  private static final int DEFAULT_CONCURRENCY = 4;
+  private static final int WAVE_HEADER_LENGTH = 44;
   private static final Gson GSON = GsonSingleton.getGsonWithoutPrettyPrinting();
 
   /**
@@ -231,6 +247,136 @@ public class SpeechToText extends WatsonService {
     }
   }
 
+  /**
+   * Checks whether the audio should be encoded as FLAC before it is sent.
+   *
+   * @param contentType the audio content type
+   * @param options the recognize options
+   * @return true if {@link RecognizeOptions#flacEncoding()} is set and the audio is WAV or PCM
+   */
+  private static boolean isFlacEncoding(String contentType, RecognizeOptions options) {
+    return (options != null) && Boolean.TRUE.equals(options.flacEncoding()) && PcmFormat.isPcm(contentType);
+  }
+
+  /**
+   * Checks whether long silences should be removed from the audio before it is sent.
+   *
+   * @param contentType the audio content type
+   * @param options the recognize options
+   * @return true if {@link RecognizeOptions#skipSilence()} is set and the audio is WAV or PCM
+   */
+  private static boolean isSkipSilence(String contentType, RecognizeOptions options) {
+    return (options != null) && Boolean.TRUE.equals(options.skipSilence()) && PcmFormat.isPcm(contentType);
+  }
+
+  /**
+   * Gets the content type of the audio once the processing requested in the options has been applied.
+   *
+   * @param format the format of the original audio
+   * @param contentType the content type of the original audio
+   * @param options the recognize options
+   * @return the content type that is sent to the service
+   */
+  private static String getProcessedContentType(PcmFormat format, String contentType, RecognizeOptions options) {
+    if (isFlacEncoding(contentType, options)) {
+      return HttpMediaType.AUDIO_FLAC;
+    }
+    if (isSkipSilence(contentType, options)) {
+      return format.toLinear16().toContentType();
+    }
+    return contentType;
+  }
+
+  /**
+   * Applies the processing requested in the options to PCM audio: silence is removed first, and the result is then
+   * encoded as FLAC.
+   *
+   * @param audio the PCM samples, positioned after any header
+   * @param format the format of the samples
+   * @param contentType the content type of the original audio
+   * @param options the recognize options
+   * @param offsets the map that records the removed silence
+   * @return the processed audio
+   */
+  private static InputStream processAudio(InputStream audio, PcmFormat format, String contentType,
+      RecognizeOptions options, TimestampOffsetMap offsets) {
+    InputStream stream = audio;
+    PcmFormat streamFormat = format;
+    if (isSkipSilence(contentType, options)) {
+      stream = new SilenceSkippingInputStream(stream, streamFormat, new VoiceActivityDetector(), offsets);
+      streamFormat = streamFormat.toLinear16();
+    }
+    if (isFlacEncoding(contentType, options)) {
+      stream = new FlacEncodingInputStream(stream, streamFormat);
+    }
+    return stream;
+  }
+
+  /**
+   * Creates the request body for an audio file. If FLAC encoding or silence removal is requested, the audio is
+   * processed while it is written.
+   *
+   * @param audio the audio file
+   * @param contentType the audio content type
+   * @param options the recognize options
+   * @param offsets the map that records the removed silence
+   * @return the request body
+   */
+  private static RequestBody buildAudioBody(final File audio, final String contentType,
+      final RecognizeOptions options, final TimestampOffsetMap offsets) {
+    if (!isFlacEncoding(contentType, options) && !isSkipSilence(contentType, options)) {
+      return RequestBody.create(MediaType.parse(contentType), audio);
+    }
+
+    final PcmFormat format;
+    try {
+      final InputStream header = new FileInputStream(audio);
+      try {
+        format = PcmFormat.read(header, contentType);
+      } finally {
+        header.close();
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("The audio file header cannot be read", e);
+    }
+    final MediaType mediaType = MediaType.parse(getProcessedContentType(format, contentType, options));
+
+    return new RequestBody() {
+      @Override
+      public MediaType contentType() {
+        return mediaType;
+      }
+
+      @Override
+      public void writeTo(BufferedSink sink) throws IOException {
+        final InputStream file = new FileInputStream(audio);
+        try {
+          final PcmFormat samples = PcmFormat.read(file, contentType);
+          sink.writeAll(Okio.source(processAudio(file, samples, contentType, options, offsets)));
+        } finally {
+          file.close();
+        }
+      }
+    };
+  }
+
+  /**
+   * Wraps a {@link SpeechResults} converter so that times are remapped to the original audio.
+   *
+   * @param converter the converter
+   * @param offsets the map that records the removed silence
+   * @return the remapping converter
+   */
+  private static ResponseConverter<SpeechResults> remapTimestamps(final ResponseConverter<SpeechResults> converter,
+      final TimestampOffsetMap offsets) {
+    return new ResponseConverter<SpeechResults>() {
+      @Override
+      public SpeechResults convert(Response response) {
+        return offsets.remap(converter.convert(response));
+      }
+    };
+  }
+
   /**
    * Upgrades a custom language model to the latest release level of the Speech to Text service. The method bases the
    * upgrade on the latest trained data stored for the custom model. <br/>
@@ -374,12 +520,14 @@ public class SpeechToText extends WatsonService {
       contentType = recognizeOptions.contentType();
     }
     Validator.notNull(contentType, "The audio format cannot be recognized");
+    Validator.isTrue((recognizeOptions == null) || !Boolean.TRUE.equals(recognizeOptions.skipSilence()),
+        "skipSilence is not supported for recognition jobs");
 
     final RequestBuilder requestBuilder = RequestBuilder.post(PATH_RECOGNITIONS);
     buildRecognizeRequest(requestBuilder, recognizeOptions);
     buildRecognitionJobRequest(requestBuilder, recognitionJobOptions);
 
-    requestBuilder.body(RequestBody.create(MediaType.parse(contentType), audio));
+    requestBuilder.body(buildAudioBody(audio, contentType, recognizeOptions, null));
     return createServiceCall(requestBuilder.build(), ResponseConverterUtils.getObject(RecognitionJob.class));
   }
 
@@ -715,10 +863,139 @@ public class SpeechToText extends WatsonService {
       path = String.format(PATH_SESSION_RECOGNIZE, options.sessionId());
     }
 
+    final TimestampOffsetMap offsets = new TimestampOffsetMap();
     final RequestBuilder requestBuilder = RequestBuilder.post(path);
     buildRecognizeRequest(requestBuilder, options);
-    requestBuilder.body(RequestBody.create(MediaType.parse(contentType), audio));
-    return createServiceCall(requestBuilder.build(), ResponseConverterUtils.getObject(SpeechResults.class));
+    requestBuilder.body(buildAudioBody(audio, contentType, options, offsets));
+
+    ResponseConverter<SpeechResults> converter = ResponseConverterUtils.getObject(SpeechResults.class);
+    if (isSkipSilence(contentType, options)) {
+      converter = remapTimestamps(converter, offsets);
+    }
+    return createServiceCall(requestBuilder.build(), converter);
+  }
+
+  /**
+   * Recognizes a long WAV or <code>audio/l16</code> file by splitting it into segments of about five minutes and
+   * recognizing up to four of them at the same time. See
+   * {@link #recognizeParallel(File, RecognizeOptions, double, int)}.
+   *
+   * @param audio the audio file
+   * @param options the recognize options
+   * @return the {@link SpeechResults} of the whole file
+   */
+  public ServiceCall<SpeechResults> recognizeParallel(File audio, RecognizeOptions options) {
+    return recognizeParallel(audio, options, DEFAULT_SEGMENT_DURATION, DEFAULT_CONCURRENCY);
+  }
+
+  /**
+   * Recognizes a long WAV or <code>audio/l16</code> file by splitting it into segments and recognizing them
+   * concurrently. The file is cut in pauses found by a {@link VoiceActivityDetector}, so each segment is about
+   * <code>segmentDuration</code> seconds long; segments are sent as separate asynchronous requests, at most
+   * <code>concurrency</code> at a time, and their results are stitched together: times refer to the whole file and the
+   * final results are in order. The requests run on the dispatcher of the HTTP client, whose limits, such as the
+   * maximum number of requests per host, also apply. Because each segment is only limited by the 100MB request
+   * limit, files of any length can be recognized.<br>
+   * <br>
+   * The service numbers speakers separately for each segment, so with {@link RecognizeOptions#speakerLabels()} the
+   * same person can appear under a different number in each segment.<br>
+   * <br>
+   * Here is an example of how to recognize a recording of an hour:
+   *
+   * <pre>
+   * RecognizeOptions options = new RecognizeOptions.Builder().continuous(true).timestamps(true).build();
+   * SpeechResults results = service.recognizeParallel(new File(&quot;meeting.wav&quot;), options, 300, 8).execute();
+   * </pre>
+   *
+   * @param audio the audio file
+   * @param options the recognize options used for every segment
+   * @param segmentDuration the approximate duration of each segment, in seconds
+   * @param concurrency the maximum number of segments recognized at the same time
+   * @return the {@link SpeechResults} of the whole file
+   */
+  public ServiceCall<SpeechResults> recognizeParallel(File audio, RecognizeOptions options, double segmentDuration,
+      int concurrency) {
+    Validator.isTrue((audio != null) && audio.exists(), "audio file is null or does not exist");
+    Validator.isTrue(segmentDuration > 0, "segmentDuration must be positive");
+    Validator.isTrue(concurrency > 0, "concurrency must be positive");
+    Validator.isTrue((options == null) || (options.sessionId() == null),
+        "a session cannot recognize several segments at the same time");
+
+    String contentType = MediaTypeUtils.getMediaTypeFromFile(audio);
+    if ((options != null) && (options.contentType() != null)) {
+      contentType = options.contentType();
+    }
+    Validator.isTrue(PcmFormat.isPcm(contentType), "only WAV and PCM audio can be recognized in parallel");
+
+    final SilenceSplitter splitter = new SilenceSplitter(new VoiceActivityDetector(), segmentDuration);
+    return new ParallelRecognitionCall(this, audio, contentType, options, splitter, concurrency,
+        getClient().dispatcher().executorService());
+  }
+
+  /**
+   * Recognizes one segment of a file for {@link #recognizeParallel(File, RecognizeOptions, double, int)}. Segments of
+   * WAV files are sent with their own WAV header.
+   *
+   * @param audio the audio file
+   * @param contentType the content type of the file
+   * @param segment the segment
+   * @param options the recognize options
+   * @return the {@link SpeechResults} of the segment, with times relative to the start of the segment
+   */
+  ServiceCall<SpeechResults> recognizeSegment(final File audio, final String contentType, final AudioSegment segment,
+      final RecognizeOptions options) {
+    Validator.isTrue((segment.getLength() / Math.pow(1024, 2)) < 100.0, "The audio segment is greater than 100MB.");
+
+    final boolean processed = isFlacEncoding(contentType, options) || isSkipSilence(contentType, options);
+    final boolean wave = PcmFormat.isWave(contentType);
+    final TimestampOffsetMap offsets = new TimestampOffsetMap();
+    final MediaType mediaType;
+    if (processed) {
+      mediaType = MediaType.parse(getProcessedContentType(segment.getFormat(), contentType, options));
+    } else {
+      mediaType = MediaType.parse(wave ? HttpMediaType.AUDIO_WAV : contentType);
+    }
+
+    final RequestBuilder requestBuilder = RequestBuilder.post(PATH_RECOGNIZE);
+    buildRecognizeRequest(requestBuilder, options);
+    requestBuilder.body(new RequestBody() {
+      @Override
+      public MediaType contentType() {
+        return mediaType;
+      }
+
+      @Override
+      public long contentLength() {
+        if (processed) {
+          return -1;
+        }
+        return wave ? (WAVE_HEADER_LENGTH + segment.getLength()) : segment.getLength();
+      }
+
+      @Override
+      public void writeTo(BufferedSink sink) throws IOException {
+        final FileInputStream file = new FileInputStream(audio);
+        try {
+          file.getChannel().position(segment.getOffset());
+          if (processed) {
+            sink.writeAll(Okio.source(processAudio(file, segment.getFormat(), contentType, options, offsets)));
+          } else {
+            if (wave) {
+              sink.write(segment.getFormat().toWaveHeader());
+            }
+            sink.write(Okio.source(file), segment.getLength());
+          }
+        } finally {
+          file.close();
+        }
+      }
+    });
+
+    ResponseConverter<SpeechResults> converter = ResponseConverterUtils.getObject(SpeechResults.class);
+    if (isSkipSilence(contentType, options)) {
+      converter = remapTimestamps(converter, offsets);
+    }
+    return createServiceCall(requestBuilder.build(), converter);
   }
 
   /**
@@ -765,10 +1042,31 @@ public class SpeechToText extends WatsonService {
 
       @Override
       public void onResponse(String token) {
+        final String contentType = options.contentType();
+        InputStream stream = audio;
+        RecognizeOptions streamOptions = options;
+        RecognizeCallback streamCallback = callback;
+        if (isFlacEncoding(contentType, options) || isSkipSilence(contentType, options)) {
+          final PcmFormat format;
+          try {
+            format = PcmFormat.read(audio, contentType);
+          } catch (IOException e) {
+            callback.onError(e);
+            return;
+          }
+          final TimestampOffsetMap offsets = new TimestampOffsetMap();
+          stream = processAudio(audio, format, contentType, options, offsets);
+          streamOptions =
+              options.newBuilder().contentType(getProcessedContentType(format, contentType, options)).build();
+          if (isSkipSilence(contentType, options)) {
+            streamCallback = new TimestampRemappingCallback(callback, offsets);
+          }
+        }
+
         String url = getEndPoint().replaceFirst("(https|http)", "wss");
         WebSocketManager wsManager =
             new WebSocketManager(url + PATH_RECOGNIZE, configureHttpClient(), defaultHeaders, token);
-        wsManager.recognize(audio, options, callback);
+        wsManager.recognize(stream, streamOptions, streamCallback);
       }
     });
   }
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeakerLabel;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechAlternative;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechResults;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.Transcript;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.TranscriptSegment;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.TranscriptUpdate;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.websocket.BaseRecognizeCallback;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Assembles the results of a streaming recognition into one transcript as they arrive.<br>
+ * <br>
+ * Each {@link SpeechResults} repeats the results from its <code>resultIndex</code> on; the earlier results are final.
+ * The assembler appends every final result once, as a {@link TranscriptSegment}, and only replaces the interim text
+ * that follows them, so the cost of an update depends on the size of the update and not on the length of the
+ * recognition. Speaker labels are merged by time: labels that are not final are replaced by the next labels that
+ * start at or before them, and final labels are kept.<br>
+ * <br>
+ * The assembler is a {@link BaseRecognizeCallback}, so it can be given directly to
+ * {@link SpeechToText#recognizeUsingWebSocket}:
+ *
+ * <pre>
+ * TranscriptAssembler assembler = new TranscriptAssembler();
+ * assembler.addListener(new TranscriptListener() {
+ *   public void onUpdate(TranscriptUpdate update) {
+ *     for (TranscriptSegment segment : update.getFinalized()) {
+ *       System.out.println(segment.getText());
+ *     }
+ *   }
+ * });
+ * service.recognizeUsingWebSocket(audio, options, assembler);
+ * </pre>
+ */
+public class TranscriptAssembler extends BaseRecognizeCallback {
+
+  private final List<TranscriptSegment> segments = new ArrayList<TranscriptSegment>();
+  private final List<SpeakerLabel> finalLabels = new ArrayList<SpeakerLabel>();
+  private final List<SpeakerLabel> interimLabels = new ArrayList<SpeakerLabel>();
+  private final List<TranscriptListener> listeners = new CopyOnWriteArrayList<TranscriptListener>();
+
+  /** The final text followed by the interim text. */
+  private final StringBuilder text = new StringBuilder();
+  private int finalLength;
+
+  /** A live, read-only view of {@link #text}. */
+  private final CharSequence view = new CharSequence() {
+    @Override
+    public int length() {
+      synchronized (TranscriptAssembler.this) {
+        return text.length();
+      }
+    }
+
+    @Override
+    public char charAt(int index) {
+      synchronized (TranscriptAssembler.this) {
+        return text.charAt(index);
+      }
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      synchronized (TranscriptAssembler.this) {
+        return text.substring(start, end);
+      }
+    }
+
+    @Override
+    public String toString() {
+      synchronized (TranscriptAssembler.this) {
+        return text.toString();
+      }
+    }
+  };
+
+  /**
+   * Adds a listener.
+   *
+   * @param listener the listener
+   */
+  public void addListener(TranscriptListener listener) {
+    Validator.notNull(listener, "listener cannot be null");
+    listeners.add(listener);
+  }
+
+  /**
+   * Removes a listener.
+   *
+   * @param listener the listener
+   */
+  public void removeListener(TranscriptListener listener) {
+    listeners.remove(listener);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * com.ibm.watson.developer_cloud.speech_to_text.v1.websocket.BaseRecognizeCallback#onTranscription(com.
+   * ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechResults)
+   */
+  @Override
+  public void onTranscription(SpeechResults speechResults) {
+    update(speechResults);
+  }
+
+  /**
+   * Merges the results of one message into the transcript and notifies the listeners.
+   *
+   * @param speechResults the speech results
+   * @return the changes, or null if the results did not change the transcript
+   */
+  public TranscriptUpdate update(SpeechResults speechResults) {
+    if (speechResults == null) {
+      return null;
+    }
+
+    final TranscriptUpdate update;
+    synchronized (this) {
+      List<TranscriptSegment> finalized = Collections.emptyList();
+      if (speechResults.getResults() != null) {
+        finalized = mergeResults(speechResults.getResultIndex(), speechResults.getResults());
+      }
+
+      List<SpeakerLabel> labels = Collections.emptyList();
+      if (speechResults.getSpeakerLabels() != null) {
+        labels = mergeSpeakerLabels(speechResults.getSpeakerLabels());
+      }
+
+      if ((speechResults.getResults() == null) && labels.isEmpty()) {
+        return null;
+      }
+      update = new TranscriptUpdate(finalized, finalLength, text.substring(finalLength), labels);
+    }
+
+    for (TranscriptListener listener : listeners) {
+      listener.onUpdate(update);
+    }
+    return update;
+  }
+
+  /**
+   * Gets the current transcript: the final text followed by the interim text. This is a live view, not a copy, so
+   * getting it costs nothing; call {@link CharSequence#toString()} on it for a snapshot.
+   *
+   * @return the transcript
+   */
+  public CharSequence getTranscript() {
+    return view;
+  }
+
+  /**
+   * Gets the length of the final text at the start of {@link #getTranscript()}.
+   *
+   * @return the final length
+   */
+  public synchronized int getFinalLength() {
+    return finalLength;
+  }
+
+  /**
+   * Gets the interim text at the end of {@link #getTranscript()}.
+   *
+   * @return the interim text
+   */
+  public synchronized String getInterimText() {
+    return text.substring(finalLength);
+  }
+
+  /**
+   * Gets the final segments, in order.
+   *
+   * @return a copy of the final segments
+   */
+  public synchronized List<TranscriptSegment> getSegments() {
+    return new ArrayList<TranscriptSegment>(segments);
+  }
+
+  /**
+   * Gets the number of final segments.
+   *
+   * @return the segment count
+   */
+  public synchronized int getSegmentCount() {
+    return segments.size();
+  }
+
+  /**
+   * Gets a final segment.
+   *
+   * @param index the index of the segment
+   * @return the segment
+   */
+  public synchronized TranscriptSegment getSegment(int index) {
+    return segments.get(index);
+  }
+
+  /**
+   * Gets the merged speaker labels, final ones first, ordered by time.
+   *
+   * @return a copy of the speaker labels
+   */
+  public synchronized List<SpeakerLabel> getSpeakerLabels() {
+    final List<SpeakerLabel> labels = new ArrayList<SpeakerLabel>(finalLabels.size() + interimLabels.size());
+    labels.addAll(finalLabels);
+    labels.addAll(interimLabels);
+    return labels;
+  }
+
+  /**
+   * Gets the speaker at a time, from the merged speaker labels.
+   *
+   * @param time the time, in seconds
+   * @return the speaker, or null if no label covers the time
+   */
+  public synchronized Integer getSpeaker(double time) {
+    SpeakerLabel label = find(interimLabels, time);
+    if (label == null) {
+      label = find(finalLabels, time);
+    }
+    return label == null ? null : label.getSpeaker();
+  }
+
+  /**
+   * Clears the transcript, e.g. before recognizing another stream.
+   */
+  public synchronized void reset() {
+    segments.clear();
+    finalLabels.clear();
+    interimLabels.clear();
+    text.setLength(0);
+    finalLength = 0;
+  }
+
+  private List<TranscriptSegment> mergeResults(int resultIndex, List<Transcript> results) {
+    final List<TranscriptSegment> finalized = new ArrayList<TranscriptSegment>();
+    text.setLength(finalLength);
+
+    for (int i = 0; i < results.size(); i++) {
+      final int index = resultIndex + i;
+      final Transcript transcript = results.get(i);
+      if ((index < segments.size()) || (transcript == null)) {
+        // already final
+        continue;
+      }
+
+      if (transcript.isFinal() && (text.length() == finalLength)) {
+        final TranscriptSegment segment = new TranscriptSegment(segments.size(), finalLength, transcript);
+        segments.add(segment);
+        finalized.add(segment);
+        text.append(segment.getText());
+        finalLength = text.length();
+      } else {
+        // an interim result, or a final one after an interim result: both are part of the tail
+        final SpeechAlternative best = TranscriptSegment.getBestAlternative(transcript);
+        if ((best != null) && (best.getTranscript() != null)) {
+          text.append(best.getTranscript());
+        }
+      }
+    }
+    return finalized;
+  }
+
+  private List<SpeakerLabel> mergeSpeakerLabels(List<SpeakerLabel> labels) {
+    final double lastFinal = finalLabels.isEmpty() ? Double.NEGATIVE_INFINITY
+        : start(finalLabels.get(finalLabels.size() - 1));
+
+    final List<SpeakerLabel> merged = new ArrayList<SpeakerLabel>(labels.size());
+    for (SpeakerLabel label : labels) {
+      if ((label != null) && (start(label) > lastFinal)) {
+        merged.add(label);
+      }
+    }
+    if (merged.isEmpty()) {
+      return merged;
+    }
+
+    // the new labels replace the interim labels from the time they start
+    final double from = start(merged.get(0));
+    int keep = interimLabels.size();
+    while ((keep > 0) && (start(interimLabels.get(keep - 1)) >= from)) {
+      keep--;
+    }
+    interimLabels.subList(keep, interimLabels.size()).clear();
+    interimLabels.addAll(merged);
+
+    int promoted = 0;
+    while ((promoted < interimLabels.size()) && interimLabels.get(promoted).isFinal()) {
+      promoted++;
+    }
+    finalLabels.addAll(interimLabels.subList(0, promoted));
+    interimLabels.subList(0, promoted).clear();
+    return merged;
+  }
+
+  /**
+   * Finds the last label that starts at or before a time and ends after it, with a binary search.
+   */
+  private static SpeakerLabel find(List<SpeakerLabel> labels, double time) {
+    int low = 0;
+    int high = labels.size() - 1;
+    while (low <= high) {
+      final int middle = (low + high) >>> 1;
+      if (start(labels.get(middle)) <= time) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    if (high < 0) {
+      return null;
+    }
+    final SpeakerLabel label = labels.get(high);
+    final Double to = label.getTo();
+    return (to == null) || (time < to) || (time == start(label)) ? label : null;
+  }
+
+  private static double start(SpeakerLabel label) {
+    return label.getFrom() == null ? 0 : label.getFrom();
+  }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.callback;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.google.gson.JsonParseException;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.SpeechToText;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.RecognitionEvent;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+import com.ibm.watson.developer_cloud.util.Validator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import okio.ByteString;
+
+/**
+ * An embedded HTTP server that receives the notifications sent to a callback URL registered with
+ * {@link SpeechToText#registerCallback(String, String)}, so asynchronous recognition jobs do not have to be polled.<br>
+ * <br>
+ * The server answers the <code>GET</code> request the service sends to validate the URL by echoing its
+ * <code>challenge_string</code>, and delivers every <code>POST</code> notification to the registered
+ * {@link RecognitionEventListener}s. When a secret is given, both requests must carry an
+ * <code>X-Callback-Signature</code> header with the Base64 HMAC-SHA1 signature of the challenge or of the body;
+ * requests with a missing or wrong signature are rejected with <code>401</code> and never reach the listeners, and
+ * notifications longer than {@link #MAX_BODY_LENGTH} are rejected with <code>413</code> without being buffered. The
+ * server replies before calling the listeners, so slow listeners do not make the service retry.<br>
+ * <br>
+ * Here is an example of how to receive the results of the jobs created with a callback URL:
+ *
+ * <pre>
+ * RecognitionCallbackServer server = new RecognitionCallbackServer(8080, &quot;/results&quot;, secret);
+ * server.addListener(new RecognitionEventListener() {
+ *   public void onEvent(RecognitionEvent event) {
+ *     if (event.getEvent() == RecognitionEvent.Type.COMPLETED_WITH_RESULTS) {
+ *       System.out.println(event.getResults());
+ *     }
+ *   }
+ * });
+ * server.start();
+ * service.registerCallback(&quot;https://example.com:8080/results&quot;, secret).execute();
+ * </pre>
+ */
+public class RecognitionCallbackServer {
+
+  /** The name of the header that carries the signature of a request. */
+  public static final String SIGNATURE_HEADER = "X-Callback-Signature";
+
+  /** The name of the query parameter of the registration challenge. */
+  public static final String CHALLENGE_STRING = "challenge_string";
+
+  /** The maximum length of a notification, in bytes. Longer requests are rejected with <code>413</code>. */
+  public static final int MAX_BODY_LENGTH = 4 * 1024 * 1024;
+
+  /** The default number of threads that handle requests. */
+  public static final int DEFAULT_THREADS = 16;
+
+  private static final Logger LOG = Logger.getLogger(RecognitionCallbackServer.class.getName());
+  private static final String HMAC_SHA1 = "HmacSHA1";
+  private static final String UTF_8 = "UTF-8";
+  private static final int BACKLOG = 256;
+
+  private final InetSocketAddress address;
+  private final String path;
+  private final String secret;
+  private final ExecutorService executor;
+  private final boolean ownsExecutor;
+  private final List<RecognitionEventListener> listeners = new CopyOnWriteArrayList<RecognitionEventListener>();
+
+  private HttpServer server;
+
+  /**
+   * Instantiates a new server listening on every interface, with {@link #DEFAULT_THREADS} threads.
+   *
+   * @param port the port, or 0 to use any free port
+   * @param path the path of the callback URL, e.g. <code>/results</code>
+   * @param secret the secret given to {@link SpeechToText#registerCallback(String, String)}, or null to accept
+   *        unsigned requests
+   */
+  public RecognitionCallbackServer(int port, String path, String secret) {
+    this(new InetSocketAddress(port), path, secret, null);
+  }
+
+  /**
+   * Instantiates a new server.
+   *
+   * @param address the address to listen on
+   * @param path the path of the callback URL, e.g. <code>/results</code>
+   * @param secret the secret given to {@link SpeechToText#registerCallback(String, String)}, or null to accept
+   *        unsigned requests
+   * @param executor the executor that handles the requests and calls the listeners, or null to use a pool of
+   *        {@link #DEFAULT_THREADS} threads. An executor given here is not shut down by {@link #stop()}.
+   */
+  public RecognitionCallbackServer(InetSocketAddress address, String path, String secret, ExecutorService executor) {
+    Validator.notNull(address, "address cannot be null");
+    Validator.isTrue((path != null) && path.startsWith("/"), "path must start with /");
+    this.address = address;
+    this.path = path;
+    this.secret = secret;
+    ownsExecutor = executor == null;
+    this.executor = ownsExecutor ? Executors.newFixedThreadPool(DEFAULT_THREADS, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        final Thread thread = new Thread(runnable, "recognition-callback-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    }) : executor;
+  }
+
+  /**
+   * Adds a listener.
+   *
+   * @param listener the listener
+   */
+  public void addListener(RecognitionEventListener listener) {
+    Validator.notNull(listener, "listener cannot be null");
+    listeners.add(listener);
+  }
+
+  /**
+   * Removes a listener.
+   *
+   * @param listener the listener
+   */
+  public void removeListener(RecognitionEventListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Starts listening. A server can only be started once.
+   *
+   * @throws IOException if the address cannot be bound
+   */
+  public synchronized void start() throws IOException {
+    Validator.isTrue(server == null, "the server has already been started");
+    server = HttpServer.create(address, BACKLOG);
+    server.createContext(path, new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          RecognitionCallbackServer.this.handle(exchange);
+        } finally {
+          exchange.close();
+        }
+      }
+    });
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  /**
+   * Gets the address the server is bound to, which includes the actual port when the server was created with port 0.
+   *
+   * @return the address, or null if the server has not been started
+   */
+  public synchronized InetSocketAddress getAddress() {
+    return server == null ? null : server.getAddress();
+  }
+
+  /**
+   * Stops the server. Requests being handled are given one second to complete.
+   */
+  public synchronized void stop() {
+    if (server != null) {
+      server.stop(1);
+    }
+    if (ownsExecutor) {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Signs a message the way the service does: Base64 HMAC-SHA1 with the secret as key.
+   *
+   * @param secret the secret
+   * @param message the message, i.e. the challenge string or the body of a notification
+   * @return the signature
+   */
+  public static String sign(String secret, byte[] message) {
+    Validator.notNull(secret, "secret cannot be null");
+    try {
+      final Mac mac = Mac.getInstance(HMAC_SHA1);
+      mac.init(new SecretKeySpec(secret.getBytes(UTF_8), HMAC_SHA1));
+      return ByteString.of(mac.doFinal(message)).base64();
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    if ("GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+      final String challenge = getChallenge(exchange.getRequestURI().getRawQuery());
+      if (challenge == null) {
+        send(exchange, 400, "missing " + CHALLENGE_STRING);
+      } else if (!isSigned(exchange, challenge.getBytes(UTF_8))) {
+        send(exchange, 401, "invalid signature");
+      } else {
+        send(exchange, 200, challenge);
+      }
+    } else if ("POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+      final byte[] body = readBody(exchange);
+      if (body == null) {
+        send(exchange, 413, "notification too large");
+        return;
+      }
+      if (!isSigned(exchange, body)) {
+        send(exchange, 401, "invalid signature");
+        return;
+      }
+
+      final RecognitionEvent event;
+      try {
+        event = GsonSingleton.getGsonWithoutPrettyPrinting().fromJson(new String(body, UTF_8), RecognitionEvent.class);
+      } catch (JsonParseException e) {
+        send(exchange, 400, "invalid notification");
+        return;
+      }
+      if ((event == null) || (event.getId() == null)) {
+        send(exchange, 400, "invalid notification");
+        return;
+      }
+
+      // reply first: the service waits for the response and retries the notification if it is slow
+      send(exchange, 200, null);
+      dispatch(event);
+    } else {
+      exchange.getResponseHeaders().set("Allow", "GET, POST");
+      send(exchange, 405, null);
+    }
+  }
+
+  private boolean isSigned(HttpExchange exchange, byte[] message) throws UnsupportedEncodingException {
+    if (secret == null) {
+      return true;
+    }
+    final String signature = exchange.getRequestHeaders().getFirst(SIGNATURE_HEADER);
+    // constant time comparison so the signature cannot be guessed from the response time
+    return (signature != null)
+        && MessageDigest.isEqual(sign(secret, message).getBytes(UTF_8), signature.trim().getBytes(UTF_8));
+  }
+
+  private void dispatch(RecognitionEvent event) {
+    for (RecognitionEventListener listener : listeners) {
+      try {
+        listener.onEvent(event);
+      } catch (RuntimeException e) {
+        LOG.log(Level.WARNING, "A listener failed to handle the " + event.getEvent() + " event of " + event.getId(), e);
+      }
+    }
+  }
+
+  private static String getChallenge(String query) throws UnsupportedEncodingException {
+    if (query == null) {
+      return null;
+    }
+    for (String parameter : query.split("&")) {
+      final int equals = parameter.indexOf('=');
+      if ((equals > 0) && CHALLENGE_STRING.equals(parameter.substring(0, equals))) {
+        return URLDecoder.decode(parameter.substring(equals + 1), UTF_8);
+      }
+    }
+    return null;
+  }
+
+  private static void send(HttpExchange exchange, int status, String text) throws IOException {
+    if (text == null) {
+      exchange.sendResponseHeaders(status, -1);
+      return;
+    }
+    final byte[] body = text.getBytes(UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(status, body.length);
+    final OutputStream out = exchange.getResponseBody();
+    out.write(body);
+    out.close();
+  }
+
+  /**
+   * Reads the body of a request, unless it is longer than {@link #MAX_BODY_LENGTH}, so that a client cannot make the
+   * server buffer an unbounded body before its signature is checked.
+   *
+   * @return the body, or null if it is too long
+   */
+  private static byte[] readBody(HttpExchange exchange) throws IOException {
+    final String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+    try {
+      if ((contentLength != null) && (Long.parseLong(contentLength.trim()) > MAX_BODY_LENGTH)) {
+        return null;
+      }
+    } catch (NumberFormatException e) {
+      return null;
+    }
+
+    final InputStream in = exchange.getRequestBody();
+    try {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[4096];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        if ((out.size() + read) > MAX_BODY_LENGTH) {
+          // chunked body without a length
+          return null;
+        }
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.callback;
+
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.RecognitionEvent;
+
+/**
+ * Receives the notifications accepted by a {@link RecognitionCallbackServer}.
+ */
+public interface RecognitionEventListener {
+
+  /**
+   * Called for every notification with a valid signature, on one of the threads of the server. Several notifications
+   * can be delivered at the same time.
+   *
+   * @param event the event
+   */
+  void onEvent(RecognitionEvent event);
+}
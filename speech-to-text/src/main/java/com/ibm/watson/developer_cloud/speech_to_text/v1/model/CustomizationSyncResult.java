@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.model;
+
+import com.ibm.watson.developer_cloud.service.model.GenericModel;
+
+/**
+ * What a <code>CustomizationSync</code> changed in a custom language model.
+ */
+public class CustomizationSyncResult extends GenericModel {
+
+  private int wordsAdded;
+  private int wordsUpdated;
+  private int wordsDeleted;
+  private int corporaAdded;
+  private int corporaDeleted;
+  private boolean trained;
+
+  /**
+   * Gets the number of words that were not in the model.
+   *
+   * @return the words added
+   */
+  public int getWordsAdded() {
+    return wordsAdded;
+  }
+
+  /**
+   * Gets the number of words whose pronunciation or display changed.
+   *
+   * @return the words updated
+   */
+  public int getWordsUpdated() {
+    return wordsUpdated;
+  }
+
+  /**
+   * Gets the number of user words removed from the model.
+   *
+   * @return the words deleted
+   */
+  public int getWordsDeleted() {
+    return wordsDeleted;
+  }
+
+  /**
+   * Gets the number of corpora added to the model.
+   *
+   * @return the corpora added
+   */
+  public int getCorporaAdded() {
+    return corporaAdded;
+  }
+
+  /**
+   * Gets the number of corpora removed from the model.
+   *
+   * @return the corpora deleted
+   */
+  public int getCorporaDeleted() {
+    return corporaDeleted;
+  }
+
+  /**
+   * Checks whether the model was trained. It is only trained if something changed.
+   *
+   * @return true if the model was trained
+   */
+  public boolean isTrained() {
+    return trained;
+  }
+
+  /**
+   * Sets the number of words added.
+   *
+   * @param wordsAdded the new words added
+   */
+  public void setWordsAdded(int wordsAdded) {
+    this.wordsAdded = wordsAdded;
+  }
+
+  /**
+   * Sets the number of words updated.
+   *
+   * @param wordsUpdated the new words updated
+   */
+  public void setWordsUpdated(int wordsUpdated) {
+    this.wordsUpdated = wordsUpdated;
+  }
+
+  /**
+   * Sets the number of words deleted.
+   *
+   * @param wordsDeleted the new words deleted
+   */
+  public void setWordsDeleted(int wordsDeleted) {
+    this.wordsDeleted = wordsDeleted;
+  }
+
+  /**
+   * Sets the number of corpora added.
+   *
+   * @param corporaAdded the new corpora added
+   */
+  public void setCorporaAdded(int corporaAdded) {
+    this.corporaAdded = corporaAdded;
+  }
+
+  /**
+   * Sets the number of corpora deleted.
+   *
+   * @param corporaDeleted the new corpora deleted
+   */
+  public void setCorporaDeleted(int corporaDeleted) {
+    this.corporaDeleted = corporaDeleted;
+  }
+
+  /**
+   * Sets whether the model was trained.
+   *
+   * @param trained the new trained
+   */
+  public void setTrained(boolean trained) {
+    this.trained = trained;
+  }
+}
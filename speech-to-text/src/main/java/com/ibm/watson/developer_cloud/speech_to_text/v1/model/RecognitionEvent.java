@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.model;
+
+import java.util.List;
+
+import com.google.gson.annotations.SerializedName;
+import com.ibm.watson.developer_cloud.service.model.GenericModel;
+
+/**
+ * A notification sent by the service to a registered callback URL when the status of an asynchronous recognition job
+ * changes.
+ */
+public class RecognitionEvent extends GenericModel {
+
+  /**
+   * RecognitionEvent Type.
+   */
+  public enum Type {
+
+    /** The job moved to the processing state. */
+    @SerializedName("recognitions.started") STARTED,
+
+    /** The job completed; the results must be fetched with the job id. */
+    @SerializedName("recognitions.completed") COMPLETED,
+
+    /** The job completed; the notification includes the results. */
+    @SerializedName("recognitions.completed_with_results") COMPLETED_WITH_RESULTS,
+
+    /** The job failed. */
+    @SerializedName("recognitions.failed") FAILED
+  }
+
+  private String id;
+  private Type event;
+  private List<SpeechResults> results;
+
+  @SerializedName("user_token")
+  private String userToken;
+
+  /**
+   * Gets the id of the recognition job.
+   *
+   * @return the id
+   */
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * Gets the event type. It is null for events unknown to this version of the SDK.
+   *
+   * @return the event
+   */
+  public Type getEvent() {
+    return event;
+  }
+
+  /**
+   * Gets the recognition results, only sent with {@link Type#COMPLETED_WITH_RESULTS}.
+   *
+   * @return the results
+   */
+  public List<SpeechResults> getResults() {
+    return results;
+  }
+
+  /**
+   * Gets the user token given when the job was created.
+   *
+   * @return the user token
+   */
+  public String getUserToken() {
+    return userToken;
+  }
+
+  /**
+   * Sets the id of the recognition job.
+   *
+   * @param id the new id
+   */
+  public void setId(String id) {
+    this.id = id;
+  }
+
+  /**
+   * Sets the event type.
+   *
+   * @param event the new event
+   */
+  public void setEvent(Type event) {
+    this.event = event;
+  }
+
+  /**
+   * Sets the recognition results.
+   *
+   * @param results the new results
+   */
+  public void setResults(List<SpeechResults> results) {
+    this.results = results;
+  }
+
+  /**
+   * Sets the user token.
+   *
+   * @param userToken the new user token
+   */
+  public void setUserToken(String userToken) {
+    this.userToken = userToken;
+  }
+}
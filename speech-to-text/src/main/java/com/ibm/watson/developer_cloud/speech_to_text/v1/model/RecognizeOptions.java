@@ -45,6 +45,8 @@ public class RecognizeOptions {
     private Boolean smartFormatting;
     private String customizationId;
     private Boolean speakerLabels;
+    private Boolean flacEncoding;
+    private Boolean skipSilence;
 
     private Builder(RecognizeOptions options) {
       contentType = options.contentType;
@@ -63,6 +65,8 @@ public class RecognizeOptions {
       smartFormatting = options.smartFormatting;
       customizationId = options.customizationId;
       speakerLabels = options.speakerLabels;
+      flacEncoding = options.flacEncoding;
+      skipSilence = options.skipSilence;
     }
 
     /**
@@ -129,6 +133,33 @@ public class RecognizeOptions {
       return this;
     }
 
+    /**
+     * If <code>true</code>, <code>audio/wav</code> and <code>audio/l16</code> audio is encoded to lossless
+     * <code>audio/flac</code> on the client while it is uploaded, which roughly halves the bytes sent for speech. This
+     * option is applied by the SDK and is not sent to the service.
+     *
+     * @param flacEncoding the FLAC encoding
+     * @return the recognize options
+     */
+    public Builder flacEncoding(Boolean flacEncoding) {
+      this.flacEncoding = flacEncoding;
+      return this;
+    }
+
+    /**
+     * If <code>true</code>, long silent regions of <code>audio/wav</code> and <code>audio/l16</code> audio are
+     * shortened on the client before they are uploaded. Timestamps in the returned {@link SpeechResults} are remapped
+     * to the original audio, so results look as if the whole recording had been sent. This option is applied by the SDK
+     * and is not sent to the service. It is not supported for recognition jobs.
+     *
+     * @param skipSilence the skip silence
+     * @return the recognize options
+     */
+    public Builder skipSilence(Boolean skipSilence) {
+      this.skipSilence = skipSilence;
+      return this;
+    }
+
     /**
      * If true, filters profanity from all output except for keyword results by replacing inappropriate words with a
      * series of asterisks. Set the parameter to false to return results with no censoring. Applies to US English
@@ -328,6 +359,8 @@ public class RecognizeOptions {
   private String customizationId;
   @SerializedName("diarization")
   private Boolean speakerLabels;
+  private transient Boolean flacEncoding;
+  private transient Boolean skipSilence;
 
   private RecognizeOptions(Builder builder) {
     contentType = builder.contentType;
@@ -346,6 +379,8 @@ public class RecognizeOptions {
     smartFormatting = builder.smartFormatting;
     customizationId = builder.customizationId;
     speakerLabels = builder.speakerLabels;
+    flacEncoding = builder.flacEncoding;
+    skipSilence = builder.skipSilence;
   }
 
   /**
@@ -393,6 +428,24 @@ public class RecognizeOptions {
     return speakerLabels;
   }
 
+  /**
+   * Gets the FLAC encoding.
+   *
+   * @return the FLAC encoding
+   */
+  public Boolean flacEncoding() {
+    return flacEncoding;
+  }
+
+  /**
+   * Gets the skip silence.
+   *
+   * @return the skip silence
+   */
+  public Boolean skipSilence() {
+    return skipSilence;
+  }
+
   /**
    * Gets the continuous.
    *
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.model;
+
+import java.util.List;
+
+import com.ibm.watson.developer_cloud.service.model.GenericModel;
+
+/**
+ * A final result of a recognition, as kept by the <code>TranscriptAssembler</code>.
+ */
+public class TranscriptSegment extends GenericModel {
+
+  private final int index;
+  private final int offset;
+  private final String text;
+  private final Double startTime;
+  private final Double endTime;
+  private final Transcript transcript;
+
+  /**
+   * Instantiates a new transcript segment from the best alternative of a final result.
+   *
+   * @param index the index of the result in the recognition
+   * @param offset the position of the text in the whole transcript
+   * @param transcript the final result
+   */
+  public TranscriptSegment(int index, int offset, Transcript transcript) {
+    this.index = index;
+    this.offset = offset;
+    this.transcript = transcript;
+
+    final SpeechAlternative best = getBestAlternative(transcript);
+    text = (best == null) || (best.getTranscript() == null) ? "" : best.getTranscript();
+    final List<SpeechTimestamp> timestamps = best == null ? null : best.getTimestamps();
+    if ((timestamps == null) || timestamps.isEmpty()) {
+      startTime = null;
+      endTime = null;
+    } else {
+      startTime = timestamps.get(0).getStartTime();
+      endTime = timestamps.get(timestamps.size() - 1).getEndTime();
+    }
+  }
+
+  /**
+   * Gets the index of the result in the recognition.
+   *
+   * @return the index
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  /**
+   * Gets the position of the text in the whole transcript.
+   *
+   * @return the offset
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  /**
+   * Gets the text of the best alternative.
+   *
+   * @return the text
+   */
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * Gets the start time of the first word, if timestamps were requested.
+   *
+   * @return the start time, in seconds
+   */
+  public Double getStartTime() {
+    return startTime;
+  }
+
+  /**
+   * Gets the end time of the last word, if timestamps were requested.
+   *
+   * @return the end time, in seconds
+   */
+  public Double getEndTime() {
+    return endTime;
+  }
+
+  /**
+   * Gets the final result this segment was made from.
+   *
+   * @return the transcript
+   */
+  public Transcript getTranscript() {
+    return transcript;
+  }
+
+  /**
+   * Gets the first alternative of a result, which is the most likely one.
+   *
+   * @param transcript the result
+   * @return the best alternative, or null if there is none
+   */
+  public static SpeechAlternative getBestAlternative(Transcript transcript) {
+    if ((transcript == null) || (transcript.getAlternatives() == null) || transcript.getAlternatives().isEmpty()) {
+      return null;
+    }
+    return transcript.getAlternatives().get(0);
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.model;
+
+import java.util.List;
+
+import com.ibm.watson.developer_cloud.service.model.GenericModel;
+
+/**
+ * The changes made to a transcript by one {@link SpeechResults}, as reported by the <code>TranscriptAssembler</code>.
+ * The text of the transcript after {@link #getFinalLength()} characters has been replaced by {@link #getInterimText()}.
+ */
+public class TranscriptUpdate extends GenericModel {
+
+  private final List<TranscriptSegment> finalized;
+  private final int finalLength;
+  private final String interimText;
+  private final List<SpeakerLabel> speakerLabels;
+
+  /**
+   * Instantiates a new transcript update.
+   *
+   * @param finalized the segments finalized by the update
+   * @param finalLength the length of the final text after the update
+   * @param interimText the interim text after the update
+   * @param speakerLabels the speaker labels received with the update
+   */
+  public TranscriptUpdate(List<TranscriptSegment> finalized, int finalLength, String interimText,
+      List<SpeakerLabel> speakerLabels) {
+    this.finalized = finalized;
+    this.finalLength = finalLength;
+    this.interimText = interimText;
+    this.speakerLabels = speakerLabels;
+  }
+
+  /**
+   * Gets the segments finalized by the update, in order. The list is empty if no result became final.
+   *
+   * @return the finalized segments
+   */
+  public List<TranscriptSegment> getFinalized() {
+    return finalized;
+  }
+
+  /**
+   * Gets the length of the final text, which never changes once appended.
+   *
+   * @return the final length
+   */
+  public int getFinalLength() {
+    return finalLength;
+  }
+
+  /**
+   * Gets the interim text that follows the final text. It is empty when every result is final.
+   *
+   * @return the interim text
+   */
+  public String getInterimText() {
+    return interimText;
+  }
+
+  /**
+   * Gets the speaker labels received with the update. Labels that are not final replace the previous labels from the
+   * same time on.
+   *
+   * @return the speaker labels
+   */
+  public List<SpeakerLabel> getSpeakerLabels() {
+    return speakerLabels;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.util;
+
+/**
+ * A contiguous range of the samples of a PCM audio file, as returned by {@link SilenceSplitter}.
+ */
+public class AudioSegment {
+
+  private final long offset;
+  private final double startTime;
+  private final PcmFormat format;
+
+  /**
+   * Instantiates a new audio segment.
+   *
+   * @param offset the position of the first sample in the file, in bytes
+   * @param startTime the time of the first sample in the file, in seconds
+   * @param format the format of the samples, with the length of the segment as data length
+   */
+  public AudioSegment(long offset, double startTime, PcmFormat format) {
+    this.offset = offset;
+    this.startTime = startTime;
+    this.format = format;
+  }
+
+  /**
+   * Gets the position of the first sample in the file, in bytes.
+   *
+   * @return the offset
+   */
+  public long getOffset() {
+    return offset;
+  }
+
+  /**
+   * Gets the length of the segment in bytes.
+   *
+   * @return the length
+   */
+  public long getLength() {
+    return format.getDataLength();
+  }
+
+  /**
+   * Gets the time of the first sample in the file, in seconds.
+   *
+   * @return the start time
+   */
+  public double getStartTime() {
+    return startTime;
+  }
+
+  /**
+   * Gets the duration of the segment in seconds.
+   *
+   * @return the duration
+   */
+  public double getDuration() {
+    return format.toSeconds(format.getDataLength() / format.getFrameSize());
+  }
+
+  /**
+   * Gets the format of the samples. Its data length is the length of the segment.
+   *
+   * @return the format
+   */
+  public PcmFormat getFormat() {
+    return format;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return "AudioSegment [offset=" + offset + ", startTime=" + startTime + ", duration=" + getDuration() + "]";
+  }
+}
@@ -0,0 +1,523 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.util;
+
+import java.util.Arrays;
+
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Minimal pure Java FLAC encoder. Each block of PCM samples is encoded as one frame using the best fixed linear
+ * predictor (order 0 to 4) with partitioned Rice coding of the residual, falling back to constant or verbatim subframes
+ * when they are smaller. The output is a valid, streamable FLAC stream that can be sent as <code>audio/flac</code>.
+ *
+ * @see <a href="https://xiph.org/flac/format.html">FLAC format</a>
+ */
+public final class FlacEncoder {
+
+  /** The default number of samples per channel in a FLAC frame. */
+  public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+  private static final int MIN_BLOCK_SIZE = 16;
+  private static final int MAX_BLOCK_SIZE = 65535;
+  private static final int MAX_FIXED_ORDER = 4;
+  private static final int MAX_PARTITION_ORDER = 8;
+  private static final int MAX_RICE_PARAMETER = 14;
+  private static final int STREAMINFO_LENGTH = 34;
+  private static final int FRAME_SYNC = 0x3FFE;
+  private static final int BLOCK_SIZE_16_BIT = 7;
+
+  private static final int[] CRC8_TABLE = new int[256];
+  private static final int[] CRC16_TABLE = new int[256];
+
+  static {
+    for (int i = 0; i < 256; i++) {
+      int crc8 = i;
+      int crc16 = i << 8;
+      for (int j = 0; j < 8; j++) {
+        crc8 = ((crc8 & 0x80) != 0) ? ((crc8 << 1) ^ 0x07) : (crc8 << 1);
+        crc16 = ((crc16 & 0x8000) != 0) ? ((crc16 << 1) ^ 0x8005) : (crc16 << 1);
+      }
+      CRC8_TABLE[i] = crc8 & 0xFF;
+      CRC16_TABLE[i] = crc16 & 0xFFFF;
+    }
+  }
+
+  private final PcmFormat format;
+  private final int blockSize;
+  private final BitWriter writer = new BitWriter();
+  private final int[] residual;
+  private final long[] partitionSums = new long[1 << MAX_PARTITION_ORDER];
+  private final int[] riceParameters = new int[1 << MAX_PARTITION_ORDER];
+  private long frameNumber;
+
+  /**
+   * Instantiates a new FLAC encoder using {@link #DEFAULT_BLOCK_SIZE}.
+   *
+   * @param format the format of the PCM samples to encode
+   */
+  public FlacEncoder(PcmFormat format) {
+    this(format, DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Instantiates a new FLAC encoder.
+   *
+   * @param format the format of the PCM samples to encode
+   * @param blockSize the number of samples per channel in each frame. Smaller blocks lower the latency of a live
+   *        stream at the cost of a slightly worse compression.
+   */
+  public FlacEncoder(PcmFormat format, int blockSize) {
+    Validator.notNull(format, "format cannot be null");
+    Validator.isTrue((blockSize >= MIN_BLOCK_SIZE) && (blockSize <= MAX_BLOCK_SIZE),
+        "blockSize must be between " + MIN_BLOCK_SIZE + " and " + MAX_BLOCK_SIZE);
+    this.format = format;
+    this.blockSize = blockSize;
+    residual = new int[blockSize];
+  }
+
+  /**
+   * Gets the block size.
+   *
+   * @return the number of samples per channel in each frame
+   */
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  /**
+   * Returns the <code>fLaC</code> marker followed by the STREAMINFO metadata block. This must be written before the
+   * first frame.
+   *
+   * @param totalFrames the total number of PCM frames in the stream, or a negative value if unknown
+   * @return the stream header
+   */
+  public byte[] getStreamHeader(long totalFrames) {
+    writer.reset();
+    writer.write('f', 8);
+    writer.write('L', 8);
+    writer.write('a', 8);
+    writer.write('C', 8);
+
+    // metadata block header: last block, type STREAMINFO
+    writer.write(1, 1);
+    writer.write(0, 7);
+    writer.write(STREAMINFO_LENGTH, 24);
+
+    writer.write(blockSize, 16);
+    writer.write(blockSize, 16);
+    writer.write(0, 24); // minimum frame size: unknown
+    writer.write(0, 24); // maximum frame size: unknown
+    writer.write(format.getSampleRate(), 20);
+    writer.write(format.getChannels() - 1, 3);
+    writer.write(format.getBitsPerSample() - 1, 5);
+
+    final long total = (totalFrames < 0) ? 0 : totalFrames;
+    writer.write(total >>> 32, 4);
+    writer.write(total, 32);
+
+    // MD5 signature of the unencoded audio: zero means unknown
+    for (int i = 0; i < 4; i++) {
+      writer.write(0, 32);
+    }
+    return writer.toByteArray();
+  }
+
+  /**
+   * Encodes one frame. Every frame but the last one must contain exactly {@link #getBlockSize()} samples.
+   *
+   * @param samples the signed samples, indexed by channel then sample
+   * @param count the number of samples per channel
+   * @return the encoded frame
+   */
+  public byte[] encodeFrame(int[][] samples, int count) {
+    Validator.isTrue((count > 0) && (count <= blockSize), "count must be between 1 and the block size");
+
+    writer.reset();
+    writeFrameHeader(count);
+
+    for (int c = 0; c < format.getChannels(); c++) {
+      writeSubframe(samples[c], count);
+    }
+
+    writer.alignToByte();
+    writer.write(writer.crc16(0), 16);
+    frameNumber++;
+    return writer.toByteArray();
+  }
+
+  private void writeFrameHeader(int count) {
+    writer.write(FRAME_SYNC, 14);
+    writer.write(0, 1); // reserved
+    writer.write(0, 1); // fixed block size
+
+    writer.write(BLOCK_SIZE_16_BIT, 4);
+
+    final int sampleRate = format.getSampleRate();
+    final int rateCode = getSampleRateCode(sampleRate);
+    writer.write(rateCode, 4);
+    writer.write(format.getChannels() - 1, 4);
+    writer.write(getSampleSizeCode(format.getBitsPerSample()), 3);
+    writer.write(0, 1); // reserved
+
+    writeUtf8(frameNumber);
+    writer.write(count - 1, 16);
+
+    if (rateCode == 0x0C) {
+      writer.write(sampleRate / 1000, 8);
+    } else if (rateCode == 0x0D) {
+      writer.write(sampleRate, 16);
+    } else if (rateCode == 0x0E) {
+      writer.write(sampleRate / 10, 16);
+    }
+
+    writer.write(writer.crc8(0), 8);
+  }
+
+  private void writeSubframe(int[] samples, int count) {
+    final int bitsPerSample = format.getBitsPerSample();
+
+    boolean constant = true;
+    for (int i = 1; (i < count) && constant; i++) {
+      constant = samples[i] == samples[0];
+    }
+    if (constant) {
+      writeSubframeHeader(0);
+      writer.write(samples[0], bitsPerSample);
+      return;
+    }
+
+    final long verbatimBits = (long) count * bitsPerSample;
+    final int order = selectFixedOrder(samples, count, Math.min(MAX_FIXED_ORDER, count - 1));
+    computeResidual(samples, count, order);
+    final int partitionOrder = selectPartitionOrder(count, order);
+    final long fixedBits = ((long) order * bitsPerSample) + riceBits(count, order, partitionOrder);
+
+    if (fixedBits >= verbatimBits) {
+      writeVerbatim(samples, count);
+      return;
+    }
+
+    writeSubframeHeader(0x08 | order);
+    for (int i = 0; i < order; i++) {
+      writer.write(samples[i], bitsPerSample);
+    }
+    writeResidual(count, order, partitionOrder);
+  }
+
+  private void writeVerbatim(int[] samples, int count) {
+    writeSubframeHeader(0x01);
+    for (int i = 0; i < count; i++) {
+      writer.write(samples[i], format.getBitsPerSample());
+    }
+  }
+
+  private void writeSubframeHeader(int type) {
+    writer.write(0, 1);
+    writer.write(type, 6);
+    writer.write(0, 1); // no wasted bits
+  }
+
+  /**
+   * Picks the fixed predictor order with the smallest sum of absolute residuals.
+   */
+  private static int selectFixedOrder(int[] x, int count, int maxOrder) {
+    final long[] errors = new long[MAX_FIXED_ORDER + 1];
+    for (int i = MAX_FIXED_ORDER; i < count; i++) {
+      final long e0 = x[i];
+      final long e1 = e0 - x[i - 1];
+      final long e2 = e1 - ((long) x[i - 1] - x[i - 2]);
+      final long e3 = e2 - (((long) x[i - 1] - x[i - 2]) - ((long) x[i - 2] - x[i - 3]));
+      final long e4 = e3 - ((((long) x[i - 1] - x[i - 2]) - ((long) x[i - 2] - x[i - 3]))
+          - (((long) x[i - 2] - x[i - 3]) - ((long) x[i - 3] - x[i - 4])));
+      errors[0] += Math.abs(e0);
+      errors[1] += Math.abs(e1);
+      errors[2] += Math.abs(e2);
+      errors[3] += Math.abs(e3);
+      errors[4] += Math.abs(e4);
+    }
+
+    int best = 0;
+    for (int order = 1; order <= maxOrder; order++) {
+      if (errors[order] < errors[best]) {
+        best = order;
+      }
+    }
+    return best;
+  }
+
+  private void computeResidual(int[] x, int count, int order) {
+    for (int i = order; i < count; i++) {
+      switch (order) {
+        case 0:
+          residual[i] = x[i];
+          break;
+        case 1:
+          residual[i] = x[i] - x[i - 1];
+          break;
+        case 2:
+          residual[i] = x[i] - (2 * x[i - 1]) + x[i - 2];
+          break;
+        case 3:
+          residual[i] = x[i] - (3 * x[i - 1]) + (3 * x[i - 2]) - x[i - 3];
+          break;
+        default:
+          residual[i] = x[i] - (4 * x[i - 1]) + (6 * x[i - 2]) - (4 * x[i - 3]) + x[i - 4];
+          break;
+      }
+    }
+  }
+
+  /**
+   * Chooses the partition order with the lowest estimated size, and leaves the Rice parameters of that order in
+   * {@link #riceParameters}.
+   */
+  private int selectPartitionOrder(int count, int order) {
+    int maxPartitionOrder = 0;
+    while ((maxPartitionOrder < MAX_PARTITION_ORDER) && ((count % (2 << maxPartitionOrder)) == 0)
+        && ((count >> (maxPartitionOrder + 1)) > order)) {
+      maxPartitionOrder++;
+    }
+
+    // sums of the zigzag encoded residuals at the finest partition order
+    final int partitions = 1 << maxPartitionOrder;
+    final int partitionSize = count >> maxPartitionOrder;
+    Arrays.fill(partitionSums, 0, partitions, 0);
+    for (int p = 0, i = order; p < partitions; p++) {
+      final int end = (p + 1) * partitionSize;
+      long sum = 0;
+      for (; i < end; i++) {
+        sum += zigzag(residual[i]);
+      }
+      partitionSums[p] = sum;
+    }
+
+    int bestOrder = maxPartitionOrder;
+    long bestBits = Long.MAX_VALUE;
+    final long[] sums = partitionSums.clone();
+    for (int partitionOrder = maxPartitionOrder; partitionOrder >= 0; partitionOrder--) {
+      final int n = 1 << partitionOrder;
+      long bits = 0;
+      for (int p = 0; p < n; p++) {
+        final int samples = (count >> partitionOrder) - ((p == 0) ? order : 0);
+        bits += 4 + riceCost(sums[p], samples, bestRiceParameter(sums[p], samples));
+      }
+      if (bits <= bestBits) {
+        bestBits = bits;
+        bestOrder = partitionOrder;
+      }
+      for (int p = 0; p < (n / 2); p++) {
+        sums[p] = sums[2 * p] + sums[(2 * p) + 1];
+      }
+    }
+
+    // recompute the parameters for the chosen order
+    final int n = 1 << bestOrder;
+    final int merge = 1 << (maxPartitionOrder - bestOrder);
+    for (int p = 0; p < n; p++) {
+      long sum = 0;
+      for (int q = 0; q < merge; q++) {
+        sum += partitionSums[(p * merge) + q];
+      }
+      final int samples = (count >> bestOrder) - ((p == 0) ? order : 0);
+      riceParameters[p] = bestRiceParameter(sum, samples);
+    }
+    return bestOrder;
+  }
+
+  private long riceBits(int count, int order, int partitionOrder) {
+    long bits = 2 + 4;
+    final int n = 1 << partitionOrder;
+    final int partitionSize = count >> partitionOrder;
+    for (int p = 0, i = order; p < n; p++) {
+      final int k = riceParameters[p];
+      final int end = (p + 1) * partitionSize;
+      bits += 4;
+      for (; i < end; i++) {
+        bits += (zigzag(residual[i]) >>> k) + 1 + k;
+      }
+    }
+    return bits;
+  }
+
+  private void writeResidual(int count, int order, int partitionOrder) {
+    writer.write(0, 2); // Rice coding with 4-bit parameters
+    writer.write(partitionOrder, 4);
+
+    final int n = 1 << partitionOrder;
+    final int partitionSize = count >> partitionOrder;
+    for (int p = 0, i = order; p < n; p++) {
+      final int k = riceParameters[p];
+      final int end = (p + 1) * partitionSize;
+      writer.write(k, 4);
+      for (; i < end; i++) {
+        final long value = zigzag(residual[i]);
+        writer.writeUnary(value >>> k);
+        if (k > 0) {
+          writer.write(value, k);
+        }
+      }
+    }
+  }
+
+  private static long zigzag(int value) {
+    final long v = value;
+    return (v << 1) ^ (v >> 63);
+  }
+
+  private static int bestRiceParameter(long sum, int samples) {
+    int best = 0;
+    long bestCost = Long.MAX_VALUE;
+    for (int k = 0; k <= MAX_RICE_PARAMETER; k++) {
+      final long cost = riceCost(sum, samples, k);
+      if (cost < bestCost) {
+        bestCost = cost;
+        best = k;
+      }
+    }
+    return best;
+  }
+
+  private static long riceCost(long sum, int samples, int k) {
+    return ((long) samples * (k + 1)) + (sum >>> k);
+  }
+
+  private void writeUtf8(long value) {
+    if (value < 0x80) {
+      writer.write(value, 8);
+      return;
+    }
+    int bytes = 2;
+    while ((bytes < 7) && (value >= (1L << ((5 * bytes) + 1)))) {
+      bytes++;
+    }
+    final int prefix = (0xFF00 >> bytes) & 0xFF;
+    writer.write(prefix | (value >>> (6 * (bytes - 1))), 8);
+    for (int i = bytes - 2; i >= 0; i--) {
+      writer.write(0x80 | ((value >>> (6 * i)) & 0x3F), 8);
+    }
+  }
+
+  private static int getSampleRateCode(int sampleRate) {
+    switch (sampleRate) {
+      case 88200:
+        return 0x03;
+      case 8000:
+        return 0x04;
+      case 16000:
+        return 0x05;
+      case 22050:
+        return 0x06;
+      case 24000:
+        return 0x07;
+      case 32000:
+        return 0x08;
+      case 44100:
+        return 0x09;
+      case 48000:
+        return 0x0A;
+      case 96000:
+        return 0x0B;
+      default:
+        break;
+    }
+    if (((sampleRate % 1000) == 0) && (sampleRate <= 255000)) {
+      return 0x0C;
+    }
+    if (sampleRate <= 65535) {
+      return 0x0D;
+    }
+    if (((sampleRate % 10) == 0) && (sampleRate <= 655350)) {
+      return 0x0E;
+    }
+    return 0x00;
+  }
+
+  private static int getSampleSizeCode(int bitsPerSample) {
+    switch (bitsPerSample) {
+      case 8:
+        return 0x01;
+      case 16:
+        return 0x04;
+      default:
+        return 0x06;
+    }
+  }
+
+  /**
+   * Big-endian bit writer backed by a growable byte array.
+   */
+  private static final class BitWriter {
+    private byte[] buffer = new byte[8192];
+    private int length;
+    private long accumulator;
+    private int bits;
+
+    void reset() {
+      length = 0;
+      accumulator = 0;
+      bits = 0;
+    }
+
+    void write(long value, int count) {
+      accumulator = (accumulator << count) | (value & ((1L << count) - 1));
+      bits += count;
+      while (bits >= 8) {
+        bits -= 8;
+        put((byte) (accumulator >>> bits));
+      }
+    }
+
+    void writeUnary(long zeros) {
+      long remaining = zeros;
+      while (remaining >= 32) {
+        write(0, 32);
+        remaining -= 32;
+      }
+      write(1, (int) remaining + 1);
+    }
+
+    void alignToByte() {
+      if (bits > 0) {
+        write(0, 8 - bits);
+      }
+    }
+
+    int crc8(int from) {
+      int crc = 0;
+      for (int i = from; i < length; i++) {
+        crc = CRC8_TABLE[(crc ^ buffer[i]) & 0xFF];
+      }
+      return crc;
+    }
+
+    int crc16(int from) {
+      int crc = 0;
+      for (int i = from; i < length; i++) {
+        crc = ((crc << 8) ^ CRC16_TABLE[((crc >> 8) ^ buffer[i]) & 0xFF]) & 0xFFFF;
+      }
+      return crc;
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, length);
+    }
+
+    private void put(byte b) {
+      if (length == buffer.length) {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+      buffer[length++] = b;
+    }
+  }
+}
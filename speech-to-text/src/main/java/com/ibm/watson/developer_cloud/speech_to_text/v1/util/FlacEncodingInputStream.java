@@ -0,0 +1,175 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * {@link InputStream} that reads PCM audio (<code>audio/wav</code> or <code>audio/l16</code>) from another stream and
+ * returns it encoded as <code>audio/flac</code>. Audio is encoded one block at a time while it is read, so the whole
+ * recording never needs to be in memory and the first bytes are available as soon as the first block is.<br>
+ * <br>
+ * Here is an example of how to send a WAV file as FLAC:
+ *
+ * <pre>
+ * InputStream wav = new FileInputStream(&quot;sample1.wav&quot;);
+ * InputStream flac = FlacEncodingInputStream.create(wav, HttpMediaType.AUDIO_WAV);
+ * RecognizeOptions options = new RecognizeOptions.Builder().contentType(HttpMediaType.AUDIO_FLAC).build();
+ * service.recognizeUsingWebSocket(flac, options, callback);
+ * </pre>
+ */
+public class FlacEncodingInputStream extends InputStream {
+
+  private final InputStream source;
+  private final PcmFormat format;
+  private final FlacEncoder encoder;
+  private final byte[] pcm;
+  private final int[][] samples;
+
+  private long remaining;
+  private byte[] current;
+  private int position;
+  private boolean finished;
+
+  /**
+   * Instantiates a new FLAC encoding input stream using {@link FlacEncoder#DEFAULT_BLOCK_SIZE}.
+   *
+   * @param source the stream of PCM samples, positioned after any header
+   * @param format the format of the samples
+   */
+  public FlacEncodingInputStream(InputStream source, PcmFormat format) {
+    this(source, format, FlacEncoder.DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Instantiates a new FLAC encoding input stream.
+   *
+   * @param source the stream of PCM samples, positioned after any header
+   * @param format the format of the samples
+   * @param blockSize the number of samples per channel encoded at a time
+   */
+  public FlacEncodingInputStream(InputStream source, PcmFormat format, int blockSize) {
+    Validator.notNull(source, "source cannot be null");
+    this.source = source;
+    this.format = format;
+    encoder = new FlacEncoder(format, blockSize);
+    pcm = new byte[blockSize * format.getFrameSize()];
+    samples = new int[format.getChannels()][blockSize];
+    remaining = (format.getDataLength() < 0) ? Long.MAX_VALUE : format.getDataLength();
+
+    final long totalFrames = (format.getDataLength() < 0) ? -1 : format.getDataLength() / format.getFrameSize();
+    current = encoder.getStreamHeader(totalFrames);
+  }
+
+  /**
+   * Creates a FLAC encoding stream for WAV or <code>audio/l16</code> audio. For WAV the header is read immediately.
+   *
+   * @param audio the audio
+   * @param contentType the content type of <code>audio</code>
+   * @return the FLAC encoded stream
+   * @throws IOException if the WAV header cannot be read
+   */
+  public static FlacEncodingInputStream create(InputStream audio, String contentType) throws IOException {
+    Validator.notNull(audio, "audio cannot be null");
+    Validator.isTrue(PcmFormat.isPcm(contentType), "only WAV and PCM audio can be encoded as FLAC");
+    return new FlacEncodingInputStream(audio, PcmFormat.read(audio, contentType));
+  }
+
+  /**
+   * Gets the format of the PCM source.
+   *
+   * @return the format
+   */
+  public PcmFormat getFormat() {
+    return format;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.InputStream#read()
+   */
+  @Override
+  public int read() throws IOException {
+    final byte[] single = new byte[1];
+    return (read(single, 0, 1) < 0) ? -1 : (single[0] & 0xFF);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.InputStream#read(byte[], int, int)
+   */
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    while (position == current.length) {
+      if (!encodeNextBlock()) {
+        return -1;
+      }
+    }
+    final int count = Math.min(len, current.length - position);
+    System.arraycopy(current, position, b, off, count);
+    position += count;
+    return count;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.InputStream#available()
+   */
+  @Override
+  public int available() {
+    return current.length - position;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.InputStream#close()
+   */
+  @Override
+  public void close() throws IOException {
+    source.close();
+  }
+
+  private boolean encodeNextBlock() throws IOException {
+    if (finished) {
+      return false;
+    }
+
+    final int toRead = (int) Math.min(pcm.length, remaining);
+    final int read = PcmFormat.readFully(source, pcm, 0, toRead, true);
+    remaining -= read;
+    if ((read < pcm.length) || (remaining == 0)) {
+      finished = true;
+    }
+
+    final int frames = read / format.getFrameSize();
+    if (frames == 0) {
+      finished = true;
+      return false;
+    }
+
+    format.decode(pcm, frames, samples);
+    current = encoder.encodeFrame(samples, frames);
+    position = 0;
+    return true;
+  }
+}
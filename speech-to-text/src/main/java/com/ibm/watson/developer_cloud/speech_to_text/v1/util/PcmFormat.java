@@ -0,0 +1,451 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.ibm.watson.developer_cloud.http.HttpMediaType;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Describes uncompressed PCM audio (<code>audio/wav</code> or <code>audio/l16</code>) and converts between the raw
+ * bytes and integer samples. Used by the client side audio processing stages of the Speech to Text service.
+ */
+public final class PcmFormat {
+
+  private static final String RATE = "rate";
+  private static final String CHANNELS = "channels";
+  private static final String ENDIANNESS = "endianness";
+  private static final String BIG_ENDIAN = "big-endian";
+
+  private static final int WAVE_FORMAT_PCM = 1;
+  private static final int WAVE_FORMAT_EXTENSIBLE = 0xFFFE;
+
+  private final int sampleRate;
+  private final int channels;
+  private final int bitsPerSample;
+  private final boolean bigEndian;
+  private final long dataLength;
+
+  /**
+   * Instantiates a new PCM format with an unknown data length.
+   *
+   * @param sampleRate the sample rate in Hz
+   * @param channels the number of interleaved channels
+   * @param bitsPerSample the bits per sample (8, 16 or 24)
+   * @param bigEndian true if multi-byte samples are big-endian
+   */
+  public PcmFormat(int sampleRate, int channels, int bitsPerSample, boolean bigEndian) {
+    this(sampleRate, channels, bitsPerSample, bigEndian, -1);
+  }
+
+  private PcmFormat(int sampleRate, int channels, int bitsPerSample, boolean bigEndian, long dataLength) {
+    Validator.isTrue(sampleRate > 0, "sampleRate must be positive");
+    Validator.isTrue((channels > 0) && (channels <= 8), "channels must be between 1 and 8");
+    Validator.isTrue((bitsPerSample == 8) || (bitsPerSample == 16) || (bitsPerSample == 24),
+        "only 8, 16 and 24 bits per sample are supported");
+    this.sampleRate = sampleRate;
+    this.channels = channels;
+    this.bitsPerSample = bitsPerSample;
+    this.bigEndian = bigEndian;
+    this.dataLength = dataLength;
+  }
+
+  /**
+   * Parses an <code>audio/l16</code> content type such as <code>audio/l16; rate=16000; channels=1</code>. Samples
+   * are little-endian unless <code>endianness=big-endian</code> is specified.
+   *
+   * @param contentType the content type
+   * @return the PCM format
+   * @throws IllegalArgumentException if the content type is not <code>audio/l16</code> or has no rate
+   */
+  public static PcmFormat fromContentType(String contentType) {
+    Validator.isTrue(isRaw(contentType), "contentType is not " + HttpMediaType.AUDIO_RAW);
+
+    Integer rate = null;
+    int channels = 1;
+    boolean bigEndian = false;
+
+    final String[] parameters = contentType.split(";");
+    for (int i = 1; i < parameters.length; i++) {
+      final String[] pair = parameters[i].trim().split("=", 2);
+      if (pair.length != 2) {
+        continue;
+      }
+      final String name = pair[0].trim().toLowerCase();
+      final String value = pair[1].trim();
+      if (RATE.equals(name)) {
+        rate = Integer.valueOf(value);
+      } else if (CHANNELS.equals(name)) {
+        channels = Integer.parseInt(value);
+      } else if (ENDIANNESS.equals(name)) {
+        bigEndian = BIG_ENDIAN.equalsIgnoreCase(value);
+      }
+    }
+
+    Validator.notNull(rate, "When using PCM the audio rate should be specified.");
+    return new PcmFormat(rate, channels, 16, bigEndian);
+  }
+
+  /**
+   * Checks whether a content type describes WAV audio.
+   *
+   * @param contentType the content type
+   * @return true if the content type is <code>audio/wav</code>
+   */
+  public static boolean isWave(String contentType) {
+    return (contentType != null) && contentType.toLowerCase().startsWith(HttpMediaType.AUDIO_WAV);
+  }
+
+  /**
+   * Checks whether a content type describes raw PCM audio.
+   *
+   * @param contentType the content type
+   * @return true if the content type is <code>audio/l16</code>
+   */
+  public static boolean isRaw(String contentType) {
+    return (contentType != null) && contentType.toLowerCase().startsWith(HttpMediaType.AUDIO_RAW);
+  }
+
+  /**
+   * Checks whether a content type can be decoded into samples by this class.
+   *
+   * @param contentType the content type
+   * @return true if the content type is <code>audio/wav</code> or <code>audio/l16</code>
+   */
+  public static boolean isPcm(String contentType) {
+    return isWave(contentType) || isRaw(contentType);
+  }
+
+  /**
+   * Reads the format of the audio in <code>stream</code>. For WAV, the RIFF header is consumed and the stream is left
+   * positioned at the first sample; for <code>audio/l16</code> nothing is read.
+   *
+   * @param stream the audio stream
+   * @param contentType the content type of the stream
+   * @return the PCM format
+   * @throws IOException if the WAV header cannot be read
+   */
+  public static PcmFormat read(InputStream stream, String contentType) throws IOException {
+    if (isWave(contentType)) {
+      return readWaveHeader(stream);
+    }
+    return fromContentType(contentType);
+  }
+
+  /**
+   * Reads a RIFF/WAVE header, skipping any chunk before <code>data</code>. The stream is left positioned at the first
+   * sample.
+   *
+   * @param stream the WAV stream
+   * @return the PCM format
+   * @throws IOException if the header cannot be read or the encoding is not PCM
+   */
+  public static PcmFormat readWaveHeader(InputStream stream) throws IOException {
+    final byte[] header = new byte[12];
+    readFully(stream, header, 0, header.length);
+    if (!"RIFF".equals(new String(header, 0, 4, "US-ASCII")) || !"WAVE".equals(new String(header, 8, 4, "US-ASCII"))) {
+      throw new IOException("Not a RIFF/WAVE stream");
+    }
+
+    final byte[] chunk = new byte[8];
+    int channels = 0;
+    int sampleRate = 0;
+    int bitsPerSample = 0;
+
+    while (true) {
+      readFully(stream, chunk, 0, chunk.length);
+      final String id = new String(chunk, 0, 4, "US-ASCII");
+      final long size = readIntLittleEndian(chunk, 4) & 0xFFFFFFFFL;
+
+      if ("fmt ".equals(id)) {
+        final byte[] fmt = new byte[(int) size + (int) (size & 1)];
+        readFully(stream, fmt, 0, fmt.length);
+        final int encoding = (fmt[0] & 0xFF) | ((fmt[1] & 0xFF) << 8);
+        if ((encoding != WAVE_FORMAT_PCM) && (encoding != WAVE_FORMAT_EXTENSIBLE)) {
+          throw new IOException("Unsupported WAV encoding: " + encoding);
+        }
+        channels = (fmt[2] & 0xFF) | ((fmt[3] & 0xFF) << 8);
+        sampleRate = readIntLittleEndian(fmt, 4);
+        bitsPerSample = (fmt[14] & 0xFF) | ((fmt[15] & 0xFF) << 8);
+      } else if ("data".equals(id)) {
+        if (channels == 0) {
+          throw new IOException("WAV data chunk found before fmt chunk");
+        }
+        // Streamed WAVs (e.g. from Text to Speech) carry 0 or 0xFFFFFFFF as the data size.
+        final long dataLength = ((size == 0) || (size == 0xFFFFFFFFL)) ? -1 : size;
+        return new PcmFormat(sampleRate, channels, bitsPerSample, false, dataLength);
+      } else {
+        skipFully(stream, size + (size & 1));
+      }
+    }
+  }
+
+  /**
+   * Gets the sample rate.
+   *
+   * @return the sample rate in Hz
+   */
+  public int getSampleRate() {
+    return sampleRate;
+  }
+
+  /**
+   * Gets the number of channels.
+   *
+   * @return the channels
+   */
+  public int getChannels() {
+    return channels;
+  }
+
+  /**
+   * Gets the bits per sample.
+   *
+   * @return the bits per sample
+   */
+  public int getBitsPerSample() {
+    return bitsPerSample;
+  }
+
+  /**
+   * Checks if samples are big-endian.
+   *
+   * @return true, if big-endian
+   */
+  public boolean isBigEndian() {
+    return bigEndian;
+  }
+
+  /**
+   * Gets the length of the audio data in bytes, as declared by the WAV header.
+   *
+   * @return the data length, or -1 if unknown
+   */
+  public long getDataLength() {
+    return dataLength;
+  }
+
+  /**
+   * Gets the size of one frame (one sample for every channel) in bytes.
+   *
+   * @return the frame size
+   */
+  public int getFrameSize() {
+    return channels * (bitsPerSample / 8);
+  }
+
+  /**
+   * Converts a number of frames to seconds.
+   *
+   * @param frames the number of frames
+   * @return the duration in seconds
+   */
+  public double toSeconds(long frames) {
+    return (double) frames / sampleRate;
+  }
+
+  /**
+   * Returns the <code>audio/l16</code> content type that describes 16-bit samples with this rate and channel count.
+   *
+   * @return the content type
+   */
+  public String toContentType() {
+    final StringBuilder builder = new StringBuilder(HttpMediaType.createAudioRaw(sampleRate));
+    if (channels != 1) {
+      builder.append("; ").append(CHANNELS).append('=').append(channels);
+    }
+    return builder.append("; ").append(ENDIANNESS).append('=').append(bigEndian ? BIG_ENDIAN : "little-endian")
+        .toString();
+  }
+
+  /**
+   * Returns the 16-bit little-endian format with this rate and channel count, the format described by
+   * {@link #toContentType()} when this format is not already 16-bit.
+   *
+   * @return the 16-bit format
+   */
+  public PcmFormat toLinear16() {
+    return new PcmFormat(sampleRate, channels, 16, false);
+  }
+
+  /**
+   * Returns a copy of this format that describes <code>dataLength</code> bytes of audio.
+   *
+   * @param dataLength the length of the audio in bytes, or -1 if unknown
+   * @return the format
+   */
+  public PcmFormat withDataLength(long dataLength) {
+    return new PcmFormat(sampleRate, channels, bitsPerSample, bigEndian, dataLength);
+  }
+
+  /**
+   * Creates the 44 byte header of a WAV file that holds {@link #getDataLength()} bytes in this format. Big-endian
+   * formats cannot be stored in a WAV file.
+   *
+   * @return the WAV header
+   */
+  public byte[] toWaveHeader() {
+    Validator.isTrue(!bigEndian || (bitsPerSample == 8), "WAV samples must be little-endian");
+    Validator.isTrue(dataLength >= 0, "the data length must be known");
+    final byte[] header = new byte[44];
+    writeAscii("RIFF", header, 0);
+    writeIntLittleEndian((int) (36 + dataLength), header, 4);
+    writeAscii("WAVEfmt ", header, 8);
+    writeIntLittleEndian(16, header, 16);
+    writeIntLittleEndian(WAVE_FORMAT_PCM | (channels << 16), header, 20);
+    writeIntLittleEndian(sampleRate, header, 24);
+    writeIntLittleEndian(sampleRate * getFrameSize(), header, 28);
+    writeIntLittleEndian(getFrameSize() | (bitsPerSample << 16), header, 32);
+    writeAscii("data", header, 36);
+    writeIntLittleEndian((int) dataLength, header, 40);
+    return header;
+  }
+
+  /**
+   * Decodes <code>frames</code> interleaved frames from <code>data</code> into one signed sample array per channel.
+   *
+   * @param data the raw bytes
+   * @param frames the number of frames in <code>data</code>
+   * @param samples the destination, indexed by channel then frame
+   */
+  public void decode(byte[] data, int frames, int[][] samples) {
+    final int bytesPerSample = bitsPerSample / 8;
+    int offset = 0;
+    for (int i = 0; i < frames; i++) {
+      for (int c = 0; c < channels; c++) {
+        samples[c][i] = decodeSample(data, offset, bytesPerSample);
+        offset += bytesPerSample;
+      }
+    }
+  }
+
+  /**
+   * Encodes one signed sample per channel and frame back into interleaved bytes.
+   *
+   * @param samples the samples, indexed by channel then frame
+   * @param frames the number of frames to encode
+   * @param data the destination, at least <code>frames * getFrameSize()</code> long
+   */
+  public void encode(int[][] samples, int frames, byte[] data) {
+    final int bytesPerSample = bitsPerSample / 8;
+    int offset = 0;
+    for (int i = 0; i < frames; i++) {
+      for (int c = 0; c < channels; c++) {
+        encodeSample(samples[c][i], data, offset, bytesPerSample);
+        offset += bytesPerSample;
+      }
+    }
+  }
+
+  private int decodeSample(byte[] data, int offset, int bytesPerSample) {
+    if (bytesPerSample == 1) {
+      // 8-bit WAV samples are unsigned
+      return (data[offset] & 0xFF) - 128;
+    }
+    int value = 0;
+    for (int b = 0; b < bytesPerSample; b++) {
+      final int index = bigEndian ? offset + b : offset + bytesPerSample - 1 - b;
+      value = (value << 8) | (data[index] & 0xFF);
+    }
+    final int shift = 32 - bitsPerSample;
+    return (value << shift) >> shift;
+  }
+
+  private void encodeSample(int value, byte[] data, int offset, int bytesPerSample) {
+    if (bytesPerSample == 1) {
+      data[offset] = (byte) (value + 128);
+      return;
+    }
+    for (int b = 0; b < bytesPerSample; b++) {
+      final int index = bigEndian ? offset + bytesPerSample - 1 - b : offset + b;
+      data[index] = (byte) (value >> (8 * b));
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return "PcmFormat [sampleRate=" + sampleRate + ", channels=" + channels + ", bitsPerSample=" + bitsPerSample
+        + ", bigEndian=" + bigEndian + "]";
+  }
+
+  /**
+   * Reads until <code>length</code> bytes have been read or the stream ends.
+   *
+   * @param stream the stream
+   * @param buffer the destination buffer
+   * @param offset the offset in the buffer
+   * @param length the number of bytes to read
+   * @param allowEof if false, an {@link EOFException} is thrown when the stream ends early
+   * @return the number of bytes read, smaller than <code>length</code> only at the end of the stream
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  static int readFully(InputStream stream, byte[] buffer, int offset, int length, boolean allowEof)
+      throws IOException {
+    int total = 0;
+    while (total < length) {
+      final int read = stream.read(buffer, offset + total, length - total);
+      if (read < 0) {
+        if (!allowEof) {
+          throw new EOFException();
+        }
+        break;
+      }
+      total += read;
+    }
+    return total;
+  }
+
+  private static void readFully(InputStream stream, byte[] buffer, int offset, int length) throws IOException {
+    readFully(stream, buffer, offset, length, false);
+  }
+
+  private static void skipFully(InputStream stream, long count) throws IOException {
+    long remaining = count;
+    while (remaining > 0) {
+      final long skipped = stream.skip(remaining);
+      if (skipped <= 0) {
+        if (stream.read() < 0) {
+          throw new EOFException();
+        }
+        remaining--;
+      } else {
+        remaining -= skipped;
+      }
+    }
+  }
+
+  private static void writeAscii(String value, byte[] data, int offset) {
+    for (int i = 0; i < value.length(); i++) {
+      data[offset + i] = (byte) value.charAt(i);
+    }
+  }
+
+  private static void writeIntLittleEndian(int value, byte[] data, int offset) {
+    for (int b = 0; b < 4; b++) {
+      data[offset + b] = (byte) (value >> (8 * b));
+    }
+  }
+
+  private static int readIntLittleEndian(byte[] data, int offset) {
+    return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8) | ((data[offset + 2] & 0xFF) << 16)
+        | ((data[offset + 3] & 0xFF) << 24);
+  }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * {@link InputStream} that reads PCM audio (<code>audio/wav</code> or <code>audio/l16</code>) from another stream and
+ * returns it as 16-bit <code>audio/l16</code> with long silent regions shortened. A {@link VoiceActivityDetector}
+ * decides which frames are silent; silences longer than {@link VoiceActivityDetector#getMinSilence()} are cut down to
+ * {@link VoiceActivityDetector#getRetainedSilence()}, and long silence at the end of the stream is dropped.<br>
+ * <br>
+ * Every cut is recorded in a {@link TimestampOffsetMap}, which converts times in the results back to the original
+ * audio:
+ *
+ * <pre>
+ * SilenceSkippingInputStream audio = SilenceSkippingInputStream.create(new FileInputStream(&quot;call.wav&quot;),
+ *     HttpMediaType.AUDIO_WAV);
+ * RecognizeOptions options = new RecognizeOptions.Builder().contentType(audio.getContentType()).build();
+ * service.recognizeUsingWebSocket(audio, options, new BaseRecognizeCallback() {
+ *   &#064;Override
+ *   public void onTranscription(SpeechResults speechResults) {
+ *     System.out.println(audio.getTimestampOffsetMap().remap(speechResults));
+ *   }
+ * });
+ * </pre>
+ *
+ * {@link com.ibm.watson.developer_cloud.speech_to_text.v1.model.RecognizeOptions#skipSilence()} does this for you.
+ */
+public class SilenceSkippingInputStream extends InputStream {
+
+  /**
+   * A frame of converted audio and its position in the original audio.
+   */
+  private static final class Frame {
+    private final byte[] data;
+    private final long start;
+    private final int count;
+
+    private Frame(byte[] data, long start, int count) {
+      this.data = data;
+      this.start = start;
+      this.count = count;
+    }
+  }
+
+  private final InputStream source;
+  private final PcmFormat format;
+  private final PcmFormat outputFormat;
+  private final VoiceActivityDetector detector;
+  private final TimestampOffsetMap offsets;
+  private final int frameSize;
+  private final int headFrames;
+  private final int minFrames;
+  private final int tailFrames;
+  private final byte[] pcm;
+  private final int[][] samples;
+  private final ArrayDeque<Frame> pending = new ArrayDeque<Frame>();
+  private final ArrayDeque<byte[]> ready = new ArrayDeque<byte[]>();
+
+  private long remaining;
+  private long originalFrames;
+  private long expectedFrames;
+  private long sentFrames;
+  private int silentFrames;
+  private boolean finished;
+  private byte[] current = new byte[0];
+  private int position;
+
+  /**
+   * Instantiates a new silence skipping input stream. The detector is reset and the offset map is cleared, so both can
+   * be reused when the same audio has to be sent again.
+   *
+   * @param source the stream of PCM samples, positioned after any header
+   * @param format the format of the samples
+   * @param detector the voice activity detector
+   * @param offsets the map that records the removed silence
+   */
+  public SilenceSkippingInputStream(InputStream source, PcmFormat format, VoiceActivityDetector detector,
+      TimestampOffsetMap offsets) {
+    Validator.notNull(source, "source cannot be null");
+    Validator.notNull(format, "format cannot be null");
+    Validator.notNull(detector, "detector cannot be null");
+    Validator.notNull(offsets, "offsets cannot be null");
+    this.source = source;
+    this.format = format;
+    this.detector = detector;
+    this.offsets = offsets;
+    outputFormat = format.toLinear16();
+    remaining = (format.getDataLength() < 0) ? Long.MAX_VALUE : format.getDataLength();
+
+    final long rate = format.getSampleRate();
+    frameSize = (int) Math.max(1, (rate * detector.getFrameDuration()) / 1000);
+    minFrames = toFrames(rate, detector.getMinSilence());
+    headFrames = toFrames(rate, detector.getRetainedSilence() / 2);
+    tailFrames = toFrames(rate, detector.getRetainedSilence()) - headFrames;
+    pcm = new byte[frameSize * format.getFrameSize()];
+    samples = new int[format.getChannels()][frameSize];
+
+    detector.reset();
+    offsets.clear();
+  }
+
+  /**
+   * Creates a silence skipping stream for WAV or <code>audio/l16</code> audio with a default
+   * {@link VoiceActivityDetector}. For WAV the header is read immediately.
+   *
+   * @param audio the audio
+   * @param contentType the content type of <code>audio</code>
+   * @return the silence skipping stream
+   * @throws IOException if the WAV header cannot be read
+   */
+  public static SilenceSkippingInputStream create(InputStream audio, String contentType) throws IOException {
+    Validator.notNull(audio, "audio cannot be null");
+    Validator.isTrue(PcmFormat.isPcm(contentType), "silence can only be removed from WAV and PCM audio");
+    return new SilenceSkippingInputStream(audio, PcmFormat.read(audio, contentType), new VoiceActivityDetector(),
+        new TimestampOffsetMap());
+  }
+
+  /**
+   * Gets the format of the returned audio.
+   *
+   * @return the output format
+   */
+  public PcmFormat getOutputFormat() {
+    return outputFormat;
+  }
+
+  /**
+   * Gets the content type of the returned audio.
+   *
+   * @return the content type
+   */
+  public String getContentType() {
+    return outputFormat.toContentType();
+  }
+
+  /**
+   * Gets the map from times in the returned audio to times in the original audio. It is complete once the stream has
+   * been read to the end, but it is always accurate for the audio read so far.
+   *
+   * @return the timestamp offset map
+   */
+  public TimestampOffsetMap getTimestampOffsetMap() {
+    return offsets;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.InputStream#read()
+   */
+  @Override
+  public int read() throws IOException {
+    final byte[] single = new byte[1];
+    return (read(single, 0, 1) < 0) ? -1 : (single[0] & 0xFF);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.InputStream#read(byte[], int, int)
+   */
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    while (position == current.length) {
+      if (ready.isEmpty() && !processNextFrames()) {
+        return -1;
+      }
+      if (!ready.isEmpty()) {
+        current = ready.poll();
+        position = 0;
+      }
+    }
+    final int count = Math.min(len, current.length - position);
+    System.arraycopy(current, position, b, off, count);
+    position += count;
+    return count;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.InputStream#available()
+   */
+  @Override
+  public int available() {
+    return current.length - position;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.InputStream#close()
+   */
+  @Override
+  public void close() throws IOException {
+    source.close();
+  }
+
+  /**
+   * Classifies frames until at least one is ready to be sent or the source ends.
+   *
+   * @return false if the source ended and nothing else will be sent
+   */
+  private boolean processNextFrames() throws IOException {
+    while (ready.isEmpty()) {
+      if (finished) {
+        return false;
+      }
+
+      final int toRead = (int) Math.min(pcm.length, remaining);
+      final int read = PcmFormat.readFully(source, pcm, 0, toRead, true);
+      remaining -= read;
+      final int count = read / format.getFrameSize();
+      if ((read < pcm.length) || (remaining == 0)) {
+        finished = true;
+      }
+      if (count > 0) {
+        process(count);
+      }
+      if (finished && (silentFrames <= minFrames)) {
+        // a short pause at the end is kept, a long one is dropped
+        flushPending();
+      }
+    }
+    return true;
+  }
+
+  private void process(int count) {
+    format.decode(pcm, count, samples);
+    final boolean speech = detector.isSpeech(samples, count, format.getBitsPerSample());
+    final Frame frame = new Frame(toLinear16(count), originalFrames, count);
+    originalFrames += count;
+
+    if (speech) {
+      flushPending();
+      emit(frame);
+      silentFrames = 0;
+      return;
+    }
+
+    silentFrames++;
+    if (silentFrames <= headFrames) {
+      emit(frame);
+      return;
+    }
+    pending.add(frame);
+    if (silentFrames > minFrames) {
+      while (pending.size() > tailFrames) {
+        pending.removeFirst();
+      }
+    }
+  }
+
+  private byte[] toLinear16(int count) {
+    final int shift = format.getBitsPerSample() - 16;
+    if (shift != 0) {
+      for (int[] channel : samples) {
+        for (int i = 0; i < count; i++) {
+          channel[i] = (shift > 0) ? (channel[i] >> shift) : (channel[i] << -shift);
+        }
+      }
+    }
+    final byte[] data = new byte[count * outputFormat.getFrameSize()];
+    outputFormat.encode(samples, count, data);
+    return data;
+  }
+
+  private void flushPending() {
+    while (!pending.isEmpty()) {
+      emit(pending.poll());
+    }
+  }
+
+  private void emit(Frame frame) {
+    if (frame.start != expectedFrames) {
+      offsets.add(format.toSeconds(sentFrames), format.toSeconds(frame.start));
+    }
+    ready.add(frame.data);
+    sentFrames += frame.count;
+    expectedFrames = frame.start + frame.count;
+  }
+
+  private int toFrames(long rate, int milliseconds) {
+    return (int) (((rate * milliseconds) / 1000) / frameSize);
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.util;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Splits a long PCM audio file (<code>audio/wav</code> or <code>audio/l16</code>) into segments of about the same
+ * duration, cutting in the middle of pauses so that no word is split between two segments. Each cut is placed in the
+ * longest silence found within 20% of the requested segment duration; if there is no silence there the audio is cut
+ * at exactly the requested duration.
+ */
+public class SilenceSplitter {
+
+  private static final double WINDOW = 0.2;
+
+  /**
+   * Counts the bytes read so the position of the first sample after a WAV header is known.
+   */
+  private static final class CountingInputStream extends FilterInputStream {
+    private long count;
+
+    private CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      final int value = super.read();
+      if (value >= 0) {
+        count++;
+      }
+      return value;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      final int read = super.read(b, off, len);
+      if (read > 0) {
+        count += read;
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      final long skipped = super.skip(n);
+      count += skipped;
+      return skipped;
+    }
+  }
+
+  private final VoiceActivityDetector detector;
+  private final double segmentDuration;
+
+  /**
+   * Instantiates a new silence splitter.
+   *
+   * @param detector the detector used to find pauses
+   * @param segmentDuration the approximate duration of each segment, in seconds
+   */
+  public SilenceSplitter(VoiceActivityDetector detector, double segmentDuration) {
+    Validator.notNull(detector, "detector cannot be null");
+    Validator.isTrue(segmentDuration > 0, "segmentDuration must be positive");
+    this.detector = detector;
+    this.segmentDuration = segmentDuration;
+  }
+
+  /**
+   * Reads the whole file and returns its segments in order. The segments cover every complete sample frame of the
+   * file.
+   *
+   * @param audio the audio file
+   * @param contentType the content type of the file
+   * @return the segments
+   * @throws IOException if the file cannot be read
+   */
+  public synchronized List<AudioSegment> split(File audio, String contentType) throws IOException {
+    Validator.isTrue((audio != null) && audio.exists(), "audio file is null or does not exist");
+    Validator.isTrue(PcmFormat.isPcm(contentType), "only WAV and PCM audio can be split");
+
+    final CountingInputStream stream = new CountingInputStream(new BufferedInputStream(new FileInputStream(audio)));
+    try {
+      final PcmFormat format = PcmFormat.read(stream, contentType);
+      final long dataOffset = stream.count;
+      long dataLength = audio.length() - dataOffset;
+      if ((format.getDataLength() >= 0) && (format.getDataLength() < dataLength)) {
+        dataLength = format.getDataLength();
+      }
+      dataLength -= dataLength % format.getFrameSize();
+
+      final int frameSize = (int) Math.max(1, ((long) format.getSampleRate() * detector.getFrameDuration()) / 1000);
+      final BitSet speech = new BitSet();
+      final int frames = classify(stream, format, frameSize, dataLength, speech);
+
+      final List<AudioSegment> segments = new ArrayList<AudioSegment>();
+      final long frameBytes = (long) frameSize * format.getFrameSize();
+      long start = 0;
+      for (int cut : findCuts(speech, frames, frameSize, format)) {
+        segments.add(segment(format, dataOffset, start, (cut * frameBytes) - start));
+        start = cut * frameBytes;
+      }
+      segments.add(segment(format, dataOffset, start, dataLength - start));
+      return segments;
+    } finally {
+      stream.close();
+    }
+  }
+
+  private int classify(InputStream stream, PcmFormat format, int frameSize, long dataLength, BitSet speech)
+      throws IOException {
+    final byte[] pcm = new byte[frameSize * format.getFrameSize()];
+    final int[][] samples = new int[format.getChannels()][frameSize];
+    long remaining = dataLength;
+    int frames = 0;
+
+    detector.reset();
+    while (remaining > 0) {
+      final int read = PcmFormat.readFully(stream, pcm, 0, (int) Math.min(pcm.length, remaining), true);
+      final int count = read / format.getFrameSize();
+      if (count == 0) {
+        break;
+      }
+      remaining -= read;
+      format.decode(pcm, count, samples);
+      speech.set(frames, detector.isSpeech(samples, count, format.getBitsPerSample()));
+      frames++;
+    }
+    return frames;
+  }
+
+  private List<Integer> findCuts(BitSet speech, int frames, int frameSize, PcmFormat format) {
+    final int target = (int) Math.max(1, Math.round((segmentDuration * format.getSampleRate()) / frameSize));
+    final int slack = (int) (target * WINDOW);
+    final List<Integer> cuts = new ArrayList<Integer>();
+
+    int start = 0;
+    while ((frames - start) > (target + slack)) {
+      final int from = (start + target) - slack;
+      final int to = start + target + slack;
+      int best = start + target;
+      int bestLength = 0;
+
+      int i = speech.nextClearBit(from);
+      while (i < to) {
+        int runStart = i;
+        while ((runStart > 0) && !speech.get(runStart - 1)) {
+          runStart--;
+        }
+        int runEnd = speech.nextSetBit(i);
+        if ((runEnd < 0) || (runEnd > frames)) {
+          runEnd = frames;
+        }
+        if ((runEnd - runStart) > bestLength) {
+          bestLength = runEnd - runStart;
+          best = Math.min(Math.max((runStart + runEnd) / 2, from), to - 1);
+        }
+        i = speech.nextClearBit(runEnd);
+      }
+
+      cuts.add(best);
+      start = best;
+    }
+    return cuts;
+  }
+
+  private static AudioSegment segment(PcmFormat format, long dataOffset, long start, long length) {
+    final double startTime = format.toSeconds(start / format.getFrameSize());
+    return new AudioSegment(dataOffset + start, startTime, format.withDataLength(length));
+  }
+}
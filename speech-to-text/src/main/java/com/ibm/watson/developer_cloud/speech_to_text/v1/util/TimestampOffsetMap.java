@@ -0,0 +1,190 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.KeywordsResult;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeakerLabel;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechAlternative;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechResults;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechTimestamp;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechWordAlternatives;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.Transcript;
+
+/**
+ * Maps times in audio that had parts removed, such as the output of {@link SilenceSkippingInputStream}, back to times
+ * in the original audio. The map is a sorted list of segments; each segment starts at a time in the sent audio and
+ * records how far that point is from the same point in the original audio.<br>
+ * <br>
+ * Segments can be added while results are being remapped, so a map can be shared between the thread that sends the
+ * audio and the thread that receives the results.
+ */
+public class TimestampOffsetMap {
+
+  private double[] starts = new double[16];
+  private double[] offsets = new double[16];
+  private int size;
+
+  /**
+   * Adds a segment. Segments must be added in increasing order of <code>sentTime</code>.
+   *
+   * @param sentTime the time, in seconds, in the sent audio where the segment starts
+   * @param originalTime the time, in seconds, in the original audio that <code>sentTime</code> corresponds to
+   */
+  public synchronized void add(double sentTime, double originalTime) {
+    if ((size > 0) && (sentTime <= starts[size - 1])) {
+      throw new IllegalArgumentException("segments must be added in increasing order");
+    }
+    if (size == starts.length) {
+      starts = Arrays.copyOf(starts, size * 2);
+      offsets = Arrays.copyOf(offsets, size * 2);
+    }
+    starts[size] = sentTime;
+    offsets[size] = originalTime - sentTime;
+    size++;
+  }
+
+  /**
+   * Removes all the segments.
+   */
+  public synchronized void clear() {
+    size = 0;
+  }
+
+  /**
+   * Gets the number of segments.
+   *
+   * @return the number of segments
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Converts the start of an event in the sent audio to the original audio. A time on a segment boundary belongs to
+   * the segment that starts there.
+   *
+   * @param time the time, in seconds, in the sent audio
+   * @return the time in the original audio
+   */
+  public synchronized double toOriginalTime(double time) {
+    return time + offset(time, false);
+  }
+
+  /**
+   * Converts the end of an event in the sent audio to the original audio. A time on a segment boundary belongs to the
+   * segment that ends there, so a word that ends right before removed silence does not stretch over it.
+   *
+   * @param time the time, in seconds, in the sent audio
+   * @return the time in the original audio
+   */
+  public synchronized double toOriginalEndTime(double time) {
+    return time + offset(time, true);
+  }
+
+  /**
+   * Remaps, in place, every time in the {@link SpeechResults}: word timestamps, word alternatives, keywords and
+   * speaker labels.
+   *
+   * @param results the speech results
+   * @return the same speech results
+   */
+  public SpeechResults remap(SpeechResults results) {
+    if ((results == null) || (size() == 0)) {
+      return results;
+    }
+
+    if (results.getResults() != null) {
+      for (Transcript transcript : results.getResults()) {
+        remap(transcript);
+      }
+    }
+
+    if (results.getSpeakerLabels() != null) {
+      for (SpeakerLabel label : results.getSpeakerLabels()) {
+        label.setFrom(remapStart(label.getFrom()));
+        label.setTo(remapEnd(label.getTo()));
+      }
+    }
+    return results;
+  }
+
+  private void remap(Transcript transcript) {
+    if (transcript.getAlternatives() != null) {
+      for (SpeechAlternative alternative : transcript.getAlternatives()) {
+        if (alternative.getTimestamps() != null) {
+          for (SpeechTimestamp timestamp : alternative.getTimestamps()) {
+            timestamp.setStartTime(remapStart(timestamp.getStartTime()));
+            timestamp.setEndTime(remapEnd(timestamp.getEndTime()));
+          }
+        }
+      }
+    }
+
+    if (transcript.getKeywordsResult() != null) {
+      for (List<KeywordsResult> keywords : transcript.getKeywordsResult().values()) {
+        for (KeywordsResult keyword : keywords) {
+          keyword.setStartTime(remapStart(keyword.getStartTime()));
+          keyword.setEndTime(remapEnd(keyword.getEndTime()));
+        }
+      }
+    }
+
+    if (transcript.getWordAlternatives() != null) {
+      for (SpeechWordAlternatives alternatives : transcript.getWordAlternatives()) {
+        alternatives.setStartTime(remapStart(alternatives.getStartTime()));
+        alternatives.setEndTime(remapEnd(alternatives.getEndTime()));
+      }
+    }
+  }
+
+  private Double remapStart(Double time) {
+    return (time == null) ? null : toOriginalTime(time);
+  }
+
+  private Double remapEnd(Double time) {
+    return (time == null) ? null : toOriginalEndTime(time);
+  }
+
+  private double offset(double time, boolean end) {
+    int low = 0;
+    int high = size - 1;
+    int segment = -1;
+    while (low <= high) {
+      final int middle = (low + high) >>> 1;
+      if ((starts[middle] < time) || (!end && (starts[middle] == time))) {
+        segment = middle;
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return (segment < 0) ? 0 : offsets[segment];
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public synchronized String toString() {
+    final StringBuilder builder = new StringBuilder("TimestampOffsetMap [");
+    for (int i = 0; i < size; i++) {
+      builder.append((i == 0) ? "" : ", ").append(starts[i]).append("->").append(starts[i] + offsets[i]);
+    }
+    return builder.append(']').toString();
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.util;
+
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Energy and zero-crossing based voice activity detector. Audio is classified in short frames: a frame is speech when
+ * its energy is above both an absolute threshold and an adaptive estimate of the background noise, or when it is
+ * slightly quieter but has the high zero-crossing rate of unvoiced consonants such as "s" or "f".<br>
+ * <br>
+ * A detector keeps the noise estimate of the stream it is classifying, so use one instance per stream. The thresholds
+ * and the amount of silence that is removed are set with the {@link Builder}:
+ *
+ * <pre>
+ * VoiceActivityDetector detector = new VoiceActivityDetector.Builder().minSilence(1000).retainedSilence(400).build();
+ * </pre>
+ */
+public class VoiceActivityDetector {
+
+  /** The default duration of a frame in milliseconds. */
+  public static final int DEFAULT_FRAME_DURATION = 20;
+
+  /** The default minimum duration of the silence that is shortened, in milliseconds. */
+  public static final int DEFAULT_MIN_SILENCE = 1000;
+
+  /** The default duration of the silence kept in place of a removed region, in milliseconds. */
+  public static final int DEFAULT_RETAINED_SILENCE = 400;
+
+  /** The default level, in dBFS, that speech must exceed. */
+  public static final double DEFAULT_THRESHOLD = -45;
+
+  private static final double NOISE_MARGIN = 10;
+  private static final double UNVOICED_MARGIN = 10;
+  private static final double UNVOICED_ZERO_CROSSING_RATE = 0.3;
+  private static final double NOISE_ADAPTATION = 0.05;
+  private static final double SPEECH_ADAPTATION = 0.005;
+  private static final double MIN_LEVEL = -100;
+
+  /**
+   * Builder for {@link VoiceActivityDetector}.
+   */
+  public static class Builder {
+    private int frameDuration = DEFAULT_FRAME_DURATION;
+    private int minSilence = DEFAULT_MIN_SILENCE;
+    private int retainedSilence = DEFAULT_RETAINED_SILENCE;
+    private double threshold = DEFAULT_THRESHOLD;
+
+    /**
+     * Sets the duration of the frames that are classified, in milliseconds. Defaults to
+     * {@link VoiceActivityDetector#DEFAULT_FRAME_DURATION}.
+     *
+     * @param frameDuration the frame duration
+     * @return the builder
+     */
+    public Builder frameDuration(int frameDuration) {
+      this.frameDuration = frameDuration;
+      return this;
+    }
+
+    /**
+     * Sets the shortest silence, in milliseconds, that is shortened. Pauses shorter than this are sent unchanged.
+     * Defaults to {@link VoiceActivityDetector#DEFAULT_MIN_SILENCE}.
+     *
+     * @param minSilence the minimum silence
+     * @return the builder
+     */
+    public Builder minSilence(int minSilence) {
+      this.minSilence = minSilence;
+      return this;
+    }
+
+    /**
+     * Sets the silence, in milliseconds, that is kept when a longer silence is shortened. Half of it is kept after the
+     * preceding speech and half before the following speech so that words are not clipped. Defaults to
+     * {@link VoiceActivityDetector#DEFAULT_RETAINED_SILENCE}.
+     *
+     * @param retainedSilence the retained silence
+     * @return the builder
+     */
+    public Builder retainedSilence(int retainedSilence) {
+      this.retainedSilence = retainedSilence;
+      return this;
+    }
+
+    /**
+     * Sets the level, in dBFS, below which audio is always considered silence. Defaults to
+     * {@link VoiceActivityDetector#DEFAULT_THRESHOLD}.
+     *
+     * @param threshold the threshold
+     * @return the builder
+     */
+    public Builder threshold(double threshold) {
+      this.threshold = threshold;
+      return this;
+    }
+
+    /**
+     * Builds the voice activity detector.
+     *
+     * @return the voice activity detector
+     */
+    public VoiceActivityDetector build() {
+      return new VoiceActivityDetector(this);
+    }
+  }
+
+  private final int frameDuration;
+  private final int minSilence;
+  private final int retainedSilence;
+  private final double threshold;
+
+  private double noiseLevel = Double.NaN;
+
+  /**
+   * Instantiates a new voice activity detector with the default settings.
+   */
+  public VoiceActivityDetector() {
+    this(new Builder());
+  }
+
+  private VoiceActivityDetector(Builder builder) {
+    Validator.isTrue(builder.frameDuration > 0, "frameDuration must be positive");
+    Validator.isTrue(builder.retainedSilence >= 0, "retainedSilence cannot be negative");
+    Validator.isTrue(builder.minSilence > builder.retainedSilence, "minSilence must be greater than retainedSilence");
+    frameDuration = builder.frameDuration;
+    minSilence = builder.minSilence;
+    retainedSilence = builder.retainedSilence;
+    threshold = builder.threshold;
+  }
+
+  /**
+   * Gets the frame duration in milliseconds.
+   *
+   * @return the frame duration
+   */
+  public int getFrameDuration() {
+    return frameDuration;
+  }
+
+  /**
+   * Gets the minimum silence in milliseconds.
+   *
+   * @return the minimum silence
+   */
+  public int getMinSilence() {
+    return minSilence;
+  }
+
+  /**
+   * Gets the retained silence in milliseconds.
+   *
+   * @return the retained silence
+   */
+  public int getRetainedSilence() {
+    return retainedSilence;
+  }
+
+  /**
+   * Gets the threshold in dBFS.
+   *
+   * @return the threshold
+   */
+  public double getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Classifies one frame of audio and updates the noise estimate.
+   *
+   * @param samples the samples, indexed by channel then frame
+   * @param count the number of samples per channel in the frame
+   * @param bitsPerSample the bits per sample, used to scale the samples to full scale
+   * @return true if the frame contains speech
+   */
+  public boolean isSpeech(int[][] samples, int count, int bitsPerSample) {
+    if (count == 0) {
+      return false;
+    }
+
+    double energy = 0;
+    for (int[] channel : samples) {
+      for (int i = 0; i < count; i++) {
+        energy += (double) channel[i] * channel[i];
+      }
+    }
+    final double fullScale = (double) (1L << (bitsPerSample - 1));
+    final double meanSquare = energy / ((double) count * samples.length * fullScale * fullScale);
+    final double level = (meanSquare > 0) ? Math.max(MIN_LEVEL, 10 * Math.log10(meanSquare)) : MIN_LEVEL;
+
+    if (Double.isNaN(noiseLevel)) {
+      // until quieter audio is seen, only the absolute threshold applies
+      noiseLevel = threshold - NOISE_MARGIN;
+    }
+    if (level < noiseLevel) {
+      noiseLevel = level;
+    } else if (level < (noiseLevel + NOISE_MARGIN)) {
+      noiseLevel += NOISE_ADAPTATION * (level - noiseLevel);
+    } else {
+      // creep up during loud audio so that a steady loud background is eventually treated as noise
+      noiseLevel += SPEECH_ADAPTATION * (level - noiseLevel);
+    }
+
+    final double speechLevel = Math.max(threshold, noiseLevel + NOISE_MARGIN);
+    if (level > speechLevel) {
+      return true;
+    }
+    return (level > (speechLevel - UNVOICED_MARGIN))
+        && (zeroCrossingRate(samples[0], count) > UNVOICED_ZERO_CROSSING_RATE);
+  }
+
+  /**
+   * Forgets the noise estimate so the detector can be used for another stream.
+   */
+  public void reset() {
+    noiseLevel = Double.NaN;
+  }
+
+  private static double zeroCrossingRate(int[] samples, int count) {
+    int crossings = 0;
+    for (int i = 1; i < count; i++) {
+      if ((samples[i - 1] < 0) != (samples[i] < 0)) {
+        crossings++;
+      }
+    }
+    return (double) crossings / count;
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.websocket;
+
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechResults;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.TimestampOffsetMap;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * A {@link RecognizeCallback} that remaps the times in every {@link SpeechResults} with a {@link TimestampOffsetMap}
+ * before passing them on, so results of audio that had silence removed refer to the original audio.
+ */
+public class TimestampRemappingCallback implements RecognizeCallback {
+
+  private final RecognizeCallback delegate;
+  private final TimestampOffsetMap offsets;
+
+  /**
+   * Instantiates a new timestamp remapping callback.
+   *
+   * @param delegate the callback that receives the remapped results
+   * @param offsets the map that records the removed audio
+   */
+  public TimestampRemappingCallback(RecognizeCallback delegate, TimestampOffsetMap offsets) {
+    Validator.notNull(delegate, "delegate cannot be null");
+    Validator.notNull(offsets, "offsets cannot be null");
+    this.delegate = delegate;
+    this.offsets = offsets;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * com.ibm.watson.developer_cloud.speech_to_text.v1.websocket.RecognizeCallback#onTranscription(com.
+   * ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechResults)
+   */
+  @Override
+  public void onTranscription(SpeechResults speechResults) {
+    delegate.onTranscription(offsets.remap(speechResults));
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.speech_to_text.v1.websocket.RecognizeCallback#onConnected()
+   */
+  @Override
+  public void onConnected() {
+    delegate.onConnected();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * com.ibm.watson.developer_cloud.speech_to_text.v1.websocket.RecognizeCallback#onError(java.lang
+   * .Exception)
+   */
+  @Override
+  public void onError(Exception e) {
+    delegate.onError(e);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * com.ibm.watson.developer_cloud.speech_to_text.v1.websocket.RecognizeCallback#onDisconnected()
+   */
+  @Override
+  public void onDisconnected() {
+    delegate.onDisconnected();
+  }
+}
@@ -15,22 +15,47 @@ package com.ibm.watson.developer_cloud.conversation.v1;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.conversation.v1.model.ContextDelta;
 import com.ibm.watson.developer_cloud.conversation.v1.model.Entity;
 import com.ibm.watson.developer_cloud.conversation.v1.model.Intent;
+import com.ibm.watson.developer_cloud.conversation.v1.model.LabeledUtterance;
 import com.ibm.watson.developer_cloud.conversation.v1.model.MessageRequest;
 import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponse;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponseView;
+import com.ibm.watson.developer_cloud.conversation.v1.model.WorkspaceTestResult;
 import com.ibm.watson.developer_cloud.http.HttpHeaders;
+import com.ibm.watson.developer_cloud.http.HttpMediaType;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
 
+import jersey.repackaged.jsr166e.CompletableFuture;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.RecordedRequest;
 
 /**
@@ -131,6 +156,326 @@ public class ConversationTest extends WatsonServiceUnitTest {
     assertEquals(serviceResponse, mockResponse);
   }
 
+  /**
+   * Test send message with a large context. The body is streamed, so it must be the same as the JSON tree would be,
+   * without HTML escaping or null values.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   * @throws InterruptedException the interrupted exception
+   */
+  @Test
+  public void testSendMessageWithLargeContext() throws IOException, InterruptedException {
+    MessageResponse mockResponse = loadFixture(FIXTURE, MessageResponse.class);
+    server.enqueue(jsonResponse(mockResponse));
+
+    Map<String, Object> context = new HashMap<String, Object>();
+    context.put("missing", null);
+    for (int i = 0; i < 2000; i++) {
+      context.put("note_" + i, "<b>Tom & Jerry's</b> = \"\u00e9\"");
+    }
+    MessageRequest options = new MessageRequest.Builder().inputText("I'd like a table").context(context).build();
+
+    service.message(WORKSPACE_ID, options).execute();
+    RecordedRequest request = server.takeRequest();
+
+    String expected = GsonSingleton.getGson().toJsonTree(options).getAsJsonObject().toString();
+    assertEquals(HttpMediaType.JSON.toString(), request.getHeader(HttpHeaders.CONTENT_TYPE));
+    assertEquals(expected, request.getBody().readUtf8());
+  }
+
+
+  /**
+   * Test the in-memory context store: contexts round trip through the binary form, only the changed keys are in the
+   * delta of a turn, and the least recently used conversation is forgotten.
+   */
+  @Test
+  public void testInMemoryContextStore() {
+    MessageResponse response = GsonSingleton.getGson().fromJson("{\"context\":{\"conversation_id\":\"c1\","
+        + "\"system\":{\"dialog_stack\":[\"root\"],\"dialog_turn_counter\":1.0},\"score\":0.25,"
+        + "\"name\":\"J\\u00fcrgen\",\"vip\":true,\"notes\":null}}", MessageResponse.class);
+    Map<String, Object> context = response.getContext();
+
+    InMemoryContextStore store = new InMemoryContextStore(2);
+    ContextDelta delta = store.put(context);
+    assertEquals(context.keySet(), delta.getChanged().keySet());
+    assertTrue(delta.getRemoved().isEmpty());
+
+    Map<String, Object> stored = store.get("c1");
+    assertEquals(context, stored);
+    assertEquals(GsonSingleton.getGson().toJson(context), GsonSingleton.getGson().toJson(stored));
+
+    stored.put("score", 0.5);
+    stored.remove("vip");
+    delta = store.put(stored);
+    assertEquals(Collections.singleton("score"), delta.getChanged().keySet());
+    assertEquals(Collections.singleton("vip"), delta.getRemoved());
+    assertTrue(store.put(store.get("c1")).isEmpty());
+
+    store.put(Collections.<String, Object>singletonMap(ConversationContextStore.CONVERSATION_ID, "c2"));
+    store.get("c1");
+    store.put(Collections.<String, Object>singletonMap(ConversationContextStore.CONVERSATION_ID, "c3"));
+    assertEquals(2, store.size());
+    assertNotNull(store.get("c1"));
+    assertNull(store.get("c2"));
+  }
+
+  /**
+   * Test the external context store: only the changed keys are saved, another instance of the application sees the
+   * context saved by the first one, and a put is not compared against a context it saved before.
+   */
+  @Test
+  public void testExternalContextStore() {
+    final Map<String, Map<String, byte[]>> hashes = new HashMap<String, Map<String, byte[]>>();
+    final List<ContextDelta> saved = new ArrayList<ContextDelta>();
+    ContextBackend backend = new ContextBackend() {
+      @Override
+      public Map<String, byte[]> load(String conversationId) {
+        return hashes.get(conversationId);
+      }
+
+      @Override
+      public void save(ContextDelta delta) {
+        saved.add(delta);
+        Map<String, byte[]> hash = hashes.get(delta.getConversationId());
+        if (hash == null) {
+          hash = new HashMap<String, byte[]>();
+          hashes.put(delta.getConversationId(), hash);
+        }
+        hash.putAll(delta.getChanged());
+        hash.keySet().removeAll(delta.getRemoved());
+      }
+
+      @Override
+      public void delete(String conversationId) {
+        hashes.remove(conversationId);
+      }
+    };
+    ExternalContextStore first = new ExternalContextStore(backend, 10);
+    ExternalContextStore second = new ExternalContextStore(backend, 10);
+
+    assertNull(first.get("c1"));
+    Map<String, Object> context = new HashMap<String, Object>();
+    context.put(ConversationContextStore.CONVERSATION_ID, "c1");
+    context.put("turn", 1.0);
+    context.put("cart", Arrays.asList("pizza", "soda"));
+    first.put(context);
+    assertEquals(3, saved.get(0).getChanged().size());
+
+    Map<String, Object> next = second.get("c1");
+    assertEquals(context, next);
+    next.put("turn", 2.0);
+    second.put(next);
+    assertEquals(Collections.singleton("turn"), saved.get(1).getChanged().keySet());
+
+    assertEquals(2.0, first.get("c1").get("turn"));
+    first.put(first.get("c1"));
+    assertEquals(2, saved.size());
+
+    second.remove("c1");
+    assertNull(first.get("c1"));
+
+    // a put without a get compares against the context as saved by the other instance
+    context.put(ConversationContextStore.CONVERSATION_ID, "c2");
+    first.put(context);
+    next = second.get("c2");
+    next.put("turn", 2.0);
+    second.put(next);
+    first.put(context);
+    assertEquals(Collections.singleton("turn"), saved.get(4).getChanged().keySet());
+    assertEquals(1.0, second.get("c2").get("turn"));
+  }
+
+  /**
+   * Test the conversation executor: the turns of a conversation are sent in order, each with the context returned by
+   * the previous one, while another conversation is answered in the meantime.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testConversationExecutor() throws Exception {
+    final CountDownLatch otherAnswered = new CountDownLatch(1);
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        MessageRequest message = GsonSingleton.getGson().fromJson(request.getBody().readUtf8(), MessageRequest.class);
+        if ("slow".equals(message.inputText())) {
+          otherAnswered.await(5, TimeUnit.SECONDS);
+        } else if ("other".equals(message.inputText())) {
+          otherAnswered.countDown();
+        }
+        Map<String, Object> context = new HashMap<String, Object>();
+        if (message.context() != null) {
+          context.putAll(message.context());
+        }
+        String turns = context.containsKey("turns") ? context.get("turns") + "," : "";
+        context.put("turns", turns + message.inputText());
+        MessageResponse response = new MessageResponse();
+        response.setContext(context);
+        return jsonResponse(response);
+      }
+    });
+
+    ConversationExecutor executor = new ConversationExecutor(service, WORKSPACE_ID, 4, 8);
+    CompletableFuture<MessageResponse> slow =
+        executor.submit("a", new MessageRequest.Builder().inputText("slow").build());
+    CompletableFuture<MessageResponse> second =
+        executor.submit("a", new MessageRequest.Builder().inputText("second").build());
+    CompletableFuture<MessageResponse> other =
+        executor.submit("b", new MessageRequest.Builder().inputText("other").build());
+    assertEquals(1, executor.getQueueDepth());
+
+    assertEquals("slow,second", second.get(5, TimeUnit.SECONDS).getContext().get("turns"));
+    assertEquals("slow", slow.get().getContext().get("turns"));
+    assertEquals("other", other.get().getContext().get("turns"));
+    assertEquals(0, executor.getQueueDepth());
+    assertEquals(0, executor.getInFlight());
+
+    executor.end("a");
+    assertEquals("again", executor.submit("a", new MessageRequest.Builder().inputText("again").build())
+        .get(5, TimeUnit.SECONDS).getContext().get("turns"));
+  }
+
+  /**
+   * Test that the conversation executor rejects the turns that exceed the capacity of a stripe.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testConversationExecutorCapacity() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        release.await(5, TimeUnit.SECONDS);
+        return jsonResponse(new MessageResponse());
+      }
+    });
+
+    ConversationExecutor executor = new ConversationExecutor(service, WORKSPACE_ID, 1, 2);
+    MessageRequest request = new MessageRequest.Builder().inputText("hi").build();
+    CompletableFuture<MessageResponse> first = executor.submit("a", request);
+    executor.submit("a", request);
+    try {
+      executor.submit("b", request);
+      fail("the stripe is full");
+    } catch (RejectedExecutionException e) {
+      assertArrayEquals(new int[] { 2 }, executor.getStripeDepths());
+    }
+    release.countDown();
+    assertNotNull(first.get(5, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Test the lazy view of a message response: the fields read from the view are the same as in the parsed response.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testSendMessageView() throws Exception {
+    String fixture = getStringFromInputStream(new FileInputStream(FIXTURE));
+    server.enqueue(new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.APPLICATION_JSON).setBody(fixture));
+
+    MessageRequest options = new MessageRequest.Builder().inputText("I'd like a quote").build();
+    MessageResponseView view = service.messageView(WORKSPACE_ID, options).execute();
+    MessageResponse expected = loadFixture(FIXTURE, MessageResponse.class);
+
+    assertEquals(expected.getText(), view.getText());
+    assertEquals(expected.getTextConcatenated(" "), view.getTextConcatenated(" "));
+    assertEquals("get_quote", view.getTopIntent().getIntent());
+    assertEquals(expected.getEntities(), view.getEntities());
+    assertEquals(expected.getContext(), view.getContext());
+    assertNull(view.getConversationId());
+    assertEquals(expected, view.toMessageResponse());
+  }
+
+  /**
+   * Test the lazy view of a message response with escaped names, brackets in strings and several intents.
+   */
+  @Test
+  public void testMessageResponseView() {
+    String json = "{ \"context\" : {\"conversation_id\":\"c\\\"1\",\"system\":{\"dialog_stack\":[\"root\"],"
+        + "\"dialog_turn_counter\":2}},\n\"out\\u0070ut\":{\"nodes\":[{\"a\":[]}],\"text\":[\"a ]}\",\"b\"]},"
+        + "\"intents\":[{\"intent\":\"x\",\"confidence\":0.2},{\"intent\":\"y\",\"confidence\":0.7}],"
+        + "\"entities\":null, \"alternate_intents\":true}";
+    MessageResponseView view = new MessageResponseView(json.getBytes(Charset.forName("UTF-8")));
+
+    assertEquals(Arrays.asList("a ]}", "b"), view.getText());
+    assertEquals("y", view.getTopIntent().getIntent());
+    assertNull(view.getEntities());
+    assertNull(view.getInput());
+    assertEquals("c\"1", view.getConversationId());
+    assertEquals(2.0, view.getSystem().get("dialog_turn_counter"));
+    assertEquals(view.toMessageResponse().getContext(), view.getContext());
+    assertEquals(json, view.toString());
+  }
+
+  /**
+   * Test the workspace tester against the mock server, then replay its recording from a replay server.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testWorkspaceTester() throws Exception {
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        MessageRequest message = GsonSingleton.getGson().fromJson(request.getBody().readUtf8(), MessageRequest.class);
+        MessageResponse response = new MessageResponse();
+        if (message.inputText().contains("pizza")) {
+          response.setIntents(Arrays.asList(new Intent("greeting", 0.1), new Intent("order", 0.8)));
+          response.setEntities(Collections.singletonList(new Entity("size", "large", null)));
+        } else if (message.inputText().contains("fail")) {
+          return new MockResponse().setResponseCode(500).setBody("{\"error\":\"boom\",\"code\":500}");
+        } else {
+          response.setIntents(Collections.singletonList(new Intent("greeting", 0.9)));
+        }
+        return jsonResponse(response);
+      }
+    });
+
+    File utterances = File.createTempFile("utterances", ".csv");
+    utterances.deleteOnExit();
+    Writer writer = new OutputStreamWriter(new FileOutputStream(utterances), "UTF-8");
+    writer.write("text,intent,entities\n\"a large pizza, please\",order,size:large\nhello,greeting,\n"
+        + "\"hi, \"\"pizza\"\" place\",greeting\nfail\nfail\n");
+    writer.close();
+    List<LabeledUtterance> labeled = WorkspaceTester.readUtterances(utterances);
+    assertEquals(5, labeled.size());
+    assertEquals("hi, \"pizza\" place", labeled.get(2).getText());
+    assertNull(labeled.get(2).getEntities());
+    assertTrue(labeled.get(1).getEntities().isEmpty());
+
+    File recording = File.createTempFile("recording", ".json");
+    recording.deleteOnExit();
+    WorkspaceTestResult result =
+        new WorkspaceTester.Builder(service, WORKSPACE_ID).concurrency(2).rateLimit(100).record(recording).build()
+            .run(labeled);
+    assertEquals(5, result.getUtterances());
+    assertEquals(3, result.getIntentsChecked());
+    assertEquals(2, result.getIntentsCorrect());
+    assertEquals(2, result.getEntitiesChecked());
+    assertEquals(2, result.getEntitiesCorrect());
+    // the same text twice is reported twice
+    assertEquals(2, result.getFailed());
+    assertEquals(Arrays.asList(3, 4), new ArrayList<Integer>(result.getFailures().keySet()));
+    assertEquals(Collections.singleton(2), result.getMismatches().keySet());
+    assertEquals("intent: expected greeting, got order", result.getMismatches().get(2));
+    assertTrue(result.getP50() > 0 && result.getP50() <= result.getP95() && result.getP99() <= result.getMax());
+
+    ConversationReplayServer replay = new ConversationReplayServer(recording, 0);
+    assertEquals(3, replay.size());
+    replay.start();
+    try {
+      service.setEndPoint(replay.getEndPoint());
+      WorkspaceTestResult replayed = new WorkspaceTester.Builder(service, WORKSPACE_ID).build().run(labeled);
+      assertEquals(result.getIntentsCorrect(), replayed.getIntentsCorrect());
+      assertEquals(result.getEntitiesCorrect(), replayed.getEntitiesCorrect());
+      assertEquals(result.getMismatches(), replayed.getMismatches());
+      assertEquals(2, replayed.getFailed());
+    } finally {
+      replay.stop();
+    }
+  }
 
   /**
    * Negative - Test message with null workspace id.
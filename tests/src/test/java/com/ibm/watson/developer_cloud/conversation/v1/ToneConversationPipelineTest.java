@@ -0,0 +1,169 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageRequest;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponse;
+import com.ibm.watson.developer_cloud.conversation.v1.model.ToneScores;
+import com.ibm.watson.developer_cloud.http.HttpMediaType;
+import com.ibm.watson.developer_cloud.tone_analyzer.v3.ToneAnalyzer;
+import com.ibm.watson.developer_cloud.tone_analyzer.v3.model.ToneAnalysis;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Unit tests for the {@link ToneConversationPipeline}.
+ */
+public class ToneConversationPipelineTest extends WatsonServiceUnitTest {
+  private static final String FIXTURE = "src/test/resources/tone_analyzer/tone.json";
+  private static final String WORKSPACE_ID = "123";
+  private static final String TONE_PATH = "/v3/tone";
+
+  private ConversationService conversationService;
+  private ToneAnalyzer toneAnalyzer;
+  private String joyfulTone;
+  private final AtomicInteger toneRequests = new AtomicInteger();
+  private final List<MessageRequest> messages = Collections.synchronizedList(new ArrayList<MessageRequest>());
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+   */
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    conversationService = new ConversationService(ConversationService.VERSION_DATE_2016_09_20);
+    conversationService.setApiKey("");
+    conversationService.setEndPoint(getMockWebServerUrl());
+    toneAnalyzer = new ToneAnalyzer(ToneAnalyzer.VERSION_DATE_2016_05_19);
+    toneAnalyzer.setApiKey("");
+    toneAnalyzer.setEndPoint(getMockWebServerUrl());
+
+    // joy is the primary emotion of the fixture once its score is raised above the threshold
+    joyfulTone = getStringFromInputStream(new FileInputStream(FIXTURE)).replace("0.222444", "0.922444");
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        if (request.getPath().startsWith(TONE_PATH)) {
+          toneRequests.incrementAndGet();
+          return new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.APPLICATION_JSON).setBody(joyfulTone);
+        }
+        MessageRequest message = GsonSingleton.getGson().fromJson(request.getBody().readUtf8(), MessageRequest.class);
+        messages.add(message);
+        Map<String, Object> context = new HashMap<String, Object>();
+        if (message.context() != null) {
+          context.putAll(message.context());
+        }
+        context.put("conversation_id", "c1");
+        MessageResponse response = new MessageResponse();
+        response.setContext(context);
+        return jsonResponse(response);
+      }
+    });
+  }
+
+  /**
+   * Test that in concurrent mode the tone is merged into the context of the response.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testConcurrent() throws Exception {
+    ToneConversationPipeline pipeline =
+        new ToneConversationPipeline.Builder(conversationService, toneAnalyzer, WORKSPACE_ID).build();
+    MessageResponse response = pipeline.message(new MessageRequest.Builder().inputText("I am happy").build())
+        .get(5, TimeUnit.SECONDS);
+
+    assertNull(messages.get(0).context());
+    assertEquals("c1", response.getContext().get("conversation_id"));
+    Map<String, Object> emotion = tone(response.getContext(), "emotion");
+    assertEquals("joy", emotion.get("current"));
+    assertEquals(1, ((List<?>) emotion.get("history")).size());
+    assertEquals(Arrays.asList("analytical_high", "confident_high", "tentative_high"),
+        tone(response.getContext(), "language").get("current"));
+    assertTrue(((List<?>) tone(response.getContext(), "social").get("current")).contains("openness_low"));
+  }
+
+  /**
+   * Test that in sequential mode the tone is sent with the turn, and that a prefetched tone is used once.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testSequentialWithPrefetch() throws Exception {
+    ToneConversationPipeline pipeline = new ToneConversationPipeline.Builder(conversationService, toneAnalyzer,
+        WORKSPACE_ID).mode(ToneConversationPipeline.Mode.SEQUENTIAL).build();
+    pipeline.prefetch("I am happy");
+    MessageResponse response = pipeline.message(new MessageRequest.Builder().inputText("I am happy").build())
+        .get(5, TimeUnit.SECONDS);
+
+    assertEquals(1, toneRequests.get());
+    assertEquals("joy", tone(messages.get(0).context(), "emotion").get("current"));
+    assertEquals("joy", tone(response.getContext(), "emotion").get("current"));
+  }
+
+  /**
+   * Test that the emotion history is capped and that the previous context is not modified.
+   */
+  @Test
+  public void testUpdateUserToneHistory() {
+    ToneScores joy = ToneScores.of(GsonSingleton.getGson().fromJson(joyfulTone, ToneAnalysis.class));
+    ToneScores neutral = new ToneScores(new double[] { 0.1, 0.1, 0.1, 0.1, 0.1 }, new double[3], new double[5]);
+    assertEquals(0.922444, joy.getScore("joy"), 0);
+    assertEquals(ToneScores.EMOTION_TONES.indexOf("joy"), joy.getPrimaryEmotion());
+    assertTrue(Double.isNaN(joy.getScore("unknown")));
+
+    Map<String, Object> context = new HashMap<String, Object>();
+    for (int i = 0; i < 5; i++) {
+      context = ToneConversationPipeline.updateUserTone(new HashMap<String, Object>(context), joy, 3);
+    }
+    Map<String, Object> previous = context;
+    context = ToneConversationPipeline.updateUserTone(new HashMap<String, Object>(context), neutral, 3);
+
+    List<?> history = (List<?>) tone(context, "emotion").get("history");
+    assertEquals(3, history.size());
+    assertEquals("neutral", ((Map<?, ?>) history.get(2)).get("tone_name"));
+    assertEquals("joy", tone(previous, "emotion").get("current"));
+    assertFalse(tone(ToneConversationPipeline.updateUserTone(context, joy, 0), "emotion").containsKey("history"));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> tone(Map<String, Object> context, String category) {
+    Map<String, Object> user = (Map<String, Object>) context.get(ToneConversationPipeline.USER);
+    return (Map<String, Object>) ((Map<String, Object>) user.get("tone")).get(category);
+  }
+}
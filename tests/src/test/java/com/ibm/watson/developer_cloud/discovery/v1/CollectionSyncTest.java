@@ -0,0 +1,194 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.ibm.watson.developer_cloud.discovery.v1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.discovery.v1.model.document.SyncResult;
+import com.ibm.watson.developer_cloud.http.HttpMediaType;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Unit tests for the {@link CollectionSync}.
+ */
+public class CollectionSyncTest extends WatsonServiceUnitTest {
+    private static final String ENVIRONMENT_ID = "env";
+    private static final String COLLECTION_ID = "col";
+    private static final String PATH_DOCUMENTS = "/v1/environments/" + ENVIRONMENT_ID + "/collections/"
+            + COLLECTION_ID + "/documents/";
+
+    private Discovery discovery;
+    private File directory;
+    private File index;
+    private final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+     */
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        discovery = new Discovery("2016-11-07");
+        discovery.setApiKey("");
+        discovery.setEndPoint(getMockWebServerUrl());
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                String documentId = path.substring(PATH_DOCUMENTS.length(), path.indexOf('?'));
+                calls.add(request.getMethod() + " " + documentId);
+                if (request.getMethod().equals("DELETE")) {
+                    // the document is already gone
+                    return json("{\"error\":\"not found\",\"code\":404}").setResponseCode(404);
+                }
+                return json("{\"document_id\":\"" + documentId + "\",\"status\":\"processing\"}")
+                        .setResponseCode(202);
+            }
+        });
+
+        directory = File.createTempFile("sync", "");
+        directory.delete();
+        new File(directory, "sub").mkdirs();
+        index = File.createTempFile("sync", ".index");
+        index.delete();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.ibm.watson.developer_cloud.WatsonServiceUnitTest#tearDown()
+     */
+    @Override
+    @After
+    public void tearDown() throws IOException {
+        super.tearDown();
+        for (String name : new String[] { "a.json", "b.json", "d.json", "sub/c.html", "notes.txt", "sub" }) {
+            new File(directory, name).delete();
+        }
+        directory.delete();
+        index.delete();
+        new File(index.getPath() + ".log").delete();
+    }
+
+    /**
+     * Test that the changes are appended to the log of the index without rewriting it, and that the log of an
+     * interrupted run is replayed up to its incomplete record and compacted.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testSyncIndexLog() throws Exception {
+        final File log = new File(index.getPath() + ".log");
+        final byte[] hash = new byte[SyncIndex.HASH_LENGTH];
+        SyncIndex syncIndex = new SyncIndex(index);
+        syncIndex.put("a", "1", hash);
+        syncIndex.put("b", null, hash);
+        syncIndex.saveEvery(2);
+        syncIndex.remove("a");
+        syncIndex.saveEvery(1);
+        assertFalse(index.exists());
+        assertTrue(log.exists());
+
+        // an interrupted run leaves the beginning of a record behind
+        final FileOutputStream output = new FileOutputStream(log, true);
+        output.write(new byte[] { 1, 0, 5, 'c' });
+        output.close();
+
+        syncIndex = new SyncIndex(index);
+        assertEquals(Collections.singletonList("b"), syncIndex.keys());
+        assertNull(syncIndex.get("b").getFingerprint());
+        assertTrue(index.exists());
+        assertFalse(log.exists());
+    }
+
+    /**
+     * Test that a first sync creates every document, and a second one only makes the calls for the documents that
+     * were added, changed or removed.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testSyncDirectory() throws Exception {
+        write("a.json", "{\"id\":\"a\"}");
+        write("b.json", "{\"id\":\"b\"}");
+        write("sub/c.html", "<html>c</html>");
+        write("notes.txt", "not a document");
+        CollectionSync sync = new CollectionSync.Builder(discovery, ENVIRONMENT_ID, COLLECTION_ID, index)
+                .concurrency(2).retryDelay(1).build();
+
+        SyncResult result = sync.syncDirectory(directory);
+        assertEquals(3, result.getCreated());
+        assertEquals(0, result.getFailed());
+        assertEquals(3, calls.size());
+        assertTrue(calls.contains("POST " + CollectionSync.documentId("sub/c.html")));
+        assertTrue(index.exists());
+
+        calls.clear();
+        write("a.json", "{\"id\":\"a\",\"v\":2}");
+        new File(directory, "b.json").delete();
+        write("d.json", "{\"id\":\"d\"}");
+        // touched, but with the same content
+        new File(directory, "sub/c.html").setLastModified(System.currentTimeMillis() - 60000);
+
+        result = sync.syncDirectory(directory);
+        assertEquals(1, result.getCreated());
+        assertEquals(1, result.getUpdated());
+        assertEquals(1, result.getDeleted());
+        assertEquals(1, result.getUnchanged());
+        assertEquals(0, result.getFailed());
+        assertEquals(3, calls.size());
+        assertTrue(calls.contains("POST " + CollectionSync.documentId("a.json")));
+        assertTrue(calls.contains("POST " + CollectionSync.documentId("d.json")));
+        assertTrue(calls.contains("DELETE " + CollectionSync.documentId("b.json")));
+
+        calls.clear();
+        result = sync.syncDirectory(directory);
+        assertEquals(3, result.getUnchanged());
+        assertTrue(calls.isEmpty());
+    }
+
+    private void write(String name, String content) throws IOException {
+        FileOutputStream output = new FileOutputStream(new File(directory, name));
+        try {
+            output.write(content.getBytes("UTF-8"));
+        } finally {
+            output.close();
+        }
+    }
+
+    private static MockResponse json(String body) {
+        return new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.APPLICATION_JSON).setBody(body);
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.ibm.watson.developer_cloud.discovery.v1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.discovery.v1.model.document.DocumentSource;
+import com.ibm.watson.developer_cloud.discovery.v1.model.document.IngestionResult;
+import com.ibm.watson.developer_cloud.http.HttpMediaType;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Unit tests for the {@link DocumentIngester}.
+ */
+public class DocumentIngesterTest extends WatsonServiceUnitTest {
+    private static final String ENVIRONMENT_ID = "env";
+    private static final String COLLECTION_ID = "col";
+    private static final String PATH_ENVIRONMENT = "/v1/environments/" + ENVIRONMENT_ID + "?";
+    private static final String PATH_COLLECTION = "/v1/environments/" + ENVIRONMENT_ID + "/collections/"
+            + COLLECTION_ID + "?";
+
+    private Discovery discovery;
+    private final AtomicInteger collectionChecks = new AtomicInteger();
+    private final List<String> uploads = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> paths = Collections.synchronizedList(new ArrayList<String>());
+    private volatile boolean serverErrors;
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+     */
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        discovery = new Discovery("2016-11-07");
+        discovery.setApiKey("");
+        discovery.setEndPoint(getMockWebServerUrl());
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().startsWith(PATH_COLLECTION)) {
+                    // the collection is busy the first time it is checked
+                    int processing = (collectionChecks.getAndIncrement() == 0) ? 10 : 0;
+                    return json("{\"document_counts\":{\"processing\":" + processing + "}}");
+                }
+                if (request.getPath().startsWith(PATH_ENVIRONMENT)) {
+                    return json("{\"index_capacity\":{\"disk_usage\":{\"percent_used\":10.5}}}");
+                }
+                String body = request.getBody().readUtf8();
+                String document = body.substring(body.indexOf("doc-"), body.indexOf("doc-") + 5);
+                boolean retried = uploads.contains(document);
+                uploads.add(document);
+                paths.add(request.getPath().substring(0, request.getPath().indexOf('?')));
+                if (serverErrors) {
+                    if (document.equals("doc-0") && !retried) {
+                        return json("{\"error\":\"internal error\",\"code\":500}").setResponseCode(500);
+                    }
+                } else if (document.equals("doc-1") && !retried) {
+                    return json("{\"error\":\"slow down\",\"code\":429}").setResponseCode(429)
+                            .addHeader("Retry-After", "0");
+                } else if (document.equals("doc-2") && !retried) {
+                    return json("{\"error\":\"unavailable\",\"code\":503}").setResponseCode(503);
+                } else if (document.equals("doc-3")) {
+                    return json("{\"error\":\"not a document\",\"code\":400}").setResponseCode(400);
+                }
+                return json("{\"document_id\":\"" + document + "\",\"status\":\"processing\"}").setResponseCode(202);
+            }
+        });
+    }
+
+    /**
+     * Test that documents are uploaded, retried on transient errors, and skipped by a run resumed from the
+     * checkpoint, except the ones that failed.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testIngest() throws Exception {
+        File checkpoint = File.createTempFile("ingest", ".checkpoint");
+        checkpoint.delete();
+        checkpoint.deleteOnExit();
+        DocumentIngester ingester = new DocumentIngester.Builder(discovery, ENVIRONMENT_ID, COLLECTION_ID)
+                .concurrency(2).maxProcessing(5).statusInterval(10).retryDelay(1).checkpoint(checkpoint)
+                .checkpointInterval(2).build();
+
+        IngestionResult result = ingester.ingest(documents(5).iterator());
+        assertEquals(4, result.getUploaded());
+        assertEquals(1, result.getFailed());
+        assertTrue(result.getFailures().containsKey(3L));
+        assertEquals(2, result.getRetries());
+        assertEquals(7, uploads.size());
+        assertTrue(collectionChecks.get() >= 2);
+
+        result = ingester.ingest(documents(7).iterator());
+        assertEquals(4, result.getSkipped());
+        assertEquals(2, result.getUploaded());
+        assertTrue(result.getFailures().containsKey(3L));
+        // the watermark 3, then the positions 4, 5 and 6 (read without the line breaks)
+        assertEquals("3456", getStringFromInputStream(new FileInputStream(checkpoint)).trim());
+    }
+
+    /**
+     * Test that a run resumes from a checkpoint where documents completed out of order: 0 and 3 are skipped.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testIngestFromCheckpoint() throws Exception {
+        File checkpoint = File.createTempFile("ingest", ".checkpoint");
+        checkpoint.deleteOnExit();
+        FileOutputStream output = new FileOutputStream(checkpoint);
+        output.write("1\n3\n".getBytes("UTF-8"));
+        output.close();
+
+        IngestionResult result = new DocumentIngester.Builder(discovery, ENVIRONMENT_ID, COLLECTION_ID)
+                .maxProcessing(100).retryDelay(1).checkpoint(checkpoint).build().ingest(documents(5).iterator());
+        assertEquals(2, result.getSkipped());
+        assertEquals(3, result.getUploaded());
+        assertEquals(0, result.getFailed());
+        assertEquals(2, result.getRetries());
+        assertEquals("5", getStringFromInputStream(new FileInputStream(checkpoint)).trim());
+    }
+
+    /**
+     * Test that a document with a key is uploaded with its id and retried after a server error, and that a document
+     * without a key is not, since it could be indexed twice.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testIngestRetries() throws Exception {
+        serverErrors = true;
+        List<DocumentSource> documents = new ArrayList<DocumentSource>();
+        for (int i = 0; i < 2; i++) {
+            documents.add(DocumentSource.of("key-" + i, ("{\"id\":\"doc-" + i + "\"}").getBytes("UTF-8"),
+                    HttpMediaType.APPLICATION_JSON));
+        }
+        DocumentIngester ingester = new DocumentIngester.Builder(discovery, ENVIRONMENT_ID, COLLECTION_ID)
+                .maxProcessing(100).retryDelay(1).build();
+
+        IngestionResult result = ingester.ingest(documents.iterator());
+        assertEquals(2, result.getUploaded());
+        assertEquals(1, result.getRetries());
+        assertTrue(paths.contains("/v1/environments/env/collections/col/documents/"
+                + CollectionSync.documentId("key-0")));
+
+        uploads.clear();
+        result = ingester.ingest(documents(1).iterator());
+        assertEquals(0, result.getUploaded());
+        assertEquals(0, result.getRetries());
+        assertEquals(1, result.getFailed());
+        assertEquals(1, uploads.size());
+    }
+
+    private static List<DocumentSource> documents(int count) {
+        List<DocumentSource> documents = new ArrayList<DocumentSource>();
+        for (int i = 0; i < count; i++) {
+            documents.add(DocumentSource.of(("{\"id\":\"doc-" + i + "\"}").getBytes(Charset.forName("UTF-8")),
+                    HttpMediaType.APPLICATION_JSON));
+        }
+        return documents;
+    }
+
+    private static MockResponse json(String body) {
+        return new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.APPLICATION_JSON).setBody(body);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.ibm.watson.developer_cloud.discovery.v1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.discovery.v1.model.query.QueryRequest;
+import com.ibm.watson.developer_cloud.http.HttpMediaType;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Unit tests for the {@link QueryPager}.
+ */
+public class QueryPagerTest extends WatsonServiceUnitTest {
+    private static final String ENVIRONMENT_ID = "env";
+    private static final String COLLECTION_ID = "col";
+
+    private Discovery discovery;
+    private int matchingResults;
+    private final List<Integer> offsets = Collections.synchronizedList(new ArrayList<Integer>());
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+     */
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        discovery = new Discovery("2016-11-07");
+        discovery.setApiKey("");
+        discovery.setEndPoint(getMockWebServerUrl());
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                HttpUrl url = HttpUrl.parse("http://localhost" + request.getPath());
+                int offset = Integer.parseInt(url.queryParameter("offset"));
+                int count = Integer.parseInt(url.queryParameter("count"));
+                boolean retried = offsets.contains(offset);
+                offsets.add(offset);
+                if ((offset == 10) && !retried) {
+                    return json("{\"error\":\"unavailable\",\"code\":503}").setResponseCode(503);
+                }
+                StringBuilder results = new StringBuilder();
+                for (int i = offset; i < Math.min(offset + count, matchingResults); i++) {
+                    results.append((i > offset) ? "," : "").append("{\"id\":\"doc-").append(i).append("\"}");
+                }
+                return json("{\"matching_results\":" + matchingResults + ",\"results\":[" + results + "]}");
+            }
+        });
+    }
+
+    /**
+     * Test that all the results are read in order, one page per request, and that a page is retried on a transient
+     * error.
+     */
+    @Test
+    public void testIterateAll() {
+        matchingResults = 25;
+        QueryRequest request = new QueryRequest.Builder(ENVIRONMENT_ID, COLLECTION_ID).query("enriched").build();
+        QueryPager pager = new QueryPager.Builder(discovery, request).pageSize(10).prefetch(2).retryDelay(1).build();
+
+        QueryPager.ResultIterator iterator = pager.iterator();
+        int index = 0;
+        while (iterator.hasNext()) {
+            Map<String, Object> result = iterator.next();
+            assertEquals("doc-" + index++, result.get("id"));
+        }
+        assertEquals(25, index);
+        assertEquals(Long.valueOf(25), iterator.getMatchingResults());
+        Collections.sort(offsets);
+        assertEquals(Arrays.asList(0, 10, 10, 20), offsets);
+    }
+
+    /**
+     * Test that no more pages are requested after the caller stops.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testStopEarly() throws Exception {
+        matchingResults = 1000;
+        QueryRequest request = new QueryRequest.Builder(ENVIRONMENT_ID, COLLECTION_ID).count(10).build();
+        QueryPager.ResultIterator iterator =
+                new QueryPager.Builder(discovery, request).prefetch(2).retryDelay(1).build().iterator();
+        for (int i = 0; i < 5; i++) {
+            iterator.next();
+        }
+        iterator.close();
+        assertFalse(iterator.hasNext());
+        Thread.sleep(100);
+        // the first page, and the two pages requested when it was read
+        assertTrue(offsets.size() <= 4);
+        assertFalse(offsets.contains(30));
+    }
+
+    private static MockResponse json(String body) {
+        return new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.APPLICATION_JSON).setBody(body);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.ibm.watson.developer_cloud.discovery.v1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.discovery.v1.model.query.QueryRequest;
+import com.ibm.watson.developer_cloud.discovery.v1.model.query.QueryResultReader;
+import com.ibm.watson.developer_cloud.http.HttpMediaType;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Unit tests for the {@link QueryResultReader}.
+ */
+public class QueryResultReaderTest extends WatsonServiceUnitTest {
+    private static final String RESPONSE = "{\"matching_results\":2,\"results\":["
+            + "{\"id\":\"doc-0\",\"score\":1.5,\"text\":\"a long text\","
+            + "\"enriched_text\":{\"sentiment\":{\"type\":\"positive\"},\"entities\":[{\"text\":\"IBM\"}]}},"
+            + "{\"id\":\"doc-1\",\"score\":0.5,\"text\":\"another text\","
+            + "\"enriched_text\":{\"entities\":[]}}],"
+            + "\"aggregations\":[{\"type\":\"term\",\"field\":\"enriched_text.sentiment.type\","
+            + "\"results\":[{\"key\":\"positive\",\"matching_results\":1}]}]}";
+
+    private Discovery discovery;
+    private QueryRequest queryRequest;
+
+    /**
+     * A result bound to a POJO.
+     */
+    private static class Result {
+        private String id;
+        private Double score;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+     */
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        discovery = new Discovery("2016-11-07");
+        discovery.setApiKey("");
+        discovery.setEndPoint(getMockWebServerUrl());
+        queryRequest = new QueryRequest.Builder("env", "col").query("enriched_text.entities.text:IBM").build();
+        server.enqueue(new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.APPLICATION_JSON).setBody(RESPONSE));
+    }
+
+    /**
+     * Test that all the fields of the results are read, and the fields around them.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testReadAll() throws Exception {
+        QueryResultReader reader = discovery.queryStream(queryRequest, null).execute();
+        RecordedRequest request = server.takeRequest();
+        assertTrue(request.getPath().startsWith("/v1/environments/env/collections/col/query?"));
+
+        assertEquals(Long.valueOf(2), reader.getMatchingResults());
+        assertNull(reader.getAggregations());
+        Map<String, Object> result = reader.next();
+        assertEquals("doc-0", result.get("id"));
+        assertEquals("a long text", result.get("text"));
+        assertEquals(1.5, result.get("score"));
+        assertTrue(reader.hasNext());
+        assertEquals("doc-1", reader.next().get("id"));
+        assertFalse(reader.hasNext());
+        assertEquals(1, reader.getAggregations().size());
+        assertEquals("enriched_text.sentiment.type", reader.getAggregations().get(0).getField());
+        reader.close();
+    }
+
+    /**
+     * Test that only the fields of the projection are read.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReadProjection() throws Exception {
+        QueryResultReader reader =
+                discovery.queryStream(queryRequest, Arrays.asList("id", "enriched_text.entities.text")).execute();
+
+        Map<String, Object> result = reader.next();
+        assertEquals(Arrays.asList("id", "enriched_text"), Arrays.asList(result.keySet().toArray()));
+        Map<String, Object> enriched = (Map<String, Object>) result.get("enriched_text");
+        assertEquals(Collections.singleton("entities"), enriched.keySet());
+        List<Map<String, Object>> entities = (List<Map<String, Object>>) enriched.get("entities");
+        assertEquals("IBM", entities.get(0).get("text"));
+
+        result = reader.next();
+        assertEquals("doc-1", result.get("id"));
+        assertFalse(result.containsKey("text"));
+        assertFalse(reader.hasNext());
+        reader.close();
+    }
+
+    /**
+     * Test that the results are bound to a POJO.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testReadPojo() throws Exception {
+        QueryResultReader reader = discovery.queryStream(queryRequest, null).execute();
+
+        Result result = reader.next(Result.class);
+        assertEquals("doc-0", result.id);
+        assertEquals(Double.valueOf(1.5), result.score);
+        assertEquals("doc-1", reader.next(Result.class).id);
+        assertFalse(reader.hasNext());
+        reader.close();
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1;
+
+import java.util.Arrays;
+
+/**
+ * Test decoder for the FLAC streams written by the <code>FlacEncoder</code>, written from the FLAC format
+ * specification rather than from the encoder, to check that the encoded samples are the original ones. It verifies
+ * the CRC of every frame header and frame, and decodes constant, verbatim and fixed predictor subframes with
+ * independent channels; it does not support LPC subframes or inter-channel decorrelation.
+ *
+ * @see <a href="https://xiph.org/flac/format.html">FLAC format</a>
+ */
+final class FlacDecoder {
+
+  private static final int STREAMINFO = 0;
+  private static final int FRAME_SYNC = 0x3FFE;
+
+  private final byte[] data;
+  private int position;
+  private int bitsLeft = 8;
+
+  private int sampleRate;
+  private int channels;
+  private int bitsPerSample;
+  private long totalFrames;
+  private int frames;
+  private int[][] samples = new int[0][0];
+
+  private FlacDecoder(byte[] data) {
+    this.data = data;
+  }
+
+  /**
+   * Decodes a FLAC stream.
+   *
+   * @param flac the FLAC stream
+   * @return the decoder, holding the stream info and the samples
+   */
+  static FlacDecoder decode(byte[] flac) {
+    final FlacDecoder decoder = new FlacDecoder(flac);
+    decoder.readStream();
+    return decoder;
+  }
+
+  int getSampleRate() {
+    return sampleRate;
+  }
+
+  int getChannels() {
+    return channels;
+  }
+
+  int getBitsPerSample() {
+    return bitsPerSample;
+  }
+
+  /**
+   * Gets the total number of frames of the STREAMINFO block.
+   *
+   * @return the number of frames, or 0 if unknown
+   */
+  long getTotalFrames() {
+    return totalFrames;
+  }
+
+  /**
+   * Gets the decoded samples.
+   *
+   * @return the signed samples, indexed by channel then frame
+   */
+  int[][] getSamples() {
+    final int[][] copy = new int[channels][];
+    for (int c = 0; c < channels; c++) {
+      copy[c] = Arrays.copyOf(samples[c], frames);
+    }
+    return copy;
+  }
+
+  private void readStream() {
+    check(read(32) == 0x664C6143, "missing fLaC marker");
+    boolean last = false;
+    while (!last) {
+      last = read(1) == 1;
+      final int type = (int) read(7);
+      final int length = (int) read(24);
+      if (type == STREAMINFO) {
+        read(16); // minimum block size
+        read(16); // maximum block size
+        read(24); // minimum frame size
+        read(24); // maximum frame size
+        sampleRate = (int) read(20);
+        channels = (int) read(3) + 1;
+        bitsPerSample = (int) read(5) + 1;
+        totalFrames = read(36);
+        position += 16; // MD5 signature
+      } else {
+        position += length;
+      }
+    }
+    check(channels > 0, "missing STREAMINFO block");
+    samples = new int[channels][4096];
+    while (position < data.length) {
+      readFrame();
+    }
+  }
+
+  private void readFrame() {
+    final int start = position;
+    check(read(14) == FRAME_SYNC, "missing frame sync at " + start);
+    check(read(1) == 0, "reserved bit set");
+    read(1); // blocking strategy
+    final int blockSizeCode = (int) read(4);
+    final int rateCode = (int) read(4);
+    final int assignment = (int) read(4);
+    final int sampleSizeCode = (int) read(3);
+    check(read(1) == 0, "reserved bit set");
+    readUtf8();
+
+    int blockSize;
+    if (blockSizeCode == 1) {
+      blockSize = 192;
+    } else if ((blockSizeCode >= 2) && (blockSizeCode <= 5)) {
+      blockSize = 576 << (blockSizeCode - 2);
+    } else if (blockSizeCode == 6) {
+      blockSize = (int) read(8) + 1;
+    } else if (blockSizeCode == 7) {
+      blockSize = (int) read(16) + 1;
+    } else {
+      check(blockSizeCode >= 8, "reserved block size");
+      blockSize = 256 << (blockSizeCode - 8);
+    }
+    if (rateCode == 0x0C) {
+      read(8);
+    } else if ((rateCode == 0x0D) || (rateCode == 0x0E)) {
+      read(16);
+    }
+    final int crc8 = crc8(start, position);
+    check(read(8) == crc8, "wrong frame header CRC at " + start);
+
+    check(assignment < 8, "inter-channel decorrelation is not supported");
+    check((assignment + 1) == channels, "wrong number of channels at " + start);
+    final int[] sizes = { 0, 8, 12, 0, 16, 20, 24, 0 };
+    check((sampleSizeCode == 0) || (sizes[sampleSizeCode] == bitsPerSample), "wrong sample size at " + start);
+
+    while ((frames + blockSize) > samples[0].length) {
+      for (int c = 0; c < channels; c++) {
+        samples[c] = Arrays.copyOf(samples[c], samples[c].length * 2);
+      }
+    }
+    for (int c = 0; c < channels; c++) {
+      readSubframe(samples[c], frames, blockSize);
+    }
+    alignToByte();
+    final int crc16 = crc16(start, position);
+    check(read(16) == crc16, "wrong frame CRC at " + start);
+    frames += blockSize;
+  }
+
+  private void readSubframe(int[] out, int offset, int count) {
+    check(read(1) == 0, "subframe padding bit set");
+    final int type = (int) read(6);
+    check(read(1) == 0, "wasted bits are not supported");
+    if (type == 0) {
+      final int value = readSigned(bitsPerSample);
+      Arrays.fill(out, offset, offset + count, value);
+    } else if (type == 1) {
+      for (int i = 0; i < count; i++) {
+        out[offset + i] = readSigned(bitsPerSample);
+      }
+    } else if ((type >= 8) && (type <= 12)) {
+      final int order = type - 8;
+      for (int i = 0; i < order; i++) {
+        out[offset + i] = readSigned(bitsPerSample);
+      }
+      readResidual(out, offset, count, order);
+      for (int i = order; i < count; i++) {
+        final int j = offset + i;
+        switch (order) {
+          case 0:
+            break;
+          case 1:
+            out[j] += out[j - 1];
+            break;
+          case 2:
+            out[j] += (2 * out[j - 1]) - out[j - 2];
+            break;
+          case 3:
+            out[j] += ((3 * out[j - 1]) - (3 * out[j - 2])) + out[j - 3];
+            break;
+          default:
+            out[j] += (((4 * out[j - 1]) - (6 * out[j - 2])) + (4 * out[j - 3])) - out[j - 4];
+            break;
+        }
+      }
+    } else {
+      throw new IllegalStateException("unsupported subframe type " + type);
+    }
+  }
+
+  private void readResidual(int[] out, int offset, int count, int order) {
+    final int method = (int) read(2);
+    check(method < 2, "reserved residual coding method");
+    final int parameterBits = (method == 0) ? 4 : 5;
+    final int escape = (1 << parameterBits) - 1;
+    final int partitionOrder = (int) read(4);
+    final int partitions = 1 << partitionOrder;
+    check((count % partitions) == 0, "partitions do not divide the block");
+    int i = order;
+    for (int p = 0; p < partitions; p++) {
+      final int end = (p + 1) * (count >> partitionOrder);
+      final int k = (int) read(parameterBits);
+      final int rawBits = (k == escape) ? (int) read(5) : -1;
+      for (; i < end; i++) {
+        if (rawBits >= 0) {
+          out[offset + i] = (rawBits == 0) ? 0 : readSigned(rawBits);
+        } else {
+          long zeros = 0;
+          while (read(1) == 0) {
+            zeros++;
+          }
+          final long value = (zeros << k) | read(k);
+          out[offset + i] = (int) ((value >>> 1) ^ -(value & 1));
+        }
+      }
+    }
+  }
+
+  private long readUtf8() {
+    final int first = (int) read(8);
+    int extra = 0;
+    while ((extra < 7) && ((first & (0x80 >> extra)) != 0)) {
+      extra++;
+    }
+    long value = first & (0x7F >> extra);
+    for (int i = 1; i < extra; i++) {
+      final int next = (int) read(8);
+      check((next & 0xC0) == 0x80, "bad UTF-8 frame number");
+      value = (value << 6) | (next & 0x3F);
+    }
+    return value;
+  }
+
+  private int readSigned(int bits) {
+    final long value = read(bits);
+    final int shift = 64 - bits;
+    return (int) ((value << shift) >> shift);
+  }
+
+  private long read(int bits) {
+    long value = 0;
+    for (int i = 0; i < bits; i++) {
+      check(position < data.length, "unexpected end of stream");
+      bitsLeft--;
+      value = (value << 1) | ((data[position] >> bitsLeft) & 1);
+      if (bitsLeft == 0) {
+        bitsLeft = 8;
+        position++;
+      }
+    }
+    return value;
+  }
+
+  private void alignToByte() {
+    if (bitsLeft != 8) {
+      bitsLeft = 8;
+      position++;
+    }
+  }
+
+  private int crc8(int from, int to) {
+    int crc = 0;
+    for (int i = from; i < to; i++) {
+      crc ^= data[i] & 0xFF;
+      for (int b = 0; b < 8; b++) {
+        crc = ((crc & 0x80) != 0) ? (((crc << 1) ^ 0x07) & 0xFF) : ((crc << 1) & 0xFF);
+      }
+    }
+    return crc;
+  }
+
+  private int crc16(int from, int to) {
+    int crc = 0;
+    for (int i = from; i < to; i++) {
+      crc ^= (data[i] & 0xFF) << 8;
+      for (int b = 0; b < 8; b++) {
+        crc = ((crc & 0x8000) != 0) ? (((crc << 1) ^ 0x8005) & 0xFFFF) : ((crc << 1) & 0xFFFF);
+      }
+    }
+    return crc;
+  }
+
+  private static void check(boolean condition, String message) {
+    if (!condition) {
+      throw new IllegalStateException(message);
+    }
+  }
+}
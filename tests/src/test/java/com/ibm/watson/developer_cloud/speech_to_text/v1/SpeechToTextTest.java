@@ -19,13 +19,31 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Before;
 import org.junit.FixMethodOrder;
@@ -34,28 +52,48 @@ import org.junit.runners.MethodSorters;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
 import com.ibm.watson.developer_cloud.http.HttpMediaType;
+import com.ibm.watson.developer_cloud.service.exception.BadRequestException;
+import com.ibm.watson.developer_cloud.service.exception.NotFoundException;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.callback.RecognitionCallbackServer;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.callback.RecognitionEventListener;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.model.Corpus;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.model.Customization;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.model.Customization.WordTypeToAdd;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.CustomizationSyncResult;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.RecognitionEvent;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.model.RecognitionJob;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.model.RecognizeOptions;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechAlternative;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechModel;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechResults;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechSession;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechTimestamp;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.model.Transcript;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.TranscriptSegment;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.TranscriptUpdate;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.model.Word;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.model.Word.Type;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.model.WordData;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.util.MediaTypeUtils;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.FlacEncodingInputStream;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.PcmFormat;
 import com.ibm.watson.developer_cloud.util.GsonSingleton;
 import com.ibm.watson.developer_cloud.util.TestUtils;
 
+import jersey.repackaged.jsr166e.CompletableFuture;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.RecordedRequest;
 
@@ -312,6 +350,222 @@ public class SpeechToTextTest extends WatsonServiceUnitTest {
     assertEquals(recognition, GSON.toJsonTree(result));
   }
 
+  /**
+   * Test recognize with FLAC encoding.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   * @throws InterruptedException the interrupted exception
+   */
+  @Test
+  public void testRecognizeWithFlacEncoding() throws IOException, InterruptedException {
+    String recString =
+        getStringFromInputStream(new FileInputStream("src/test/resources/speech_to_text/recognition.json"));
+    server.enqueue(new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.APPLICATION_JSON).setBody(recString));
+
+    RecognizeOptions options = new RecognizeOptions.Builder().flacEncoding(true).build();
+    service.recognize(SAMPLE_WAV, options).execute();
+    final RecordedRequest request = server.takeRequest();
+
+    assertEquals(PATH_RECOGNIZE, request.getPath());
+    assertEquals(HttpMediaType.AUDIO_FLAC, request.getHeader(CONTENT_TYPE));
+    assertTrue(request.getBodySize() < (SAMPLE_WAV.length() / 2));
+
+    final FileInputStream wav = new FileInputStream(SAMPLE_WAV);
+    final PcmFormat format = PcmFormat.readWaveHeader(wav);
+    final byte[] pcm = ByteStreams.toByteArray(wav);
+    wav.close();
+    final int frames = pcm.length / format.getFrameSize();
+    final int[][] expected = new int[format.getChannels()][frames];
+    format.decode(pcm, frames, expected);
+
+    final FlacDecoder flac = FlacDecoder.decode(request.getBody().readByteArray());
+    assertEquals(format.getSampleRate(), flac.getSampleRate());
+    assertEquals(frames, flac.getTotalFrames());
+    assertTrue(Arrays.deepEquals(expected, flac.getSamples()));
+  }
+
+  /**
+   * Test that the FLAC encoding is lossless for 8, 16 and 24 bit samples, mono and stereo, with a last block that is
+   * not full, by decoding the frames and comparing them with the PCM samples.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void testFlacEncodingIsLossless() throws IOException {
+    final int blockSize = 256;
+    final int frames = (4 * blockSize) + 100;
+    final Random random = new Random(1);
+    for (int bits : new int[] { 8, 16, 24 }) {
+      for (int channels = 1; channels <= 2; channels++) {
+        final PcmFormat format = new PcmFormat(16000, channels, bits, false);
+        final int max = (1 << (bits - 1)) - 1;
+        final int[][] samples = new int[channels][frames];
+        for (int c = 0; c < channels; c++) {
+          for (int i = 0; i < frames; i++) {
+            if (i < blockSize) {
+              // constant
+              samples[c][i] = -max / 3;
+            } else if (i < (2 * blockSize)) {
+              // tone with a little noise, for the fixed predictors
+              samples[c][i] = (int) ((max / 2) * Math.sin(i * (0.05 + (0.02 * c)))) + random.nextInt(5) - 2;
+            } else if (i < (3 * blockSize)) {
+              // full scale noise, stored verbatim
+              samples[c][i] = random.nextInt((2 * max) + 1) - max;
+            } else {
+              // alternating extremes
+              samples[c][i] = ((i % 2) == 0) ? max : (-max - 1);
+            }
+          }
+        }
+        final byte[] pcm = new byte[frames * format.getFrameSize()];
+        format.encode(samples, frames, pcm);
+
+        final FlacEncodingInputStream encoded = new FlacEncodingInputStream(
+            new ByteArrayInputStream(pcm), format.withDataLength(pcm.length), blockSize);
+        final FlacDecoder flac = FlacDecoder.decode(ByteStreams.toByteArray(encoded));
+        final String name = bits + " bit, " + channels + " channels";
+        assertEquals(name, channels, flac.getChannels());
+        assertEquals(name, bits, flac.getBitsPerSample());
+        assertEquals(name, frames, flac.getTotalFrames());
+        assertTrue(name, Arrays.deepEquals(samples, flac.getSamples()));
+      }
+    }
+  }
+
+  /**
+   * Test recognize with silence removed on the client.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   * @throws InterruptedException the interrupted exception
+   */
+  @Test
+  public void testRecognizeWithSkipSilence() throws IOException, InterruptedException {
+    String recString = getStringFromInputStream(
+        new FileInputStream("src/test/resources/speech_to_text/recognition-timestamps.json"));
+    server.enqueue(new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.APPLICATION_JSON).setBody(recString));
+
+    // 1s tone, 3s of quiet noise, 1s tone
+    final int rate = 16000;
+    final PcmFormat format = new PcmFormat(rate, 1, 16, false);
+    final File audio = createToneFile(format, 1, 3, 1);
+
+    RecognizeOptions options = new RecognizeOptions.Builder().contentType(format.toContentType()).timestamps(true)
+        .skipSilence(true).build();
+    SpeechResults result = service.recognize(audio, options).execute();
+    final RecordedRequest request = server.takeRequest();
+
+    // the 3s pause is cut to 200ms after the first tone and 200ms before the second one
+    assertEquals(format.toContentType(), request.getHeader(CONTENT_TYPE));
+    assertEquals((long) (2.4 * rate * 2), request.getBodySize());
+
+    List<SpeechTimestamp> timestamps = result.getResults().get(0).getAlternatives().get(0).getTimestamps();
+    assertEquals(0.2, timestamps.get(0).getStartTime(), 0.001);
+    assertEquals(0.8, timestamps.get(0).getEndTime(), 0.001);
+    assertEquals(4.1, timestamps.get(1).getStartTime(), 0.001);
+    assertEquals(4.5, timestamps.get(1).getEndTime(), 0.001);
+  }
+
+  /**
+   * Test recognize parallel.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   * @throws InterruptedException the interrupted exception
+   */
+  @Test
+  public void testRecognizeParallel() throws IOException, InterruptedException {
+    String recString = getStringFromInputStream(
+        new FileInputStream("src/test/resources/speech_to_text/recognition-timestamps.json"));
+    for (int i = 0; i < 3; i++) {
+      server.enqueue(new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.APPLICATION_JSON).setBody(recString));
+    }
+
+    // 3s tone, 2s pause, 3s tone, 2s pause, 2s tone: cut in both pauses, at most 4.8s after the previous cut
+    final PcmFormat format = new PcmFormat(8000, 1, 16, false);
+    final File audio = createToneFile(format, 3, 2, 3, 2, 2);
+
+    RecognizeOptions options = new RecognizeOptions.Builder().contentType(format.toContentType()).timestamps(true)
+        .speakerLabels(true).build();
+    SpeechResults result = service.recognizeParallel(audio, options, 4, 2).execute();
+
+    long bytes = 0;
+    for (int i = 0; i < 3; i++) {
+      final RecordedRequest request = server.takeRequest();
+      assertEquals(PATH_RECOGNIZE + "?speaker_labels=true&timestamps=true", request.getPath());
+      assertEquals(format.toContentType(), request.getHeader(CONTENT_TYPE));
+      bytes += request.getBodySize();
+    }
+    assertEquals(audio.length(), bytes);
+
+    assertEquals(0, result.getResultIndex());
+    assertEquals(3, result.getResults().size());
+    final double[] starts = { 0, 4, 8.8 };
+    for (int i = 0; i < 3; i++) {
+      List<SpeechTimestamp> timestamps = result.getResults().get(i).getAlternatives().get(0).getTimestamps();
+      assertEquals(starts[i] + 0.2, timestamps.get(0).getStartTime(), 0.05);
+      assertEquals(starts[i] + 1.9, timestamps.get(1).getEndTime(), 0.05);
+    }
+
+    assertEquals(6, result.getSpeakerLabels().size());
+    assertEquals(5, result.getSpeakerLabels().get(5).getSpeaker());
+    assertEquals(10.3, result.getSpeakerLabels().get(5).getFrom(), 0.05);
+  }
+
+  /**
+   * Test that an asynchronous parallel recognition stops at the first failed segment.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testRecognizeParallelFailure() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(400).addHeader(CONTENT_TYPE, HttpMediaType.APPLICATION_JSON)
+        .setBody("{\"error\": \"unsupported audio\", \"code\": 400}"));
+
+    final PcmFormat format = new PcmFormat(8000, 1, 16, false);
+    final File audio = createToneFile(format, 3, 2, 3, 2, 2);
+    RecognizeOptions options = new RecognizeOptions.Builder().contentType(format.toContentType()).build();
+    try {
+      service.recognizeParallel(audio, options, 4, 1).rx().get(5, TimeUnit.SECONDS);
+      fail("expected an ExecutionException");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof BadRequestException);
+    }
+    // the other segments are not sent
+    assertEquals(1, server.getRequestCount());
+  }
+
+  /**
+   * Writes raw PCM audio that alternates between a tone and quiet noise.
+   *
+   * @param format the format of the audio
+   * @param durations the duration in seconds of each part, starting with a tone
+   * @return the temporary file
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private File createToneFile(PcmFormat format, int... durations) throws IOException {
+    int total = 0;
+    for (int duration : durations) {
+      total += duration * format.getSampleRate();
+    }
+    final int[][] samples = new int[1][total];
+    final Random random = new Random(1);
+    int i = 0;
+    for (int part = 0; part < durations.length; part++) {
+      final int end = i + (durations[part] * format.getSampleRate());
+      for (; i < end; i++) {
+        samples[0][i] = ((part % 2) == 0) ? (int) (8000 * Math.sin(i * 0.2)) : (random.nextInt(40) - 20);
+      }
+    }
+    final byte[] pcm = new byte[total * format.getFrameSize()];
+    format.encode(samples, total, pcm);
+
+    final File audio = File.createTempFile("tone", ".raw");
+    audio.deleteOnExit();
+    final FileOutputStream out = new FileOutputStream(audio);
+    out.write(pcm);
+    out.close();
+    return audio;
+  }
+
   /**
    * Test recognize -missing audio file, generate IllegalArgumentException.
    *
@@ -431,6 +685,512 @@ public class SpeechToTextTest extends WatsonServiceUnitTest {
     assertEquals(jobsAsJson.get("recognitions"), GSON.toJsonTree(result));
   }
 
+  /**
+   * Test the recognition job manager polls all the jobs with one listing call.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testRecognitionJobManager() throws Exception {
+    final RecognitionJob first = new RecognitionJob();
+    first.setId("first");
+    final RecognitionJob second = new RecognitionJob();
+    second.setId("second");
+
+    first.setStatus(RecognitionJob.Status.PROCESSING);
+    second.setStatus(RecognitionJob.Status.WAITING);
+    server.enqueue(jsonResponse(ImmutableMap.of("recognitions", ImmutableList.of(first, second))));
+    first.setStatus(RecognitionJob.Status.COMPLETED);
+    second.setStatus(RecognitionJob.Status.FAILED);
+    server.enqueue(jsonResponse(ImmutableMap.of("recognitions", ImmutableList.of(first, second))));
+    String jobsAsString = getStringFromInputStream(new FileInputStream("src/test/resources/speech_to_text/jobs.json"));
+    JsonObject completed = new JsonParser().parse(jobsAsString).getAsJsonObject().get("recognitions")
+        .getAsJsonArray().get(2).getAsJsonObject();
+    completed.addProperty("id", "first");
+    server.enqueue(new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.APPLICATION_JSON)
+        .setBody(completed.toString()));
+
+    RecognitionJobManager manager = new RecognitionJobManager(service, 10, 40, TimeUnit.MILLISECONDS);
+    try {
+      CompletableFuture<RecognitionJob> firstFuture = manager.track("first");
+      CompletableFuture<RecognitionJob> secondFuture = manager.track(second);
+      assertTrue(firstFuture == manager.track("first"));
+
+      RecognitionJob firstJob = firstFuture.get(5, TimeUnit.SECONDS);
+      RecognitionJob secondJob = secondFuture.get(5, TimeUnit.SECONDS);
+      assertEquals(RecognitionJob.Status.COMPLETED, firstJob.getStatus());
+      assertEquals(1, firstJob.getResults().size());
+      assertEquals(RecognitionJob.Status.FAILED, secondJob.getStatus());
+      assertEquals(0, manager.getPendingCount());
+    } finally {
+      manager.shutdown();
+    }
+
+    assertEquals(PATH_RECOGNITIONS, server.takeRequest().getPath());
+    assertEquals(PATH_RECOGNITIONS, server.takeRequest().getPath());
+    assertEquals(String.format(PATH_RECOGNITION, "first"), server.takeRequest().getPath());
+    assertEquals(3, server.getRequestCount());
+  }
+
+  /**
+   * Test that a job listed as completed before its results are available stays tracked until they are, and that a
+   * job tracked again after it completed gets a new future.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testRecognitionJobManagerResultsNotReady() throws Exception {
+    final RecognitionJob job = new RecognitionJob();
+    job.setId("first");
+    job.setStatus(RecognitionJob.Status.COMPLETED);
+    final MockResponse listing = jsonResponse(ImmutableMap.of("recognitions", ImmutableList.of(job)));
+    String jobsAsString = getStringFromInputStream(new FileInputStream("src/test/resources/speech_to_text/jobs.json"));
+    JsonObject completed = new JsonParser().parse(jobsAsString).getAsJsonObject().get("recognitions")
+        .getAsJsonArray().get(2).getAsJsonObject();
+    completed.addProperty("id", "first");
+    final MockResponse results = new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.APPLICATION_JSON)
+        .setBody(completed.toString());
+
+    server.enqueue(listing.clone());
+    job.setStatus(RecognitionJob.Status.PROCESSING);
+    server.enqueue(jsonResponse(job));
+    server.enqueue(listing.clone());
+    server.enqueue(results.clone());
+    server.enqueue(listing.clone());
+    server.enqueue(results.clone());
+
+    RecognitionJobManager manager = new RecognitionJobManager(service, 10, 40, TimeUnit.MILLISECONDS);
+    try {
+      CompletableFuture<RecognitionJob> future = manager.track("first");
+      assertEquals(RecognitionJob.Status.COMPLETED, future.get(5, TimeUnit.SECONDS).getStatus());
+      assertEquals(0, manager.getPendingCount());
+      assertEquals(4, server.getRequestCount());
+
+      CompletableFuture<RecognitionJob> again = manager.track("first");
+      assertFalse(future == again);
+      assertEquals(1, again.get(5, TimeUnit.SECONDS).getResults().size());
+      assertEquals(6, server.getRequestCount());
+    } finally {
+      manager.shutdown();
+    }
+  }
+
+  /**
+   * Test that a completed job whose results cannot be fetched is fetched again at the next poll, and that a job the
+   * service does not know fails.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testRecognitionJobManagerFetchRetry() throws Exception {
+    final RecognitionJob job = new RecognitionJob();
+    job.setId("first");
+    job.setStatus(RecognitionJob.Status.COMPLETED);
+    final MockResponse listing = jsonResponse(ImmutableMap.of("recognitions", ImmutableList.of(job)));
+    String jobsAsString = getStringFromInputStream(new FileInputStream("src/test/resources/speech_to_text/jobs.json"));
+    JsonObject completed = new JsonParser().parse(jobsAsString).getAsJsonObject().get("recognitions")
+        .getAsJsonArray().get(2).getAsJsonObject();
+    completed.addProperty("id", "first");
+
+    server.enqueue(listing.clone());
+    server.enqueue(new MockResponse().setResponseCode(500));
+    server.enqueue(listing.clone());
+    server.enqueue(new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.APPLICATION_JSON)
+        .setBody(completed.toString()));
+    server.enqueue(jsonResponse(ImmutableMap.of("recognitions", ImmutableList.of())));
+    server.enqueue(new MockResponse().setResponseCode(404));
+
+    RecognitionJobManager manager = new RecognitionJobManager(service, 10, 40, TimeUnit.MILLISECONDS);
+    try {
+      CompletableFuture<RecognitionJob> future = manager.track("first");
+      assertEquals(1, future.get(5, TimeUnit.SECONDS).getResults().size());
+      assertEquals(4, server.getRequestCount());
+
+      CompletableFuture<RecognitionJob> unknown = manager.track("unknown");
+      try {
+        unknown.get(5, TimeUnit.SECONDS);
+        fail("the future of an unknown job should fail");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof NotFoundException);
+      }
+      assertEquals(0, manager.getPendingCount());
+      assertEquals(6, server.getRequestCount());
+    } finally {
+      manager.shutdown();
+    }
+  }
+
+  /**
+   * Test the recognition callback server with signed and unsigned requests.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testRecognitionCallbackServer() throws Exception {
+    final String secret = "secret";
+    final BlockingQueue<RecognitionEvent> events = new LinkedBlockingQueue<RecognitionEvent>();
+    RecognitionCallbackServer callbackServer = new RecognitionCallbackServer(0, "/results", secret);
+    callbackServer.addListener(new RecognitionEventListener() {
+      @Override
+      public void onEvent(RecognitionEvent event) {
+        events.add(event);
+      }
+    });
+    callbackServer.start();
+    try {
+      String url = "http://localhost:" + callbackServer.getAddress().getPort() + "/results";
+      OkHttpClient client = new OkHttpClient();
+
+      // registration challenge
+      Response response = client.newCall(new Request.Builder().url(url + "?challenge_string=abc%2B1")
+          .header(RecognitionCallbackServer.SIGNATURE_HEADER, RecognitionCallbackServer.sign(secret,
+              "abc+1".getBytes("UTF-8"))).build()).execute();
+      assertEquals(200, response.code());
+      assertEquals("abc+1", response.body().string());
+      response = client.newCall(new Request.Builder().url(url + "?challenge_string=abc").build()).execute();
+      assertEquals(401, response.code());
+      response.body().close();
+
+      // notifications
+      String body = "{\"id\":\"4bd734c0\",\"event\":\"recognitions.completed\",\"user_token\":\"job1\"}";
+      response = client.newCall(new Request.Builder().url(url)
+          .header(RecognitionCallbackServer.SIGNATURE_HEADER, "forged")
+          .post(RequestBody.create(MediaType.parse(HttpMediaType.APPLICATION_JSON), body)).build()).execute();
+      assertEquals(401, response.code());
+      response.body().close();
+      response = client.newCall(new Request.Builder().url(url)
+          .header(RecognitionCallbackServer.SIGNATURE_HEADER, RecognitionCallbackServer.sign(secret,
+              body.getBytes("UTF-8")))
+          .post(RequestBody.create(MediaType.parse(HttpMediaType.APPLICATION_JSON), body)).build()).execute();
+      assertEquals(200, response.code());
+      response.body().close();
+
+      RecognitionEvent event = events.poll(5, TimeUnit.SECONDS);
+      assertNotNull(event);
+      assertEquals("4bd734c0", event.getId());
+      assertEquals(RecognitionEvent.Type.COMPLETED, event.getEvent());
+      assertEquals("job1", event.getUserToken());
+      assertTrue(events.isEmpty());
+
+      // too large to be buffered: rejected before the body is sent
+      final Socket socket = new Socket("localhost", callbackServer.getAddress().getPort());
+      try {
+        socket.getOutputStream().write(("POST /results HTTP/1.1\r\nHost: localhost\r\nContent-Length: "
+            + (RecognitionCallbackServer.MAX_BODY_LENGTH + 1) + "\r\n\r\n").getBytes("UTF-8"));
+        final String status = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8")).readLine();
+        assertTrue(status, status.startsWith("HTTP/1.1 413 "));
+      } finally {
+        socket.close();
+      }
+    } finally {
+      callbackServer.stop();
+    }
+  }
+
+  /**
+   * Test the transcript assembler with interim results and speaker labels.
+   */
+  @Test
+  public void testTranscriptAssembler() {
+    final List<TranscriptUpdate> updates = new ArrayList<TranscriptUpdate>();
+    TranscriptAssembler assembler = new TranscriptAssembler();
+    assembler.addListener(new TranscriptListener() {
+      @Override
+      public void onUpdate(TranscriptUpdate update) {
+        updates.add(update);
+      }
+    });
+    CharSequence transcript = assembler.getTranscript();
+
+    assembler.onTranscription(GSON.fromJson("{\"result_index\":0,\"results\":[{\"final\":false,"
+        + "\"alternatives\":[{\"transcript\":\"hello \"}]}]}", SpeechResults.class));
+    assertEquals("hello ", transcript.toString());
+    assertEquals(0, assembler.getFinalLength());
+
+    assembler.onTranscription(GSON.fromJson("{\"result_index\":0,\"results\":[{\"final\":true,\"alternatives\":"
+        + "[{\"transcript\":\"hello world \",\"timestamps\":[[\"hello\",0.2,0.8],[\"world\",1.5,1.9]]}]}]}",
+        SpeechResults.class));
+    assembler.onTranscription(GSON.fromJson("{\"result_index\":1,\"results\":[{\"final\":false,"
+        + "\"alternatives\":[{\"transcript\":\"how \"}]}]}", SpeechResults.class));
+    assertEquals("hello world how ", transcript.toString());
+    assertEquals("how ", assembler.getInterimText());
+    assertEquals(1, assembler.getSegmentCount());
+    TranscriptSegment segment = assembler.getSegment(0);
+    assertEquals("hello world ", segment.getText());
+    assertEquals(0.2, segment.getStartTime(), 0.001);
+    assertEquals(1.9, segment.getEndTime(), 0.001);
+
+    // a repeated final result is not appended twice
+    assembler.onTranscription(GSON.fromJson("{\"result_index\":0,\"results\":[{\"final\":true,\"alternatives\":"
+        + "[{\"transcript\":\"hello world \"}]},{\"final\":true,\"alternatives\":[{\"transcript\":\"how are you \"}]}]}",
+        SpeechResults.class));
+    assertEquals("hello world how are you ", transcript.toString());
+    assertEquals(transcript.length(), assembler.getFinalLength());
+    assertEquals(2, assembler.getSegmentCount());
+    assertEquals(12, assembler.getSegment(1).getOffset());
+
+    assembler.onTranscription(GSON.fromJson("{\"speaker_labels\":[{\"from\":0.2,\"to\":0.8,\"speaker\":0,"
+        + "\"final\":false},{\"from\":1.5,\"to\":1.9,\"speaker\":1,\"final\":false}]}", SpeechResults.class));
+    assertEquals(Integer.valueOf(1), assembler.getSpeaker(1.6));
+    assertNull(assembler.getSpeaker(1.0));
+    assembler.onTranscription(GSON.fromJson("{\"speaker_labels\":[{\"from\":0.2,\"to\":0.8,\"speaker\":0,"
+        + "\"final\":true},{\"from\":1.5,\"to\":1.9,\"speaker\":0,\"final\":true}]}", SpeechResults.class));
+    assertEquals(Integer.valueOf(0), assembler.getSpeaker(1.6));
+    assertEquals(2, assembler.getSpeakerLabels().size());
+
+    assertEquals(6, updates.size());
+    assertEquals(1, updates.get(1).getFinalized().size());
+    assertEquals("", updates.get(1).getInterimText());
+    assertEquals(1, updates.get(3).getFinalized().size());
+    assertEquals("how are you ", updates.get(3).getFinalized().get(0).getText());
+    assertEquals(2, updates.get(5).getSpeakerLabels().size());
+  }
+
+  /**
+   * Test the session pool: leasing, invalidation, keep-alive and shutdown.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testSpeechSessionPool() throws Exception {
+    final String model = "en-US_BroadbandModel";
+    final String recognition =
+        getStringFromInputStream(new FileInputStream("src/test/resources/speech_to_text/recognition.json"));
+    final AtomicInteger created = new AtomicInteger();
+    final Set<String> expired = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    final Set<String> unavailable = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    final Set<String> deleted = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    final Set<String> recognized = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        final String path = request.getPath();
+        if (path.startsWith(PATH_SESSIONS + "?")) {
+          final SpeechSession newSession = new SpeechSession();
+          newSession.setSessionId("session" + created.incrementAndGet());
+          return jsonResponse(newSession);
+        }
+        final String id = path.split("[/?]")[3];
+        if (DELETE.equals(request.getMethod())) {
+          deleted.add(id);
+          return new MockResponse().setResponseCode(204);
+        }
+        if (expired.contains(id)) {
+          return new MockResponse().setResponseCode(404).setBody("{\"error\":\"Session does not exist\"}");
+        }
+        if (unavailable.contains(id)) {
+          return new MockResponse().setResponseCode(503).setBody("{\"error\":\"Service unavailable\"}");
+        }
+        if (GET.equals(request.getMethod())) {
+          return jsonResponse(ImmutableMap.of("session", ImmutableMap.of("state", "initialized", "model", model)));
+        }
+        recognized.add(path);
+        return new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.APPLICATION_JSON).setBody(recognition);
+      }
+    });
+
+    final SpeechSessionPool pool = new SpeechSessionPool(service, 2, 100, TimeUnit.MILLISECONDS, model);
+    SpeechSession first;
+    SpeechSession second;
+    pool.start();
+    try {
+      assertEquals(2, created.get());
+      assertEquals(2, pool.getSessionCount(model));
+
+      SpeechResults results = pool.recognize(SAMPLE_WAV, new RecognizeOptions.Builder().model(model).build());
+      assertNotNull(results.getResults());
+      assertEquals(1, recognized.size());
+      assertTrue(recognized.iterator().next().matches("/v1/sessions/session[12]/recognize"));
+
+      first = pool.lease(model);
+      second = pool.lease(model);
+      assertNull(pool.lease(model, 10, TimeUnit.MILLISECONDS));
+
+      // an invalidated session is deleted and replaced
+      pool.invalidate(first);
+      assertTrue(deleted.contains(first.getSessionId()));
+      pool.release(second);
+      waitFor(created, 3);
+
+      // an expired idle session is replaced by the keep-alive check
+      expired.add(second.getSessionId());
+      waitFor(created, 4);
+      assertEquals(2, pool.getSessionCount(model));
+
+      // a session that cannot be checked is kept
+      unavailable.add("session3");
+      unavailable.add("session4");
+      Thread.sleep(350);
+      assertEquals(4, created.get());
+      assertEquals(2, pool.getSessionCount(model));
+      assertEquals(1, deleted.size());
+
+      // a caller waiting for a session is woken up by the shutdown
+      final SpeechSession third = pool.lease(model);
+      final SpeechSession fourth = pool.lease(model);
+      final AtomicReference<Exception> leaseError = new AtomicReference<Exception>();
+      final Thread waiting = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            pool.lease(model);
+          } catch (Exception e) {
+            leaseError.set(e);
+          }
+        }
+      });
+      waiting.start();
+      Thread.sleep(50);
+      pool.shutdown();
+      waiting.join(5000);
+      assertTrue(leaseError.get() instanceof IllegalStateException);
+      pool.release(third);
+      pool.release(fourth);
+    } finally {
+      pool.shutdown();
+    }
+
+    try {
+      pool.lease(model, 10, TimeUnit.MILLISECONDS);
+      fail("a pool that has been shut down should not lease sessions");
+    } catch (IllegalStateException e) {
+      assertEquals(0, pool.getIdleCount(model));
+    }
+
+    // the expired session no longer exists, the others are deleted
+    assertEquals(3, deleted.size());
+    assertTrue(deleted.contains(first.getSessionId()));
+    assertFalse(deleted.contains(second.getSessionId()));
+  }
+
+  private static void waitFor(AtomicInteger counter, int value) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + 5000;
+    while ((counter.get() < value) && (System.currentTimeMillis() < deadline)) {
+      Thread.sleep(10);
+    }
+    assertEquals(value, counter.get());
+  }
+
+  /**
+   * Test the customization sync: only the differences are sent, then the model is trained.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testCustomizationSync() throws Exception {
+    final String id = "cid";
+    final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+    final List<String> bodies = Collections.synchronizedList(new ArrayList<String>());
+    final AtomicInteger trainingPolls = new AtomicInteger(-1);
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        final String path = request.getPath();
+        requests.add(request.getMethod() + " " + path);
+        if (GET.equals(request.getMethod()) && path.startsWith(String.format(PATH_WORDS, id))) {
+          return jsonResponse(ImmutableMap.of("words", ImmutableList.of(new Word("alpha", "alpha", "alpha"),
+              new Word("beta", "beta", "beta"), new Word("gamma", "gamma", "gamma"))));
+        }
+        if (GET.equals(request.getMethod()) && path.equals(String.format(PATH_CORPORA, id))) {
+          return jsonResponse(ImmutableMap.of("corpora", ImmutableList.of(ImmutableMap.of("name", "corpus1"))));
+        }
+        if (GET.equals(request.getMethod())) {
+          // ready until trained, then training once and available
+          final int polls = trainingPolls.get() < 0 ? -1 : trainingPolls.incrementAndGet();
+          final String status = polls < 0 ? "ready" : (polls == 1 ? "training" : "available");
+          return jsonResponse(ImmutableMap.of("customization_id", id, "status", status));
+        }
+        if (path.equals(String.format(PATH_TRAIN, id))) {
+          trainingPolls.set(0);
+        }
+        if (path.equals(String.format(PATH_WORDS, id))) {
+          bodies.add(request.getBody().readUtf8());
+        }
+        return new MockResponse().setResponseCode(DELETE.equals(request.getMethod()) ? 204 : 201);
+      }
+    });
+
+    CustomizationSync sync = new CustomizationSync.Builder(service, id)
+        .words(new Word("alpha", "alpha", "alpha"), new Word("beta", null, "bayta"), new Word("delta", null, "delta"),
+            new Word("epsilon", "Epsilon"))
+        .corpus("corpus2", new File("src/test/resources/speech_to_text/corpus1.txt"))
+        .batchSize(2, 1024)
+        .pollInterval(1, 4, TimeUnit.MILLISECONDS)
+        .build();
+    CustomizationSyncResult result = sync.sync();
+
+    assertEquals(2, result.getWordsAdded());
+    assertEquals(1, result.getWordsUpdated());
+    assertEquals(1, result.getWordsDeleted());
+    assertEquals(1, result.getCorporaAdded());
+    assertEquals(1, result.getCorporaDeleted());
+    assertTrue(result.isTrained());
+
+    assertTrue(requests.contains("DELETE " + String.format(PATH_WORD, id, "gamma")));
+    assertTrue(requests.contains("DELETE " + String.format(PATH_CORPUS, id, "corpus1")));
+    assertTrue(requests.contains("POST " + String.format(PATH_CORPUS, id, "corpus2") + "?allow_override=false"));
+    assertEquals(2, bodies.size());
+    assertEquals(ImmutableList.of("beta", "delta"), getWordNames(bodies.get(0)));
+    assertEquals(ImmutableList.of("epsilon"), getWordNames(bodies.get(1)));
+    assertEquals("POST " + String.format(PATH_TRAIN, id), requests.get(requests.size() - 3));
+    assertEquals(2, trainingPolls.get());
+  }
+
+  /**
+   * Test that the batches of words of a customization sync are limited in UTF-8 bytes, not in characters.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testCustomizationSyncBatchBytes() throws Exception {
+    final String id = "cid";
+    final List<byte[]> bodies = Collections.synchronizedList(new ArrayList<byte[]>());
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        final String path = request.getPath();
+        if (GET.equals(request.getMethod()) && path.startsWith(String.format(PATH_WORDS, id))) {
+          return jsonResponse(ImmutableMap.of("words", ImmutableList.of()));
+        }
+        if (GET.equals(request.getMethod()) && path.equals(String.format(PATH_CORPORA, id))) {
+          return jsonResponse(ImmutableMap.of("corpora", ImmutableList.of()));
+        }
+        if (GET.equals(request.getMethod())) {
+          return jsonResponse(ImmutableMap.of("customization_id", id, "status", "available"));
+        }
+        if (path.equals(String.format(PATH_WORDS, id))) {
+          bodies.add(request.getBody().readByteArray());
+        }
+        return new MockResponse().setResponseCode(201);
+      }
+    });
+
+    // 3 bytes per character in UTF-8
+    final List<Word> words = new ArrayList<Word>();
+    for (int i = 0; i < 6; i++) {
+      words.add(new Word("\u65e5\u672c\u8a9e" + i, "\u65e5\u672c\u8a9e\u65e5\u672c\u8a9e" + i));
+    }
+    final int maxBatchBytes = 200;
+    CustomizationSync sync = new CustomizationSync.Builder(service, id).words(words).batchSize(100, maxBatchBytes)
+        .pollInterval(1, 4, TimeUnit.MILLISECONDS).build();
+    assertEquals(6, sync.sync().getWordsAdded());
+
+    int sent = 0;
+    for (byte[] body : bodies) {
+      assertTrue(body.length + " bytes", body.length <= maxBatchBytes);
+      sent += getWordNames(new String(body, "UTF-8")).size();
+    }
+    assertEquals(6, sent);
+  }
+
+  private static List<String> getWordNames(String body) {
+    List<String> names = new ArrayList<String>();
+    for (JsonElement word : new JsonParser().parse(body).getAsJsonObject().get("words").getAsJsonArray()) {
+      names.add(word.getAsJsonObject().get("word").getAsString());
+    }
+    return names;
+  }
+
   /**
    * Test get customizations.
    *
@@ -19,6 +19,10 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -28,9 +32,22 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.UnsupportedAudioFileException;
 
@@ -40,22 +57,46 @@ import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
 import com.google.gson.Gson;
 import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
 import com.ibm.watson.developer_cloud.http.HttpMediaType;
+import com.ibm.watson.developer_cloud.service.exception.BadRequestException;
 import com.ibm.watson.developer_cloud.text_to_speech.v1.model.AudioFormat;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.BatchSynthesisResult;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.CustomTranslation;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.CustomVoiceModel;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Mark;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Phoneme;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Pronunciation;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.PronunciationResult;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.SynthesisTask;
 import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Voice;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.WordTiming;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.util.AudioFanOut;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.util.OggConcatenator;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.util.SampleFormat;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.util.SentenceSplitter;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.util.TranscodingInputStream;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.util.TranscodingOutputStream;
 import com.ibm.watson.developer_cloud.text_to_speech.v1.util.WaveUtils;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.websocket.BaseSynthesisCallback;
 import com.ibm.watson.developer_cloud.util.GsonSingleton;
 import com.ibm.watson.developer_cloud.util.TestUtils;
 
 import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.RecordedRequest;
 import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
 
 /**
  * The Class TextToSpeechTest.
@@ -241,6 +282,916 @@ public class TextToSpeechTest extends WatsonServiceUnitTest {
     assertNotNull(AudioSystem.getAudioFileFormat(tempFile));
   }
 
+  /**
+   * Test that streamed WAVE audio is written to a file with the real sizes in its header.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   * @throws UnsupportedAudioFileException the unsupported audio file exception
+   */
+  @Test
+  public void testWriteWave() throws IOException, UnsupportedAudioFileException {
+    File audio = new File("src/test/resources/text_to_speech/numbers.wav");
+    File tempFile = File.createTempFile("output", ".wav");
+    tempFile.deleteOnExit();
+
+    assertEquals(audio.length(), WaveUtils.writeWave(new FileInputStream(audio), tempFile));
+    assertEquals(audio.length(), tempFile.length());
+    byte[] header = Files.toByteArray(tempFile);
+    assertEquals(audio.length() - 8, readIntLittleEndian(header, 4));
+    assertEquals(audio.length() - 78, readIntLittleEndian(header, 74));
+    assertEquals((audio.length() - 78) / 2, AudioSystem.getAudioFileFormat(tempFile).getFrameLength());
+  }
+
+  /**
+   * Test synthesize with a callback receiving the audio in chunks.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testSynthesizeWithCallback() throws Exception {
+    final File audio = new File("src/test/resources/text_to_speech/numbers.wav");
+    final Buffer buffer = new Buffer().write(Files.toByteArray(audio));
+    server.enqueue(new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.AUDIO_WAV).setBody(buffer)
+        .throttleBody(16 * 1024, 1, TimeUnit.MILLISECONDS));
+
+    final ByteArrayOutputStream received = new ByteArrayOutputStream();
+    final AtomicInteger chunks = new AtomicInteger();
+    final CountDownLatch done = new CountDownLatch(1);
+    service.synthesize(text, Voice.EN_LISA, AudioFormat.WAV, null, new SynthesizeCallback() {
+      @Override
+      public void onAudio(byte[] audio, int length) {
+        chunks.incrementAndGet();
+        received.write(audio, 0, length);
+      }
+
+      @Override
+      public void onComplete() {
+        done.countDown();
+      }
+
+      @Override
+      public void onError(Exception e) {
+        e.printStackTrace();
+      }
+    });
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertTrue(chunks.get() > 1);
+    byte[] bytes = received.toByteArray();
+    assertEquals(audio.length(), bytes.length);
+    // the unknown sizes are replaced by the largest valid ones
+    assertEquals(0x7FFFFFFEL - 8, readIntLittleEndian(bytes, 4));
+    assertEquals(0x7FFFFFFEL - 78, readIntLittleEndian(bytes, 74));
+    assertNotNull(AudioSystem.getAudioInputStream(new ByteArrayInputStream(bytes)));
+    assertEquals(SYNTHESIZE_PATH, HttpUrl.parse("http://host" + server.takeRequest().getPath()).encodedPath());
+  }
+
+  /**
+   * Test the sentence splitter with plain text and SSML.
+   */
+  @Test
+  public void testSentenceSplitter() {
+    assertEquals(ImmutableList.of("Hello world.", "Dr. Smith is here.", "Is he?"),
+        SentenceSplitter.split("Hello world. Dr. Smith is here. Is he?", 20));
+    assertEquals(ImmutableList.of("Hello world. Dr. Smith is here.", "Is he?"),
+        SentenceSplitter.split("Hello world. Dr. Smith is here. Is he?", 32));
+    assertEquals(ImmutableList.of("A very long", "sentence"), SentenceSplitter.split("A very long sentence", 12));
+
+    final String ssml = "<speak><prosody rate=\"slow\">One. Two.</prosody> Three.</speak>";
+    assertEquals(ImmutableList.of(ssml), SentenceSplitter.split(ssml, 1000));
+    assertEquals(ImmutableList.of("<speak><prosody rate=\"slow\">One.</prosody></speak>",
+        "<speak><prosody rate=\"slow\">Two.</prosody></speak>", "<speak>Three.</speak>"),
+        SentenceSplitter.split(ssml, 5));
+  }
+
+  /**
+   * Test the synthesis of a long text: the audio of the chunks is served in order, even when a later chunk is
+   * synthesized first.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testSynthesizeLongText() throws Exception {
+    final CountDownLatch lastServed = new CountDownLatch(1);
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        final String chunk = HttpUrl.parse("http://host" + request.getPath()).queryParameter("text");
+        if (chunk.startsWith("First")) {
+          lastServed.await(5, TimeUnit.SECONDS);
+        } else if (chunk.startsWith("Third")) {
+          lastServed.countDown();
+        }
+        return new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.AUDIO_RAW).setBody(chunk + "|");
+      }
+    });
+
+    final String longText = "First sentence. Second sentence. Third sentence.";
+    final InputStream audio = service.synthesizeLongText(longText, Voice.EN_LISA, AudioFormat.getPCM(16000), null,
+        16, 3).execute();
+    final ByteArrayOutputStream received = new ByteArrayOutputStream();
+    writeInputStreamToOutputStream(audio, received);
+    assertEquals("First sentence.|Second sentence.|Third sentence.|", received.toString("UTF-8"));
+    assertEquals(3, server.getRequestCount());
+  }
+
+  /**
+   * Test the synthesis of a long text as WAVE audio: only the first chunk keeps its header.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testSynthesizeLongTextAsWave() throws Exception {
+    final File wave = new File("src/test/resources/text_to_speech/numbers.wav");
+    final byte[] bytes = Files.toByteArray(wave);
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        return new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.AUDIO_WAV).setBody(new Buffer().write(bytes));
+      }
+    });
+
+    final InputStream audio = service.synthesizeLongText("One. Two. Three. Four.", Voice.EN_LISA, AudioFormat.WAV,
+        null, 5, 2).execute();
+    final ByteArrayOutputStream received = new ByteArrayOutputStream();
+    writeInputStreamToOutputStream(audio, received);
+
+    final byte[] stitched = received.toByteArray();
+    assertEquals(78 + (4 * (bytes.length - 78)), stitched.length);
+    assertEquals(0x7FFFFFFEL - 78, readIntLittleEndian(stitched, 74));
+    assertNotNull(AudioSystem.getAudioInputStream(new ByteArrayInputStream(stitched)));
+    assertEquals(4, server.getRequestCount());
+  }
+
+  /**
+   * Test the synthesis of a long text whose chunks are larger than the audio buffered per chunk: the rest of a chunk is
+   * read from its response, and closing the stream stops the synthesis.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testSynthesizeLongTextLargeChunks() throws Exception {
+    final int chunkLength = 1024 * 1024;
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        final HttpUrl url = HttpUrl.parse("http://host" + request.getPath());
+        final byte[] chunk = new byte[chunkLength];
+        Arrays.fill(chunk, (byte) url.queryParameter("text").charAt(0));
+        return new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.AUDIO_RAW).setBody(new Buffer().write(chunk));
+      }
+    });
+
+    InputStream audio = service.synthesizeLongText("A. B. C.", Voice.EN_LISA, AudioFormat.getPCM(16000), null, 2, 2)
+        .execute();
+    // let the synthesis run ahead of the reader
+    Thread.sleep(200);
+    final byte[] received = ByteStreams.toByteArray(audio);
+    assertEquals(3 * chunkLength, received.length);
+    for (int i = 0; i < received.length; i += 4096) {
+      assertEquals("ABC".charAt(i / chunkLength), received[i]);
+    }
+
+    audio = service.synthesizeLongText("A. B. C.", Voice.EN_LISA, AudioFormat.getPCM(16000), null, 2, 2).execute();
+    assertEquals('A', audio.read());
+    audio.close();
+  }
+
+  /**
+   * Test the asynchronous synthesis of a long text: the future gets the stream once the first chunk responds, or the
+   * error of the first chunk.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testSynthesizeLongTextRx() throws Exception {
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        final String chunk = HttpUrl.parse("http://host" + request.getPath()).queryParameter("text");
+        if (chunk.startsWith("Unknown")) {
+          return new MockResponse().setResponseCode(400).addHeader(CONTENT_TYPE, HttpMediaType.APPLICATION_JSON)
+              .setBody("{\"error\":\"unknown voice\",\"code\":400}");
+        }
+        return new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.AUDIO_RAW).setBody(chunk + "|");
+      }
+    });
+
+    final InputStream audio = service.synthesizeLongText("One. Two. Three.", Voice.EN_LISA, AudioFormat.getPCM(16000),
+        null, 4, 2).rx().get(5, TimeUnit.SECONDS);
+    assertEquals("One.|Two.|Three.|", new String(ByteStreams.toByteArray(audio), "UTF-8"));
+
+    try {
+      service.synthesizeLongText("Unknown. Two.", Voice.EN_LISA, AudioFormat.getPCM(16000), null, 8, 2).rx()
+          .get(5, TimeUnit.SECONDS);
+      Assert.fail("the future should fail with the error of the first chunk");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof BadRequestException);
+    }
+  }
+
+  /**
+   * Test that long texts cannot be synthesized in formats whose chunks cannot be joined.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testSynthesizeLongTextAsFlac() {
+    service.synthesizeLongText(text, Voice.EN_LISA, AudioFormat.FLAC, null);
+  }
+
+  /**
+   * Test the concatenation of two Ogg streams into one logical stream.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void testOggConcatenator() throws IOException {
+    final OggConcatenator concatenator = new OggConcatenator();
+    final ByteArrayOutputStream joined = new ByteArrayOutputStream();
+    writeInputStreamToOutputStream(concatenator.append(new ByteArrayInputStream(oggStream(1, "a")), false), joined);
+    writeInputStreamToOutputStream(concatenator.append(new ByteArrayInputStream(oggStream(2, "b")), true), joined);
+
+    final byte[] bytes = joined.toByteArray();
+    final long[] granules = { 0, 0, 960, 1920, 2880, 3840 };
+    final String[] bodies = { "OpusHead", "OpusTags", "a1", "a2", "b1", "b2" };
+    int offset = 0;
+    for (int page = 0; page < granules.length; page++) {
+      final int length = 28 + bytes[offset + 27];
+      final byte[] copy = Arrays.copyOfRange(bytes, offset, offset + length);
+      final int flags = copy[5];
+      assertEquals(page == 0, (flags & 0x02) != 0);
+      assertEquals(page == (granules.length - 1), (flags & 0x04) != 0);
+      assertEquals(granules[page], readIntLittleEndian(copy, 6));
+      assertEquals(1, readIntLittleEndian(copy, 14));
+      assertEquals(page, readIntLittleEndian(copy, 18));
+      assertEquals(bodies[page], new String(copy, 28, length - 28, "UTF-8"));
+
+      final long crc = readIntLittleEndian(copy, 22);
+      Arrays.fill(copy, 22, 26, (byte) 0);
+      assertEquals(crc, OggConcatenator.crc(copy, 0, length) & 0xFFFFFFFFL);
+      offset += length;
+    }
+    assertEquals(bytes.length, offset);
+  }
+
+  /**
+   * Builds an Ogg stream with a packet per page: the two Opus headers and two audio packets of 960 samples.
+   */
+  private static byte[] oggStream(int serial, String prefix) throws IOException {
+    final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    final String[] packets = { "OpusHead", "OpusTags", prefix + "1", prefix + "2" };
+    final int[] granules = { 0, 0, 960, 1920 };
+    for (int i = 0; i < packets.length; i++) {
+      final byte[] page = new byte[28 + packets[i].length()];
+      System.arraycopy("OggS".getBytes("UTF-8"), 0, page, 0, 4);
+      page[5] = (byte) ((i == 0) ? 0x02 : ((i == (packets.length - 1)) ? 0x04 : 0));
+      page[6] = (byte) granules[i];
+      page[7] = (byte) (granules[i] >> 8);
+      page[14] = (byte) serial;
+      page[18] = (byte) i;
+      page[26] = 1;
+      page[27] = (byte) packets[i].length();
+      System.arraycopy(packets[i].getBytes("UTF-8"), 0, page, 28, packets[i].length());
+      stream.write(page);
+    }
+    return stream.toByteArray();
+  }
+
+  /**
+   * Test the synthesis cache: hits are served without a request, survive a restart, and are dropped when the
+   * customization changes.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testSynthesisCache() throws Exception {
+    final File directory = Files.createTempDir();
+    final byte[] bytes = Files.toByteArray(new File("src/test/resources/text_to_speech/numbers.wav"));
+    SynthesisCache cache = new SynthesisCache(directory, 10 * bytes.length, 0);
+    service.setCache(cache);
+
+    server.enqueue(new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.AUDIO_WAV)
+        .setBody(new Buffer().write(bytes)));
+    final ByteArrayOutputStream first = new ByteArrayOutputStream();
+    writeInputStreamToOutputStream(service.synthesize(text, Voice.EN_LISA, AudioFormat.WAV, "cid").execute(), first);
+    assertTrue(Arrays.equals(bytes, first.toByteArray()));
+    assertEquals(bytes.length, cache.getDiskSize());
+
+    // same normalized parameters: no request
+    final ByteArrayOutputStream second = new ByteArrayOutputStream();
+    writeInputStreamToOutputStream(service.synthesize("  " + text + " ", Voice.EN_LISA, null, "cid").execute(),
+        second);
+    assertTrue(Arrays.equals(bytes, second.toByteArray()));
+    assertEquals(1, server.getRequestCount());
+
+    // the disk tier survives a restart
+    cache.close();
+    cache = new SynthesisCache(directory, 10 * bytes.length, 10 * bytes.length);
+    service.setCache(cache);
+    final String key = SynthesisCache.key(text, Voice.EN_LISA, AudioFormat.WAV, "cid");
+    final FileChannel channel = cache.getChannel(key);
+    assertEquals(bytes.length, channel.size());
+    channel.close();
+
+    // changing the customization drops its audio
+    server.enqueue(new MockResponse().setResponseCode(200));
+    final CustomVoiceModel model = new CustomVoiceModel();
+    model.setId("cid");
+    service.saveWords(model, new CustomTranslation("IBM", "eye bee em")).execute();
+    assertFalse(cache.contains(key));
+    assertEquals(0, cache.getDiskSize());
+    assertEquals(1, directory.listFiles().length);
+    cache.close();
+  }
+
+  /**
+   * Test that the synthesis cache evicts the least recently used audio.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void testSynthesisCacheEviction() throws IOException {
+    // room for 8 entries of 10 bytes
+    final SynthesisCache cache = new SynthesisCache(80);
+    final String[] keys = new String[9];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = SynthesisCache.key(text + i, Voice.EN_LISA, null, null);
+      final InputStream audio = cache.cache(keys[i], null, new ByteArrayInputStream(new byte[10]));
+      writeInputStreamToOutputStream(audio, new ByteArrayOutputStream());
+      if (i == 1) {
+        // keys[0] becomes more recently used than keys[1]
+        assertNotNull(cache.get(keys[0]));
+      }
+    }
+    assertTrue(cache.contains(keys[0]));
+    assertFalse(cache.contains(keys[1]));
+    assertTrue(cache.contains(keys[8]));
+    assertEquals(80, cache.getMemorySize());
+  }
+
+  /**
+   * Test that audio synthesized before its customization is invalidated is not cached when it is read afterwards.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void testSynthesisCacheInvalidateWhileReading() throws IOException {
+    final File directory = Files.createTempDir();
+    final SynthesisCache cache = new SynthesisCache(directory, 1000, 1000);
+    final String key = SynthesisCache.key(text, Voice.EN_LISA, null, "cid");
+    final String other = SynthesisCache.key(text, Voice.EN_LISA, null, null);
+    final InputStream audio = cache.cache(key, "cid", new ByteArrayInputStream(new byte[10]));
+    final InputStream otherAudio = cache.cache(other, null, new ByteArrayInputStream(new byte[10]));
+    assertEquals(5, audio.read(new byte[5]));
+
+    cache.invalidate("cid");
+    writeInputStreamToOutputStream(audio, new ByteArrayOutputStream());
+    writeInputStreamToOutputStream(otherAudio, new ByteArrayOutputStream());
+    assertFalse(cache.contains(key));
+    assertTrue(cache.contains(other));
+    assertEquals(10, cache.getDiskSize());
+    assertEquals(2, directory.listFiles().length);
+
+    // audio synthesized after the invalidation is cached
+    writeInputStreamToOutputStream(cache.cache(key, "cid", new ByteArrayInputStream(new byte[10])),
+        new ByteArrayOutputStream());
+    assertTrue(cache.contains(key));
+
+    final InputStream cleared = cache.cache(other, null, new ByteArrayInputStream(new byte[10]));
+    cache.clear();
+    writeInputStreamToOutputStream(cleared, new ByteArrayOutputStream());
+    assertFalse(cache.contains(other));
+    cache.close();
+  }
+
+  /**
+   * Test the metadata cache: duplicate and cached words are not requested, and at most <code>concurrency</code>
+   * requests are in flight.
+   *
+   * @throws InterruptedException the interrupted exception
+   */
+  @Test
+  public void testMetadataCache() throws InterruptedException {
+    final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicInteger maxInFlight = new AtomicInteger();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        final HttpUrl url = HttpUrl.parse("http://host" + request.getPath());
+        if (url.encodedPath().equals(GET_VOICES_PATH)) {
+          final Voice voice = new Voice();
+          voice.setName("en-US_TestVoice");
+          return new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.APPLICATION_JSON)
+              .setBody(GSON.toJson(ImmutableMap.of("voices", ImmutableList.of(voice))));
+        }
+        final int current = inFlight.incrementAndGet();
+        synchronized (maxInFlight) {
+          maxInFlight.set(Math.max(maxInFlight.get(), current));
+        }
+        Thread.sleep(50);
+        inFlight.decrementAndGet();
+        if (url.queryParameter("text").equals("fail")) {
+          return new MockResponse().setResponseCode(500).addHeader(CONTENT_TYPE, HttpMediaType.APPLICATION_JSON)
+              .setBody("{\"error\": \"Internal Server Error\", \"code\": 500}");
+        }
+        final String pronunciation = "/" + url.queryParameter("text") + "/";
+        return new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.APPLICATION_JSON)
+            .setBody(GSON.toJson(ImmutableMap.of("pronunciation", pronunciation)));
+      }
+    });
+
+    final MetadataCache metadata = new MetadataCache(service, 2, 100, 1, TimeUnit.HOURS);
+    final PronunciationResult result = metadata.getPronunciations(
+        ImmutableList.of("IBM", "Watson", "IBM", "fail", "Bluemix", "Cloud"), Voice.EN_LISA, Phoneme.IPA, null);
+    final Map<String, Pronunciation> pronunciations = result.getPronunciations();
+    assertEquals(ImmutableList.of("IBM", "Watson", "Bluemix", "Cloud"),
+        ImmutableList.copyOf(pronunciations.keySet()));
+    assertEquals("/Watson/", pronunciations.get("Watson").getPronunciation());
+    assertEquals(ImmutableList.of("fail"), ImmutableList.copyOf(result.getFailures().keySet()));
+    assertEquals(5, server.getRequestCount());
+    assertTrue(maxInFlight.get() <= 2);
+
+    // a failure is not cached
+    metadata.prefetch(ImmutableList.of("IBM", "fail"), Voice.EN_LISA, Phoneme.IPA, null);
+    assertEquals(1, metadata.getPronunciations(ImmutableList.of("fail"), Voice.EN_LISA, Phoneme.IPA, null)
+        .getFailures().size());
+    assertEquals(6, server.getRequestCount());
+
+    assertEquals("/IBM/", metadata.getPronunciation("IBM", Voice.EN_LISA, Phoneme.IPA, null).getPronunciation());
+    metadata.getPronunciation("IBM", Voice.EN_LISA, Phoneme.SPR, null);
+    assertEquals(7, server.getRequestCount());
+
+    assertEquals(1, metadata.getVoices().size());
+    assertEquals(1, metadata.getVoices().size());
+    assertEquals(8, server.getRequestCount());
+  }
+
+  /**
+   * Test that a pronunciation requested before its customization is invalidated is not cached when it arrives.
+   *
+   * @throws InterruptedException the interrupted exception
+   */
+  @Test
+  public void testMetadataCacheInvalidateInFlight() throws InterruptedException {
+    final CountDownLatch requested = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger version = new AtomicInteger();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        final int current = version.incrementAndGet();
+        if (current == 1) {
+          requested.countDown();
+          release.await();
+        }
+        return new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.APPLICATION_JSON)
+            .setBody(GSON.toJson(ImmutableMap.of("pronunciation", "/v" + current + "/")));
+      }
+    });
+
+    final MetadataCache metadata = new MetadataCache(service);
+    metadata.prefetch(ImmutableList.of("Watson"), Voice.EN_LISA, Phoneme.IPA, "custom");
+    assertTrue(requested.await(5, TimeUnit.SECONDS));
+    metadata.invalidate("custom");
+
+    // the words changed: the lookup does not wait for the stale request
+    assertEquals("/v2/", metadata.getPronunciation("Watson", Voice.EN_LISA, Phoneme.IPA, "custom").getPronunciation());
+    release.countDown();
+    Thread.sleep(200);
+    assertEquals("/v2/", metadata.getPronunciation("Watson", Voice.EN_LISA, Phoneme.IPA, "custom").getPronunciation());
+    assertEquals(2, server.getRequestCount());
+  }
+
+  /**
+   * Test that changing the words of a customization through the service drops its cached pronunciations.
+   *
+   * @throws InterruptedException the interrupted exception
+   */
+  @Test
+  public void testMetadataCacheInvalidatedByWordChanges() throws InterruptedException {
+    final AtomicInteger version = new AtomicInteger();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        if (request.getMethod().equals("POST")) {
+          return new MockResponse().setResponseCode(201);
+        }
+        return new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.APPLICATION_JSON)
+            .setBody(GSON.toJson(ImmutableMap.of("pronunciation", "/v" + version.incrementAndGet() + "/")));
+      }
+    });
+
+    final MetadataCache metadata = new MetadataCache(service);
+    assertEquals("/v1/", metadata.getPronunciation("Watson", Voice.EN_LISA, Phoneme.IPA, "custom").getPronunciation());
+    assertEquals("/v1/", metadata.getPronunciation("Watson", Voice.EN_LISA, Phoneme.IPA, "custom").getPronunciation());
+
+    final CustomVoiceModel model = new CustomVoiceModel();
+    model.setId("custom");
+    service.saveWords(model, new CustomTranslation("Watson", "wotson")).execute();
+    assertEquals("/v2/", metadata.getPronunciation("Watson", Voice.EN_LISA, Phoneme.IPA, "custom").getPronunciation());
+    assertEquals(3, server.getRequestCount());
+  }
+
+  /**
+   * Test a batch synthesis: outputs recorded in the journal are skipped by the next run unless they changed, and
+   * failed tasks are run again.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testBatchSynthesizer() throws Exception {
+    final byte[] wave = Files.toByteArray(new File("src/test/resources/text_to_speech/numbers.wav"));
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        final HttpUrl url = HttpUrl.parse("http://host" + request.getPath());
+        final String chunk = url.queryParameter("text");
+        if (chunk.equals("fail")) {
+          return new MockResponse().setResponseCode(500).addHeader(CONTENT_TYPE, HttpMediaType.APPLICATION_JSON)
+              .setBody("{\"error\": \"Internal Server Error\", \"code\": 500}");
+        }
+        if (url.queryParameter("accept").startsWith(HttpMediaType.AUDIO_WAV)) {
+          return new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.AUDIO_WAV).setBody(new Buffer().write(wave));
+        }
+        return new MockResponse().addHeader(CONTENT_TYPE, HttpMediaType.AUDIO_RAW).setBody(chunk);
+      }
+    });
+
+    final File directory = Files.createTempDir();
+    final File manifest = new File(directory, "manifest.json");
+    final List<SynthesisTask> tasks = ImmutableList.of(
+        new SynthesisTask("hello", Voice.EN_LISA, AudioFormat.getPCM(16000), null, new File(directory, "hello.raw")),
+        new SynthesisTask("numbers", Voice.EN_LISA, AudioFormat.WAV, null, new File(directory, "wav/numbers.wav")),
+        new SynthesisTask("fail", Voice.EN_LISA, AudioFormat.getPCM(16000), null, new File(directory, "fail.raw")));
+    final StringBuilder lines = new StringBuilder();
+    for (SynthesisTask task : tasks) {
+      lines.append(GSON.toJson(task)).append('\n').append('\n');
+    }
+    Files.write(lines.toString().getBytes("UTF-8"), manifest);
+
+    final BatchSynthesizer synthesizer = new BatchSynthesizer.Builder(service).concurrency(2).rateLimit(100)
+        .journal(new File(directory, "journal")).build();
+    final List<SynthesisTask> read = BatchSynthesizer.readManifest(manifest);
+    assertEquals(3, read.size());
+    assertEquals(Voice.EN_LISA, read.get(0).getVoice());
+
+    BatchSynthesisResult result = synthesizer.run(read);
+    assertEquals(2, result.getSynthesized());
+    assertEquals(0, result.getSkipped());
+    assertEquals(1, result.getFailed());
+    assertTrue(result.getFailures().containsKey(new File(directory, "fail.raw").getPath()));
+    assertEquals("hello", Files.toString(new File(directory, "hello.raw"), Charsets.UTF_8));
+    final byte[] written = Files.toByteArray(new File(directory, "wav/numbers.wav"));
+    assertEquals(wave.length, written.length);
+    assertEquals(wave.length - 78, readIntLittleEndian(written, 74));
+    assertFalse(new File(directory, "fail.raw").exists());
+    assertEquals(5 + wave.length, result.getBytes());
+    assertEquals(3, server.getRequestCount());
+
+    result = synthesizer.run(read);
+    assertEquals(0, result.getSynthesized());
+    assertEquals(2, result.getSkipped());
+    assertEquals(1, result.getFailed());
+    assertEquals(4, server.getRequestCount());
+
+    Files.write("changed".getBytes("UTF-8"), new File(directory, "hello.raw"));
+    result = synthesizer.run(read);
+    assertEquals(1, result.getSynthesized());
+    assertEquals(1, result.getSkipped());
+    assertEquals("hello", Files.toString(new File(directory, "hello.raw"), Charsets.UTF_8));
+
+    // two tasks cannot write the same output
+    final int requests = server.getRequestCount();
+    try {
+      synthesizer.run(ImmutableList.of(read.get(0), new SynthesisTask("other", Voice.EN_LISA,
+          AudioFormat.getPCM(16000), null, new File(directory, "wav/../hello.raw"))));
+      Assert.fail("expected an IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertEquals(requests, server.getRequestCount());
+    }
+  }
+
+  /**
+   * Test the conversion of WAVE audio to 8kHz mu-law: the tone survives the round trip and tones above the new
+   * Nyquist frequency are filtered out.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testTranscoding() throws Exception {
+    final ByteArrayOutputStream wave = new ByteArrayOutputStream();
+    final TranscodingOutputStream encoder =
+        new TranscodingOutputStream(wave, SampleFormat.pcm(22050, 1), SampleFormat.pcm(22050, 2), true);
+    final byte[] tone = sine(1000, 22050, 22050);
+    for (int i = 0; i < tone.length; i += 1000) {
+      encoder.write(tone, i, Math.min(1000, tone.length - i));
+    }
+    encoder.close();
+    assertEquals(44 + (2 * tone.length), wave.size());
+
+    final InputStream mulaw = new TranscodingInputStream(new ByteArrayInputStream(wave.toByteArray()),
+        SampleFormat.mulaw(8000, 1), true);
+    final AudioInputStream telephony = AudioSystem.getAudioInputStream(new BufferedInputStream(mulaw));
+    assertEquals(javax.sound.sampled.AudioFormat.Encoding.ULAW, telephony.getFormat().getEncoding());
+    assertEquals(8000, (int) telephony.getFormat().getSampleRate());
+    final ByteArrayOutputStream samples = new ByteArrayOutputStream();
+    writeInputStreamToOutputStream(telephony, samples);
+    assertEquals(8000, samples.size());
+
+    final ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+    writeInputStreamToOutputStream(new TranscodingInputStream(new ByteArrayInputStream(samples.toByteArray()),
+        SampleFormat.mulaw(8000, 1), SampleFormat.pcm(8000, 1), false), decoded);
+    final byte[] expected = sine(1000, 8000, 8000);
+    assertTrue(rms(difference(decoded.toByteArray(), expected, 100)) < (0.05 * rms(expected)));
+
+    final ByteArrayOutputStream filtered = new ByteArrayOutputStream();
+    final OutputStream alaw = new TranscodingOutputStream(filtered, SampleFormat.pcm(22050, 1),
+        SampleFormat.alaw(8000, 1), false);
+    writeInputStreamToOutputStream(new ByteArrayInputStream(sine(6000, 22050, 22050)), alaw);
+    final ByteArrayOutputStream aliased = new ByteArrayOutputStream();
+    writeInputStreamToOutputStream(new TranscodingInputStream(new ByteArrayInputStream(filtered.toByteArray()),
+        SampleFormat.alaw(8000, 1), SampleFormat.pcm(8000, 1), false), aliased);
+    assertTrue(rms(difference(aliased.toByteArray(), new byte[aliased.size()], 100)) < (0.05 * rms(expected)));
+  }
+
+  /**
+   * Test the conversion of one synthesized WAVE stream to two formats at once.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testAudioFanOut() throws Exception {
+    final File audio = new File("src/test/resources/text_to_speech/numbers.wav");
+    final ByteArrayOutputStream telephony = new ByteArrayOutputStream();
+    final ByteArrayOutputStream wideband = new ByteArrayOutputStream();
+    final long read = AudioFanOut.copy(new FileInputStream(audio),
+        new TranscodingOutputStream(telephony, SampleFormat.mulaw(8000, 1), true),
+        new TranscodingOutputStream(wideband, SampleFormat.pcm(16000, 1), false));
+
+    assertEquals(audio.length(), read);
+    final long frames = (audio.length() - 78) / 2;
+    assertEquals(46 + (((frames * 8000) + 22049) / 22050), telephony.size());
+    assertEquals(2 * (((frames * 16000) + 22049) / 22050), wideband.size());
+    assertNotNull(AudioSystem.getAudioInputStream(new ByteArrayInputStream(telephony.toByteArray())));
+  }
+
+  /**
+   * Test the synthesis over a WebSocket: the audio and the timing messages are delivered in order.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testSynthesizeUsingWebSocket() throws Exception {
+    final WebSocketStandIn standIn = new WebSocketStandIn(
+        "{\"binary_streams\": [{\"content_type\": \"audio/ogg;codecs=opus\"}]}", new byte[] { 1, 2, 3 },
+        "{\"words\": [[\"Hello\", 0.0, 0.25]]}", "{\"marks\": [[\"here\", 0.25]]}", new byte[] { 4, 5 },
+        "{\"words\": [[\"world\", 0.25, 0.6]]}");
+    try {
+      service.setEndPoint(standIn.getUrl());
+      final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+      final CountDownLatch disconnected = new CountDownLatch(1);
+      service.synthesizeUsingWebSocket("Hello <mark name=\"here\"/> world", Voice.EN_LISA, AudioFormat.OGG,
+          "custom-id", true, new BaseSynthesisCallback() {
+            @Override
+            public void onConnected() {
+              events.add("connected");
+            }
+
+            @Override
+            public void onContentType(String contentType) {
+              events.add(contentType);
+            }
+
+            @Override
+            public void onAudio(byte[] audio) {
+              events.add(Arrays.toString(audio));
+            }
+
+            @Override
+            public void onTimings(List<WordTiming> timings) {
+              events.add(timings.get(0).getWord() + "@" + timings.get(0).getStartTime());
+            }
+
+            @Override
+            public void onMarks(List<Mark> marks) {
+              events.add(marks.get(0).getName() + "@" + marks.get(0).getTime());
+            }
+
+            @Override
+            public void onError(Exception e) {
+              events.add(e.toString());
+              disconnected.countDown();
+            }
+
+            @Override
+            public void onDisconnected() {
+              events.add("disconnected");
+              disconnected.countDown();
+            }
+          });
+
+      assertTrue(disconnected.await(10, TimeUnit.SECONDS));
+      assertEquals(ImmutableList.of("connected", "audio/ogg;codecs=opus", "[1, 2, 3]", "Hello@0.0", "here@0.25",
+          "[4, 5]", "world@0.25", "disconnected"), events);
+      assertEquals("token", standIn.getToken());
+      assertEquals(SYNTHESIZE_PATH + "?voice=en-US_LisaVoice&customization_id=custom-id", standIn.getPath());
+      final Map<?, ?> message = GSON.fromJson(standIn.getMessage(), Map.class);
+      assertEquals("Hello <mark name=\"here\"/> world", message.get("text"));
+      assertEquals(AudioFormat.OGG.toString(), message.get("accept"));
+      assertEquals(ImmutableList.of("words"), message.get("timings"));
+    } finally {
+      standIn.close();
+    }
+  }
+
+  /**
+   * A local stand-in for the WebSocket interface of the service. It answers token requests and WebSocket upgrades,
+   * records the first message of the client and replies with a script of text and binary messages, then closes.
+   */
+  private static final class WebSocketStandIn implements Closeable {
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int OPCODE_TEXT = 1;
+    private static final int OPCODE_BINARY = 2;
+    private static final int OPCODE_CLOSE = 8;
+
+    private final ServerSocket serverSocket;
+    private final Object[] script;
+    private volatile String path;
+    private volatile String token;
+    private volatile String message;
+
+    private WebSocketStandIn(Object... script) throws IOException {
+      this.script = script;
+      serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+      final Thread acceptor = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          while (!serverSocket.isClosed()) {
+            try {
+              final Socket socket = serverSocket.accept();
+              final Thread handler = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                  handle(socket);
+                }
+              });
+              handler.setDaemon(true);
+              handler.start();
+            } catch (IOException e) {
+              return;
+            }
+          }
+        }
+      });
+      acceptor.setDaemon(true);
+      acceptor.start();
+    }
+
+    private String getUrl() {
+      return "http://127.0.0.1:" + serverSocket.getLocalPort();
+    }
+
+    private String getPath() {
+      return path;
+    }
+
+    private String getToken() {
+      return token;
+    }
+
+    private String getMessage() {
+      return message;
+    }
+
+    private void handle(Socket socket) {
+      try {
+        final BufferedSource source = Okio.buffer(Okio.source(socket));
+        final BufferedSink sink = Okio.buffer(Okio.sink(socket));
+        while (true) {
+          final String requestPath = source.readUtf8LineStrict().split(" ")[1];
+          final Map<String, String> headers = new HashMap<String, String>();
+          String line;
+          while (!(line = source.readUtf8LineStrict()).isEmpty()) {
+            final int colon = line.indexOf(':');
+            headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+          }
+
+          if (!headers.containsKey("upgrade")) {
+            sink.writeUtf8("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: 5\r\n\r\ntoken").flush();
+            continue;
+          }
+
+          path = requestPath;
+          token = headers.get("x-watson-authorization-token");
+          final String accept = ByteString.encodeUtf8(headers.get("sec-websocket-key") + WEBSOCKET_GUID).sha1()
+              .base64();
+          sink.writeUtf8("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+              + "Sec-WebSocket-Accept: " + accept + "\r\n\r\n").flush();
+          message = readFrame(source).utf8();
+          for (Object reply : script) {
+            if (reply instanceof String) {
+              writeFrame(sink, OPCODE_TEXT, ByteString.encodeUtf8((String) reply));
+            } else {
+              writeFrame(sink, OPCODE_BINARY, ByteString.of((byte[]) reply));
+            }
+          }
+          writeFrame(sink, OPCODE_CLOSE, ByteString.of((byte) 0x03, (byte) 0xE8));
+          readFrame(source);
+          socket.close();
+          return;
+        }
+      } catch (IOException e) {
+        // the client closed the connection
+      }
+    }
+
+    /**
+     * Reads a masked frame of the client.
+     */
+    private static ByteString readFrame(BufferedSource source) throws IOException {
+      source.readByte();
+      long length = source.readByte() & 0x7F;
+      if (length == 126) {
+        length = source.readShort() & 0xFFFF;
+      } else if (length == 127) {
+        length = source.readLong();
+      }
+      final byte[] mask = source.readByteArray(4);
+      final byte[] payload = source.readByteArray(length);
+      for (int i = 0; i < payload.length; i++) {
+        payload[i] ^= mask[i % 4];
+      }
+      return ByteString.of(payload);
+    }
+
+    private static void writeFrame(BufferedSink sink, int opcode, ByteString payload) throws IOException {
+      sink.writeByte(0x80 | opcode);
+      if (payload.size() < 126) {
+        sink.writeByte(payload.size());
+      } else {
+        sink.writeByte(126).writeShort(payload.size());
+      }
+      sink.write(payload).flush();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() throws IOException {
+      serverSocket.close();
+    }
+  }
+
+  /**
+   * Generates a sine tone as 16-bit little-endian samples, at half of the full scale.
+   */
+  private static byte[] sine(int frequency, int sampleRate, int frames) {
+    final byte[] bytes = new byte[2 * frames];
+    for (int i = 0; i < frames; i++) {
+      final int sample = (int) Math.round(16384 * Math.sin((2 * Math.PI * frequency * i) / sampleRate));
+      bytes[2 * i] = (byte) sample;
+      bytes[(2 * i) + 1] = (byte) (sample >> 8);
+    }
+    return bytes;
+  }
+
+  /**
+   * Gets the difference of two 16-bit signals, ignoring the edges, where the filter sees silence.
+   */
+  private static short[] difference(byte[] actual, byte[] expected, int edge) {
+    assertEquals(expected.length, actual.length);
+    final short[] difference = new short[(expected.length / 2) - (2 * edge)];
+    for (int i = 0; i < difference.length; i++) {
+      final int offset = 2 * (i + edge);
+      final int a = (short) ((actual[offset + 1] << 8) | (actual[offset] & 0xFF));
+      final int e = (short) ((expected[offset + 1] << 8) | (expected[offset] & 0xFF));
+      difference[i] = (short) (a - e);
+    }
+    return difference;
+  }
+
+  private static double rms(short[] samples) {
+    double sum = 0;
+    for (short sample : samples) {
+      sum += sample * sample;
+    }
+    return Math.sqrt(sum / samples.length);
+  }
+
+  private static double rms(byte[] samples) {
+    return rms(difference(samples, new byte[samples.length], 0));
+  }
+
+  private static long readIntLittleEndian(byte[] bytes, int offset) {
+    long value = 0;
+    for (int i = 3; i >= 0; i--) {
+      value = (value << 8) | (bytes[offset + i] & 0xFF);
+    }
+    return value;
+  }
+
   /**
    * Tests the static method Voice.getByName.
    *
@@ -0,0 +1,448 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gson.Gson;
+import com.ibm.watson.developer_cloud.http.HttpMediaType;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.AudioFormat;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.BatchSynthesisResult;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.SynthesisTask;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.util.WaveUtils;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Synthesizes many texts to files, e.g. to generate the prompts of an IVR application.<br>
+ * <br>
+ * Tasks run on a pool of <code>concurrency</code> threads, and requests can be limited to a number per second. The
+ * audio is streamed to a temporary file next to the output, which is renamed when it is complete, so an output file
+ * is never partially written; WAVE files get their real sizes in their header.<br>
+ * <br>
+ * With a journal, the runner records the SHA-256 of every output it writes along with the parameters of its task.
+ * The next run skips the tasks whose output file still has that content and was produced with the same parameters, so
+ * a run interrupted by a crash resumes where it stopped, and a run over an updated manifest only synthesizes the texts
+ * that changed.<br>
+ * <br>
+ * Here is an example of how to run a manifest of JSON lines:
+ *
+ * <pre>
+ * BatchSynthesizer synthesizer = new BatchSynthesizer.Builder(service).concurrency(16).rateLimit(50)
+ *     .journal(new File(&quot;prompts.journal&quot;)).build();
+ * BatchSynthesisResult result = synthesizer.run(BatchSynthesizer.readManifest(new File(&quot;prompts.json&quot;)));
+ * System.out.println(result.getSynthesized() + &quot; prompts, &quot; + result.getTasksPerSecond() + &quot;/s&quot;);
+ * </pre>
+ */
+public class BatchSynthesizer {
+
+  /** The default maximum number of tasks running at the same time. */
+  public static final int DEFAULT_CONCURRENCY = 8;
+
+  private static final Logger LOG = Logger.getLogger(BatchSynthesizer.class.getName());
+  private static final Gson GSON = GsonSingleton.getGsonWithoutPrettyPrinting();
+  private static final String UTF_8 = "UTF-8";
+  private static final String SEPARATOR = "\t";
+  private static final String PART_SUFFIX = ".part";
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Builds a {@link BatchSynthesizer}.
+   */
+  public static class Builder {
+    private final TextToSpeech service;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private double requestsPerSecond;
+    private File journal;
+
+    /**
+     * Instantiates a new builder.
+     *
+     * @param service the Text to Speech service
+     */
+    public Builder(TextToSpeech service) {
+      Validator.notNull(service, "service cannot be null");
+      this.service = service;
+    }
+
+    /**
+     * Builds the batch synthesizer.
+     *
+     * @return the batch synthesizer
+     */
+    public BatchSynthesizer build() {
+      return new BatchSynthesizer(this);
+    }
+
+    /**
+     * Sets the maximum number of tasks running at the same time. The default is {@link #DEFAULT_CONCURRENCY}.
+     *
+     * @param concurrency the concurrency
+     * @return the builder
+     */
+    public Builder concurrency(int concurrency) {
+      Validator.isTrue(concurrency > 0, "concurrency must be positive");
+      this.concurrency = concurrency;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of requests started per second. By default the rate is not limited.
+     *
+     * @param requestsPerSecond the rate, or 0 for no limit
+     * @return the builder
+     */
+    public Builder rateLimit(double requestsPerSecond) {
+      Validator.isTrue(requestsPerSecond >= 0, "requestsPerSecond cannot be negative");
+      this.requestsPerSecond = requestsPerSecond;
+      return this;
+    }
+
+    /**
+     * Sets the journal that records the outputs written, so that later runs skip them. Without a journal every task
+     * is synthesized.
+     *
+     * @param journal the journal file, created if needed
+     * @return the builder
+     */
+    public Builder journal(File journal) {
+      this.journal = journal;
+      return this;
+    }
+  }
+
+  /**
+   * An output recorded in the journal.
+   */
+  private static final class Record {
+    private final String key;
+    private final String hash;
+    private final long length;
+
+    private Record(String key, String hash, long length) {
+      this.key = key;
+      this.hash = hash;
+      this.length = length;
+    }
+  }
+
+  /**
+   * Spaces the requests evenly: each request reserves the next free slot and waits for it.
+   */
+  private static final class RateLimiter {
+    private final long interval;
+    private long next;
+
+    private RateLimiter(double requestsPerSecond) {
+      interval = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+      next = System.nanoTime();
+    }
+
+    private void acquire() throws InterruptedException {
+      final long slot;
+      synchronized (this) {
+        slot = Math.max(next, System.nanoTime());
+        next = slot + interval;
+      }
+      final long delay = slot - System.nanoTime();
+      if (delay > 0) {
+        TimeUnit.NANOSECONDS.sleep(delay);
+      }
+    }
+  }
+
+  private final TextToSpeech service;
+  private final int concurrency;
+  private final double requestsPerSecond;
+  private final File journal;
+
+  private BatchSynthesizer(Builder builder) {
+    service = builder.service;
+    concurrency = builder.concurrency;
+    requestsPerSecond = builder.requestsPerSecond;
+    journal = builder.journal;
+  }
+
+  /**
+   * Reads a manifest of one {@link SynthesisTask} per line, in JSON. Blank lines are ignored.
+   *
+   * <pre>
+   * {"text": "Please hold.", "voice": "en-US_LisaVoice", "format": "audio/wav", "output": "prompts/hold.wav"}
+   * </pre>
+   *
+   * @param manifest the manifest file
+   * @return the tasks
+   * @throws IOException if the manifest cannot be read
+   */
+  public static List<SynthesisTask> readManifest(File manifest) throws IOException {
+    Validator.isTrue((manifest != null) && manifest.exists(), "manifest file is null or does not exist");
+    final List<SynthesisTask> tasks = new ArrayList<SynthesisTask>();
+    final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), UTF_8));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (!line.trim().isEmpty()) {
+          tasks.add(GSON.fromJson(line, SynthesisTask.class));
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return tasks;
+  }
+
+  /**
+   * Runs the tasks and waits for all of them. A failed task does not stop the others; its error is reported in the
+   * result and the next run tries it again. Every task must write a different output.
+   *
+   * @param tasks the tasks
+   * @return the summary of the run
+   * @throws IOException if the journal cannot be read or written
+   * @throws InterruptedException if the thread is interrupted, in which case the running tasks are stopped
+   */
+  public BatchSynthesisResult run(List<SynthesisTask> tasks) throws IOException, InterruptedException {
+    Validator.notNull(tasks, "tasks cannot be null");
+    final Set<String> outputs = new HashSet<String>();
+    for (SynthesisTask task : tasks) {
+      Validator.isTrue((task != null) && (task.getText() != null) && (task.getVoice() != null)
+          && (task.getOutput() != null), "every task needs a text, a voice and an output");
+      // two tasks writing the same file would race on its partial file
+      Validator.isTrue(outputs.add(task.getOutput().getCanonicalPath()),
+          "more than one task writes " + task.getOutput());
+    }
+
+    final long start = System.nanoTime();
+    final Map<String, Record> records = (journal != null) ? loadJournal() : new HashMap<String, Record>();
+    final Writer journalWriter = (journal != null)
+        ? new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journal, true), UTF_8)) : null;
+    final RateLimiter limiter = (requestsPerSecond > 0) ? new RateLimiter(requestsPerSecond) : null;
+    final AtomicInteger synthesized = new AtomicInteger();
+    final AtomicInteger skipped = new AtomicInteger();
+    final AtomicLong bytes = new AtomicLong();
+    final Map<String, String> failures = Collections.synchronizedMap(new TreeMap<String, String>());
+
+    final ExecutorService executor = Executors.newFixedThreadPool(concurrency, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        final Thread thread = new Thread(runnable, "text-to-speech-batch");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    try {
+      for (final SynthesisTask task : tasks) {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            final File output = task.getOutput();
+            try {
+              final String key = SynthesisCache.key(task.getText(), task.getVoice(), task.getFormat(),
+                  task.getCustomizationId());
+              if (isUpToDate(output, key, records.get(output.getPath()))) {
+                skipped.incrementAndGet();
+                return;
+              }
+              if (limiter != null) {
+                limiter.acquire();
+              }
+              final Record record = synthesize(task, key);
+              record(journalWriter, output, record);
+              synthesized.incrementAndGet();
+              bytes.addAndGet(record.length);
+            } catch (InterruptedException e) {
+              failures.put(output.getPath(), "interrupted");
+            } catch (Exception e) {
+              LOG.log(Level.WARNING, "Failed to synthesize " + output, e);
+              failures.put(output.getPath(), String.valueOf(e.getMessage()));
+            }
+          }
+        });
+      }
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } finally {
+      executor.shutdownNow();
+      if (journalWriter != null) {
+        journalWriter.close();
+      }
+    }
+
+    final BatchSynthesisResult result = new BatchSynthesisResult();
+    result.setSynthesized(synthesized.get());
+    result.setSkipped(skipped.get());
+    result.setFailed(failures.size());
+    result.setBytes(bytes.get());
+    result.setElapsed(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    result.setFailures(failures);
+    return result;
+  }
+
+  /**
+   * Synthesizes a task to a temporary file and moves it to the output.
+   */
+  private Record synthesize(SynthesisTask task, String key) throws IOException {
+    final File output = task.getOutput();
+    final File parent = output.getAbsoluteFile().getParentFile();
+    if (!parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Cannot create the directory " + parent);
+    }
+
+    final File part = new File(parent, output.getName() + PART_SUFFIX);
+    final InputStream audio = service.synthesize(task.getText(), task.getVoice(), task.getFormat(),
+        task.getCustomizationId()).execute();
+    try {
+      final String hash;
+      final long length;
+      final AudioFormat format = task.getFormat();
+      if ((format == null) || format.toString().startsWith(HttpMediaType.AUDIO_WAV)) {
+        // the header is rewritten at the end, so the hash is computed on the final file
+        length = WaveUtils.writeWave(audio, part);
+        hash = hash(part);
+      } else {
+        final MessageDigest digest = SynthesisCache.newSha256();
+        final OutputStream out = new DigestOutputStream(new FileOutputStream(part), digest);
+        try {
+          length = copy(audio, out);
+        } finally {
+          out.close();
+        }
+        hash = SynthesisCache.toHex(digest.digest());
+      }
+
+      if (output.exists() && !output.delete()) {
+        throw new IOException("Cannot replace " + output);
+      }
+      if (!part.renameTo(output)) {
+        throw new IOException("Cannot move " + part + " to " + output);
+      }
+      return new Record(key, hash, length);
+    } finally {
+      audio.close();
+      if (part.exists() && !part.delete()) {
+        LOG.fine("Failed to delete " + part);
+      }
+    }
+  }
+
+  private static boolean isUpToDate(File output, String key, Record record) throws IOException {
+    return (record != null) && record.key.equals(key) && output.isFile() && (output.length() == record.length)
+        && record.hash.equals(hash(output));
+  }
+
+  /**
+   * Loads the journal, keeping the last record of each output, and compacts it.
+   */
+  private Map<String, Record> loadJournal() throws IOException {
+    final Map<String, Record> records = new HashMap<String, Record>();
+    if (journal.exists()) {
+      final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journal), UTF_8));
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          final String[] fields = line.split(SEPARATOR, 4);
+          // a line cut by a crash has fewer fields
+          if (fields.length == 4) {
+            try {
+              records.put(fields[3], new Record(fields[0], fields[1], Long.parseLong(fields[2])));
+            } catch (NumberFormatException e) {
+              LOG.fine("Ignoring a damaged journal line: " + line);
+            }
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    }
+
+    final File compacted = new File(journal.getPath() + PART_SUFFIX);
+    final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(compacted), UTF_8));
+    try {
+      for (Map.Entry<String, Record> entry : records.entrySet()) {
+        writer.write(line(entry.getKey(), entry.getValue()));
+      }
+    } finally {
+      writer.close();
+    }
+    if ((journal.exists() && !journal.delete()) || !compacted.renameTo(journal)) {
+      throw new IOException("Cannot compact the journal " + journal);
+    }
+    return records;
+  }
+
+  private static void record(Writer journalWriter, File output, Record record) throws IOException {
+    if (journalWriter != null) {
+      synchronized (journalWriter) {
+        journalWriter.write(line(output.getPath(), record));
+        journalWriter.flush();
+      }
+    }
+  }
+
+  private static String line(String path, Record record) {
+    return record.key + SEPARATOR + record.hash + SEPARATOR + record.length + SEPARATOR + path + "\n";
+  }
+
+  private static long copy(InputStream in, OutputStream out) throws IOException {
+    final byte[] buffer = new byte[BUFFER_SIZE];
+    long length = 0;
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+      length += read;
+    }
+    return length;
+  }
+
+  private static String hash(File file) throws IOException {
+    final MessageDigest digest = SynthesisCache.newSha256();
+    final InputStream in = new FileInputStream(file);
+    try {
+      final byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    } finally {
+      in.close();
+    }
+    return SynthesisCache.toHex(digest.digest());
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1;
+
+import java.io.InputStream;
+
+import com.ibm.watson.developer_cloud.http.ServiceCall;
+import com.ibm.watson.developer_cloud.http.ServiceCallback;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.AudioFormat;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Voice;
+
+import jersey.repackaged.jsr166e.CompletableFuture;
+import okhttp3.Request;
+
+/**
+ * The {@link ServiceCall} returned by {@link TextToSpeech#synthesize(String, Voice, AudioFormat, String)} when the
+ * service has a {@link SynthesisCache}. Hits are served without a request; on a miss the request is sent, and its audio
+ * is cached as it is read.
+ */
+class CachedSynthesisCall implements ServiceCall<InputStream> {
+
+  private final TextToSpeech service;
+  private final SynthesisCache cache;
+  private final String key;
+  private final String customizationId;
+  private final Request request;
+
+  /**
+   * Instantiates a new cached synthesis call.
+   *
+   * @param service the service that sends the request on a miss
+   * @param cache the cache
+   * @param key the key of the synthesis
+   * @param customizationId the customization ID, or null
+   * @param request the request that synthesizes the audio on a miss
+   */
+  CachedSynthesisCall(TextToSpeech service, SynthesisCache cache, String key, String customizationId,
+      Request request) {
+    this.service = service;
+    this.cache = cache;
+    this.key = key;
+    this.customizationId = customizationId;
+    this.request = request;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.http.ServiceCall#execute()
+   */
+  @Override
+  public InputStream execute() {
+    final InputStream cached = cache.get(key);
+    if (cached != null) {
+      return cached;
+    }
+    return cache.cache(key, customizationId, service.createSynthesisCall(request).execute());
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.http.ServiceCall#enqueue(com.ibm.watson.developer_cloud.http.ServiceCallback)
+   */
+  @Override
+  public void enqueue(final ServiceCallback<? super InputStream> callback) {
+    final InputStream cached = cache.get(key);
+    if (cached != null) {
+      callback.onResponse(cached);
+      return;
+    }
+    service.createSynthesisCall(request).enqueue(new ServiceCallback<InputStream>() {
+      @Override
+      public void onResponse(InputStream response) {
+        callback.onResponse(cache.cache(key, customizationId, response));
+      }
+
+      @Override
+      public void onFailure(Exception e) {
+        callback.onFailure(e);
+      }
+    });
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.http.ServiceCall#rx()
+   */
+  @Override
+  public CompletableFuture<InputStream> rx() {
+    final CompletableFuture<InputStream> completableFuture = new CompletableFuture<InputStream>();
+    enqueue(new ServiceCallback<InputStream>() {
+      @Override
+      public void onResponse(InputStream response) {
+        completableFuture.complete(response);
+      }
+
+      @Override
+      public void onFailure(Exception e) {
+        completableFuture.completeExceptionally(e);
+      }
+    });
+    return completableFuture;
+  }
+}
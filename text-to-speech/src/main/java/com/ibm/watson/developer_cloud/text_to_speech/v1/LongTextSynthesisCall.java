@@ -0,0 +1,396 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ibm.watson.developer_cloud.http.ServiceCall;
+import com.ibm.watson.developer_cloud.http.ServiceCallback;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.AudioFormat;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Voice;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.util.OggConcatenator;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.util.StreamingWaveInputStream;
+
+import jersey.repackaged.jsr166e.CompletableFuture;
+
+/**
+ * The {@link ServiceCall} returned by
+ * {@link TextToSpeech#synthesizeLongText(String, Voice, AudioFormat, String, int, int)}. Every execution synthesizes
+ * the chunks of the text as asynchronous requests, at most <code>concurrency</code> at a time, and returns a stream
+ * that serves their audio in order, as soon as it arrives. No thread is created: the requests run on the dispatcher of
+ * the HTTP client of the service.
+ */
+class LongTextSynthesisCall implements ServiceCall<InputStream> {
+
+  /**
+   * How the audio of consecutive chunks is joined.
+   */
+  enum Stitching {
+    /** Keeps the header of the first chunk only, with the sizes of a {@link StreamingWaveInputStream}. */
+    WAVE,
+    /** Rewrites the pages of every chunk with an {@link OggConcatenator}. */
+    OGG,
+    /** Concatenates headerless audio. */
+    RAW
+  }
+
+  private static final Logger LOG = Logger.getLogger(LongTextSynthesisCall.class.getName());
+
+  private static final int BUFFER_SIZE = 8192;
+
+  /** The maximum number of buffers of a chunk received and not read yet, so that a chunk holds at most 256KB. */
+  private static final int MAX_BUFFERS = 32;
+
+  /**
+   * The audio of one chunk. The callback of the request adds the audio as it receives it and the reader takes it in
+   * the same order, so the reader can play the beginning of a chunk before the end has been synthesized. Once
+   * {@link #MAX_BUFFERS} buffers are not read, the callback hands the rest of the response over to the reader, so it
+   * never waits for the reader and does not hold a thread of the dispatcher.
+   */
+  private static final class AudioChunk extends InputStream {
+    private static final byte[] END = new byte[0];
+    private static final byte[] REST = new byte[0];
+
+    // one more than the buffers, for the marker that ends them
+    private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<byte[]>(MAX_BUFFERS + 1);
+    private final CompletableFuture<Void> responded = new CompletableFuture<Void>();
+    private volatile RuntimeException error;
+    private InputStream rest;
+    private boolean closed;
+    private InputStream source;
+    private byte[] buffer = new byte[0];
+    private int position;
+    private boolean ended;
+
+    /**
+     * Receives the audio of the response, on the thread of the callback.
+     */
+    private void receive(InputStream audio) {
+      responded.complete(null);
+      try {
+        final byte[] b = new byte[BUFFER_SIZE];
+        int read = 0;
+        // the callback is the only producer, so there is still room for the buffer once it is read
+        while (!isClosed() && (queue.remainingCapacity() > 1) && ((read = audio.read(b)) != -1)) {
+          queue.offer(Arrays.copyOf(b, read));
+        }
+        if (read == -1) {
+          audio.close();
+          queue.offer(END);
+          return;
+        }
+        synchronized (this) {
+          if (!closed) {
+            rest = audio;
+            queue.offer(REST);
+            return;
+          }
+        }
+        closeQuietly(audio);
+      } catch (IOException e) {
+        closeQuietly(audio);
+        fail(new RuntimeException(e));
+      }
+    }
+
+    private void fail(RuntimeException e) {
+      error = e;
+      responded.completeExceptionally(e);
+      // the audio of a failed chunk is not played
+      queue.clear();
+      queue.offer(END);
+    }
+
+    private synchronized boolean isClosed() {
+      return closed;
+    }
+
+    @Override
+    public int read() throws IOException {
+      final byte[] b = new byte[1];
+      return (read(b, 0, 1) == -1) ? -1 : (b[0] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (source != null) {
+        return source.read(b, off, len);
+      }
+      while (position == buffer.length) {
+        if (ended) {
+          return -1;
+        }
+        try {
+          buffer = queue.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+        position = 0;
+        if (buffer == END) {
+          ended = true;
+          if (error != null) {
+            throw new IOException("Failed to synthesize a chunk of the text", error);
+          }
+        } else if (buffer == REST) {
+          synchronized (this) {
+            source = rest;
+          }
+          return source.read(b, off, len);
+        }
+      }
+      final int count = Math.min(len, buffer.length - position);
+      System.arraycopy(buffer, position, b, off, count);
+      position += count;
+      return count;
+    }
+
+    @Override
+    public void close() {
+      final InputStream audio;
+      synchronized (this) {
+        closed = true;
+        audio = rest;
+        rest = null;
+      }
+      queue.clear();
+      closeQuietly(audio);
+    }
+  }
+
+  /**
+   * The audio of the whole text. At most <code>concurrency</code> chunks are synthesized or waiting to be read at the
+   * same time.
+   */
+  private final class StitchedInputStream extends InputStream {
+    private final AudioChunk[] chunks = new AudioChunk[texts.size()];
+    private final OggConcatenator ogg = (stitching == Stitching.OGG) ? new OggConcatenator() : null;
+    private int index = -1;
+    private InputStream current;
+    private boolean closed;
+
+    private StitchedInputStream() {
+      for (int i = 0; i < Math.min(concurrency, texts.size()); i++) {
+        submit(i);
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      final byte[] b = new byte[1];
+      return (read(b, 0, 1) == -1) ? -1 : (b[0] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (closed) {
+        throw new IOException("stream closed");
+      }
+      while (true) {
+        if ((current == null) && !next()) {
+          return -1;
+        }
+        final int read = current.read(b, off, len);
+        if (read != -1) {
+          return read;
+        }
+        current = null;
+      }
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+      for (AudioChunk chunk : chunks) {
+        if (chunk != null) {
+          chunk.close();
+        }
+      }
+    }
+
+    private void submit(int i) {
+      final AudioChunk chunk = new AudioChunk();
+      chunks[i] = chunk;
+      try {
+        service.synthesize(texts.get(i), voice, format, customizationId).enqueue(new ServiceCallback<InputStream>() {
+          @Override
+          public void onResponse(InputStream audio) {
+            chunk.receive(audio);
+          }
+
+          @Override
+          public void onFailure(Exception e) {
+            chunk.fail((e instanceof RuntimeException) ? (RuntimeException) e : new RuntimeException(e));
+          }
+        });
+      } catch (RuntimeException e) {
+        chunk.fail(e);
+      }
+    }
+
+    /**
+     * Moves to the next chunk and starts the synthesis of the chunk that now fits in the window.
+     */
+    private boolean next() throws IOException {
+      if (index >= 0) {
+        chunks[index].close();
+        chunks[index] = null;
+      }
+      index++;
+      if (index >= chunks.length) {
+        return false;
+      }
+      if ((index > 0) && ((index + concurrency) - 1 < chunks.length)) {
+        submit((index + concurrency) - 1);
+      }
+
+      final AudioChunk chunk = chunks[index];
+      if (stitching == Stitching.WAVE) {
+        final StreamingWaveInputStream wave = new StreamingWaveInputStream(chunk, true);
+        if (index > 0) {
+          wave.skipHeader();
+        }
+        current = wave;
+      } else if (stitching == Stitching.OGG) {
+        current = ogg.append(chunk, index == (chunks.length - 1));
+      } else {
+        current = chunk;
+      }
+      return true;
+    }
+
+    /**
+     * Waits for the response to the first chunk, so errors such as an unknown voice are thrown by
+     * {@link LongTextSynthesisCall#execute()} rather than by the first read.
+     */
+    private void awaitFirstResponse() {
+      try {
+        chunks[0].responded.get();
+      } catch (InterruptedException e) {
+        close();
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      } catch (ExecutionException e) {
+        close();
+        throw chunks[0].error;
+      }
+    }
+  }
+
+  private final TextToSpeech service;
+  private final List<String> texts;
+  private final Voice voice;
+  private final AudioFormat format;
+  private final String customizationId;
+  private final Stitching stitching;
+  private final int concurrency;
+
+  /**
+   * Instantiates a new long text synthesis call.
+   *
+   * @param service the service used to synthesize each chunk
+   * @param texts the chunks of the text
+   * @param voice the voice
+   * @param format the audio format
+   * @param customizationId the customization ID, or null
+   * @param stitching how the audio of consecutive chunks is joined
+   * @param concurrency the maximum number of chunks synthesized, or waiting to be read, at the same time
+   */
+  LongTextSynthesisCall(TextToSpeech service, List<String> texts, Voice voice, AudioFormat format,
+      String customizationId, Stitching stitching, int concurrency) {
+    this.service = service;
+    this.texts = texts;
+    this.voice = voice;
+    this.format = format;
+    this.customizationId = customizationId;
+    this.stitching = stitching;
+    this.concurrency = concurrency;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.http.ServiceCall#execute()
+   */
+  @Override
+  public InputStream execute() {
+    final StitchedInputStream stream = new StitchedInputStream();
+    stream.awaitFirstResponse();
+    return stream;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.http.ServiceCall#enqueue(com.ibm.watson.developer_cloud.http.ServiceCallback)
+   */
+  @Override
+  public void enqueue(final ServiceCallback<? super InputStream> callback) {
+    rx().handle(new CompletableFuture.BiFun<InputStream, Throwable, Void>() {
+      @Override
+      public Void apply(InputStream stream, Throwable error) {
+        if (error == null) {
+          callback.onResponse(stream);
+        } else if (error instanceof Exception) {
+          callback.onFailure((Exception) error);
+        } else {
+          callback.onFailure(new RuntimeException(error));
+        }
+        return null;
+      }
+    });
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.http.ServiceCall#rx()
+   */
+  @Override
+  public CompletableFuture<InputStream> rx() {
+    final CompletableFuture<InputStream> future = new CompletableFuture<InputStream>();
+    final StitchedInputStream stream = new StitchedInputStream();
+    stream.chunks[0].responded.handle(new CompletableFuture.BiFun<Void, Throwable, Void>() {
+      @Override
+      public Void apply(Void response, Throwable error) {
+        if (error == null) {
+          future.complete(stream);
+        } else {
+          stream.close();
+          future.completeExceptionally(stream.chunks[0].error);
+        }
+        return null;
+      }
+    });
+    return future;
+  }
+
+  private static void closeQuietly(InputStream stream) {
+    if (stream != null) {
+      try {
+        stream.close();
+      } catch (IOException e) {
+        LOG.log(Level.FINE, "Cannot close the audio of a chunk", e);
+      }
+    }
+  }
+}
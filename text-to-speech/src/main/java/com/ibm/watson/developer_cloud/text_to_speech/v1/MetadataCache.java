@@ -0,0 +1,437 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.ibm.watson.developer_cloud.http.ServiceCallback;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Phoneme;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Pronunciation;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.PronunciationResult;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Voice;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+import jersey.repackaged.jsr166e.CompletableFuture;
+
+/**
+ * Caches the pronunciations and voices returned by a {@link TextToSpeech} service, and resolves the pronunciations of
+ * many words at once.<br>
+ * <br>
+ * {@link #getPronunciations(Collection, Voice, Phoneme, String)} removes duplicate words, serves the words already
+ * cached and requests the others concurrently, at most <code>concurrency</code> at a time; the words that could not be
+ * resolved are reported with the others. {@link #prefetch(Collection, Voice, Phoneme, String)} requests them the same
+ * way without waiting, e.g. while a prompt is being prepared. A word that is already being requested, e.g. by another
+ * thread, is not requested twice. The requests run on the dispatcher of the HTTP client, whose limits also apply: with
+ * the default maximum of 5 requests per host, a higher concurrency has no effect. Pronunciations are cached per word,
+ * voice, phoneme set and customization; the cache holds at most <code>maxEntries</code> entries, evicting the least
+ * recently used first, and every entry expires after the time to live. Since the pronunciations of a customization
+ * change with its words, the cache drops them when the words or the customization are changed through the same service;
+ * call {@link #invalidate(String)} after changing them in any other way. The requests in flight at the time of an
+ * invalidation are not cached.<br>
+ * <br>
+ * Here is an example of how to look up the pronunciation of product names:
+ *
+ * <pre>
+ * MetadataCache metadata = new MetadataCache(service);
+ * Map&lt;String, Pronunciation&gt; pronunciations =
+ *     metadata.getPronunciations(productNames, Voice.EN_LISA, Phoneme.IPA, null).getPronunciations();
+ * </pre>
+ */
+public class MetadataCache {
+
+  /** The default maximum number of requests in flight: the default maximum number of requests per host. */
+  public static final int DEFAULT_CONCURRENCY = 5;
+
+  /** The default maximum number of cached entries. */
+  public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+  /** The default time to live of the entries, in milliseconds. */
+  public static final long DEFAULT_TIME_TO_LIVE = 60 * 60 * 1000;
+
+  private static final String PRONUNCIATION = "pronunciation";
+  private static final String VOICE = "voice";
+  private static final String VOICES = "voices";
+
+  /**
+   * A cached value and its expiration time.
+   */
+  private static final class Entry {
+    private final Object value;
+    private final String customizationId;
+    private final long expiration;
+
+    private Entry(Object value, String customizationId, long expiration) {
+      this.value = value;
+      this.customizationId = customizationId;
+      this.expiration = expiration;
+    }
+  }
+
+  /**
+   * A pronunciation requested, or waiting for one of the <code>concurrency</code> requests in flight.
+   */
+  private static final class Request {
+    private final String key;
+    private final String word;
+    private final Voice voice;
+    private final Phoneme phoneme;
+    private final String customizationId;
+    private final long generation;
+    private final CompletableFuture<Pronunciation> future = new CompletableFuture<Pronunciation>();
+
+    private Request(String key, String word, Voice voice, Phoneme phoneme, String customizationId, long generation) {
+      this.key = key;
+      this.word = word;
+      this.voice = voice;
+      this.phoneme = phoneme;
+      this.customizationId = customizationId;
+      this.generation = generation;
+    }
+  }
+
+  private final TextToSpeech service;
+  private final int concurrency;
+  private final long timeToLive;
+  private final Map<String, Entry> entries;
+  private final Map<String, Request> pending = new HashMap<String, Request>();
+  private final LinkedList<Request> waiting = new LinkedList<Request>();
+  private final Map<String, Long> generations = new HashMap<String, Long>();
+  private long clearGeneration;
+  private int inFlight;
+
+  /**
+   * Instantiates a new metadata cache with the default settings.
+   *
+   * @param service the Text to Speech service
+   */
+  public MetadataCache(TextToSpeech service) {
+    this(service, DEFAULT_CONCURRENCY, DEFAULT_MAX_ENTRIES, DEFAULT_TIME_TO_LIVE, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Instantiates a new metadata cache.
+   *
+   * @param service the Text to Speech service
+   * @param concurrency the maximum number of pronunciations requested at the same time
+   * @param maxEntries the maximum number of cached pronunciations and voices
+   * @param timeToLive how long an entry is served from the cache
+   * @param unit the unit of the time to live
+   */
+  public MetadataCache(TextToSpeech service, int concurrency, final int maxEntries, long timeToLive, TimeUnit unit) {
+    Validator.notNull(service, "service cannot be null");
+    Validator.isTrue(concurrency > 0, "concurrency must be positive");
+    Validator.isTrue(maxEntries > 0, "maxEntries must be positive");
+    Validator.isTrue(timeToLive > 0, "timeToLive must be positive");
+    this.service = service;
+    this.concurrency = concurrency;
+    this.timeToLive = unit.toNanos(timeToLive);
+    entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+    service.addMetadataCache(this);
+  }
+
+  /**
+   * Gets the pronunciation of a word.
+   *
+   * @param word the word
+   * @param voice the voice, whose language is used
+   * @param phoneme the phoneme set, or null for the default set
+   * @param customizationId the customization ID, or null
+   * @return the pronunciation
+   * @throws InterruptedException if the thread is interrupted while waiting for the service
+   */
+  public Pronunciation getPronunciation(String word, Voice voice, Phoneme phoneme, String customizationId)
+      throws InterruptedException {
+    Validator.isTrue((word != null) && !word.isEmpty(), "word cannot be null or empty");
+    Validator.notNull(voice, "voice cannot be null");
+    try {
+      return lookup(word, voice, phoneme, customizationId).get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /**
+   * Gets the pronunciations of many words. A word that cannot be resolved does not prevent the others from being
+   * returned; it is reported in {@link PronunciationResult#getFailures()}.
+   *
+   * @param words the words, possibly with duplicates
+   * @param voice the voice, whose language is used
+   * @param phoneme the phoneme set, or null for the default set
+   * @param customizationId the customization ID, or null
+   * @return the pronunciation of every distinct word that was resolved, in the order of the words, and the failures
+   * @throws InterruptedException if the thread is interrupted while waiting for the service
+   */
+  public PronunciationResult getPronunciations(Collection<String> words, Voice voice, Phoneme phoneme,
+      String customizationId) throws InterruptedException {
+    final Map<String, CompletableFuture<Pronunciation>> futures = lookup(words, voice, phoneme, customizationId);
+
+    final Map<String, Pronunciation> pronunciations = new LinkedHashMap<String, Pronunciation>();
+    final Map<String, String> failures = new LinkedHashMap<String, String>();
+    for (Map.Entry<String, CompletableFuture<Pronunciation>> entry : futures.entrySet()) {
+      try {
+        pronunciations.put(entry.getKey(), entry.getValue().get());
+      } catch (ExecutionException e) {
+        failures.put(entry.getKey(), String.valueOf(e.getCause().getMessage()));
+      }
+    }
+    final PronunciationResult result = new PronunciationResult();
+    result.setPronunciations(pronunciations);
+    result.setFailures(failures);
+    return result;
+  }
+
+  /**
+   * Requests the pronunciations of words that are not cached, without waiting for them, so that a later
+   * {@link #getPronunciations(Collection, Voice, Phoneme, String)} finds them in the cache or in flight.
+   *
+   * @param words the words, possibly with duplicates
+   * @param voice the voice, whose language is used
+   * @param phoneme the phoneme set, or null for the default set
+   * @param customizationId the customization ID, or null
+   */
+  public void prefetch(Collection<String> words, Voice voice, Phoneme phoneme, String customizationId) {
+    lookup(words, voice, phoneme, customizationId);
+  }
+
+  /**
+   * Gets all the voices.
+   *
+   * @return the voices
+   */
+  @SuppressWarnings("unchecked")
+  public List<Voice> getVoices() {
+    List<Voice> voices = (List<Voice>) get(VOICES);
+    if (voices == null) {
+      final long generation = generation(null);
+      voices = Collections.unmodifiableList(service.getVoices().execute());
+      synchronized (this) {
+        if (generation(null) == generation) {
+          put(VOICES, voices, null);
+        }
+      }
+    }
+    return voices;
+  }
+
+  /**
+   * Gets a voice.
+   *
+   * @param voiceName the voice name
+   * @param customizationId the customization ID, or null
+   * @return the voice
+   */
+  public Voice getVoice(String voiceName, String customizationId) {
+    Validator.notNull(voiceName, "voiceName cannot be null");
+    final String key = key(VOICE, voiceName, customizationId);
+    Voice voice = (Voice) get(key);
+    if (voice == null) {
+      final long generation = generation(customizationId);
+      voice = service.getVoice(voiceName, customizationId).execute();
+      synchronized (this) {
+        if (generation(customizationId) == generation) {
+          put(key, voice, customizationId);
+        }
+      }
+    }
+    return voice;
+  }
+
+  /**
+   * Drops the pronunciations and voices of a customization, e.g. after its words changed. The service calls it when
+   * the words or the customization are changed through it.
+   *
+   * @param customizationId the customization ID
+   */
+  public synchronized void invalidate(String customizationId) {
+    Validator.notNull(customizationId, "customizationId cannot be null");
+    final Long invalidations = generations.get(customizationId);
+    generations.put(customizationId, ((invalidations != null) ? invalidations : 0) + 1);
+    final Iterator<Entry> iterator = entries.values().iterator();
+    while (iterator.hasNext()) {
+      if (customizationId.equals(iterator.next().customizationId)) {
+        iterator.remove();
+      }
+    }
+    // later lookups make new requests instead of waiting for these
+    final Iterator<Request> requests = pending.values().iterator();
+    while (requests.hasNext()) {
+      if (customizationId.equals(requests.next().customizationId)) {
+        requests.remove();
+      }
+    }
+  }
+
+  /**
+   * Drops all the entries.
+   */
+  public synchronized void clear() {
+    clearGeneration++;
+    entries.clear();
+    pending.clear();
+  }
+
+  /**
+   * Gets the number of cached entries, including expired entries that have not been dropped yet.
+   *
+   * @return the number of entries
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Gets the cached pronunciations of distinct words, or the requests for them.
+   */
+  private Map<String, CompletableFuture<Pronunciation>> lookup(Collection<String> words, Voice voice,
+      Phoneme phoneme, String customizationId) {
+    Validator.notNull(words, "words cannot be null");
+    Validator.notNull(voice, "voice cannot be null");
+    final Map<String, CompletableFuture<Pronunciation>> futures =
+        new LinkedHashMap<String, CompletableFuture<Pronunciation>>();
+    for (String word : words) {
+      Validator.isTrue((word != null) && !word.isEmpty(), "words cannot be null or empty");
+      if (!futures.containsKey(word)) {
+        futures.put(word, lookup(word, voice, phoneme, customizationId));
+      }
+    }
+    return futures;
+  }
+
+  /**
+   * Gets a cached pronunciation, the pending request for it, or a new request. The request is sent now if fewer than
+   * <code>concurrency</code> requests are in flight, or else when one of them completes.
+   */
+  private CompletableFuture<Pronunciation> lookup(String word, Voice voice, Phoneme phoneme,
+      String customizationId) {
+    final String key = key(PRONUNCIATION, word, voice.getName(), String.valueOf(phoneme), customizationId);
+    final Request request;
+    synchronized (this) {
+      final Pronunciation cached = (Pronunciation) get(key);
+      if (cached != null) {
+        return CompletableFuture.completedFuture(cached);
+      }
+      final Request requested = pending.get(key);
+      if (requested != null) {
+        return requested.future;
+      }
+      request = new Request(key, word, voice, phoneme, customizationId, generation(customizationId));
+      pending.put(key, request);
+      if (inFlight >= concurrency) {
+        waiting.add(request);
+        return request.future;
+      }
+      inFlight++;
+    }
+    send(request);
+    return request.future;
+  }
+
+  private void send(final Request request) {
+    try {
+      service.getPronunciation(request.word, request.voice, request.phoneme, request.customizationId)
+          .enqueue(new ServiceCallback<Pronunciation>() {
+            @Override
+            public void onResponse(Pronunciation pronunciation) {
+              completed(request, pronunciation);
+              request.future.complete(pronunciation);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+              completed(request, null);
+              request.future.completeExceptionally(e);
+            }
+          });
+    } catch (RuntimeException e) {
+      completed(request, null);
+      request.future.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Caches the pronunciation of a request, unless its customization was invalidated since the request was made, and
+   * sends the next waiting request.
+   */
+  private void completed(Request request, Pronunciation pronunciation) {
+    final Request next;
+    synchronized (this) {
+      if (pending.get(request.key) == request) {
+        pending.remove(request.key);
+      }
+      if (generation(request.customizationId) == request.generation) {
+        put(request.key, pronunciation, request.customizationId);
+      }
+      next = waiting.poll();
+      if (next == null) {
+        inFlight--;
+      }
+    }
+    if (next != null) {
+      send(next);
+    }
+  }
+
+  /**
+   * Gets the generation of the entries of a customization: it changes when {@link #invalidate(String)} or
+   * {@link #clear()} drops them, so values requested before then are not cached afterwards.
+   */
+  private synchronized long generation(String customizationId) {
+    final Long invalidations = (customizationId != null) ? generations.get(customizationId) : null;
+    return clearGeneration + ((invalidations != null) ? invalidations : 0);
+  }
+
+  private synchronized Object get(String key) {
+    final Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if ((System.nanoTime() - entry.expiration) > 0) {
+      entries.remove(key);
+      return null;
+    }
+    return entry.value;
+  }
+
+  private synchronized void put(String key, Object value, String customizationId) {
+    if (value != null) {
+      entries.put(key, new Entry(value, customizationId, System.nanoTime() + timeToLive));
+    }
+  }
+
+  private static String key(String... parts) {
+    final StringBuilder key = new StringBuilder();
+    for (String part : parts) {
+      key.append(part).append('\0');
+    }
+    return key.toString();
+  }
+}
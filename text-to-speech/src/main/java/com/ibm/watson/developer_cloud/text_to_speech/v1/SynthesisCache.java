@@ -0,0 +1,773 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.AudioFormat;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.CustomTranslation;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.CustomVoiceModel;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Voice;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * A cache of synthesized audio, keyed by a hash of the normalized text, voice, audio format and customization ID. Set
+ * it with {@link TextToSpeech#setCache(SynthesisCache)} and every
+ * {@link TextToSpeech#synthesize(String, Voice, AudioFormat, String)} call is served from the cache when possible. On
+ * a miss the audio is cached as the caller reads it, and only once the caller has read all of it.<br>
+ * <br>
+ * The cache has two tiers, each bounded in size and evicting the least recently used audio first:
+ * <ul>
+ * <li>a memory tier, which holds audio of up to 1/8 of its size and serves it without copying it;</li>
+ * <li>an optional disk tier, which keeps each audio in its own file and survives restarts. Its index is a
+ * memory-mapped file of fixed-size records, so a hit only updates a record in place. Disk hits can be served as a
+ * {@link FileChannel}, e.g. to transfer the audio to a socket without copying it to the heap.</li>
+ * </ul>
+ * The audio synthesized with a customization is dropped when
+ * {@link TextToSpeech#saveWords(CustomVoiceModel, CustomTranslation...)},
+ * {@link TextToSpeech#deleteWord(CustomVoiceModel, CustomTranslation)},
+ * {@link TextToSpeech#saveCustomVoiceModel(CustomVoiceModel)} or
+ * {@link TextToSpeech#deleteCustomVoiceModel(CustomVoiceModel)} changes the customization through a service that uses
+ * the cache. Changes made by other clients are not detected; call {@link #invalidate(String)} for them.<br>
+ * <br>
+ * Here is an example of how to cache IVR prompts:
+ *
+ * <pre>
+ * service.setCache(new SynthesisCache(new File(&quot;prompts&quot;), 1024 * 1024 * 1024, 64 * 1024 * 1024));
+ * InputStream prompt = service.synthesize(&quot;Please hold.&quot;, Voice.EN_LISA, AudioFormat.WAV, null).execute();
+ * </pre>
+ */
+public class SynthesisCache implements Closeable {
+
+  private static final Logger LOG = Logger.getLogger(SynthesisCache.class.getName());
+  private static final String INDEX_FILE = "index";
+  private static final String TEMP_PREFIX = "audio";
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final long MAGIC = 0x5754545343616368L;
+  private static final int HEADER_SIZE = 64;
+  private static final int SLOTS_OFFSET = 8;
+  private static final int RECORD_SIZE = 64;
+  private static final int STATE_OFFSET = 0;
+  private static final int DIGEST_OFFSET = 4;
+  private static final int DIGEST_LENGTH = 32;
+  private static final int TAG_OFFSET = 36;
+  private static final int LENGTH_OFFSET = 44;
+  private static final int ACCESS_OFFSET = 52;
+  private static final byte USED = 1;
+  private static final int INITIAL_SLOTS = 1024;
+  private static final int MEMORY_ENTRY_RATIO = 8;
+  private static final int BUFFER_SIZE = 8192;
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  /**
+   * Cached audio. Memory entries hold the audio, disk entries the slot of their index record.
+   */
+  private static final class Entry {
+    private final long tag;
+    private final long length;
+    private final byte[] audio;
+    private final int slot;
+    private long access;
+
+    private Entry(long tag, long length, byte[] audio, int slot) {
+      this.tag = tag;
+      this.length = length;
+      this.audio = audio;
+      this.slot = slot;
+    }
+  }
+
+  /**
+   * Copies the audio to a temporary file, and to memory if it is small enough, as the caller reads it, and adds it to
+   * the cache when the end of the audio is reached. Audio that is not read to the end is not cached.
+   */
+  private final class CachingInputStream extends FilterInputStream {
+    private final String key;
+    private final long tag;
+    private final long generation;
+    private File temp;
+    private OutputStream file;
+    private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+    private long length;
+    private boolean done;
+
+    private CachingInputStream(InputStream in, String key, long tag, long generation) {
+      super(in);
+      this.key = key;
+      this.tag = tag;
+      this.generation = generation;
+      if (blobs != null) {
+        try {
+          temp = File.createTempFile(TEMP_PREFIX, TEMP_SUFFIX, blobs);
+          file = new FileOutputStream(temp);
+        } catch (IOException e) {
+          LOG.log(Level.WARNING, "Failed to create a file in the synthesis cache", e);
+          abandonFile();
+        }
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      final int b = super.read();
+      if (b == -1) {
+        finish();
+      } else {
+        store(new byte[] { (byte) b }, 0, 1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      final int read = super.read(b, off, len);
+      if (read == -1) {
+        finish();
+      } else {
+        store(b, off, read);
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      // skipped audio must still be cached
+      final byte[] buffer = new byte[(int) Math.min(n, BUFFER_SIZE)];
+      long skipped = 0;
+      while (skipped < n) {
+        final int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+        if (read == -1) {
+          break;
+        }
+        skipped += read;
+      }
+      return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        if (!done) {
+          done = true;
+          abandonFile();
+        }
+      }
+    }
+
+    private void store(byte[] b, int off, int len) {
+      length += len;
+      if (memory != null) {
+        if ((memory.size() + len) > maxMemoryEntrySize) {
+          memory = null;
+        } else {
+          memory.write(b, off, len);
+        }
+      }
+      if (file != null) {
+        try {
+          file.write(b, off, len);
+        } catch (IOException e) {
+          LOG.log(Level.WARNING, "Failed to write to the synthesis cache", e);
+          abandonFile();
+        }
+      }
+    }
+
+    private void finish() {
+      if (done) {
+        return;
+      }
+      done = true;
+      if (file != null) {
+        try {
+          file.close();
+        } catch (IOException e) {
+          LOG.log(Level.WARNING, "Failed to write to the synthesis cache", e);
+          abandonFile();
+        }
+      }
+      commit(key, tag, generation, temp, (memory != null) ? memory.toByteArray() : null, length);
+    }
+
+    private void abandonFile() {
+      if (file != null) {
+        try {
+          file.close();
+        } catch (IOException e) {
+          LOG.log(Level.FINE, "Failed to close a file of the synthesis cache", e);
+        }
+        file = null;
+      }
+      if (temp != null) {
+        delete(temp);
+        temp = null;
+      }
+    }
+  }
+
+  private final long maxMemorySize;
+  private final long maxMemoryEntrySize;
+  private final long maxDiskSize;
+  private final File blobs;
+  private final Map<String, Entry> memory = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+  private final Map<String, Entry> disk = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+  private final LinkedList<Integer> freeSlots = new LinkedList<Integer>();
+  private final Map<Long, Long> generations = new HashMap<Long, Long>();
+  private long clearGeneration;
+  private FileChannel channel;
+  private MappedByteBuffer index;
+  private int slots;
+  private long memorySize;
+  private long diskSize;
+  private long clock;
+
+  /**
+   * Instantiates a new synthesis cache that only keeps audio in memory.
+   *
+   * @param maxMemorySize the maximum size of the audio kept in memory, in bytes
+   */
+  public SynthesisCache(long maxMemorySize) {
+    Validator.isTrue(maxMemorySize >= 0, "maxMemorySize cannot be negative");
+    this.maxMemorySize = maxMemorySize;
+    maxMemoryEntrySize = maxMemorySize / MEMORY_ENTRY_RATIO;
+    maxDiskSize = 0;
+    blobs = null;
+  }
+
+  /**
+   * Instantiates a new synthesis cache that keeps audio in a directory and the most recently used audio in memory. The
+   * audio already cached in the directory is available immediately.
+   *
+   * @param directory the directory of the disk tier, created if needed
+   * @param maxDiskSize the maximum size of the audio kept in the directory, in bytes
+   * @param maxMemorySize the maximum size of the audio kept in memory, in bytes
+   * @throws IOException if the directory or its index cannot be opened
+   */
+  public SynthesisCache(File directory, long maxDiskSize, long maxMemorySize) throws IOException {
+    Validator.notNull(directory, "directory cannot be null");
+    Validator.isTrue(maxDiskSize >= 0, "maxDiskSize cannot be negative");
+    Validator.isTrue(maxMemorySize >= 0, "maxMemorySize cannot be negative");
+    this.maxMemorySize = maxMemorySize;
+    maxMemoryEntrySize = maxMemorySize / MEMORY_ENTRY_RATIO;
+    this.maxDiskSize = maxDiskSize;
+    blobs = directory;
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create the directory " + directory);
+    }
+    open();
+  }
+
+  /**
+   * Computes the cache key of a synthesis. The text is normalized (Unicode NFC, white space collapsed and trimmed) so
+   * texts that are synthesized the same way share their audio.
+   *
+   * @param text the text
+   * @param voice the voice
+   * @param audioFormat the audio format, or null for the default format
+   * @param customizationId the customization ID, or null
+   * @return the key
+   */
+  public static String key(String text, Voice voice, AudioFormat audioFormat, String customizationId) {
+    Validator.notNull(text, "text cannot be null");
+    Validator.notNull(voice, "voice cannot be null");
+    final String normalizedText = Normalizer.normalize(text, Normalizer.Form.NFC).replaceAll("\\s+", " ").trim();
+    final String format = (audioFormat != null ? audioFormat : AudioFormat.WAV).toString().replaceAll("\\s", "")
+        .toLowerCase();
+    final String customization = customizationId != null ? customizationId : "";
+    return toHex(sha256(normalizedText + '\0' + voice.getName() + '\0' + format + '\0' + customization));
+  }
+
+  /**
+   * Checks whether the audio of a key is cached.
+   *
+   * @param key the key
+   * @return true if the audio is in memory or on disk
+   */
+  public synchronized boolean contains(String key) {
+    return memory.containsKey(key) || disk.containsKey(key);
+  }
+
+  /**
+   * Gets cached audio. Audio in memory is served without copying it; small audio found on disk is moved up to the
+   * memory tier.
+   *
+   * @param key the key
+   * @return the audio, or null if it is not cached
+   */
+  public InputStream get(String key) {
+    final File file;
+    final Entry entry;
+    final long generation;
+    synchronized (this) {
+      final Entry cached = memory.get(key);
+      entry = disk.get(key);
+      if (entry != null) {
+        touch(entry);
+      }
+      if (cached != null) {
+        return new ByteArrayInputStream(cached.audio);
+      }
+      if (entry == null) {
+        return null;
+      }
+      file = blobFile(key);
+      generation = generation(entry.tag);
+    }
+
+    try {
+      if (entry.length > maxMemoryEntrySize) {
+        return new FileInputStream(file);
+      }
+      final byte[] audio = new byte[(int) entry.length];
+      final FileInputStream in = new FileInputStream(file);
+      try {
+        int position = 0;
+        while (position < audio.length) {
+          final int read = in.read(audio, position, audio.length - position);
+          if (read == -1) {
+            throw new IOException("Truncated audio in the synthesis cache: " + file);
+          }
+          position += read;
+        }
+      } finally {
+        in.close();
+      }
+      synchronized (this) {
+        // not if the audio was invalidated while it was read
+        if (generation(entry.tag) == generation) {
+          putInMemory(key, entry.tag, audio);
+        }
+      }
+      return new ByteArrayInputStream(audio);
+    } catch (IOException e) {
+      // evicted since it was found, or damaged
+      LOG.log(Level.FINE, "Failed to read the synthesis cache", e);
+      return null;
+    }
+  }
+
+  /**
+   * Gets a channel to cached audio on disk, e.g. to transfer it with
+   * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}. The caller must close it.
+   *
+   * @param key the key
+   * @return the channel, or null if the audio is not on disk
+   */
+  public FileChannel getChannel(String key) {
+    final File file;
+    synchronized (this) {
+      final Entry entry = disk.get(key);
+      if (entry == null) {
+        return null;
+      }
+      touch(entry);
+      file = blobFile(key);
+    }
+    try {
+      return new FileInputStream(file).getChannel();
+    } catch (IOException e) {
+      LOG.log(Level.FINE, "Failed to read the synthesis cache", e);
+      return null;
+    }
+  }
+
+  /**
+   * Drops the audio synthesized with a customization.
+   *
+   * @param customizationId the customization ID, or null for the audio synthesized without customization
+   */
+  public synchronized void invalidate(String customizationId) {
+    final long tag = tag(customizationId);
+    final Long invalidations = generations.get(tag);
+    generations.put(tag, ((invalidations != null) ? invalidations : 0) + 1);
+    removeIf(memory, tag);
+    removeIf(disk, tag);
+  }
+
+  /**
+   * Drops all the audio.
+   */
+  public synchronized void clear() {
+    clearGeneration++;
+    removeIf(memory, null);
+    removeIf(disk, null);
+  }
+
+  /**
+   * Gets the size of the audio in memory.
+   *
+   * @return the size in bytes
+   */
+  public synchronized long getMemorySize() {
+    return memorySize;
+  }
+
+  /**
+   * Gets the size of the audio on disk.
+   *
+   * @return the size in bytes
+   */
+  public synchronized long getDiskSize() {
+    return diskSize;
+  }
+
+  /**
+   * Writes the index to disk and closes it. The cache cannot be used afterwards.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    memory.clear();
+    memorySize = 0;
+    if (channel != null) {
+      index.force();
+      channel.close();
+      channel = null;
+      index = null;
+      disk.clear();
+    }
+  }
+
+  /**
+   * Wraps the audio of a synthesis so it is cached once it has been read to the end.
+   *
+   * @param key the key
+   * @param customizationId the customization ID, or null
+   * @param audio the audio
+   * @return the audio to give to the caller
+   */
+  InputStream cache(String key, String customizationId, InputStream audio) {
+    final long tag = tag(customizationId);
+    final long generation;
+    synchronized (this) {
+      generation = generation(tag);
+    }
+    return new CachingInputStream(audio, key, tag, generation);
+  }
+
+  /**
+   * Gets the generation of the audio of a tag: it changes when {@link #invalidate(String)} or {@link #clear()} drops
+   * that audio, so audio synthesized before then is not cached afterwards.
+   */
+  private long generation(long tag) {
+    final Long invalidations = generations.get(tag);
+    return clearGeneration + ((invalidations != null) ? invalidations : 0);
+  }
+
+  private synchronized void commit(String key, long tag, long generation, File temp, byte[] audio, long length) {
+    if (generation(tag) != generation) {
+      // synthesized before the customization changed
+      if (temp != null) {
+        delete(temp);
+      }
+      return;
+    }
+    if (audio != null) {
+      putInMemory(key, tag, audio);
+    }
+    if (temp == null) {
+      return;
+    }
+    if ((channel == null) || (length > maxDiskSize)) {
+      delete(temp);
+      return;
+    }
+
+    remove(disk, key);
+    final File file = blobFile(key);
+    if (!temp.renameTo(file)) {
+      LOG.warning("Failed to move audio into the synthesis cache: " + file);
+      delete(temp);
+      return;
+    }
+
+    final Entry entry = new Entry(tag, length, null, allocateSlot());
+    writeRecord(entry.slot, fromHex(key), tag, length);
+    touch(entry);
+    disk.put(key, entry);
+    diskSize += length;
+    evict(disk, maxDiskSize);
+  }
+
+  private void putInMemory(String key, long tag, byte[] audio) {
+    if (audio.length > maxMemoryEntrySize) {
+      return;
+    }
+    remove(memory, key);
+    memory.put(key, new Entry(tag, audio.length, audio, -1));
+    memorySize += audio.length;
+    evict(memory, maxMemorySize);
+  }
+
+  private void touch(Entry entry) {
+    entry.access = ++clock;
+    if ((entry.slot >= 0) && (index != null)) {
+      index.putLong(recordOffset(entry.slot) + ACCESS_OFFSET, entry.access);
+    }
+  }
+
+  private void evict(Map<String, Entry> tier, long maxSize) {
+    final Iterator<Map.Entry<String, Entry>> iterator = tier.entrySet().iterator();
+    while ((size(tier) > maxSize) && iterator.hasNext()) {
+      final Map.Entry<String, Entry> eldest = iterator.next();
+      iterator.remove();
+      release(eldest.getKey(), eldest.getValue());
+    }
+  }
+
+  private long size(Map<String, Entry> tier) {
+    return (tier == memory) ? memorySize : diskSize;
+  }
+
+  private void remove(Map<String, Entry> tier, String key) {
+    final Entry entry = tier.remove(key);
+    if (entry != null) {
+      release(key, entry);
+    }
+  }
+
+  private void removeIf(Map<String, Entry> tier, Long tag) {
+    final Iterator<Map.Entry<String, Entry>> iterator = tier.entrySet().iterator();
+    while (iterator.hasNext()) {
+      final Map.Entry<String, Entry> next = iterator.next();
+      if ((tag == null) || (next.getValue().tag == tag)) {
+        iterator.remove();
+        release(next.getKey(), next.getValue());
+      }
+    }
+  }
+
+  /**
+   * Frees the resources of an entry that has been removed from its tier.
+   */
+  private void release(String key, Entry entry) {
+    if (entry.slot < 0) {
+      memorySize -= entry.length;
+      return;
+    }
+    diskSize -= entry.length;
+    index.put(recordOffset(entry.slot) + STATE_OFFSET, (byte) 0);
+    freeSlots.add(entry.slot);
+    delete(blobFile(key));
+  }
+
+  /**
+   * Opens the index, or creates it, and loads the records in least recently used order.
+   */
+  private void open() throws IOException {
+    final File indexFile = new File(blobs, INDEX_FILE);
+    channel = new RandomAccessFile(indexFile, "rw").getChannel();
+    final boolean valid = channel.size() >= HEADER_SIZE;
+    if (valid) {
+      index = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+    }
+    if (!valid || (index.getLong(0) != MAGIC)) {
+      slots = INITIAL_SLOTS;
+      index = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + ((long) slots * RECORD_SIZE));
+      for (int i = 0; i < index.capacity(); i++) {
+        index.put(i, (byte) 0);
+      }
+      index.putLong(0, MAGIC);
+      index.putInt(SLOTS_OFFSET, slots);
+    } else {
+      slots = index.getInt(SLOTS_OFFSET);
+    }
+
+    final List<String> keys = new ArrayList<String>();
+    final List<Entry> entries = new ArrayList<Entry>();
+    for (int slot = 0; slot < slots; slot++) {
+      final int offset = recordOffset(slot);
+      if (index.get(offset + STATE_OFFSET) != USED) {
+        freeSlots.add(slot);
+        continue;
+      }
+      final byte[] digest = new byte[DIGEST_LENGTH];
+      for (int i = 0; i < DIGEST_LENGTH; i++) {
+        digest[i] = index.get(offset + DIGEST_OFFSET + i);
+      }
+      final String key = toHex(digest);
+      final Entry entry = new Entry(index.getLong(offset + TAG_OFFSET), index.getLong(offset + LENGTH_OFFSET), null,
+          slot);
+      entry.access = index.getLong(offset + ACCESS_OFFSET);
+      if (blobFile(key).length() != entry.length) {
+        index.put(offset + STATE_OFFSET, (byte) 0);
+        freeSlots.add(slot);
+        continue;
+      }
+      keys.add(key);
+      entries.add(entry);
+    }
+
+    final List<Integer> order = new ArrayList<Integer>();
+    for (int i = 0; i < entries.size(); i++) {
+      order.add(i);
+    }
+    Collections.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        final long accessA = entries.get(a).access;
+        final long accessB = entries.get(b).access;
+        return accessA < accessB ? -1 : (accessA == accessB ? 0 : 1);
+      }
+    });
+    for (int i : order) {
+      final Entry entry = entries.get(i);
+      disk.put(keys.get(i), entry);
+      diskSize += entry.length;
+      clock = Math.max(clock, entry.access);
+    }
+
+    // files of interrupted downloads, or written just before a crash and missing from the index
+    final File[] files = blobs.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (!file.getName().equals(INDEX_FILE) && !disk.containsKey(file.getName())) {
+          delete(file);
+        }
+      }
+    }
+    evict(disk, maxDiskSize);
+  }
+
+  private int allocateSlot() {
+    if (freeSlots.isEmpty()) {
+      final int grown = slots * 2;
+      try {
+        index = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + ((long) grown * RECORD_SIZE));
+      } catch (IOException e) {
+        throw new RuntimeException("Failed to grow the index of the synthesis cache", e);
+      }
+      for (int slot = slots; slot < grown; slot++) {
+        index.put(recordOffset(slot) + STATE_OFFSET, (byte) 0);
+        freeSlots.add(slot);
+      }
+      slots = grown;
+      index.putInt(SLOTS_OFFSET, slots);
+    }
+    return freeSlots.removeFirst();
+  }
+
+  private void writeRecord(int slot, byte[] digest, long tag, long length) {
+    final int offset = recordOffset(slot);
+    for (int i = 0; i < DIGEST_LENGTH; i++) {
+      index.put(offset + DIGEST_OFFSET + i, digest[i]);
+    }
+    index.putLong(offset + TAG_OFFSET, tag);
+    index.putLong(offset + LENGTH_OFFSET, length);
+    // the record becomes valid last
+    index.put(offset + STATE_OFFSET, USED);
+  }
+
+  private static int recordOffset(int slot) {
+    return HEADER_SIZE + (slot * RECORD_SIZE);
+  }
+
+  private File blobFile(String key) {
+    return new File(blobs, key);
+  }
+
+  private static void delete(File file) {
+    if (file.exists() && !file.delete()) {
+      LOG.fine("Failed to delete " + file);
+    }
+  }
+
+  /**
+   * Gets the tag of a customization: 0 without customization, else the first bytes of the hash of its ID.
+   */
+  private static long tag(String customizationId) {
+    if (customizationId == null) {
+      return 0;
+    }
+    final byte[] digest = sha256(customizationId);
+    long tag = 0;
+    for (int i = 0; i < 8; i++) {
+      tag = (tag << 8) | (digest[i] & 0xff);
+    }
+    return tag | 1;
+  }
+
+  private static byte[] sha256(String value) {
+    try {
+      return newSha256().digest(value.getBytes("UTF-8"));
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Creates a SHA-256 digest, which every Java platform provides.
+   */
+  static MessageDigest newSha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Formats bytes as lower case hexadecimal digits.
+   */
+  static String toHex(byte[] bytes) {
+    final char[] hex = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      hex[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+      hex[(2 * i) + 1] = HEX[bytes[i] & 0xf];
+    }
+    return new String(hex);
+  }
+
+  private static byte[] fromHex(String hex) {
+    final byte[] bytes = new byte[hex.length() / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, (2 * i) + 2), 16);
+    }
+    return bytes;
+  }
+}
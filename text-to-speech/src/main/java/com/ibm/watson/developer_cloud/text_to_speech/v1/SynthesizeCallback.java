@@ -0,0 +1,44 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1;
+
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.AudioFormat;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Voice;
+
+/**
+ * The callback used by {@link TextToSpeech#synthesize(String, Voice, AudioFormat, String, SynthesizeCallback)} to
+ * deliver the audio as it arrives.
+ */
+public interface SynthesizeCallback {
+
+  /**
+   * Called for every chunk of audio received. The buffer is reused for the next chunk, so its content must be copied
+   * or consumed before returning.
+   *
+   * @param audio the buffer holding the chunk
+   * @param length the number of bytes of the chunk, starting at the beginning of the buffer
+   */
+  void onAudio(byte[] audio, int length);
+
+  /**
+   * Called once all the audio has been delivered.
+   */
+  void onComplete();
+
+  /**
+   * Called if the request or the stream fails. No other method is called afterwards.
+   *
+   * @param e the exception
+   */
+  void onError(Exception e);
+}
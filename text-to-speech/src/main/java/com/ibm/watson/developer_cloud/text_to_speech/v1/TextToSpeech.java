@@ -12,10 +12,16 @@
  */
 package com.ibm.watson.developer_cloud.text_to_speech.v1;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
@@ -23,6 +29,7 @@ import com.ibm.watson.developer_cloud.http.HttpMediaType;
 import com.ibm.watson.developer_cloud.http.RequestBuilder;
 import com.ibm.watson.developer_cloud.http.ResponseConverter;
 import com.ibm.watson.developer_cloud.http.ServiceCall;
+import com.ibm.watson.developer_cloud.http.ServiceCallback;
 import com.ibm.watson.developer_cloud.service.WatsonService;
 import com.ibm.watson.developer_cloud.text_to_speech.v1.model.AudioFormat;
 import com.ibm.watson.developer_cloud.text_to_speech.v1.model.CustomTranslation;
@@ -30,6 +37,11 @@ import com.ibm.watson.developer_cloud.text_to_speech.v1.model.CustomVoiceModel;
 import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Phoneme;
 import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Pronunciation;
 import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Voice;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.util.OggConcatenator;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.util.SentenceSplitter;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.util.StreamingWaveInputStream;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.websocket.SynthesisCallback;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.websocket.WebSocketManager;
 import com.ibm.watson.developer_cloud.util.GsonSingleton;
 import com.ibm.watson.developer_cloud.util.RequestUtils;
 import com.ibm.watson.developer_cloud.util.ResponseConverterUtils;
@@ -39,6 +51,7 @@ import com.ibm.watson.developer_cloud.util.Validator;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.ws.WebSocket;
 
 
 /**
@@ -75,6 +88,14 @@ public class TextToSpeech extends WatsonService {
   private static final Type TYPE_VOICE_MODELS = new TypeToken<List<CustomVoiceModel>>() { }.getType();
   private static final Type TYPE_CUSTOM_TRANSLATIONS = new TypeToken<List<CustomTranslation>>() { }.getType();
   private static final Gson GSON = GsonSingleton.getGson();
+  private static final Logger LOG = Logger.getLogger(TextToSpeech.class.getName());
+  private static final int CHUNK_SIZE = 8192;
+  private static final int DEFAULT_MAX_CHUNK_LENGTH = 1000;
+  private static final int DEFAULT_CONCURRENCY = 4;
+
+  private final Map<MetadataCache, Boolean> metadataCaches =
+      Collections.synchronizedMap(new WeakHashMap<MetadataCache, Boolean>());
+  private volatile SynthesisCache cache;
 
   /**
    * Instantiates a new text to speech.
@@ -227,7 +248,240 @@ public class TextToSpeech extends WatsonService {
       request.query(CUSTOMIZATION_ID, customizationId);
     }
 
-    return createServiceCall(request.build(), ResponseConverterUtils.getInputStream());
+    final SynthesisCache synthesisCache = cache;
+    if (synthesisCache == null) {
+      return createSynthesisCall(request.build());
+    }
+    final String key = SynthesisCache.key(text, voice, audioFormat, customizationId);
+    return new CachedSynthesisCall(this, synthesisCache, key, customizationId, request.build());
+  }
+
+  /**
+   * Creates the call that sends a synthesis request. Cached synthesis calls create it only on a miss, so no unsent
+   * request is left behind by a hit.
+   *
+   * @param request the synthesis request
+   * @return the service call
+   */
+  ServiceCall<InputStream> createSynthesisCall(Request request) {
+    return createServiceCall(request, ResponseConverterUtils.getInputStream());
+  }
+
+  /**
+   * Sets the cache of synthesized audio used by {@link #synthesize(String, Voice, AudioFormat, String)}, and by the
+   * methods that synthesize through it.
+   *
+   * @param cache the cache, or null to synthesize every text
+   */
+  public void setCache(SynthesisCache cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Gets the cache of synthesized audio.
+   *
+   * @return the cache, or null if there is none
+   */
+  public SynthesisCache getCache() {
+    return cache;
+  }
+
+  /**
+   * Synthesizes text and delivers the audio to a callback in chunks, as the service produces it, so playback can start
+   * before the whole text is synthesized. WAVE audio goes through a {@link StreamingWaveInputStream}, so the first
+   * chunk starts with a header that players accept even though the length of the audio is not known yet.<br>
+   * <br>
+   * Here is an example of how to play the audio as it arrives:
+   *
+   * <pre>
+   * service.synthesize(text, Voice.EN_LISA, AudioFormat.WAV, null, new SynthesizeCallback() {
+   *   public void onAudio(byte[] audio, int length) {
+   *     player.write(audio, 0, length);
+   *   }
+   *   public void onComplete() {
+   *     player.drain();
+   *   }
+   *   public void onError(Exception e) {
+   *     e.printStackTrace();
+   *   }
+   * });
+   * </pre>
+   *
+   * @param text the text
+   * @param voice the voice
+   * @param audioFormat the {@link AudioFormat}
+   * @param customizationId the customization ID
+   * @param callback the callback that receives the audio, on an HTTP client thread
+   */
+  public void synthesize(final String text, final Voice voice, final AudioFormat audioFormat, String customizationId,
+      final SynthesizeCallback callback) {
+    Validator.notNull(callback, "callback cannot be null");
+    final boolean wave = (audioFormat == null) || AudioFormat.WAV.toString().equals(audioFormat.toString());
+
+    synthesize(text, voice, audioFormat, customizationId).enqueue(new ServiceCallback<InputStream>() {
+      @Override
+      public void onResponse(InputStream response) {
+        final InputStream audio = wave ? new StreamingWaveInputStream(response) : response;
+        try {
+          final byte[] buffer = new byte[CHUNK_SIZE];
+          int read;
+          while ((read = audio.read(buffer)) != -1) {
+            callback.onAudio(buffer, read);
+          }
+        } catch (IOException e) {
+          callback.onError(e);
+          return;
+        } finally {
+          try {
+            audio.close();
+          } catch (IOException e) {
+            LOG.log(Level.FINE, "Failed to close the audio stream", e);
+          }
+        }
+        callback.onComplete();
+      }
+
+      @Override
+      public void onFailure(Exception e) {
+        callback.onError(e);
+      }
+    });
+  }
+
+  /**
+   * Synthesizes text over a {@link WebSocket}. See
+   * {@link #synthesizeUsingWebSocket(String, Voice, AudioFormat, String, boolean, SynthesisCallback)}.
+   *
+   * @param text the text or SSML
+   * @param voice the voice
+   * @param audioFormat the {@link AudioFormat}
+   * @param callback the callback
+   */
+  public void synthesizeUsingWebSocket(final String text, final Voice voice, final AudioFormat audioFormat,
+      final SynthesisCallback callback) {
+    synthesizeUsingWebSocket(text, voice, audioFormat, null, false, callback);
+  }
+
+  /**
+   * Synthesizes text over a {@link WebSocket}. The service sends the audio in messages as it produces it, which
+   * gives the shortest time to the first audio, and the {@link SynthesisCallback} receives them along with the
+   * timings of the words, if requested, and the positions of the SSML <code>&lt;mark&gt;</code> elements. The
+   * connections are made by the HTTP client of the service, so they share its dispatcher and connection pool.<br>
+   * <br>
+   * Here is an example of how to highlight the words as they are spoken:
+   *
+   * <pre>
+   * service.synthesizeUsingWebSocket(text, Voice.EN_LISA, AudioFormat.OGG, null, true, new BaseSynthesisCallback() {
+   *   &#064;Override
+   *   public void onAudio(byte[] audio) {
+   *     player.write(audio);
+   *   }
+   *
+   *   &#064;Override
+   *   public void onTimings(List&lt;WordTiming&gt; timings) {
+   *     highlighter.schedule(timings);
+   *   }
+   * });
+   * </pre>
+   *
+   * @param text the text or SSML
+   * @param voice the voice
+   * @param audioFormat the {@link AudioFormat}
+   * @param customizationId the customization ID
+   * @param wordTimings true to receive the timings of the words
+   * @param callback the callback
+   */
+  public void synthesizeUsingWebSocket(final String text, final Voice voice, final AudioFormat audioFormat,
+      final String customizationId, final boolean wordTimings, final SynthesisCallback callback) {
+    Validator.isTrue((text != null) && !text.isEmpty(), "text cannot be null or empty");
+    Validator.isTrue(voice != null, "voice cannot be null or empty");
+    Validator.notNull(callback, "callback cannot be null");
+
+    getToken().enqueue(new ServiceCallback<String>() {
+      @Override
+      public void onFailure(Exception e) {
+        callback.onError(e);
+      }
+
+      @Override
+      public void onResponse(String token) {
+        // http becomes ws and https becomes wss
+        final String url = getEndPoint().replaceFirst("^http", "ws");
+        final WebSocketManager wsManager =
+            new WebSocketManager(url + PATH_SYNTHESIZE, getClient(), defaultHeaders, token);
+        wsManager.synthesize(text, voice, audioFormat != null ? audioFormat : AudioFormat.WAV, customizationId,
+            wordTimings, callback);
+      }
+    });
+  }
+
+  /**
+   * Synthesizes a long text in chunks of at most 1000 characters, 4 chunks at a time. See
+   * {@link #synthesizeLongText(String, Voice, AudioFormat, String, int, int)}.
+   *
+   * @param text the plain text or SSML
+   * @param voice the voice
+   * @param audioFormat the {@link AudioFormat}
+   * @param customizationId the customization ID
+   * @return the audio of the whole text
+   */
+  public ServiceCall<InputStream> synthesizeLongText(String text, Voice voice, AudioFormat audioFormat,
+      String customizationId) {
+    return synthesizeLongText(text, voice, audioFormat, customizationId, DEFAULT_MAX_CHUNK_LENGTH,
+        DEFAULT_CONCURRENCY);
+  }
+
+  /**
+   * Synthesizes a text of any length. The text is split at sentence boundaries by a {@link SentenceSplitter}, which
+   * keeps SSML markup well-formed, and the chunks are synthesized by separate requests, at most
+   * <code>concurrency</code> at a time. The requests run on the dispatcher of the HTTP client, whose limits, such as
+   * the maximum number of requests per host, also apply. The returned stream serves the audio of the chunks in order
+   * as soon as it arrives, so playback can start while the rest of the text is still being synthesized; at most
+   * <code>concurrency</code> chunks are buffered ahead of the reader.<br>
+   * <br>
+   * The audio of the chunks is joined without gaps: WAVE audio keeps only the header of the first chunk, with
+   * the sizes of a stream of unknown length, <code>audio/l16</code> and <code>audio/basic</code> audio is concatenated,
+   * and Ogg Opus audio is joined into a single logical stream by an {@link OggConcatenator}. Ogg Vorbis and FLAC
+   * cannot be joined without decoding them and are not supported.<br>
+   * <br>
+   * Here is an example of how to save the audio of an article:
+   *
+   * <pre>
+   * InputStream audio = service.synthesizeLongText(article, Voice.EN_LISA, AudioFormat.WAV, null, 1000, 4).execute();
+   * WaveUtils.writeWave(audio, new File(&quot;article.wav&quot;));
+   * </pre>
+   *
+   * @param text the plain text or SSML
+   * @param voice the voice
+   * @param audioFormat the {@link AudioFormat}
+   * @param customizationId the customization ID
+   * @param maxChunkLength the maximum number of characters of the text in a chunk
+   * @param concurrency the maximum number of chunks synthesized at the same time
+   * @return the audio of the whole text. Errors in chunks after the first one are thrown by the read methods of the
+   *         stream; closing the stream stops the synthesis of the remaining chunks.
+   */
+  public ServiceCall<InputStream> synthesizeLongText(String text, Voice voice, AudioFormat audioFormat,
+      String customizationId, int maxChunkLength, int concurrency) {
+    Validator.isTrue((text != null) && !text.isEmpty(), "text cannot be null or empty");
+    Validator.isTrue(voice != null, "voice cannot be null or empty");
+    Validator.isTrue(concurrency > 0, "concurrency must be positive");
+
+    final AudioFormat format = audioFormat != null ? audioFormat : AudioFormat.WAV;
+    final String mediaType = format.toString();
+    final LongTextSynthesisCall.Stitching stitching;
+    if (mediaType.startsWith(HttpMediaType.AUDIO_WAV)) {
+      stitching = LongTextSynthesisCall.Stitching.WAVE;
+    } else if (mediaType.startsWith(HttpMediaType.AUDIO_OGG)) {
+      stitching = LongTextSynthesisCall.Stitching.OGG;
+    } else if (mediaType.startsWith(HttpMediaType.AUDIO_RAW) || mediaType.startsWith(HttpMediaType.AUDIO_BASIC)) {
+      stitching = LongTextSynthesisCall.Stitching.RAW;
+    } else {
+      throw new IllegalArgumentException("the audio of " + mediaType + " chunks cannot be joined");
+    }
+
+    final List<String> chunks = SentenceSplitter.split(text, maxChunkLength);
+    Validator.isTrue(!chunks.isEmpty(), "text has nothing to synthesize");
+    return new LongTextSynthesisCall(this, chunks, voice, format, customizationId, stitching, concurrency);
   }
 
   /**
@@ -276,6 +530,9 @@ public class TextToSpeech extends WatsonService {
     return createServiceCall(request, new ResponseConverter<CustomVoiceModel>() {
       @Override
       public CustomVoiceModel convert(Response response) {
+        if (!isNew) {
+          invalidate(model.getId());
+        }
         CustomVoiceModel newModel = ResponseUtils.getObject(response, CustomVoiceModel.class);
 
         if ((newModel != null) && (newModel.getId() != null)) {
@@ -297,7 +554,7 @@ public class TextToSpeech extends WatsonService {
     Validator.notEmpty(model.getId(), "model id must not be empty");
 
     final Request request = RequestBuilder.delete(String.format(PATH_CUSTOMIZATION, model.getId())).build();
-    return createServiceCall(request, ResponseConverterUtils.getVoid());
+    return createServiceCall(request, invalidating(model.getId()));
   }
 
   /**
@@ -331,7 +588,7 @@ public class TextToSpeech extends WatsonService {
     final RequestBody body = RequestBody.create(HttpMediaType.JSON, json);
     final Request request = RequestBuilder.post(path).body(body).build();
 
-    return createServiceCall(request, ResponseConverterUtils.getVoid());
+    return createServiceCall(request, invalidating(model.getId()));
   }
 
   /**
@@ -347,7 +604,46 @@ public class TextToSpeech extends WatsonService {
 
     final String path = String.format(PATH_WORD, model.getId(), RequestUtils.encode(translation.getWord()));
     final Request request = RequestBuilder.delete(path).build();
-    return createServiceCall(request, ResponseConverterUtils.getVoid());
+    return createServiceCall(request, invalidating(model.getId()));
+  }
+
+  /**
+   * Gets a converter for the responses of requests that change a customization: it drops the cached audio and metadata
+   * of the customization once the change succeeded.
+   */
+  private ResponseConverter<Void> invalidating(final String customizationId) {
+    final ResponseConverter<Void> converter = ResponseConverterUtils.getVoid();
+    return new ResponseConverter<Void>() {
+      @Override
+      public Void convert(Response response) {
+        invalidate(customizationId);
+        return converter.convert(response);
+      }
+    };
+  }
+
+  private void invalidate(String customizationId) {
+    final SynthesisCache synthesisCache = cache;
+    if (synthesisCache != null) {
+      synthesisCache.invalidate(customizationId);
+    }
+    final List<MetadataCache> caches;
+    synchronized (metadataCaches) {
+      caches = new ArrayList<MetadataCache>(metadataCaches.keySet());
+    }
+    for (MetadataCache metadataCache : caches) {
+      metadataCache.invalidate(customizationId);
+    }
+  }
+
+  /**
+   * Registers a {@link MetadataCache} of this service, so the changes to a customization made through the service
+   * drop its entries. The cache is not kept from being garbage collected.
+   *
+   * @param metadataCache the metadata cache
+   */
+  void addMetadataCache(MetadataCache metadataCache) {
+    metadataCaches.put(metadataCache, Boolean.TRUE);
   }
 
 }
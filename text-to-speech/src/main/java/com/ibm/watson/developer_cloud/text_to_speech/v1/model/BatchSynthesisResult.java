@@ -0,0 +1,156 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1.model;
+
+import java.util.Map;
+
+import com.ibm.watson.developer_cloud.service.model.GenericModel;
+
+/**
+ * The summary of a run of a <code>BatchSynthesizer</code>.
+ */
+public class BatchSynthesisResult extends GenericModel {
+
+  private int synthesized;
+  private int skipped;
+  private int failed;
+  private long bytes;
+  private long elapsed;
+  private Map<String, String> failures;
+
+  /**
+   * Gets the number of tasks whose audio was synthesized and written.
+   *
+   * @return the number of synthesized tasks
+   */
+  public int getSynthesized() {
+    return synthesized;
+  }
+
+  /**
+   * Gets the number of tasks skipped because their output was already up to date.
+   *
+   * @return the number of skipped tasks
+   */
+  public int getSkipped() {
+    return skipped;
+  }
+
+  /**
+   * Gets the number of tasks that failed.
+   *
+   * @return the number of failed tasks
+   */
+  public int getFailed() {
+    return failed;
+  }
+
+  /**
+   * Gets the number of bytes of audio written.
+   *
+   * @return the bytes written
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Gets the duration of the run.
+   *
+   * @return the elapsed time, in milliseconds
+   */
+  public long getElapsed() {
+    return elapsed;
+  }
+
+  /**
+   * Gets the error message of each failed task, by output path.
+   *
+   * @return the failures
+   */
+  public Map<String, String> getFailures() {
+    return failures;
+  }
+
+  /**
+   * Gets the number of tasks synthesized per second.
+   *
+   * @return the throughput in tasks per second
+   */
+  public double getTasksPerSecond() {
+    return (elapsed > 0) ? ((synthesized * 1000.0) / elapsed) : 0;
+  }
+
+  /**
+   * Gets the number of bytes of audio written per second.
+   *
+   * @return the throughput in bytes per second
+   */
+  public double getBytesPerSecond() {
+    return (elapsed > 0) ? ((bytes * 1000.0) / elapsed) : 0;
+  }
+
+  /**
+   * Sets the number of synthesized tasks.
+   *
+   * @param synthesized the new synthesized
+   */
+  public void setSynthesized(int synthesized) {
+    this.synthesized = synthesized;
+  }
+
+  /**
+   * Sets the number of skipped tasks.
+   *
+   * @param skipped the new skipped
+   */
+  public void setSkipped(int skipped) {
+    this.skipped = skipped;
+  }
+
+  /**
+   * Sets the number of failed tasks.
+   *
+   * @param failed the new failed
+   */
+  public void setFailed(int failed) {
+    this.failed = failed;
+  }
+
+  /**
+   * Sets the number of bytes written.
+   *
+   * @param bytes the new bytes
+   */
+  public void setBytes(long bytes) {
+    this.bytes = bytes;
+  }
+
+  /**
+   * Sets the duration of the run.
+   *
+   * @param elapsed the new elapsed time, in milliseconds
+   */
+  public void setElapsed(long elapsed) {
+    this.elapsed = elapsed;
+  }
+
+  /**
+   * Sets the failures.
+   *
+   * @param failures the new failures
+   */
+  public void setFailures(Map<String, String> failures) {
+    this.failures = failures;
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1.model;
+
+import com.ibm.watson.developer_cloud.service.model.GenericModel;
+
+/**
+ * The position in the synthesized audio of an SSML <code>&lt;mark name="..."/&gt;</code> element.
+ */
+public class Mark extends GenericModel {
+
+  private String name;
+  private double time;
+
+  /**
+   * Instantiates a new mark.
+   */
+  public Mark() { }
+
+  /**
+   * Instantiates a new mark.
+   *
+   * @param name the name of the mark
+   * @param time the time, in seconds
+   */
+  public Mark(String name, double time) {
+    this.name = name;
+    this.time = time;
+  }
+
+  /**
+   * Gets the name of the mark.
+   *
+   * @return the name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Gets the time the mark is at in the audio.
+   *
+   * @return the time, in seconds
+   */
+  public double getTime() {
+    return time;
+  }
+
+  /**
+   * Sets the name.
+   *
+   * @param name the new name
+   */
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Sets the time.
+   *
+   * @param time the new time, in seconds
+   */
+  public void setTime(double time) {
+    this.time = time;
+  }
+}
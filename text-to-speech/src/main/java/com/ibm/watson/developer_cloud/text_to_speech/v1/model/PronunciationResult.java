@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1.model;
+
+import java.util.Map;
+
+import com.ibm.watson.developer_cloud.service.model.GenericModel;
+
+/**
+ * The pronunciations of many words resolved by a <code>MetadataCache</code>.
+ */
+public class PronunciationResult extends GenericModel {
+
+  private Map<String, Pronunciation> pronunciations;
+  private Map<String, String> failures;
+
+  /**
+   * Gets the pronunciation of every word that was resolved, in the order of the words.
+   *
+   * @return the pronunciations, by word
+   */
+  public Map<String, Pronunciation> getPronunciations() {
+    return pronunciations;
+  }
+
+  /**
+   * Gets the error message of every word that could not be resolved.
+   *
+   * @return the failures, by word
+   */
+  public Map<String, String> getFailures() {
+    return failures;
+  }
+
+  /**
+   * Sets the pronunciations.
+   *
+   * @param pronunciations the new pronunciations
+   */
+  public void setPronunciations(Map<String, Pronunciation> pronunciations) {
+    this.pronunciations = pronunciations;
+  }
+
+  /**
+   * Sets the failures.
+   *
+   * @param failures the new failures
+   */
+  public void setFailures(Map<String, String> failures) {
+    this.failures = failures;
+  }
+}
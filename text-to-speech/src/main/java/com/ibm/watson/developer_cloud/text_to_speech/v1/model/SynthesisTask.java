@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1.model;
+
+import java.io.File;
+
+import com.google.gson.annotations.SerializedName;
+import com.ibm.watson.developer_cloud.service.model.GenericModel;
+
+/**
+ * An entry of the manifest of a <code>BatchSynthesizer</code>: a text to synthesize and the file to write its audio
+ * to.
+ */
+public class SynthesisTask extends GenericModel {
+
+  private String text;
+  private String voice;
+  private String format;
+  @SerializedName("customization_id")
+  private String customizationId;
+  private String output;
+
+  /**
+   * Instantiates a new synthesis task.
+   */
+  public SynthesisTask() { }
+
+  /**
+   * Instantiates a new synthesis task.
+   *
+   * @param text the text
+   * @param voice the voice
+   * @param format the audio format, or null for WAV
+   * @param customizationId the customization ID, or null
+   * @param output the file to write the audio to
+   */
+  public SynthesisTask(String text, Voice voice, AudioFormat format, String customizationId, File output) {
+    this.text = text;
+    this.voice = voice.getName();
+    this.format = (format != null) ? format.toString() : null;
+    this.customizationId = customizationId;
+    this.output = output.getPath();
+  }
+
+  /**
+   * Gets the text.
+   *
+   * @return the text
+   */
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * Gets the voice. Voices that {@link Voice#getByName(String)} does not know are returned with their name only.
+   *
+   * @return the voice
+   */
+  public Voice getVoice() {
+    if (voice == null) {
+      return null;
+    }
+    final Voice known = Voice.getByName(voice);
+    return (known != null) ? known : new Voice(voice, null, null);
+  }
+
+  /**
+   * Gets the audio format.
+   *
+   * @return the audio format, or null for WAV
+   */
+  public AudioFormat getFormat() {
+    return (format != null) ? new AudioFormat(format) : null;
+  }
+
+  /**
+   * Gets the customization ID.
+   *
+   * @return the customization ID, or null
+   */
+  public String getCustomizationId() {
+    return customizationId;
+  }
+
+  /**
+   * Gets the file to write the audio to.
+   *
+   * @return the output file
+   */
+  public File getOutput() {
+    return (output != null) ? new File(output) : null;
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1.model;
+
+import com.ibm.watson.developer_cloud.service.model.GenericModel;
+
+/**
+ * The position of a word in the synthesized audio.
+ */
+public class WordTiming extends GenericModel {
+
+  private String word;
+  private double startTime;
+  private double endTime;
+
+  /**
+   * Instantiates a new word timing.
+   */
+  public WordTiming() { }
+
+  /**
+   * Instantiates a new word timing.
+   *
+   * @param word the word
+   * @param startTime the start time, in seconds
+   * @param endTime the end time, in seconds
+   */
+  public WordTiming(String word, double startTime, double endTime) {
+    this.word = word;
+    this.startTime = startTime;
+    this.endTime = endTime;
+  }
+
+  /**
+   * Gets the word.
+   *
+   * @return the word
+   */
+  public String getWord() {
+    return word;
+  }
+
+  /**
+   * Gets the time the word starts at in the audio.
+   *
+   * @return the start time, in seconds
+   */
+  public double getStartTime() {
+    return startTime;
+  }
+
+  /**
+   * Gets the time the word ends at in the audio.
+   *
+   * @return the end time, in seconds
+   */
+  public double getEndTime() {
+    return endTime;
+  }
+
+  /**
+   * Sets the word.
+   *
+   * @param word the new word
+   */
+  public void setWord(String word) {
+    this.word = word;
+  }
+
+  /**
+   * Sets the start time.
+   *
+   * @param startTime the new start time, in seconds
+   */
+  public void setStartTime(double startTime) {
+    this.startTime = startTime;
+  }
+
+  /**
+   * Sets the end time.
+   *
+   * @param endTime the new end time, in seconds
+   */
+  public void setEndTime(double endTime) {
+    this.endTime = endTime;
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Copies one stream of audio to several outputs, e.g. to convert one synthesized prompt to several formats with
+ * {@link TranscodingOutputStream}s without requesting it again or holding it in memory:
+ *
+ * <pre>
+ * InputStream audio = service.synthesize(text, Voice.EN_LISA, AudioFormat.WAV).execute();
+ * AudioFanOut.copy(audio,
+ *     new TranscodingOutputStream(new FileOutputStream(&quot;ivr.wav&quot;), SampleFormat.mulaw(8000, 1), true),
+ *     new TranscodingOutputStream(new FileOutputStream(&quot;web.raw&quot;), SampleFormat.pcm(16000, 1), false));
+ * </pre>
+ *
+ * The audio is read one chunk at a time and every chunk is written to all the outputs before the next one is read,
+ * so the outputs advance together at the pace of the slowest.
+ */
+public final class AudioFanOut {
+
+  private static final Logger LOG = Logger.getLogger(AudioFanOut.class.getName());
+  private static final int CHUNK_SIZE = 8192;
+
+  private AudioFanOut() {
+    // This is a utility class - no instantiation allowed.
+  }
+
+  /**
+   * Copies the audio to the outputs, then closes the audio and the outputs, which makes transcoding outputs write
+   * their last samples.
+   *
+   * @param audio the audio
+   * @param outputs the outputs
+   * @return the number of bytes read from the audio
+   * @throws IOException if the audio cannot be read or an output cannot be written
+   */
+  public static long copy(InputStream audio, OutputStream... outputs) throws IOException {
+    Validator.notNull(audio, "audio cannot be null");
+    Validator.isTrue((outputs != null) && (outputs.length > 0), "outputs cannot be null or empty");
+
+    long length = 0;
+    IOException failure = null;
+    try {
+      final byte[] chunk = new byte[CHUNK_SIZE];
+      int read;
+      while ((read = audio.read(chunk)) != -1) {
+        for (OutputStream output : outputs) {
+          output.write(chunk, 0, read);
+        }
+        length += read;
+      }
+    } catch (IOException e) {
+      failure = e;
+    } finally {
+      close(audio);
+      for (OutputStream output : outputs) {
+        try {
+          output.close();
+        } catch (IOException e) {
+          if (failure == null) {
+            failure = e;
+          }
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    return length;
+  }
+
+  private static void close(InputStream audio) {
+    try {
+      audio.close();
+    } catch (IOException e) {
+      LOG.log(Level.FINE, "Failed to close the audio", e);
+    }
+  }
+}
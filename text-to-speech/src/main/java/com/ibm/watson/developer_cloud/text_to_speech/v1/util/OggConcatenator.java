@@ -0,0 +1,298 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Joins Ogg Opus streams into a single logical stream, page by page, without decoding them. Simply concatenating the
+ * files would produce a chained Ogg file that many players stop playing after the first link; instead the pages of
+ * every stream after the first one are rewritten:
+ * <ul>
+ * <li>their header pages (<code>OpusHead</code> and <code>OpusTags</code>) are dropped,</li>
+ * <li>they get the serial number of the first stream and the following page sequence numbers,</li>
+ * <li>their granule positions are moved by the granule position of the end of the previous stream,</li>
+ * <li>only the last page of the last stream keeps the end of stream flag,</li>
+ * </ul>
+ * and the checksum of every page is computed again. Every stream must be encoded with the same parameters, which is
+ * the case for audio synthesized with the same voice. Vorbis streams cannot be joined this way, because each stream
+ * carries its own codebooks in its headers.<br>
+ * <br>
+ * Streams are appended in order, and each one must be read to its end before the next one is appended.
+ */
+public class OggConcatenator {
+
+  private static final int HEADER_LENGTH = 27;
+  private static final int FLAG_BOS = 0x02;
+  private static final int FLAG_EOS = 0x04;
+  private static final int FLAGS_OFFSET = 5;
+  private static final int GRANULE_OFFSET = 6;
+  private static final int SERIAL_OFFSET = 14;
+  private static final int SEQUENCE_OFFSET = 18;
+  private static final int CRC_OFFSET = 22;
+  private static final int SEGMENTS_OFFSET = 26;
+  private static final int[] CRC_TABLE = new int[256];
+
+  static {
+    for (int i = 0; i < CRC_TABLE.length; i++) {
+      int r = i << 24;
+      for (int bit = 0; bit < 8; bit++) {
+        r = ((r & 0x80000000) != 0) ? ((r << 1) ^ 0x04c11db7) : (r << 1);
+      }
+      CRC_TABLE[i] = r;
+    }
+  }
+
+  /**
+   * The pages of one appended stream, rewritten as they are read. The last page is held back until the end of the
+   * stream is reached, to know whether it keeps its end of stream flag.
+   */
+  private final class PageInputStream extends InputStream {
+    private final InputStream in;
+    private final boolean last;
+    private final boolean first;
+    private int headerPackets = -1;
+    private byte[] pending;
+    private byte[] page;
+    private int position;
+    private boolean ended;
+
+    private PageInputStream(InputStream in, boolean last) {
+      this.in = in;
+      this.last = last;
+      first = streams == 0;
+      streams++;
+    }
+
+    @Override
+    public int read() throws IOException {
+      final byte[] b = new byte[1];
+      return (read(b, 0, 1) == -1) ? -1 : (b[0] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      while ((page == null) || (position == page.length)) {
+        if (!nextPage()) {
+          return -1;
+        }
+      }
+      final int count = Math.min(len, page.length - position);
+      System.arraycopy(page, position, b, off, count);
+      position += count;
+      return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+
+    private boolean nextPage() throws IOException {
+      while (!ended) {
+        final byte[] next = readPage(in);
+        if (next == null) {
+          ended = true;
+          granuleOffset = lastGranule;
+          if (pending != null) {
+            if (last) {
+              pending[FLAGS_OFFSET] |= FLAG_EOS;
+            }
+            serve(pending);
+            pending = null;
+            return true;
+          }
+          return false;
+        }
+
+        if (!first && skipHeader(next)) {
+          continue;
+        }
+        rewrite(next);
+        final byte[] previous = pending;
+        pending = next;
+        if (previous != null) {
+          serve(previous);
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Checks whether a page only holds header packets, which the first stream already provided.
+     */
+    private boolean skipHeader(byte[] next) {
+      if (headerPackets < 0) {
+        headerPackets = startsWith(next, "OpusHead") ? 2 : 0;
+      }
+      if (headerPackets == 0) {
+        return false;
+      }
+      final int segments = next[SEGMENTS_OFFSET] & 0xff;
+      for (int i = 0; i < segments; i++) {
+        if ((next[HEADER_LENGTH + i] & 0xff) < 255) {
+          headerPackets--;
+        }
+      }
+      return true;
+    }
+
+    private void rewrite(byte[] next) {
+      if (first && (sequence == 0)) {
+        serial = readInt(next, SERIAL_OFFSET);
+      }
+      writeInt(next, SERIAL_OFFSET, serial);
+      writeInt(next, SEQUENCE_OFFSET, sequence++);
+
+      final long granule = readLong(next, GRANULE_OFFSET);
+      if (granule != -1) {
+        lastGranule = granule + granuleOffset;
+        writeLong(next, GRANULE_OFFSET, lastGranule);
+      }
+
+      int flags = next[FLAGS_OFFSET] & ~FLAG_EOS;
+      if (!first) {
+        flags &= ~FLAG_BOS;
+      }
+      next[FLAGS_OFFSET] = (byte) flags;
+    }
+
+    private void serve(byte[] served) {
+      writeInt(served, CRC_OFFSET, 0);
+      writeInt(served, CRC_OFFSET, crc(served, 0, served.length));
+      page = served;
+      position = 0;
+    }
+  }
+
+  private int streams;
+  private int serial;
+  private int sequence;
+  private long granuleOffset;
+  private long lastGranule;
+
+  /**
+   * Appends a stream.
+   *
+   * @param stream the Ogg Opus stream
+   * @param last true if no stream will be appended after this one
+   * @return the rewritten pages of the stream, to read after those of the previous stream
+   */
+  public InputStream append(InputStream stream, boolean last) {
+    Validator.notNull(stream, "stream cannot be null");
+    return new PageInputStream(stream, last);
+  }
+
+  /**
+   * Computes the Ogg checksum of a page, whose checksum field must be zero.
+   *
+   * @param page the page
+   * @param offset the offset of the page in the array
+   * @param length the length of the page
+   * @return the checksum
+   */
+  public static int crc(byte[] page, int offset, int length) {
+    int crc = 0;
+    for (int i = offset; i < (offset + length); i++) {
+      crc = (crc << 8) ^ CRC_TABLE[((crc >>> 24) & 0xff) ^ (page[i] & 0xff)];
+    }
+    return crc;
+  }
+
+  /**
+   * Reads a whole page.
+   *
+   * @return the page, or null at the end of the stream
+   */
+  private static byte[] readPage(InputStream in) throws IOException {
+    final byte[] header = new byte[HEADER_LENGTH + 255];
+    final int read = readFully(in, header, 0, HEADER_LENGTH);
+    if (read == 0) {
+      return null;
+    }
+    if ((read < HEADER_LENGTH) || !startsWith(header, 0, "OggS")) {
+      throw new IOException("not an Ogg stream");
+    }
+
+    final int segments = header[SEGMENTS_OFFSET] & 0xff;
+    if (readFully(in, header, HEADER_LENGTH, segments) < segments) {
+      throw new EOFException("truncated Ogg page");
+    }
+    int bodyLength = 0;
+    for (int i = 0; i < segments; i++) {
+      bodyLength += header[HEADER_LENGTH + i] & 0xff;
+    }
+
+    final int headerLength = HEADER_LENGTH + segments;
+    final byte[] page = new byte[headerLength + bodyLength];
+    System.arraycopy(header, 0, page, 0, headerLength);
+    if (readFully(in, page, headerLength, bodyLength) < bodyLength) {
+      throw new EOFException("truncated Ogg page");
+    }
+    return page;
+  }
+
+  private static int readFully(InputStream in, byte[] b, int off, int len) throws IOException {
+    int total = 0;
+    while (total < len) {
+      final int read = in.read(b, off + total, len - total);
+      if (read == -1) {
+        break;
+      }
+      total += read;
+    }
+    return total;
+  }
+
+  private static boolean startsWith(byte[] page, String prefix) {
+    return startsWith(page, HEADER_LENGTH + (page[SEGMENTS_OFFSET] & 0xff), prefix);
+  }
+
+  private static boolean startsWith(byte[] data, int offset, String prefix) {
+    if ((offset + prefix.length()) > data.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (data[offset + i] != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int readInt(byte[] data, int offset) {
+    return (data[offset] & 0xff) | ((data[offset + 1] & 0xff) << 8) | ((data[offset + 2] & 0xff) << 16)
+        | ((data[offset + 3] & 0xff) << 24);
+  }
+
+  private static long readLong(byte[] data, int offset) {
+    return (readInt(data, offset) & 0xffffffffL) | ((long) readInt(data, offset + 4) << 32);
+  }
+
+  private static void writeInt(byte[] data, int offset, int value) {
+    for (int i = 0; i < 4; i++) {
+      data[offset + i] = (byte) (value >>> (8 * i));
+    }
+  }
+
+  private static void writeLong(byte[] data, int offset, long value) {
+    for (int i = 0; i < 8; i++) {
+      data[offset + i] = (byte) (value >>> (8 * i));
+    }
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1.util;
+
+import com.ibm.watson.developer_cloud.http.HttpMediaType;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.AudioFormat;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * The layout of uncompressed audio samples: encoding, sampling rate and number of channels, as read and written by
+ * {@link TranscodingOutputStream}. Samples of multiple channels are interleaved and 16-bit samples are little-endian.
+ */
+public final class SampleFormat {
+
+  /**
+   * The encoding of a sample.
+   */
+  public enum Encoding {
+    /** Linear 16-bit PCM. */
+    PCM(2, 1),
+    /** 8-bit G.711 mu-law, as used by North American and Japanese telephony. */
+    MULAW(1, 7),
+    /** 8-bit G.711 a-law, as used by European telephony. */
+    ALAW(1, 6);
+
+    private final int bytesPerSample;
+    private final int waveFormatTag;
+
+    Encoding(int bytesPerSample, int waveFormatTag) {
+      this.bytesPerSample = bytesPerSample;
+      this.waveFormatTag = waveFormatTag;
+    }
+
+    /**
+     * Gets the size of a sample.
+     *
+     * @return the number of bytes per sample
+     */
+    public int getBytesPerSample() {
+      return bytesPerSample;
+    }
+
+    /**
+     * Gets the format tag of the encoding in the header of WAVE files.
+     *
+     * @return the format tag
+     */
+    public int getWaveFormatTag() {
+      return waveFormatTag;
+    }
+
+    /**
+     * Gets the encoding of a WAVE format tag.
+     *
+     * @param tag the format tag
+     * @return the encoding, or null if the tag is not supported
+     */
+    static Encoding fromWaveFormatTag(int tag) {
+      for (Encoding encoding : values()) {
+        if (encoding.waveFormatTag == tag) {
+          return encoding;
+        }
+      }
+      return null;
+    }
+  }
+
+  private static final String RATE = "rate=";
+
+  private final Encoding encoding;
+  private final int sampleRate;
+  private final int channels;
+
+  /**
+   * Instantiates a new sample format.
+   *
+   * @param encoding the encoding
+   * @param sampleRate the sampling rate, in Hz
+   * @param channels the number of channels
+   */
+  public SampleFormat(Encoding encoding, int sampleRate, int channels) {
+    Validator.notNull(encoding, "encoding cannot be null");
+    Validator.isTrue(sampleRate > 0, "sampleRate must be positive");
+    Validator.isTrue(channels > 0, "channels must be positive");
+    this.encoding = encoding;
+    this.sampleRate = sampleRate;
+    this.channels = channels;
+  }
+
+  /**
+   * Linear 16-bit PCM.
+   *
+   * @param sampleRate the sampling rate, in Hz
+   * @param channels the number of channels
+   * @return the sample format
+   */
+  public static SampleFormat pcm(int sampleRate, int channels) {
+    return new SampleFormat(Encoding.PCM, sampleRate, channels);
+  }
+
+  /**
+   * 8-bit mu-law.
+   *
+   * @param sampleRate the sampling rate, in Hz
+   * @param channels the number of channels
+   * @return the sample format
+   */
+  public static SampleFormat mulaw(int sampleRate, int channels) {
+    return new SampleFormat(Encoding.MULAW, sampleRate, channels);
+  }
+
+  /**
+   * 8-bit a-law.
+   *
+   * @param sampleRate the sampling rate, in Hz
+   * @param channels the number of channels
+   * @return the sample format
+   */
+  public static SampleFormat alaw(int sampleRate, int channels) {
+    return new SampleFormat(Encoding.ALAW, sampleRate, channels);
+  }
+
+  /**
+   * Gets the sample format of the raw audio returned by the service for an {@link AudioFormat}:
+   * <code>audio/l16; rate=...</code> is mono 16-bit PCM and <code>audio/basic</code> is mono 8kHz mu-law.
+   *
+   * @param format the audio format requested
+   * @return the sample format, or null if the audio is not raw samples, e.g. WAVE audio, whose header describes its
+   *         samples
+   */
+  public static SampleFormat of(AudioFormat format) {
+    Validator.notNull(format, "format cannot be null");
+    final String mediaType = format.toString();
+    if (mediaType.startsWith(HttpMediaType.AUDIO_BASIC)) {
+      return mulaw(8000, 1);
+    }
+    final int rate = mediaType.indexOf(RATE);
+    if (mediaType.startsWith(HttpMediaType.AUDIO_PCM) && (rate >= 0)) {
+      int end = rate + RATE.length();
+      while ((end < mediaType.length()) && Character.isDigit(mediaType.charAt(end))) {
+        end++;
+      }
+      return pcm(Integer.parseInt(mediaType.substring(rate + RATE.length(), end)), 1);
+    }
+    return null;
+  }
+
+  /**
+   * Gets the encoding.
+   *
+   * @return the encoding
+   */
+  public Encoding getEncoding() {
+    return encoding;
+  }
+
+  /**
+   * Gets the sampling rate.
+   *
+   * @return the sampling rate, in Hz
+   */
+  public int getSampleRate() {
+    return sampleRate;
+  }
+
+  /**
+   * Gets the number of channels.
+   *
+   * @return the number of channels
+   */
+  public int getChannels() {
+    return channels;
+  }
+
+  /**
+   * Gets the size of a frame, i.e. of one sample of every channel.
+   *
+   * @return the number of bytes per frame
+   */
+  public int getFrameSize() {
+    return encoding.getBytesPerSample() * channels;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.lang.Object#equals(java.lang.Object)
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof SampleFormat)) {
+      return false;
+    }
+    final SampleFormat other = (SampleFormat) o;
+    return (encoding == other.encoding) && (sampleRate == other.sampleRate) && (channels == other.channels);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.lang.Object#hashCode()
+   */
+  @Override
+  public int hashCode() {
+    return (((encoding.hashCode() * 31) + sampleRate) * 31) + channels;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return encoding + "/" + sampleRate + "Hz/" + channels + "ch";
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Splits plain text or SSML into chunks that can be synthesized separately. Chunks end at sentence boundaries: after
+ * a <code>.</code>, <code>!</code> or <code>?</code> followed by white space, or after an SSML <code>s</code> or
+ * <code>p</code> element. Consecutive sentences are grouped into chunks of at most <code>maxLength</code>
+ * characters; a sentence longer than that is cut between two words.<br>
+ * <br>
+ * Markup is never cut. The elements that are open where a chunk starts (e.g. <code>speak</code> or
+ * <code>prosody</code>) are opened again at the beginning of the chunk, and the elements still open where it ends are
+ * closed, so every chunk is well-formed SSML with the same voice settings it had in the original text. Those tags
+ * are not counted in <code>maxLength</code>.
+ */
+public final class SentenceSplitter {
+
+  private static final String TERMINATORS = ".!?\u3002\uff01\uff1f";
+  private static final String CLOSING_PUNCTUATION = "\"')]\u00bb\u201d\u2019";
+  private static final Set<String> SENTENCE_ELEMENTS = new HashSet<String>(Arrays.asList("s", "p"));
+  private static final Set<String> ABBREVIATIONS = new HashSet<String>(Arrays.asList("mr", "mrs", "ms", "dr", "prof",
+      "sr", "jr", "st", "vs", "etc", "e.g", "i.e", "no"));
+
+  /**
+   * An open element. Elements form an immutable stack, so the elements open at a boundary can be kept without copying.
+   */
+  private static final class Element {
+    private final String name;
+    private final String openTag;
+    private final Element parent;
+
+    private Element(String name, String openTag, Element parent) {
+      this.name = name;
+      this.openTag = openTag;
+      this.parent = parent;
+    }
+  }
+
+  /**
+   * A position where the text can be cut: the previous chunk ends at <code>end</code>, and the next one starts after
+   * the white space, at <code>position</code>.
+   */
+  private static final class Boundary {
+    private final int end;
+    private final int position;
+    private final Element open;
+    private final boolean sentence;
+
+    private Boundary(int end, int position, Element open, boolean sentence) {
+      this.end = end;
+      this.position = position;
+      this.open = open;
+      this.sentence = sentence;
+    }
+  }
+
+  private SentenceSplitter() {
+  }
+
+  /**
+   * Splits the text into chunks of whole sentences.
+   *
+   * @param text the plain text or SSML
+   * @param maxLength the maximum number of characters of the original text in a chunk
+   * @return the chunks, in order
+   */
+  public static List<String> split(String text, int maxLength) {
+    Validator.notNull(text, "text cannot be null");
+    Validator.isTrue(maxLength > 0, "maxLength must be positive");
+
+    final List<Boundary> boundaries = findBoundaries(text);
+    final List<String> chunks = new ArrayList<String>();
+    Boundary start = new Boundary(0, 0, null, true);
+    int next = 0;
+
+    while (start.position < text.length()) {
+      final int limit = start.position + maxLength;
+      Boundary sentence = null;
+      Boundary word = null;
+      int i = next;
+      while ((i < boundaries.size()) && (boundaries.get(i).end <= limit)) {
+        final Boundary boundary = boundaries.get(i);
+        if (boundary.position > start.position) {
+          if (boundary.sentence) {
+            sentence = boundary;
+          } else {
+            word = boundary;
+          }
+        }
+        i++;
+      }
+
+      Boundary end = (sentence != null) ? sentence : word;
+      if (end == null) {
+        // a single word longer than maxLength
+        end = boundaries.get(i);
+      }
+
+      final String chunk = chunk(text, start, end);
+      if (chunk != null) {
+        chunks.add(chunk);
+      }
+      while ((next < boundaries.size()) && (boundaries.get(next).position <= end.position)) {
+        next++;
+      }
+      start = end;
+    }
+    return chunks;
+  }
+
+  /**
+   * Finds the sentence boundaries and, to cut long sentences, the word boundaries outside tags. The last boundary is
+   * the end of the text.
+   */
+  private static List<Boundary> findBoundaries(String text) {
+    final List<Boundary> boundaries = new ArrayList<Boundary>();
+    Element open = null;
+    int i = 0;
+
+    while (i < text.length()) {
+      final char c = text.charAt(i);
+
+      if (c == '<') {
+        final int end = text.indexOf('>', i);
+        if (end < 0) {
+          break;
+        }
+        final String tag = text.substring(i, end + 1);
+        i = end + 1;
+
+        if (tag.startsWith("</")) {
+          final String name = tagName(tag, 2);
+          if ((open != null) && open.name.equals(name)) {
+            open = open.parent;
+          }
+          if (SENTENCE_ELEMENTS.contains(name)) {
+            boundaries.add(new Boundary(i, skipWhitespace(text, i), open, true));
+          }
+        } else if (!tag.startsWith("<?") && !tag.startsWith("<!") && !tag.endsWith("/>")) {
+          open = new Element(tagName(tag, 1), tag, open);
+        }
+        continue;
+      }
+
+      if (TERMINATORS.indexOf(c) >= 0) {
+        int end = i + 1;
+        while ((end < text.length()) && (CLOSING_PUNCTUATION.indexOf(text.charAt(end)) >= 0)) {
+          end++;
+        }
+        // full-width terminators are not followed by a space
+        final boolean followed = (c > 0x7f) || (end == text.length()) || Character.isWhitespace(text.charAt(end))
+            || (text.charAt(end) == '<');
+        if (followed && !isAbbreviation(text, i)) {
+          boundaries.add(new Boundary(end, skipWhitespace(text, end), open, true));
+          i = end;
+          continue;
+        }
+      } else if (Character.isWhitespace(c)) {
+        final int end = i;
+        i = skipWhitespace(text, i);
+        boundaries.add(new Boundary(end, i, open, false));
+        continue;
+      }
+      i++;
+    }
+
+    boundaries.add(new Boundary(text.length(), text.length(), open, true));
+    return boundaries;
+  }
+
+  private static String chunk(String text, Boundary start, Boundary end) {
+    final String body = text.substring(start.position, Math.max(start.position, end.end));
+    if (!hasContent(body)) {
+      return null;
+    }
+
+    final StringBuilder chunk = new StringBuilder();
+    appendOpenTags(chunk, start.open);
+    chunk.append(body);
+    for (Element element = end.open; element != null; element = element.parent) {
+      chunk.append("</").append(element.name).append('>');
+    }
+    return chunk.toString();
+  }
+
+  private static void appendOpenTags(StringBuilder chunk, Element element) {
+    if (element != null) {
+      appendOpenTags(chunk, element.parent);
+      chunk.append(element.openTag);
+    }
+  }
+
+  /**
+   * Checks whether a chunk has something to synthesize: text outside tags, or an empty element such as a
+   * <code>break</code>.
+   */
+  private static boolean hasContent(String body) {
+    boolean inTag = false;
+    for (int i = 0; i < body.length(); i++) {
+      final char c = body.charAt(i);
+      if (c == '<') {
+        inTag = true;
+      } else if (c == '>') {
+        if (body.charAt(i - 1) == '/') {
+          return true;
+        }
+        inTag = false;
+      } else if (!inTag && !Character.isWhitespace(c)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isAbbreviation(String text, int period) {
+    if (text.charAt(period) != '.') {
+      return false;
+    }
+    int start = period;
+    while ((start > 0) && (Character.isLetter(text.charAt(start - 1)) || (text.charAt(start - 1) == '.'))) {
+      start--;
+    }
+    final String word = text.substring(start, period).toLowerCase();
+    // single letters are initials, e.g. "J. Smith"
+    return (word.length() == 1) || ABBREVIATIONS.contains(word);
+  }
+
+  private static String tagName(String tag, int start) {
+    int end = start;
+    while ((end < tag.length()) && !Character.isWhitespace(tag.charAt(end)) && (tag.charAt(end) != '>')
+        && (tag.charAt(end) != '/')) {
+      end++;
+    }
+    return tag.substring(start, end);
+  }
+
+  private static int skipWhitespace(String text, int position) {
+    int i = position;
+    while ((i < text.length()) && Character.isWhitespace(text.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Fixes the header of a streamed WAVE (.wav) file on the fly. The service streams WAVE audio before it knows its
+ * length, so the RIFF and data chunk sizes are <code>0xFFFFFFFF</code>, which most players reject. This stream only
+ * reads ahead the header, replaces the unknown sizes with the largest valid sizes, so players read until the end of
+ * the stream, and passes the audio through as it arrives. Unlike {@link WaveUtils#reWriteWaveHeader(InputStream)}
+ * the audio is never buffered, so the first bytes are available as soon as the service sends them.<br>
+ * <br>
+ * After the header has been read, {@link #getDataSizeOffset()} and {@link #getDataOffset()} give the positions needed
+ * to write the real sizes once the length is known, as {@link WaveUtils#writeWave(InputStream, java.io.File)} does.
+ * Streams that do not start with a RIFF/WAVE header are passed through unchanged.
+ */
+public class StreamingWaveInputStream extends FilterInputStream {
+
+  /** The position of the RIFF chunk size. */
+  public static final int RIFF_SIZE_OFFSET = 4;
+
+  /** The size written for unknown sizes: the largest even size that keeps the RIFF size below 2^31. */
+  static final long MAX_SIZE = 0x7FFFFFFEL;
+  private static final long UNKNOWN_SIZE = 0xFFFFFFFFL;
+  private static final int CHUNK_HEADER_SIZE = 8;
+  private static final int MAX_HEADER_SIZE = 64 * 1024;
+
+  private final boolean unknownLength;
+  private byte[] header;
+  private int headerPosition;
+  private int dataSizeOffset = -1;
+  private int dataOffset = -1;
+
+  /**
+   * Instantiates a new streaming wave input stream.
+   *
+   * @param in the WAVE stream
+   */
+  public StreamingWaveInputStream(InputStream in) {
+    this(in, false);
+  }
+
+  /**
+   * Instantiates a new streaming wave input stream.
+   *
+   * @param in the WAVE stream
+   * @param unknownLength true to replace the sizes of the header even if they are known, e.g. because more audio will
+   *        be appended to the stream
+   */
+  public StreamingWaveInputStream(InputStream in, boolean unknownLength) {
+    super(in);
+    this.unknownLength = unknownLength;
+  }
+
+  /**
+   * Gets the position of the size of the data chunk.
+   *
+   * @return the offset, or -1 if the stream is not a WAVE stream or its header has not been read yet
+   */
+  public int getDataSizeOffset() {
+    return dataSizeOffset;
+  }
+
+  /**
+   * Gets the position of the first audio sample, i.e. the length of the header.
+   *
+   * @return the offset, or -1 if the stream is not a WAVE stream or its header has not been read yet
+   */
+  public int getDataOffset() {
+    return dataOffset;
+  }
+
+  /**
+   * Reads and discards the header, e.g. to append the audio of this stream to another WAVE stream.
+   *
+   * @return the length of the header, or 0 if the stream is not a WAVE stream
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public int skipHeader() throws IOException {
+    readHeader();
+    if (dataOffset < 0) {
+      return 0;
+    }
+    headerPosition = header.length;
+    return dataOffset;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.FilterInputStream#read()
+   */
+  @Override
+  public int read() throws IOException {
+    readHeader();
+    if (headerPosition < header.length) {
+      return header[headerPosition++] & 0xFF;
+    }
+    return super.read();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.FilterInputStream#read(byte[], int, int)
+   */
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    readHeader();
+    if (headerPosition < header.length) {
+      final int count = Math.min(len, header.length - headerPosition);
+      System.arraycopy(header, headerPosition, b, off, count);
+      headerPosition += count;
+      return count;
+    }
+    return super.read(b, off, len);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.FilterInputStream#skip(long)
+   */
+  @Override
+  public long skip(long n) throws IOException {
+    readHeader();
+    if (headerPosition < header.length) {
+      final int count = (int) Math.min(n, header.length - headerPosition);
+      headerPosition += count;
+      return count;
+    }
+    return super.skip(n);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.FilterInputStream#available()
+   */
+  @Override
+  public int available() throws IOException {
+    final int buffered = header == null ? 0 : header.length - headerPosition;
+    return buffered + super.available();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.FilterInputStream#markSupported()
+   */
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  /**
+   * Reads the chunks up to the header of the data chunk and fixes the unknown sizes.
+   */
+  private void readHeader() throws IOException {
+    if (header != null) {
+      return;
+    }
+
+    byte[] buffer = new byte[12];
+    int length = readFully(buffer, 0, 12);
+    if ((length < 12) || !matches(buffer, 0, "RIFF") || !matches(buffer, 8, "WAVE")) {
+      header = Arrays.copyOf(buffer, length);
+      return;
+    }
+
+    while (true) {
+      if ((length + CHUNK_HEADER_SIZE) > MAX_HEADER_SIZE) {
+        // not a header we understand: pass it through
+        header = Arrays.copyOf(buffer, length);
+        return;
+      }
+      buffer = ensureCapacity(buffer, length + CHUNK_HEADER_SIZE);
+      final int read = readFully(buffer, length, CHUNK_HEADER_SIZE);
+      length += read;
+      if (read < CHUNK_HEADER_SIZE) {
+        header = Arrays.copyOf(buffer, length);
+        return;
+      }
+
+      final int sizeOffset = length - 4;
+      if (matches(buffer, length - CHUNK_HEADER_SIZE, "data")) {
+        dataSizeOffset = sizeOffset;
+        dataOffset = length;
+        if (unknownLength || (readIntLittleEndian(buffer, sizeOffset) == UNKNOWN_SIZE)) {
+          writeIntLittleEndian(buffer, sizeOffset, MAX_SIZE - dataOffset);
+        }
+        if (unknownLength || (readIntLittleEndian(buffer, RIFF_SIZE_OFFSET) == UNKNOWN_SIZE)) {
+          writeIntLittleEndian(buffer, RIFF_SIZE_OFFSET, MAX_SIZE - CHUNK_HEADER_SIZE);
+        }
+        header = Arrays.copyOf(buffer, length);
+        return;
+      }
+
+      // chunks are padded to an even size
+      final long size = readIntLittleEndian(buffer, sizeOffset);
+      final long padded = size + (size & 1);
+      if ((length + padded) > MAX_HEADER_SIZE) {
+        header = Arrays.copyOf(buffer, length);
+        return;
+      }
+      buffer = ensureCapacity(buffer, length + (int) padded);
+      final int chunk = readFully(buffer, length, (int) padded);
+      length += chunk;
+      if (chunk < padded) {
+        header = Arrays.copyOf(buffer, length);
+        return;
+      }
+    }
+  }
+
+  private int readFully(byte[] buffer, int offset, int length) throws IOException {
+    int total = 0;
+    while (total < length) {
+      final int read = in.read(buffer, offset + total, length - total);
+      if (read < 0) {
+        break;
+      }
+      total += read;
+    }
+    return total;
+  }
+
+  private static boolean matches(byte[] buffer, int offset, String id) {
+    for (int i = 0; i < id.length(); i++) {
+      if (buffer[offset + i] != id.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static byte[] ensureCapacity(byte[] buffer, int capacity) {
+    return buffer.length >= capacity ? buffer : Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+  }
+
+  private static long readIntLittleEndian(byte[] buffer, int offset) {
+    long value = 0;
+    for (int i = 3; i >= 0; i--) {
+      value = (value << 8) | (buffer[offset + i] & 0xFF);
+    }
+    return value;
+  }
+
+  /**
+   * Writes an unsigned 32-bit number in little-endian order, as in WAVE headers.
+   *
+   * @param buffer the buffer
+   * @param offset the position of the number
+   * @param value the number
+   */
+  static void writeIntLittleEndian(byte[] buffer, int offset, long value) {
+    for (int i = 0; i < 4; i++) {
+      buffer[offset + i] = (byte) (value >>> (8 * i));
+    }
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Reads audio converted to another {@link SampleFormat}, see {@link TranscodingOutputStream}. The source stream is
+ * read one chunk at a time, as the converted audio is read, so it can wrap the stream returned by the service:
+ *
+ * <pre>
+ * InputStream telephony = new TranscodingInputStream(service.synthesize(text, Voice.EN_LISA, AudioFormat.WAV)
+ *     .execute(), SampleFormat.mulaw(8000, 1), false);
+ * </pre>
+ */
+public class TranscodingInputStream extends InputStream {
+
+  private static final int CHUNK_SIZE = 4096;
+
+  /**
+   * The converted audio of the last chunk.
+   */
+  private static final class Converted extends ByteArrayOutputStream {
+    private byte[] array() {
+      return buf;
+    }
+  }
+
+  private final InputStream in;
+  private final Converted converted = new Converted();
+  private final TranscodingOutputStream transcoder;
+  private final byte[] chunk = new byte[CHUNK_SIZE];
+  private int position;
+  private boolean finished;
+
+  /**
+   * Instantiates a new transcoding input stream for WAVE audio.
+   *
+   * @param in the WAVE audio
+   * @param target the format to convert to
+   * @param wave true to read a WAVE header before the samples
+   */
+  public TranscodingInputStream(InputStream in, SampleFormat target, boolean wave) {
+    this(in, null, target, wave);
+  }
+
+  /**
+   * Instantiates a new transcoding input stream.
+   *
+   * @param in the audio
+   * @param source the format of raw samples, or null if the audio is WAVE audio
+   * @param target the format to convert to
+   * @param wave true to read a WAVE header before the samples
+   */
+  public TranscodingInputStream(InputStream in, SampleFormat source, SampleFormat target, boolean wave) {
+    Validator.notNull(in, "in cannot be null");
+    this.in = in;
+    transcoder = new TranscodingOutputStream(converted, source, target, wave);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.InputStream#read()
+   */
+  @Override
+  public int read() throws IOException {
+    return fill() ? (converted.array()[position++] & 0xFF) : -1;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.InputStream#read(byte[], int, int)
+   */
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!fill()) {
+      return -1;
+    }
+    final int count = Math.min(len, converted.size() - position);
+    System.arraycopy(converted.array(), position, b, off, count);
+    position += count;
+    return count;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.InputStream#available()
+   */
+  @Override
+  public int available() throws IOException {
+    return converted.size() - position;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.InputStream#close()
+   */
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  /**
+   * Converts chunks of the source until there is converted audio to read.
+   *
+   * @return false at the end of the audio
+   */
+  private boolean fill() throws IOException {
+    while (position == converted.size()) {
+      if (finished) {
+        return false;
+      }
+      converted.reset();
+      position = 0;
+      final int read = in.read(chunk);
+      if (read < 0) {
+        finished = true;
+        transcoder.close();
+      } else {
+        transcoder.write(chunk, 0, read);
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,607 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import com.ibm.watson.developer_cloud.text_to_speech.v1.util.SampleFormat.Encoding;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Converts the audio written to it to another {@link SampleFormat} as it is written, e.g. to turn the 22kHz WAVE
+ * audio of the service into 8kHz mu-law for telephony. The stream resamples, changes the number of channels and
+ * encodes to 16-bit PCM, mu-law or a-law, and optionally writes a WAVE header in front of the samples.<br>
+ * <br>
+ * The source format is read from the header of WAVE audio; raw samples, e.g. <code>audio/l16</code> or
+ * <code>audio/basic</code>, need their format, see {@link SampleFormat#of}. Resampling uses a windowed-sinc filter
+ * whose cutoff is below the lower of the two Nyquist frequencies, so downsampling does not alias. Only the few
+ * source frames the filter spans are kept, so memory does not grow with the length of the audio; the last frames are
+ * written by {@link #close()}.<br>
+ * <br>
+ * The sizes in the WAVE header written are the placeholders of {@link StreamingWaveInputStream}, since the length is
+ * not known until the end; {@link WaveUtils#writeWave(java.io.InputStream, java.io.File)} writes the real sizes.
+ *
+ * <pre>
+ * OutputStream telephony = new TranscodingOutputStream(new FileOutputStream(&quot;prompt.wav&quot;),
+ *     SampleFormat.mulaw(8000, 1), true);
+ * </pre>
+ *
+ * @see TranscodingInputStream
+ * @see AudioFanOut
+ */
+public class TranscodingOutputStream extends FilterOutputStream {
+
+  /** The zero crossings of the filter on each side of a sample. */
+  private static final int ZERO_CROSSINGS = 8;
+  /** The cutoff of the filter relative to the lower Nyquist frequency, leaving room for the transition band. */
+  private static final double ROLLOFF = 0.9;
+  /** The entries of the kernel table per source sample. */
+  private static final int KERNEL_RESOLUTION = 256;
+  private static final int RIFF_HEADER_SIZE = 12;
+  private static final int CHUNK_HEADER_SIZE = 8;
+  private static final int MAX_HEADER_SIZE = 64 * 1024;
+  private static final int BUFFER_SIZE = 8192;
+  private static final int WAVE_FORMAT_EXTENSIBLE = 0xFFFE;
+  private static final int[] MULAW_SEGMENT_ENDS = { 0x3F, 0x7F, 0xFF, 0x1FF, 0x3FF, 0x7FF, 0xFFF, 0x1FFF };
+  private static final int[] ALAW_SEGMENT_ENDS = { 0x1F, 0x3F, 0x7F, 0xFF, 0x1FF, 0x3FF, 0x7FF, 0xFFF };
+  private static final short[] MULAW_DECODING = new short[256];
+  private static final short[] ALAW_DECODING = new short[256];
+
+  static {
+    for (int i = 0; i < 256; i++) {
+      MULAW_DECODING[i] = (short) mulawToLinear(i);
+      ALAW_DECODING[i] = (short) alawToLinear(i);
+    }
+  }
+
+  private final SampleFormat target;
+  private final boolean wave;
+  private SampleFormat source;
+
+  private byte[] header = new byte[RIFF_HEADER_SIZE];
+  private int headerLength;
+  private byte[] partial;
+  private int partialLength;
+  private float[] sourceFrame;
+  private float[] targetFrame;
+
+  private float[][] window;
+  private long windowStart;
+  private int windowLength;
+  private int halfWidth;
+  private float[] kernel;
+  private float[] taps;
+  private long sourceFrames;
+  private long targetFrames;
+
+  private final byte[] output = new byte[BUFFER_SIZE];
+  private int outputLength;
+  private boolean headerWritten;
+  private boolean closed;
+
+  /**
+   * Instantiates a new transcoding output stream for WAVE audio.
+   *
+   * @param out the stream the converted audio is written to
+   * @param target the format to convert to
+   * @param wave true to write a WAVE header before the samples
+   */
+  public TranscodingOutputStream(OutputStream out, SampleFormat target, boolean wave) {
+    this(out, null, target, wave);
+  }
+
+  /**
+   * Instantiates a new transcoding output stream.
+   *
+   * @param out the stream the converted audio is written to
+   * @param source the format of raw samples, or null if the audio is WAVE audio. The header of WAVE audio overrides
+   *        it.
+   * @param target the format to convert to
+   * @param wave true to write a WAVE header before the samples
+   */
+  public TranscodingOutputStream(OutputStream out, SampleFormat source, SampleFormat target, boolean wave) {
+    super(out);
+    Validator.notNull(out, "out cannot be null");
+    Validator.notNull(target, "target cannot be null");
+    this.source = source;
+    this.target = target;
+    this.wave = wave;
+  }
+
+  /**
+   * Gets the format of the audio written to the stream.
+   *
+   * @return the source format, or null if the header of the audio has not been written yet
+   */
+  public SampleFormat getSourceFormat() {
+    return (header == null) ? source : null;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.FilterOutputStream#write(int)
+   */
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] { (byte) b }, 0, 1);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.FilterOutputStream#write(byte[], int, int)
+   */
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    if (header == null) {
+      convert(b, off, len);
+    } else {
+      if ((headerLength + len) > header.length) {
+        header = Arrays.copyOf(header, Math.max(headerLength + len, header.length * 2));
+      }
+      System.arraycopy(b, off, header, headerLength, len);
+      headerLength += len;
+
+      final int dataOffset = parseHeader();
+      if (dataOffset >= 0) {
+        startConverting(dataOffset);
+      }
+    }
+    flushOutput();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.FilterOutputStream#flush()
+   */
+  @Override
+  public void flush() throws IOException {
+    flushOutput();
+    out.flush();
+  }
+
+  /**
+   * Converts the last frames, which the filter needed the end of the audio for, and closes the stream.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      if ((header != null) && (source != null) && !isRiff()) {
+        // raw audio shorter than a RIFF header
+        startConverting(0);
+      }
+      if (window != null) {
+        resample(true);
+      }
+      writeHeader();
+      flushOutput();
+    } finally {
+      super.close();
+    }
+  }
+
+  private boolean isRiff() {
+    return (headerLength >= 4) && matches(header, 0, "RIFF");
+  }
+
+  /**
+   * Parses the header of WAVE audio.
+   *
+   * @return the position of the first sample, or -1 if more of the header is needed
+   */
+  private int parseHeader() throws IOException {
+    if (headerLength < 4) {
+      return -1;
+    }
+    if (!isRiff()) {
+      return raw();
+    }
+    if (headerLength < RIFF_HEADER_SIZE) {
+      return -1;
+    }
+    if (!matches(header, 8, "WAVE")) {
+      return raw();
+    }
+
+    SampleFormat format = null;
+    int position = RIFF_HEADER_SIZE;
+    while (true) {
+      if ((position + CHUNK_HEADER_SIZE) > headerLength) {
+        return -1;
+      }
+      final long size = readInt(header, position + 4);
+      if (matches(header, position, "data")) {
+        if (format == null) {
+          throw new IOException("The WAVE audio has no fmt chunk");
+        }
+        source = format;
+        return position + CHUNK_HEADER_SIZE;
+      }
+
+      final long end = position + CHUNK_HEADER_SIZE + size + (size & 1);
+      if (end > MAX_HEADER_SIZE) {
+        throw new IOException("The WAVE header is larger than " + MAX_HEADER_SIZE + " bytes");
+      }
+      if (end > headerLength) {
+        return -1;
+      }
+      if (matches(header, position, "fmt ")) {
+        format = parseFormat(position + CHUNK_HEADER_SIZE, (int) size);
+      }
+      position = (int) end;
+    }
+  }
+
+  private SampleFormat parseFormat(int offset, int size) throws IOException {
+    int tag = readShort(header, offset);
+    if ((tag == WAVE_FORMAT_EXTENSIBLE) && (size >= 26)) {
+      // the sub-format GUID starts with the format tag
+      tag = readShort(header, offset + 24);
+    }
+    final int channels = readShort(header, offset + 2);
+    final int sampleRate = (int) readInt(header, offset + 4);
+    final int bits = readShort(header, offset + 14);
+    final Encoding encoding = Encoding.fromWaveFormatTag(tag);
+    if ((encoding == null) || (bits != (encoding.getBytesPerSample() * 8)) || (channels == 0) || (sampleRate <= 0)) {
+      throw new IOException("Unsupported WAVE format: tag " + tag + ", " + bits + " bits, " + channels + " channels");
+    }
+    return new SampleFormat(encoding, sampleRate, channels);
+  }
+
+  private int raw() throws IOException {
+    if (source == null) {
+      throw new IOException("The audio is not WAVE audio, so the format of its samples is needed");
+    }
+    return 0;
+  }
+
+  /**
+   * Sets up the conversion once the source format is known and converts the samples that followed the header.
+   */
+  private void startConverting(int dataOffset) throws IOException {
+    final byte[] data = header;
+    header = null;
+
+    partial = new byte[source.getFrameSize()];
+    sourceFrame = new float[source.getChannels()];
+    targetFrame = new float[target.getChannels()];
+    if (source.getSampleRate() != target.getSampleRate()) {
+      final double cutoff =
+          (ROLLOFF * Math.min(source.getSampleRate(), target.getSampleRate())) / source.getSampleRate();
+      halfWidth = (int) Math.ceil(ZERO_CROSSINGS / cutoff);
+      kernel = new float[(halfWidth * KERNEL_RESOLUTION) + 1];
+      for (int i = 0; i < kernel.length; i++) {
+        final double x = (double) i / KERNEL_RESOLUTION;
+        final double sinc = (i == 0) ? 1 : (Math.sin(Math.PI * cutoff * x) / (Math.PI * cutoff * x));
+        kernel[i] = (float) (cutoff * sinc * 0.5 * (1 + Math.cos((Math.PI * x) / halfWidth)));
+      }
+      taps = new float[2 * halfWidth];
+      window = new float[target.getChannels()][(4 * halfWidth) + 16];
+    }
+    convert(data, dataOffset, headerLength - dataOffset);
+  }
+
+  /**
+   * Splits the bytes into frames, keeping an incomplete frame for the next write.
+   */
+  private void convert(byte[] b, int off, int len) throws IOException {
+    final int frameSize = partial.length;
+    if (partialLength > 0) {
+      final int count = Math.min(frameSize - partialLength, len);
+      System.arraycopy(b, off, partial, partialLength, count);
+      partialLength += count;
+      off += count;
+      len -= count;
+      if (partialLength < frameSize) {
+        return;
+      }
+      convertFrame(partial, 0);
+      partialLength = 0;
+    }
+    while (len >= frameSize) {
+      convertFrame(b, off);
+      off += frameSize;
+      len -= frameSize;
+    }
+    System.arraycopy(b, off, partial, 0, len);
+    partialLength = len;
+  }
+
+  private void convertFrame(byte[] b, int off) throws IOException {
+    final int sourceChannels = sourceFrame.length;
+    for (int c = 0; c < sourceChannels; c++) {
+      switch (source.getEncoding()) {
+        case MULAW:
+          sourceFrame[c] = MULAW_DECODING[b[off + c] & 0xFF];
+          break;
+        case ALAW:
+          sourceFrame[c] = ALAW_DECODING[b[off + c] & 0xFF];
+          break;
+        default:
+          sourceFrame[c] = (short) ((b[off + (2 * c) + 1] << 8) | (b[off + (2 * c)] & 0xFF));
+          break;
+      }
+    }
+
+    // mix down to mono, or repeat the source channels
+    if (targetFrame.length == sourceChannels) {
+      System.arraycopy(sourceFrame, 0, targetFrame, 0, sourceChannels);
+    } else if (targetFrame.length == 1) {
+      float sum = 0;
+      for (float sample : sourceFrame) {
+        sum += sample;
+      }
+      targetFrame[0] = sum / sourceChannels;
+    } else {
+      for (int c = 0; c < targetFrame.length; c++) {
+        targetFrame[c] = sourceFrame[c % sourceChannels];
+      }
+    }
+
+    if (window == null) {
+      writeFrame(targetFrame);
+      return;
+    }
+    if (windowLength == window[0].length) {
+      compact();
+    }
+    for (int c = 0; c < window.length; c++) {
+      window[c][windowLength] = targetFrame[c];
+    }
+    windowLength++;
+    sourceFrames++;
+    resample(false);
+  }
+
+  /**
+   * Writes the target frames whose filter span is in the window, or all the remaining frames at the end.
+   */
+  private void resample(boolean end) throws IOException {
+    final long lastFrame = ((sourceFrames * target.getSampleRate()) + source.getSampleRate() - 1)
+        / source.getSampleRate();
+    while (true) {
+      final double time = ((double) targetFrames * source.getSampleRate()) / target.getSampleRate();
+      final long first = (long) Math.floor(time) - halfWidth + 1;
+      if (end ? (targetFrames >= lastFrame) : ((first + taps.length) > (windowStart + windowLength))) {
+        return;
+      }
+
+      float weights = 0;
+      for (int i = 0; i < taps.length; i++) {
+        taps[i] = kernel(time - (first + i));
+        weights += taps[i];
+      }
+      for (int c = 0; c < window.length; c++) {
+        float sum = 0;
+        for (int i = 0; i < taps.length; i++) {
+          final long index = (first + i) - windowStart;
+          if ((index >= 0) && (index < windowLength)) {
+            sum += taps[i] * window[c][(int) index];
+          }
+        }
+        targetFrame[c] = sum / weights;
+      }
+      writeFrame(targetFrame);
+      targetFrames++;
+    }
+  }
+
+  private float kernel(double x) {
+    final double position = Math.abs(x) * KERNEL_RESOLUTION;
+    final int index = (int) position;
+    if (index >= (kernel.length - 1)) {
+      return 0;
+    }
+    return (float) (kernel[index] + ((position - index) * (kernel[index + 1] - kernel[index])));
+  }
+
+  /**
+   * Drops the source frames that are before the filter span of the next target frame.
+   */
+  private void compact() {
+    final double time = ((double) targetFrames * source.getSampleRate()) / target.getSampleRate();
+    final long keep = (long) Math.floor(time) - halfWidth + 1;
+    final int drop = (int) Math.max(0, Math.min(windowLength, keep - windowStart));
+    for (int c = 0; c < window.length; c++) {
+      if (drop == 0) {
+        window[c] = Arrays.copyOf(window[c], window[c].length * 2);
+      } else {
+        System.arraycopy(window[c], drop, window[c], 0, windowLength - drop);
+      }
+    }
+    windowStart += drop;
+    windowLength -= drop;
+  }
+
+  private void writeFrame(float[] frame) throws IOException {
+    writeHeader();
+    if ((outputLength + target.getFrameSize()) > output.length) {
+      flushOutput();
+    }
+    for (float value : frame) {
+      final int sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+      switch (target.getEncoding()) {
+        case MULAW:
+          output[outputLength++] = (byte) linearToMulaw(sample);
+          break;
+        case ALAW:
+          output[outputLength++] = (byte) linearToAlaw(sample);
+          break;
+        default:
+          output[outputLength++] = (byte) sample;
+          output[outputLength++] = (byte) (sample >> 8);
+          break;
+      }
+    }
+  }
+
+  private void writeHeader() throws IOException {
+    if (!wave || headerWritten) {
+      return;
+    }
+    headerWritten = true;
+
+    // formats other than PCM have the cbSize field
+    final Encoding encoding = target.getEncoding();
+    final int formatSize = (encoding == Encoding.PCM) ? 16 : 18;
+    final int dataOffset = RIFF_HEADER_SIZE + CHUNK_HEADER_SIZE + formatSize + CHUNK_HEADER_SIZE;
+    final byte[] bytes = new byte[dataOffset];
+    writeId(bytes, 0, "RIFF");
+    StreamingWaveInputStream.writeIntLittleEndian(bytes, 4, StreamingWaveInputStream.MAX_SIZE - CHUNK_HEADER_SIZE);
+    writeId(bytes, 8, "WAVE");
+    writeId(bytes, 12, "fmt ");
+    StreamingWaveInputStream.writeIntLittleEndian(bytes, 16, formatSize);
+    writeShort(bytes, 20, encoding.getWaveFormatTag());
+    writeShort(bytes, 22, target.getChannels());
+    StreamingWaveInputStream.writeIntLittleEndian(bytes, 24, target.getSampleRate());
+    StreamingWaveInputStream.writeIntLittleEndian(bytes, 28, (long) target.getSampleRate() * target.getFrameSize());
+    writeShort(bytes, 32, target.getFrameSize());
+    writeShort(bytes, 34, encoding.getBytesPerSample() * 8);
+    writeId(bytes, dataOffset - CHUNK_HEADER_SIZE, "data");
+    StreamingWaveInputStream.writeIntLittleEndian(bytes, dataOffset - 4,
+        StreamingWaveInputStream.MAX_SIZE - dataOffset);
+    out.write(bytes);
+  }
+
+  private void flushOutput() throws IOException {
+    if (outputLength > 0) {
+      out.write(output, 0, outputLength);
+      outputLength = 0;
+    }
+  }
+
+  private static boolean matches(byte[] buffer, int offset, String id) {
+    for (int i = 0; i < id.length(); i++) {
+      if (buffer[offset + i] != id.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void writeId(byte[] buffer, int offset, String id) {
+    for (int i = 0; i < id.length(); i++) {
+      buffer[offset + i] = (byte) id.charAt(i);
+    }
+  }
+
+  private static int readShort(byte[] buffer, int offset) {
+    return (buffer[offset] & 0xFF) | ((buffer[offset + 1] & 0xFF) << 8);
+  }
+
+  private static void writeShort(byte[] buffer, int offset, int value) {
+    buffer[offset] = (byte) value;
+    buffer[offset + 1] = (byte) (value >> 8);
+  }
+
+  private static long readInt(byte[] buffer, int offset) {
+    return readShort(buffer, offset) | ((long) readShort(buffer, offset + 2) << 16);
+  }
+
+  private static int segment(int value, int[] ends) {
+    for (int i = 0; i < ends.length; i++) {
+      if (value <= ends[i]) {
+        return i;
+      }
+    }
+    return ends.length;
+  }
+
+  /**
+   * Encodes a 16-bit sample in G.711 mu-law.
+   *
+   * @param sample the sample
+   * @return the mu-law byte
+   */
+  static int linearToMulaw(int sample) {
+    int value = sample >> 2;
+    final int mask;
+    if (value < 0) {
+      value = -value;
+      mask = 0x7F;
+    } else {
+      mask = 0xFF;
+    }
+    value = Math.min(value, 8159) + (0x84 >> 2);
+    final int segment = segment(value, MULAW_SEGMENT_ENDS);
+    if (segment >= 8) {
+      return 0x7F ^ mask;
+    }
+    return ((segment << 4) | ((value >> (segment + 1)) & 0x0F)) ^ mask;
+  }
+
+  /**
+   * Decodes a G.711 mu-law byte to a 16-bit sample.
+   *
+   * @param mulaw the mu-law byte
+   * @return the sample
+   */
+  static int mulawToLinear(int mulaw) {
+    final int value = ~mulaw;
+    final int magnitude = (((value & 0x0F) << 3) + 0x84) << ((value & 0x70) >> 4);
+    return ((value & 0x80) != 0) ? (0x84 - magnitude) : (magnitude - 0x84);
+  }
+
+  /**
+   * Encodes a 16-bit sample in G.711 a-law.
+   *
+   * @param sample the sample
+   * @return the a-law byte
+   */
+  static int linearToAlaw(int sample) {
+    int value = sample >> 3;
+    final int mask;
+    if (value >= 0) {
+      mask = 0xD5;
+    } else {
+      mask = 0x55;
+      value = -value - 1;
+    }
+    final int segment = segment(value, ALAW_SEGMENT_ENDS);
+    if (segment >= 8) {
+      return 0x7F ^ mask;
+    }
+    final int mantissa = ((segment < 2) ? (value >> 1) : (value >> segment)) & 0x0F;
+    return ((segment << 4) | mantissa) ^ mask;
+  }
+
+  /**
+   * Decodes a G.711 a-law byte to a 16-bit sample.
+   *
+   * @param alaw the a-law byte
+   * @return the sample
+   */
+  static int alawToLinear(int alaw) {
+    final int value = alaw ^ 0x55;
+    final int segment = (value & 0x70) >> 4;
+    int magnitude = ((value & 0x0F) << 4) + ((segment == 0) ? 8 : 0x108);
+    if (segment > 1) {
+      magnitude <<= segment - 1;
+    }
+    return ((value & 0x80) != 0) ? magnitude : -magnitude;
+  }
+}
@@ -14,8 +14,12 @@ package com.ibm.watson.developer_cloud.text_to_speech.v1.util;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 
 import com.ibm.watson.developer_cloud.text_to_speech.v1.TextToSpeech;
 
@@ -68,6 +72,49 @@ public final class WaveUtils {
     return new ByteArrayInputStream(audioBytes);
   }
 
+  /**
+   * Writes a streamed WAVE(.wav) input stream to a file without holding the audio in memory. The header is written
+   * with placeholder sizes as the audio arrives, see {@link StreamingWaveInputStream}, and the real sizes are written
+   * in place once the stream ends. Streams that are not WAVE are copied unchanged. The input stream is closed.
+   *
+   * @param is the input stream
+   * @param file the file to write
+   * @return the number of bytes written
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static long writeWave(InputStream is, File file) throws IOException {
+    final StreamingWaveInputStream wave = new StreamingWaveInputStream(is);
+    long length = 0;
+    final OutputStream out = new FileOutputStream(file);
+    try {
+      final byte[] buffer = new byte[8192];
+      int read;
+      while ((read = wave.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+        length += read;
+      }
+    } finally {
+      out.close();
+      wave.close();
+    }
+
+    if (wave.getDataSizeOffset() >= 0) {
+      final byte[] size = new byte[4];
+      final RandomAccessFile patched = new RandomAccessFile(file, "rw");
+      try {
+        StreamingWaveInputStream.writeIntLittleEndian(size, 0, length - WAVE_HEADER_SIZE);
+        patched.seek(StreamingWaveInputStream.RIFF_SIZE_OFFSET);
+        patched.write(size);
+        StreamingWaveInputStream.writeIntLittleEndian(size, 0, length - wave.getDataOffset());
+        patched.seek(wave.getDataSizeOffset());
+        patched.write(size);
+      } finally {
+        patched.close();
+      }
+    }
+    return length;
+  }
+
   /**
    * Converts an {@link InputStream} to byte array.
    *
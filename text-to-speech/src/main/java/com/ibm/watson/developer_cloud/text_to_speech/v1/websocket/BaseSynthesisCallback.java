@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1.websocket;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Mark;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.WordTiming;
+
+/**
+ * An empty implementation of {@link SynthesisCallback} interface.
+ */
+public class BaseSynthesisCallback implements SynthesisCallback {
+
+  private static final Logger LOG = Logger.getLogger(BaseSynthesisCallback.class.getName());
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.text_to_speech.v1.websocket.SynthesisCallback#onConnected()
+   */
+  @Override
+  public void onConnected() { }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.text_to_speech.v1.websocket.SynthesisCallback#onContentType(java.lang.String)
+   */
+  @Override
+  public void onContentType(String contentType) { }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.text_to_speech.v1.websocket.SynthesisCallback#onAudio(byte[])
+   */
+  @Override
+  public void onAudio(byte[] audio) { }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.text_to_speech.v1.websocket.SynthesisCallback#onTimings(java.util.List)
+   */
+  @Override
+  public void onTimings(List<WordTiming> timings) { }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.text_to_speech.v1.websocket.SynthesisCallback#onMarks(java.util.List)
+   */
+  @Override
+  public void onMarks(List<Mark> marks) { }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.text_to_speech.v1.websocket.SynthesisCallback#onWarning(java.lang.String)
+   */
+  @Override
+  public void onWarning(String warnings) {
+    LOG.warning(warnings);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.text_to_speech.v1.websocket.SynthesisCallback#onError(java.lang.Exception)
+   */
+  @Override
+  public void onError(Exception e) {
+    LOG.log(Level.SEVERE, e.getMessage(), e);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.text_to_speech.v1.websocket.SynthesisCallback#onDisconnected()
+   */
+  @Override
+  public void onDisconnected() { }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1.websocket;
+
+import java.util.List;
+
+import com.ibm.watson.developer_cloud.text_to_speech.v1.TextToSpeech;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Mark;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.WordTiming;
+
+import okhttp3.ws.WebSocket;
+
+/**
+ * The synthesis callback used during a {@link WebSocket} synthesis by the {@link TextToSpeech} service. The methods
+ * are called on the thread that reads the {@link WebSocket}, in the order of the messages of the service.
+ */
+public interface SynthesisCallback {
+
+  /**
+   * Called when a WebSocket connection was made.
+   */
+  void onConnected();
+
+  /**
+   * Called with the content type of the audio, before the first audio message.
+   *
+   * @param contentType the content type, e.g. <code>audio/ogg;codecs=opus</code>
+   */
+  void onContentType(String contentType);
+
+  /**
+   * Called for every audio message, as soon as the service produced it.
+   *
+   * @param audio the audio
+   */
+  void onAudio(byte[] audio);
+
+  /**
+   * Called with the timings of the words synthesized so far, if they were requested.
+   *
+   * @param timings the word timings
+   */
+  void onTimings(List<WordTiming> timings);
+
+  /**
+   * Called with the positions of the SSML marks reached in the audio.
+   *
+   * @param marks the marks
+   */
+  void onMarks(List<Mark> marks);
+
+  /**
+   * Called with the warnings of the service, e.g. about unknown parameters.
+   *
+   * @param warnings the warnings
+   */
+  void onWarning(String warnings);
+
+  /**
+   * Called when there is an error in the Web Socket connection.
+   *
+   * @param e the exception
+   */
+  void onError(Exception e);
+
+  /**
+   * Called when a WebSocket connection was closed, after all the audio was received.
+   */
+  void onDisconnected();
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2016 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1.websocket;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.ibm.watson.developer_cloud.http.HttpHeaders;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.TextToSpeech;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.AudioFormat;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Mark;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Voice;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.WordTiming;
+import com.ibm.watson.developer_cloud.util.RequestUtils;
+
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Request.Builder;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okhttp3.ws.WebSocket;
+import okhttp3.ws.WebSocketCall;
+import okhttp3.ws.WebSocketListener;
+import okio.Buffer;
+
+/**
+ * Manages Text to Speech synthesis over WebSockets.<br>
+ * This class is in charge of opening a {@link WebSocket} connection and sending the text to the API. The service
+ * sends the audio in binary messages as it produces it, along with the word timings and marks, and closes the
+ * connection once the whole text was synthesized.
+ */
+public class WebSocketManager {
+  private final String url;
+  private final OkHttpClient client;
+  private String token;
+  private Headers defaultHeaders;
+
+  /**
+   * The listener interface for receiving {@link WebSocket} events. <br>
+   * The class that is interested in processing a event implements this interface. When the event occurs, that object's
+   * appropriate method is invoked.
+   *
+   * @see TextToSpeech
+   */
+  private static class TextToSpeechWebSocketListener implements WebSocketListener {
+
+    private static final String TEXT = "text";
+    private static final String ACCEPT = "accept";
+    private static final String TIMINGS = "timings";
+    private static final String WORDS = "words";
+    private static final String MARKS = "marks";
+    private static final String ERROR = "error";
+    private static final String WARNINGS = "warnings";
+    private static final String BINARY_STREAMS = "binary_streams";
+    private static final String CONTENT_TYPE = "content_type";
+
+    private final String text;
+    private final AudioFormat audioFormat;
+    private final boolean wordTimings;
+    private final SynthesisCallback callback;
+
+    /**
+     * Instantiates a new text to speech web socket listener.
+     *
+     * @param text the text to synthesize
+     * @param audioFormat the audio format
+     * @param wordTimings true to request the timings of the words
+     * @param callback the callback
+     */
+    TextToSpeechWebSocketListener(String text, AudioFormat audioFormat, boolean wordTimings,
+        SynthesisCallback callback) {
+      this.text = text;
+      this.audioFormat = audioFormat;
+      this.wordTimings = wordTimings;
+      this.callback = callback;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see okhttp3.ws.WebSocketListener#onOpen(okhttp3.ws.WebSocket, okhttp3.Response)
+     */
+    @Override
+    public void onOpen(WebSocket socket, Response response) {
+      callback.onConnected();
+      try {
+        socket.sendMessage(RequestBody.create(WebSocket.TEXT, buildTextMessage()));
+      } catch (IOException e) {
+        callback.onError(e);
+      }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see okhttp3.ws.WebSocketListener#onMessage(okhttp3.ResponseBody)
+     */
+    @Override
+    public void onMessage(ResponseBody response) throws IOException {
+      if (WebSocket.BINARY.equals(response.contentType())) {
+        callback.onAudio(response.bytes());
+        return;
+      }
+
+      final JsonObject json = new JsonParser().parse(response.string()).getAsJsonObject();
+      if (json.has(ERROR)) {
+        callback.onError(new RuntimeException(json.get(ERROR).getAsString()));
+      } else if (json.has(WARNINGS)) {
+        callback.onWarning(json.get(WARNINGS).getAsString());
+      } else if (json.has(BINARY_STREAMS)) {
+        for (JsonElement stream : json.getAsJsonArray(BINARY_STREAMS)) {
+          callback.onContentType(stream.getAsJsonObject().get(CONTENT_TYPE).getAsString());
+        }
+      } else {
+        if (json.has(WORDS)) {
+          final List<WordTiming> timings = new ArrayList<WordTiming>();
+          for (JsonElement element : json.getAsJsonArray(WORDS)) {
+            final JsonArray timing = element.getAsJsonArray();
+            timings.add(new WordTiming(timing.get(0).getAsString(), timing.get(1).getAsDouble(),
+                timing.get(2).getAsDouble()));
+          }
+          callback.onTimings(timings);
+        }
+        if (json.has(MARKS)) {
+          final List<Mark> marks = new ArrayList<Mark>();
+          for (JsonElement element : json.getAsJsonArray(MARKS)) {
+            final JsonArray mark = element.getAsJsonArray();
+            marks.add(new Mark(mark.get(0).getAsString(), mark.get(1).getAsDouble()));
+          }
+          callback.onMarks(marks);
+        }
+      }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see okhttp3.ws.WebSocketListener#onClose(int, java.lang.String)
+     */
+    @Override
+    public void onClose(int code, String reason) {
+      callback.onDisconnected();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see okhttp3.ws.WebSocketListener#onFailure(java.io.IOException, okhttp3.Response)
+     */
+    @Override
+    public void onFailure(IOException e, Response response) {
+      callback.onError(e);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see okhttp3.ws.WebSocketListener#onPong(okio.Buffer)
+     */
+    @Override
+    public void onPong(Buffer buffer) { }
+
+    /**
+     * Builds the text message.
+     *
+     * @return the message
+     */
+    private String buildTextMessage() {
+      final JsonObject message = new JsonObject();
+      message.addProperty(TEXT, text);
+      message.addProperty(ACCEPT, audioFormat.toString());
+      if (wordTimings) {
+        final JsonArray timings = new JsonArray();
+        timings.add(WORDS);
+        message.add(TIMINGS, timings);
+      }
+      return message.toString();
+    }
+  }
+
+  /**
+   * Instantiates a new web socket manager.
+   *
+   * @param url the url, with the ws or wss scheme
+   * @param client the client. WebSocket connections share its dispatcher and connection pool.
+   * @param defaultHeaders the default headers
+   * @param token the token
+   */
+  public WebSocketManager(String url, OkHttpClient client, Headers defaultHeaders, String token) {
+    this.url = url;
+    this.client = client;
+    this.defaultHeaders = defaultHeaders;
+    this.token = token;
+  }
+
+  /**
+   * Creates a connection.
+   *
+   * @param voice the voice
+   * @param customizationId the customization ID, or null
+   * @return the web socket call
+   */
+  private WebSocketCall createConnection(Voice voice, String customizationId) {
+    final HttpUrl.Builder urlBuilder = HttpUrl.parse(url.replaceFirst("^ws", "http")).newBuilder();
+    urlBuilder.addQueryParameter("voice", voice.getName());
+    if (customizationId != null) {
+      urlBuilder.addQueryParameter("customization_id", customizationId);
+    }
+    Builder builder = new Request.Builder().url(urlBuilder.build());
+
+    if (token != null) {
+      builder.addHeader(HttpHeaders.X_WATSON_AUTHORIZATION_TOKEN, token);
+    }
+
+    if (defaultHeaders != null) {
+      for (String key : defaultHeaders.names()) {
+        builder.header(key, defaultHeaders.get(key));
+      }
+      if (defaultHeaders.get(HttpHeaders.USER_AGENT) != null) {
+        String userAgent = RequestUtils.getUserAgent();
+        userAgent += " " + defaultHeaders.get(HttpHeaders.USER_AGENT);
+        builder.header(HttpHeaders.USER_AGENT, userAgent);
+      }
+    }
+
+    return WebSocketCall.create(client, builder.build());
+  }
+
+  /**
+   * Synthesize.
+   *
+   * @param text the text or SSML
+   * @param voice the voice
+   * @param audioFormat the audio format
+   * @param customizationId the customization ID, or null
+   * @param wordTimings true to request the timings of the words
+   * @param callback the callback
+   */
+  public void synthesize(String text, Voice voice, AudioFormat audioFormat, String customizationId,
+      boolean wordTimings, SynthesisCallback callback) {
+    createConnection(voice, customizationId)
+        .enqueue(new TextToSpeechWebSocketListener(text, audioFormat, wordTimings, callback));
+  }
+}